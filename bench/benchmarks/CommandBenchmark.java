@@ -0,0 +1,115 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import chat.Command;
+import examples.CommandParseBenchmark;
+
+/**
+ * Benchmarks de la reconnaissance des commandes dans les lignes reçues par
+ * le serveur (un pourcentage donné de commandes parmi des messages
+ * ordinaires) :
+ * <ul>
+ * <li>table : reconnaissance par {@link Command#parse(String)}</li>
+ * <li>legacy : reconnaissance historique (conversion de chaque ligne en
+ * minuscules pour chacune des commandes, voir
+ * {@link CommandParseBenchmark#legacy(String)})</li>
+ * </ul>
+ * @author davidroussel
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class CommandBenchmark
+{
+	/**
+	 * Nombre de lignes reconnues par invocation
+	 */
+	private final static int LINES = 1024;
+
+	/**
+	 * Pourcentage de commandes parmi les lignes
+	 */
+	@Param({"5", "50"})
+	public int commands;
+
+	/**
+	 * Les lignes à reconnaître
+	 */
+	private String[] lines;
+
+	/**
+	 * Mise en place des lignes
+	 */
+	@Setup
+	public void setup()
+	{
+		Random random = new Random(42);
+		String[] samples = {"bye", "history from user12 page 2",
+		    "kick user7", "kill", "History with hello"};
+		lines = new String[LINES];
+		for (int i = 0; i < LINES; i++)
+		{
+			if (random.nextInt(100) < commands)
+			{
+				lines[i] = samples[random.nextInt(samples.length)];
+			}
+			else
+			{
+				lines[i] = "Hello everyone, this is message number " + i;
+			}
+		}
+	}
+
+	/**
+	 * Reconnaissance de toutes les lignes avec la table des commandes
+	 * @return le nombre de commandes reconnues
+	 */
+	@Benchmark
+	@OperationsPerInvocation(LINES)
+	public int table()
+	{
+		int count = 0;
+		for (String line : lines)
+		{
+			if (Command.parse(line) != null)
+			{
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Reconnaissance historique de toutes les lignes
+	 * @return la somme des longueurs des résultats
+	 */
+	@Benchmark
+	@OperationsPerInvocation(LINES)
+	public int legacy()
+	{
+		int sum = 0;
+		for (String line : lines)
+		{
+			sum += CommandParseBenchmark.legacy(line).length();
+		}
+		return sum;
+	}
+}
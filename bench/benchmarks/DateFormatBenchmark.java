@@ -0,0 +1,222 @@
+package benchmarks;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import models.Message;
+
+/**
+ * Benchmark concurrent (8 threads) de l'affichage de la date des messages.
+ * Chaque date affichée est comparée à celle obtenue (lors de la mise en
+ * place) avec un {@link SimpleDateFormat} propre à chaque message : le
+ * compteur "errors" des résultats donne le nombre de dates erronées.
+ * <ul>
+ * <li>formattedDate : {@link Message#getFormattedDate()}</li>
+ * <li>toStringMessage : {@link Message#toString()} (comparé à l'affichage
+ * complet attendu)</li>
+ * <li>sharedFormat : un {@link SimpleDateFormat} partagé par tous les
+ * threads sans synchronisation (comportement précédent de
+ * {@link Message#getFormattedDate()}, qui produit des dates erronées)</li>
+ * <li>synchronizedFormat : un {@link SimpleDateFormat} partagé dont
+ * l'utilisation est synchronisée</li>
+ * </ul>
+ * Les dates des messages sont réparties sur un nombre donné de secondes :
+ * une seule (tous les messages réutilisent la dernière seconde formattée)
+ * ou bien une seconde différente par message.
+ * @author davidroussel
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@Threads(8)
+@State(Scope.Benchmark)
+public class DateFormatBenchmark
+{
+	/**
+	 * Nombre de messages (puissance de 2)
+	 */
+	private final static int MESSAGES = 1024;
+
+	/**
+	 * Format des dates des messages
+	 */
+	private final static String PATTERN = "yyyy/MM/dd HH:mm:ss";
+
+	/**
+	 * Nombre de secondes sur lesquelles sont réparties les dates des
+	 * messages
+	 */
+	@Param({"1", "1024"})
+	public int seconds;
+
+	/**
+	 * Les messages (partagés par tous les threads)
+	 */
+	private Message[] messages;
+
+	/**
+	 * Les dates formattées attendues des messages
+	 */
+	private String[] dates;
+
+	/**
+	 * Les affichages complets attendus des messages
+	 */
+	private String[] texts;
+
+	/**
+	 * Formatteur partagé par tous les threads
+	 */
+	private SimpleDateFormat sharedFormat;
+
+	/**
+	 * Etat propre à chaque thread : rang du prochain message et nombre de
+	 * dates erronées (rapporté dans les résultats)
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Counters
+	{
+		/**
+		 * Nombre de dates erronées
+		 */
+		public long errors;
+
+		/**
+		 * Rang du prochain message
+		 */
+		private int next;
+
+		/**
+		 * Remise à zéro du compteur au début de chaque itération
+		 */
+		@Setup(Level.Iteration)
+		public void reset()
+		{
+			errors = 0;
+		}
+
+		/**
+		 * Rang du prochain message
+		 * @return le rang du prochain message
+		 */
+		private int next()
+		{
+			next = (next + 1) & (MESSAGES - 1);
+			return next;
+		}
+	}
+
+	/**
+	 * Mise en place des messages et des affichages attendus
+	 */
+	@Setup
+	public void setup()
+	{
+		long origin = 1500000000000L;
+		messages = new Message[MESSAGES];
+		dates = new String[MESSAGES];
+		texts = new String[MESSAGES];
+		for (int i = 0; i < MESSAGES; i++)
+		{
+			Date date = new Date(origin + ((long) (i % seconds) * 1000)
+			                     + ((i * 7) % 1000));
+			messages[i] = new Message(date, "message " + i, "user" + (i % 8));
+			dates[i] = new SimpleDateFormat(PATTERN).format(date);
+			texts[i] = "[" + dates[i] + "] user" + (i % 8) + " > message " + i;
+		}
+		sharedFormat = new SimpleDateFormat(PATTERN);
+	}
+
+	/**
+	 * Vérification d'un affichage
+	 * @param result l'affichage obtenu
+	 * @param expected l'affichage attendu
+	 * @param counters les compteurs du thread
+	 * @return l'affichage obtenu
+	 */
+	private static String check(String result,
+	                            String expected,
+	                            Counters counters)
+	{
+		if (!expected.equals(result))
+		{
+			counters.errors++;
+		}
+		return result;
+	}
+
+	/**
+	 * Affichage de la date d'un message
+	 * @param counters les compteurs du thread
+	 * @return la date formattée
+	 */
+	@Benchmark
+	public String formattedDate(Counters counters)
+	{
+		int i = counters.next();
+		return check(messages[i].getFormattedDate(), dates[i], counters);
+	}
+
+	/**
+	 * Affichage complet d'un message
+	 * @param counters les compteurs du thread
+	 * @return l'affichage du message
+	 */
+	@Benchmark
+	public String toStringMessage(Counters counters)
+	{
+		int i = counters.next();
+		return check(messages[i].toString(), texts[i], counters);
+	}
+
+	/**
+	 * Affichage de la date d'un message avec un formatteur partagé non
+	 * synchronisé
+	 * @param counters les compteurs du thread
+	 * @return la date formattée
+	 */
+	@Benchmark
+	public String sharedFormat(Counters counters)
+	{
+		int i = counters.next();
+		return check(sharedFormat.format(messages[i].getDate()), dates[i],
+		             counters);
+	}
+
+	/**
+	 * Affichage de la date d'un message avec un formatteur partagé
+	 * synchronisé
+	 * @param counters les compteurs du thread
+	 * @return la date formattée
+	 */
+	@Benchmark
+	public String synchronizedFormat(Counters counters)
+	{
+		int i = counters.next();
+		String result;
+		synchronized (sharedFormat)
+		{
+			result = sharedFormat.format(messages[i].getDate());
+		}
+		return check(result, dates[i], counters);
+	}
+}
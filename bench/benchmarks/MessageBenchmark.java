@@ -0,0 +1,100 @@
+package benchmarks;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import models.Message;
+
+/**
+ * Benchmarks de la construction et de l'affichage d'un {@link Message} :
+ * <ul>
+ * <li>construct : construction d'un message avec date, contenu et
+ * auteur</li>
+ * <li>toStringMessage : affichage complet d'un message
+ * ({@link Message#toString()})</li>
+ * <li>formattedDate : affichage de la date d'un message
+ * ({@link Message#getFormattedDate()})</li>
+ * </ul>
+ * @author davidroussel
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class MessageBenchmark
+{
+	/**
+	 * Date des messages (fixe pour que les résultats soient reproductibles)
+	 */
+	private Date date;
+
+	/**
+	 * Contenu des messages
+	 */
+	private String content;
+
+	/**
+	 * Auteur des messages
+	 */
+	private String author;
+
+	/**
+	 * Message à afficher
+	 */
+	private Message message;
+
+	/**
+	 * Mise en place des messages
+	 */
+	@Setup
+	public void setup()
+	{
+		date = new Date(1500000000000L);
+		content = "Hello everyone, this is a message of average length";
+		author = "user0042";
+		message = new Message(date, content, author).withSequence(42);
+	}
+
+	/**
+	 * Construction d'un message
+	 * @return le message construit
+	 */
+	@Benchmark
+	public Message construct()
+	{
+		return new Message(date, content, author);
+	}
+
+	/**
+	 * Affichage complet d'un message
+	 * @return la chaine représentant le message
+	 */
+	@Benchmark
+	public String toStringMessage()
+	{
+		return message.toString();
+	}
+
+	/**
+	 * Affichage de la date d'un message
+	 * @return la chaine représentant la date du message
+	 */
+	@Benchmark
+	public String formattedDate()
+	{
+		return message.getFormattedDate();
+	}
+}
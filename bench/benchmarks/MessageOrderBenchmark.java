@@ -0,0 +1,125 @@
+package benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import models.Message;
+import models.Message.MessageKind;
+import models.Message.MessageOrder;
+import models.MessageComparator;
+
+/**
+ * Benchmark de la comparaison de deux messages par un
+ * {@link MessageComparator} pour chacune des combinaisons de critères
+ * d'ordre ({@link MessageOrder}) : aucun critère (ordre d'arrivée) puis
+ * toutes les suites ordonnées de 1 à 3 critères distincts.
+ * Les messages comparés ont peu d'auteurs et de contenus différents et des
+ * dates proches de manière à ce que les premiers critères ne suffisent pas
+ * toujours à départager les messages.
+ * @author davidroussel
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class MessageOrderBenchmark
+{
+	/**
+	 * Nombre de paires de messages comparées par invocation
+	 */
+	private final static int PAIRS = 1024;
+
+	/**
+	 * Critères d'ordre séparés par des tirets ou bien NONE pour l'ordre
+	 * d'arrivée
+	 */
+	@Param({"NONE",
+	        "AUTHOR", "DATE", "CONTENT",
+	        "AUTHOR-DATE", "AUTHOR-CONTENT", "DATE-AUTHOR", "DATE-CONTENT",
+	        "CONTENT-AUTHOR", "CONTENT-DATE",
+	        "AUTHOR-DATE-CONTENT", "AUTHOR-CONTENT-DATE",
+	        "DATE-AUTHOR-CONTENT", "DATE-CONTENT-AUTHOR",
+	        "CONTENT-AUTHOR-DATE", "CONTENT-DATE-AUTHOR"})
+	public String orders;
+
+	/**
+	 * Comparateur construit d'après les critères d'ordre
+	 */
+	private MessageComparator comparator;
+
+	/**
+	 * Premiers messages des paires
+	 */
+	private Message[] left;
+
+	/**
+	 * Seconds messages des paires
+	 */
+	private Message[] right;
+
+	/**
+	 * Mise en place du comparateur et des paires de messages
+	 */
+	@Setup
+	public void setup()
+	{
+		if (orders.equals("NONE"))
+		{
+			comparator = MessageComparator.ARRIVAL;
+		}
+		else
+		{
+			comparator = MessageComparator.parse(orders.replace('-', ','));
+		}
+
+		Random random = new Random(42);
+		long origin = 1500000000000L;
+		Message[] messages = new Message[PAIRS];
+		for (int i = 0; i < PAIRS; i++)
+		{
+			messages[i] = new Message(origin + random.nextInt(64),
+			                          "message " + random.nextInt(16),
+			                          "user" + random.nextInt(8),
+			                          MessageKind.CHAT,
+			                          i + 1);
+		}
+		left = new Message[PAIRS];
+		right = new Message[PAIRS];
+		for (int i = 0; i < PAIRS; i++)
+		{
+			left[i] = messages[random.nextInt(PAIRS)];
+			right[i] = messages[random.nextInt(PAIRS)];
+		}
+	}
+
+	/**
+	 * Comparaison de toutes les paires de messages
+	 * @return la somme des résultats des comparaisons
+	 */
+	@Benchmark
+	@OperationsPerInvocation(PAIRS)
+	public int compare()
+	{
+		int sum = 0;
+		for (int i = 0; i < PAIRS; i++)
+		{
+			sum += comparator.compare(left[i], right[i]);
+		}
+		return sum;
+	}
+}
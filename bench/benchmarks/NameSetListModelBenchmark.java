@@ -0,0 +1,152 @@
+package benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import models.NameSetListModel;
+
+/**
+ * Benchmarks des opérations d'un {@link NameSetListModel} contenant un
+ * nombre donné de noms :
+ * <ul>
+ * <li>addRemove : ajout d'un nom absent puis retrait de ce même nom (la
+ * taille de la liste reste constante)</li>
+ * <li>getElementAt : accès à un nom d'après son index (pour chacune des
+ * lignes affichées d'une {@link javax.swing.JList})</li>
+ * <li>getIndex : recherche de l'index d'un nom présent</li>
+ * </ul>
+ * @author davidroussel
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class NameSetListModelBenchmark
+{
+	/**
+	 * Nombre de valeurs précalculées (index, noms présents ou absents)
+	 * parcourues circulairement
+	 */
+	private final static int VALUES = 1024;
+
+	/**
+	 * Nombre de noms dans la liste
+	 */
+	@Param({"10", "100", "10000"})
+	public int names;
+
+	/**
+	 * La liste des noms
+	 */
+	private NameSetListModel model;
+
+	/**
+	 * Index des noms accédés
+	 */
+	private int[] indices;
+
+	/**
+	 * Noms présents dans la liste
+	 */
+	private String[] present;
+
+	/**
+	 * Noms absents de la liste
+	 */
+	private String[] absent;
+
+	/**
+	 * Rang de la prochaine valeur précalculée
+	 */
+	private int next;
+
+	/**
+	 * Mise en place de la liste (remplie dans un ordre aléatoire) et des
+	 * valeurs précalculées
+	 */
+	@Setup
+	public void setup()
+	{
+		Random random = new Random(42);
+		List<String> all = new ArrayList<String>(names);
+		for (int i = 0; i < names; i++)
+		{
+			all.add(String.format("user%06d", 2 * i));
+		}
+		Collections.shuffle(all, random);
+		model = new NameSetListModel();
+		for (String name : all)
+		{
+			model.add(name);
+		}
+		indices = new int[VALUES];
+		present = new String[VALUES];
+		absent = new String[VALUES];
+		for (int i = 0; i < VALUES; i++)
+		{
+			int rank = random.nextInt(names);
+			indices[i] = rank;
+			present[i] = String.format("user%06d", 2 * rank);
+			absent[i] = String.format("user%06d", (2 * rank) + 1);
+		}
+		next = 0;
+	}
+
+	/**
+	 * Rang de la prochaine valeur précalculée
+	 * @return le rang de la prochaine valeur
+	 */
+	private int next()
+	{
+		next = (next + 1) & (VALUES - 1);
+		return next;
+	}
+
+	/**
+	 * Ajout puis retrait d'un nom absent
+	 * @return true si le nom a été ajouté puis retiré
+	 */
+	@Benchmark
+	public boolean addRemove()
+	{
+		String name = absent[next()];
+		return model.add(name) & model.remove(name);
+	}
+
+	/**
+	 * Accès à un nom d'après son index
+	 * @return le nom
+	 */
+	@Benchmark
+	public String getElementAt()
+	{
+		return model.getElementAt(indices[next()]);
+	}
+
+	/**
+	 * Recherche de l'index d'un nom présent
+	 * @return l'index du nom
+	 */
+	@Benchmark
+	public int getIndex()
+	{
+		return model.getIndex(present[next()]);
+	}
+}
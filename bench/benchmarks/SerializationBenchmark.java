@@ -0,0 +1,97 @@
+package benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import chat.MessageCodec;
+import models.Message;
+
+/**
+ * Benchmarks des allers-retours (encodage puis décodage) d'un
+ * {@link Message} :
+ * <ul>
+ * <li>serialized : sérialisation dans un {@link ObjectOutputStream} puis
+ * désérialisation depuis un {@link ObjectInputStream} (en-têtes des flux et
+ * descripteurs de classes compris, comme pour une trame autonome)</li>
+ * <li>binary : encodage puis décodage d'une trame du protocole binaire
+ * ({@link MessageCodec})</li>
+ * </ul>
+ * @author davidroussel
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+@State(Scope.Thread)
+public class SerializationBenchmark
+{
+	/**
+	 * Message encodé puis décodé
+	 */
+	private Message message;
+
+	/**
+	 * Tampon de sérialisation (réutilisé d'un aller-retour à l'autre)
+	 */
+	private ByteArrayOutputStream outBytes;
+
+	/**
+	 * Mise en place du message
+	 */
+	@Setup
+	public void setup()
+	{
+		message = new Message(new Date(1500000000000L),
+		    "Hello everyone, this is a message of average length",
+		    "user0042").withSequence(42);
+		outBytes = new ByteArrayOutputStream();
+	}
+
+	/**
+	 * Aller-retour par sérialisation
+	 * @return le message désérialisé
+	 * @throws IOException si la sérialisation échoue
+	 * @throws ClassNotFoundException si la classe du message n'est pas
+	 * trouvée
+	 */
+	@Benchmark
+	public Object serialized() throws IOException, ClassNotFoundException
+	{
+		outBytes.reset();
+		ObjectOutputStream out = new ObjectOutputStream(outBytes);
+		out.writeObject(message);
+		out.flush();
+		ObjectInputStream in = new ObjectInputStream(
+		    new ByteArrayInputStream(outBytes.toByteArray()));
+		return in.readObject();
+	}
+
+	/**
+	 * Aller-retour par le protocole binaire
+	 * @return le message décodé
+	 * @throws IOException si la trame est invalide
+	 */
+	@Benchmark
+	public Message binary() throws IOException
+	{
+		return MessageCodec.read(ByteBuffer.wrap(MessageCodec.encode(message)));
+	}
+}
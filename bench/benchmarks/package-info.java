@@ -0,0 +1,9 @@
+package benchmarks;
+
+/**
+ * Package contenant les micro-benchmarks JMH des chemins critiques du chat
+ * (construction, comparaison, affichage et sérialisation des messages, liste
+ * des noms d'utilisateurs et reconnaissance des commandes). Ces benchmarks
+ * sont compilés et lancés par la cible "bench" du Makefile à partir des
+ * bibliothèques JMH placées dans le répertoire lib.
+ */
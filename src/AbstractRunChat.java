@@ -3,6 +3,7 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import chat.Failure;
+import chat.ThreadMode;
 import logger.LoggerFactory;
 
 /**
@@ -27,6 +28,12 @@ public abstract class AbstractRunChat
 	 */
 	protected boolean verbose;
 
+	/**
+	 * Type de threads (plateforme ou virtuels) utilisés pour exécuter les
+	 * handlers bloquants du client ou du serveur
+	 */
+	protected ThreadMode threadMode;
+
 	/**
 	 * Le logger utilisé pour afficher (ou pas) les messages d'infos et
 	 * d'erreurs.
@@ -60,6 +67,7 @@ public abstract class AbstractRunChat
 		 */
 		port = DEFAULTPORT;
 		verbose = false;
+		threadMode = ThreadMode.PLATFORM;
 
 		/*
 		 * parsing des arguments
@@ -67,6 +75,7 @@ public abstract class AbstractRunChat
 		 * 		sinon affichage des messages dans un fichier de log portant
 		 * 		le nom de la classe qui l'instancie.log
 		 * 	-p | --port : port à utiliser pour la serverSocket
+		 * 	-T | --threads <platform|virtual> : type de threads des handlers
 		 */
 		for (int i=0; i < args.length; i++)
 		{
@@ -104,6 +113,32 @@ public abstract class AbstractRunChat
 						System.out.println("nothing, invalid value");
 					}
 				}
+				if (args[i].equals("--threads") || args[i].equals("-T"))
+				{
+					System.out.print("Setting threads to: ");
+					if (i < (args.length - 1))
+					{
+						ThreadMode mode = ThreadMode.fromString(args[++i]);
+						if (mode == null)
+						{
+							System.out.println("nothing, invalid value");
+						}
+						else if (!mode.isAvailable())
+						{
+							System.out.println(mode + " unavailable, revert to "
+							    + threadMode);
+						}
+						else
+						{
+							threadMode = mode;
+							System.out.println(threadMode);
+						}
+					}
+					else
+					{
+						System.out.println("nothing, invalid value");
+					}
+				}
 			}
 		}
 
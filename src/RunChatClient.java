@@ -57,6 +57,24 @@ public class RunChatClient extends AbstractRunChat
 	 */
 	private int guiVersion;
 
+	/**
+	 * Nombre maximum de messages conservs par l'interface graphique (0 pour
+	 * ne pas limiter le nombre de messages)
+	 */
+	private int scrollback;
+
+	/**
+	 * Taille approximative maximum (en octets) des messages conservs par
+	 * l'interface graphique (0 pour ne pas limiter leur taille)
+	 */
+	private int scrollbackBytes;
+
+	/**
+	 * Indique si l'interface graphique recharge les messages retirs depuis
+	 * l'historique du serveur
+	 */
+	private boolean reload;
+
 	/**
 	 * Ensemble des threads des clients.
 	 * Il faudra attendre la fin de ces threads pour terminer l'excution
@@ -108,12 +126,18 @@ public class RunChatClient extends AbstractRunChat
 		host = null;
 		name = null;
 		gui = false;
+		scrollback = AbstractClientFrame.DEFAULTSCROLLBACK;
+		scrollbackBytes = 0;
+		reload = false;
 
 		/*
 		 * parsing des arguments spcifique au client
 		 * -h | --host : nom ou adresse IP du serveur
 		 * -n | --name : nom d'utilisateur
 		 * -g | --gui : pour lancer le client GUI
+		 * -b | --scrollback : nombre maximum de messages conservs par le GUI
+		 * -B | --scrollback-bytes : taille maximum des messages conservs
+		 * -r | --reload : rechargement des messages retirs depuis le serveur
 		 */
 		for (int i = 0; i < args.length; i++)
 		{
@@ -174,6 +198,46 @@ public class RunChatClient extends AbstractRunChat
 					guiVersion = 1;
 				}
 			}
+			else if (args[i].equals("--scrollback") || args[i].equals("-b"))
+			{
+				if (i < (args.length - 1))
+				{
+					Integer scrollbackInteger = readInt(args[++i]);
+					if ((scrollbackInteger != null)
+					    && (scrollbackInteger.intValue() >= 0))
+					{
+						scrollback = scrollbackInteger.intValue();
+					}
+					logger.fine("Setting scrollback to " + scrollback);
+				}
+				else
+				{
+					logger.warning("invalid scrollback value");
+				}
+			}
+			else if (args[i].equals("--scrollback-bytes")
+			    || args[i].equals("-B"))
+			{
+				if (i < (args.length - 1))
+				{
+					Integer bytesInteger = readInt(args[++i]);
+					if ((bytesInteger != null) && (bytesInteger.intValue() >= 0))
+					{
+						scrollbackBytes = bytesInteger.intValue();
+					}
+					logger.fine("Setting scrollback bytes to "
+					    + scrollbackBytes);
+				}
+				else
+				{
+					logger.warning("invalid scrollback bytes value");
+				}
+			}
+			else if (args[i].equals("--reload") || args[i].equals("-r"))
+			{
+				reload = true;
+				logger.fine("Setting reload on");
+			}
 		}
 
 		if (host == null) // on va chercher local host
@@ -263,6 +327,7 @@ public class RunChatClient extends AbstractRunChat
 				// rajouter la ligne suivante sinon le chat ne s'affiche pas..
 				//guiVersion=1;
 			}
+			frame.setScrollback(scrollback, scrollbackBytes, reload);
 
 			/*
 			 * TODO Cration du flux de sortie vers le GUI : userOut à partir du
@@ -354,6 +419,7 @@ public class RunChatClient extends AbstractRunChat
 		                                   userOut,		// sorties utilisateur
 		                                   outType,		// Type sortie utilisateur
 		                                   commonRun,	// commonRun avec le GUI
+		                                   threadMode,	// type de threads
 		                                   logger);		// parent logger
 		if (client.isReady())
 		{
@@ -395,6 +461,11 @@ public class RunChatClient extends AbstractRunChat
 	 * <li>--verbose : set verbose on</li>
 	 * <li>--gui <1 or 2>: use graphical interface rather than console interface
 	 * </li>
+	 * <li>--threads <platform|virtual> : user and server handlers threads</li>
+	 * <li>--scrollback <messages> : max messages kept by the gui</li>
+	 * <li>--scrollback-bytes <bytes> : max size of messages kept by the gui
+	 * </li>
+	 * <li>--reload : reload evicted messages from the server history</li>
 	 * </ul>
 	 */
 	public static void main(String[] args)
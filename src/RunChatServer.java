@@ -1,8 +1,15 @@
+import java.io.File;
 import java.io.IOException;
 import java.net.SocketException;
 
 import chat.Failure;
+import chat.server.AbstractChatServer;
 import chat.server.ChatServer;
+import chat.server.MessageHistory;
+import chat.server.MessageStore;
+import chat.server.NioChatServer;
+import chat.server.OutboundQueue;
+import chat.server.OverflowPolicy;
 
 /**
  * Classe/programme qui lance un serveur de chat
@@ -22,6 +29,49 @@ public class RunChatServer extends AbstractRunChat
 	 */
 	private boolean quitOnLastclient;
 
+	/**
+	 * Flag indiquant si l'on utilise le moteur non bloquant
+	 * ({@link NioChatServer}) plutôt que le moteur utilisant un thread par
+	 * client ({@link ChatServer})
+	 */
+	private boolean nio;
+
+	/**
+	 * Nombre de threads d'I/O utilisés par le moteur non bloquant
+	 */
+	private int ioThreads;
+
+	/**
+	 * Capacité de la file d'émission de chaque client
+	 */
+	private int queueCapacity;
+
+	/**
+	 * Politique appliquée lorsque la file d'émission d'un client est pleine
+	 */
+	private OverflowPolicy overflowPolicy;
+
+	/**
+	 * Temps maximum (en ms) dont dispose un client pour envoyer son nom
+	 */
+	private int handshakeTimeout;
+
+	/**
+	 * Nombre de messages de l'historique rejoué aux nouveaux clients
+	 */
+	private int historyDepth;
+
+	/**
+	 * Répertoire du journal des messages (null pour ne pas journaliser les
+	 * messages)
+	 */
+	private String journalDirectory;
+
+	/**
+	 * Nombre de messages de l'historique interrogeable
+	 */
+	private int storeCapacity;
+
 	/**
 	 * Default time out to wait for client connection : 5 seconds
 	 */
@@ -50,6 +100,14 @@ public class RunChatServer extends AbstractRunChat
 		 */
 		timeout = DEFAULTTIMEOUT;
 		quitOnLastclient = true;
+		nio = false;
+		ioThreads = NioChatServer.DEFAULTIOTHREADS;
+		queueCapacity = OutboundQueue.DEFAULTCAPACITY;
+		overflowPolicy = OutboundQueue.DEFAULTPOLICY;
+		handshakeTimeout = AbstractChatServer.DEFAULTHANDSHAKETIMEOUT;
+		historyDepth = MessageHistory.DEFAULTCAPACITY;
+		journalDirectory = null;
+		storeCapacity = MessageStore.DEFAULTCAPACITY;
 
 		/*
 		 * parsing des arguments communs aux clients et serveur
@@ -61,6 +119,17 @@ public class RunChatServer extends AbstractRunChat
 		/*
 		 * parsing des arguments spécifique au  serveur
 		 * 	-t | --timeout : timeout d'attente de la server socket
+		 * 	-e | --engine <thread|nio> : moteur du serveur
+		 * 	-i | --iothreads : nombre de threads d'I/O du moteur nio
+		 * 	-Q | --queue : capacité de la file d'émission de chaque client
+		 * 	-o | --overflow <drop|disconnect> : politique appliquée
+		 * 	lorsque la file d'émission d'un client est pleine (block est
+		 * 	refusé par le serveur)
+		 * 	-H | --handshake : temps maximum d'attente du nom d'un client
+		 * 	-R | --history : nombre de messages de l'historique rejoué aux
+		 * 	nouveaux clients
+		 * 	-J | --journal : répertoire du journal des messages
+		 * 	-S | --store : nombre de messages de l'historique interrogeable
 		 */
 		for (int i=0; i < args.length; i++)
 		{
@@ -91,6 +160,148 @@ public class RunChatServer extends AbstractRunChat
 				quitOnLastclient = false;
 				logger.info("Setting quit on last client to false");
 			}
+			if (args[i].equals("--engine") || args[i].equals("-e"))
+			{
+				if (i < (args.length - 1))
+				{
+					String engine = args[++i];
+					if (engine.equals("nio"))
+					{
+						nio = true;
+					}
+					else if (engine.equals("thread"))
+					{
+						nio = false;
+					}
+					else
+					{
+						logger.warning("unknown engine " + engine
+						    + ", revert to thread");
+						nio = false;
+					}
+					logger.info("Setting engine to " + (nio ? "nio" : "thread"));
+				}
+				else
+				{
+					logger.warning("invalid engine value");
+				}
+			}
+			if (args[i].equals("--iothreads") || args[i].equals("-i"))
+			{
+				if (i < (args.length - 1))
+				{
+					Integer threadsInteger = readInt(args[++i]);
+					if ((threadsInteger != null) && (threadsInteger.intValue() > 0))
+					{
+						ioThreads = threadsInteger.intValue();
+					}
+					logger.info("Setting I/O threads to " + ioThreads);
+				}
+				else
+				{
+					logger.warning("invalid I/O threads value");
+				}
+			}
+			if (args[i].equals("--queue") || args[i].equals("-Q"))
+			{
+				if (i < (args.length - 1))
+				{
+					Integer capacityInteger = readInt(args[++i]);
+					if ((capacityInteger != null) && (capacityInteger.intValue() > 0))
+					{
+						queueCapacity = capacityInteger.intValue();
+					}
+					logger.info("Setting outbound queue capacity to "
+					    + queueCapacity);
+				}
+				else
+				{
+					logger.warning("invalid queue capacity value");
+				}
+			}
+			if (args[i].equals("--overflow") || args[i].equals("-o"))
+			{
+				if (i < (args.length - 1))
+				{
+					OverflowPolicy policy = OverflowPolicy.fromString(args[++i]);
+					if (policy != null)
+					{
+						overflowPolicy = policy;
+					}
+					else
+					{
+						logger.warning("unknown overflow policy " + args[i]
+						    + ", revert to " + overflowPolicy);
+					}
+					logger.info("Setting overflow policy to " + overflowPolicy);
+				}
+				else
+				{
+					logger.warning("invalid overflow policy value");
+				}
+			}
+			if (args[i].equals("--handshake") || args[i].equals("-H"))
+			{
+				if (i < (args.length - 1))
+				{
+					Integer handshakeInteger = readInt(args[++i]);
+					if ((handshakeInteger != null) && (handshakeInteger.intValue() >= 0))
+					{
+						handshakeTimeout = handshakeInteger.intValue();
+					}
+					logger.info("Setting handshake timeout to "
+					    + handshakeTimeout);
+				}
+				else
+				{
+					logger.warning("invalid handshake timeout value");
+				}
+			}
+			if (args[i].equals("--history") || args[i].equals("-R"))
+			{
+				if (i < (args.length - 1))
+				{
+					Integer historyInteger = readInt(args[++i]);
+					if ((historyInteger != null) && (historyInteger.intValue() >= 0))
+					{
+						historyDepth = historyInteger.intValue();
+					}
+					logger.info("Setting history depth to " + historyDepth);
+				}
+				else
+				{
+					logger.warning("invalid history depth value");
+				}
+			}
+			if (args[i].equals("--journal") || args[i].equals("-J"))
+			{
+				if (i < (args.length - 1))
+				{
+					journalDirectory = args[++i];
+					logger.info("Setting journal directory to "
+					    + journalDirectory);
+				}
+				else
+				{
+					logger.warning("invalid journal directory");
+				}
+			}
+			if (args[i].equals("--store") || args[i].equals("-S"))
+			{
+				if (i < (args.length - 1))
+				{
+					Integer storeInteger = readInt(args[++i]);
+					if ((storeInteger != null) && (storeInteger.intValue() >= 0))
+					{
+						storeCapacity = storeInteger.intValue();
+					}
+					logger.info("Setting store capacity to " + storeCapacity);
+				}
+				else
+				{
+					logger.warning("invalid store capacity value");
+				}
+			}
 		}
 	}
 
@@ -104,13 +315,29 @@ public class RunChatServer extends AbstractRunChat
 		 * Create and Launch server on local ip adress with port number and verbose
 		 * status
 		 */
-		logger.info("Creating server on port " + port + " with timeout "
-				+ timeout + " ms and verbose " + (verbose ? "on" : "off"));
+		logger.info("Creating " + (nio ? "nio" : "thread") + " server on port "
+				+ port + " with timeout " + timeout + " ms and verbose "
+				+ (verbose ? "on" : "off"));
 
-		ChatServer server = null;
+		AbstractChatServer server = null;
 		try
 		{
-			server = new ChatServer(port, timeout, quitOnLastclient, logger);
+			if (nio)
+			{
+				server = new NioChatServer(port,
+				                           timeout,
+				                           ioThreads,
+				                           quitOnLastclient,
+				                           logger);
+			}
+			else
+			{
+				server = new ChatServer(port,
+				                        timeout,
+				                        quitOnLastclient,
+				                        threadMode,
+				                        logger);
+			}
 		}
 		catch (SocketException se)
 		{
@@ -129,6 +356,23 @@ public class RunChatServer extends AbstractRunChat
 		Thread serverThread = null;
 		if (server != null)
 		{
+			server.setOutboundQueues(queueCapacity, overflowPolicy);
+			server.setHandshakeTimeout(handshakeTimeout);
+			server.setHistoryDepth(historyDepth);
+			server.setStoreCapacity(storeCapacity);
+			if (journalDirectory != null)
+			{
+				try
+				{
+					server.setJournal(new File(journalDirectory));
+				}
+				catch (IOException e)
+				{
+					logger.severe(Failure.OPEN_JOURNAL + ", abort ...");
+					logger.severe(e.getLocalizedMessage());
+					System.exit(Failure.OPEN_JOURNAL.toInteger());
+				}
+			}
 			serverThread = new Thread(server);
 			serverThread.start();
 
@@ -153,6 +397,24 @@ public class RunChatServer extends AbstractRunChat
 	 * 	<li>--port <port number> : set host connection port</li>
 	 * 	<li>--verbose : set verbose on</li>
 	 * 	<li>--timeout <timeout in ms> : server socket waiting time out</li>
+	 * 	<li>--engine <thread|nio> : server engine (thread per client or
+	 * 	non blocking selectors)</li>
+	 * 	<li>--iothreads <n> : number of I/O threads of the nio engine</li>
+	 * 	<li>--threads <platform|virtual> : client handlers threads of the
+	 * 	thread engine</li>
+	 * 	<li>--queue <capacity> : capacity of each client's outbound
+	 * 	queue</li>
+	 * 	<li>--overflow <drop|disconnect> : policy applied when a
+	 * 	client's outbound queue is full (block is rejected since it would
+	 * 	stall the broadcast to every client)</li>
+	 * 	<li>--handshake <timeout in ms> : time allowed to a newly connected
+	 * 	client to send its name</li>
+	 * 	<li>--history <depth> : number of recent messages replayed to newly
+	 * 	connected clients</li>
+	 * 	<li>--journal <directory> : directory of the persistent message
+	 * 	journal</li>
+	 * 	<li>--store <messages> : number of messages kept for the history
+	 * 	command</li>
 	 * </ul>
 	 */
 	public static void main(String[] args)
@@ -0,0 +1,174 @@
+package chat;
+
+/**
+ * Les commandes du serveur de chat (voir {@link Vocabulary}) et leur
+ * reconnaissance dans les lignes envoyées par les clients.
+ * Une ligne est une commande si elle commence par le mot clé d'une commande
+ * (sans tenir compte de la casse) suivi soit de la fin de la ligne, soit
+ * (pour les commandes ayant des arguments) d'un espace. Toute autre ligne
+ * est un message ordinaire.
+ * La reconnaissance d'une ligne utilise une table précalculée des commandes
+ * indexée par le premier caractère de leur mot clé : la plupart des messages
+ * ordinaires sont écartés d'après leur seul premier caractère, et aucune
+ * ligne n'est copiée ni convertie en minuscules.
+ *
+ * @author davidroussel
+ */
+public enum Command
+{
+	/**
+	 * Déconnection du client, voir {@link Vocabulary#byeCmd}
+	 */
+	BYE(Vocabulary.byeCmd, false),
+	/**
+	 * Recherche dans l'historique du serveur, voir
+	 * {@link Vocabulary#historyCmd}
+	 */
+	HISTORY(Vocabulary.historyCmd, true),
+	/**
+	 * Déconnection forcée d'un client par le super-utilisateur, voir
+	 * {@link Vocabulary#kickCmd}
+	 */
+	KICK(Vocabulary.kickCmd, true),
+	/**
+	 * Arrêt du serveur par le super-utilisateur, voir
+	 * {@link Vocabulary#killCmd}
+	 */
+	KILL(Vocabulary.killCmd, false);
+
+	/**
+	 * Nombre d'entrées de la table des commandes (les mots clés commencent
+	 * par un caractère ASCII)
+	 */
+	private final static int TABLESIZE = 128;
+
+	/**
+	 * Table des commandes indexée par le premier caractère (en minuscule) de
+	 * leur mot clé
+	 */
+	private final static Command[][] table = new Command[TABLESIZE][];
+
+	static
+	{
+		for (Command command : values())
+		{
+			int first = command.keyword.charAt(0);
+			Command[] commands = table[first];
+			int count = (commands != null ? commands.length : 0);
+			Command[] extended = new Command[count + 1];
+			if (commands != null)
+			{
+				System.arraycopy(commands, 0, extended, 0, count);
+			}
+			extended[count] = command;
+			table[first] = extended;
+			table[Character.toUpperCase(first)] = extended;
+		}
+	}
+
+	/**
+	 * Le mot clé de la commande (en minuscules)
+	 */
+	private final String keyword;
+
+	/**
+	 * Indique si la commande peut être suivie d'arguments
+	 */
+	private final boolean arguments;
+
+	/**
+	 * Constructeur d'une commande
+	 * @param keyword le mot clé de la commande
+	 * @param arguments true si la commande peut être suivie d'arguments
+	 */
+	private Command(String keyword, boolean arguments)
+	{
+		this.keyword = keyword;
+		this.arguments = arguments;
+	}
+
+	/**
+	 * Accesseur en lecture du mot clé de la commande
+	 * @return le mot clé de la commande
+	 */
+	public String getKeyword()
+	{
+		return keyword;
+	}
+
+	/**
+	 * Reconnaissance de la commande contenue dans une ligne
+	 * @param line la ligne envoyée par un client
+	 * @return la commande contenue dans la ligne ou bien null s'il s'agit
+	 * d'un message ordinaire
+	 */
+	public static Command parse(String line)
+	{
+		if (line.isEmpty())
+		{
+			return null;
+		}
+		char first = line.charAt(0);
+		if (first >= TABLESIZE)
+		{
+			return null;
+		}
+		Command[] commands = table[first];
+		if (commands == null)
+		{
+			return null;
+		}
+		for (Command command : commands)
+		{
+			if (command.matches(line))
+			{
+				return command;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Arguments de la commande contenue dans une ligne
+	 * @param line une ligne reconnue comme étant cette commande par
+	 * {@link #parse(String)}
+	 * @return les arguments de la commande (sans l'espace qui les sépare du
+	 * mot clé) ou bien une chaine vide si la commande n'a pas d'arguments
+	 */
+	public String arguments(String line)
+	{
+		if (line.length() <= keyword.length())
+		{
+			return "";
+		}
+		return line.substring(keyword.length() + 1);
+	}
+
+	/**
+	 * Vérifie si une ligne est cette commande
+	 * @param line la ligne à vérifier
+	 * @return true si la ligne commence par le mot clé de la commande suivi
+	 * de la fin de la ligne ou bien (si la commande a des arguments) d'un
+	 * espace
+	 */
+	private boolean matches(String line)
+	{
+		int length = keyword.length();
+		if (!line.regionMatches(true, 0, keyword, 0, length))
+		{
+			return false;
+		}
+		return (line.length() == length)
+		    || (arguments && (line.charAt(length) == ' '));
+	}
+
+	/**
+	 * Affichage d'une commande
+	 * @return le mot clé de la commande
+	 */
+	@Override
+	public String toString()
+	{
+		return keyword;
+	}
+}
@@ -95,7 +95,12 @@ public enum Failure
 	/**
 	 * Other
 	 */
-	OTHER;
+	OTHER,
+	/**
+	 * Unable to open or recover the server's message journal (after
+	 * {@link #OTHER} so that the existing exit codes are unchanged)
+	 */
+	OPEN_JOURNAL;
 
 	/**
 	 * Affichage sous forme de texte des erreurs possibles
@@ -149,6 +154,9 @@ public enum Failure
 				return new String("Main Client not ready");
 			case OTHER:
 				return new String("Other cause");
+				// Journal (1)
+			case OPEN_JOURNAL:
+				return new String("Unable to open message journal");
 		}
 		throw new AssertionError("Failure: unknown op: " + this);
 	}
@@ -0,0 +1,536 @@
+package chat;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import models.Message;
+
+/**
+ * Codec du format binaire compact ({@link WireProtocol#BINARY}) des
+ * {@link Message}s, utilisé par le serveur pour envoyer les messages aux
+ * clients qui l'ont demandé et par les clients entre leur ServerHandler et
+ * l'interface graphique.
+ * Un flux binaire commence par l'en-tête {@link #HEADER} ("CHAT" suivi du
+ * numéro de {@link #VERSION}), suivi d'une trame par message :
+ * <pre>
+ * trame    := varint(taille du corps) corps
+ * corps    := flags [nature] date [séquence] [auteur] contenu
+ * flags    := 1 octet (bit 0 : le message a un auteur, bit 1 : le message
+ *             a un numéro de séquence, bit 2 : le message n'est pas un
+ *             message ordinaire)
+ * nature   := 1 octet (code de {@link Message.MessageKind})
+ * date     := varint(date en ms depuis le 1/1/1970)
+ * séquence := varint(numéro de séquence attribué par le serveur)
+ * auteur   := varint(taille) octets UTF-8
+ * contenu  := varint(taille) octets UTF-8
+ * </pre>
+ * Les varints sont codés sur 7 bits par octet, poids faibles en premier, le
+ * bit de poids fort indiquant qu'un autre octet suit.
+ * La version 2 du format ajoute la nature des messages (évènements de
+ * présence, résultats des commandes) : les trames des messages ordinaires
+ * sont identiques à celles de la version 1, de sorte que les flux de
+ * version 1 (par exemple les segments de journal existants) restent
+ * lisibles.
+ *
+ * @author davidroussel
+ */
+public final class MessageCodec
+{
+	/**
+	 * Version du format binaire
+	 */
+	public final static int VERSION = 2;
+
+	/**
+	 * Plus ancienne version du format binaire que l'on sait encore lire
+	 */
+	public final static int MINVERSION = 1;
+
+	/**
+	 * Ligne envoyée par un client avant son nom pour demander à recevoir les
+	 * messages au format binaire
+	 */
+	public final static String HELLO = "#hello binary/" + VERSION;
+
+	/**
+	 * Préfixe des lignes de négociation du protocole
+	 */
+	public final static String HELLOPREFIX = "#hello ";
+
+	/**
+	 * En-tête d'un flux binaire
+	 */
+	public final static byte[] HEADER = {'C', 'H', 'A', 'T', VERSION};
+
+	/**
+	 * Taille maximale (en octets) du corps d'une trame
+	 */
+	public final static int MAXFRAMESIZE = 1 << 20;
+
+	/**
+	 * Masque du bit des flags d'une trame indiquant que le message a un auteur
+	 */
+	private final static int HASAUTHOR = 0x01;
+
+	/**
+	 * Masque du bit des flags d'une trame indiquant que le message a un
+	 * numéro de séquence
+	 */
+	private final static int HASSEQUENCE = 0x02;
+
+	/**
+	 * Masque du bit des flags d'une trame indiquant que le message a une
+	 * nature autre que {@link Message.MessageKind#CHAT}
+	 */
+	private final static int HASKIND = 0x04;
+
+	/**
+	 * Charset utilisé pour les chaines de caractères
+	 */
+	private final static Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Constructeur privé : classe utilitaire
+	 */
+	private MessageCodec()
+	{
+	}
+
+	/**
+	 * Détermination du protocole demandé par une ligne de négociation
+	 * @param line la ligne envoyée par le client
+	 * @return le protocole demandé par la ligne ou bien null si cette
+	 * ligne n'est pas une ligne de négociation (auquel cas il s'agit du nom
+	 * d'un client historique)
+	 */
+	public static WireProtocol negotiate(String line)
+	{
+		if ((line == null) || !line.startsWith(HELLOPREFIX))
+		{
+			return null;
+		}
+		if (line.equals(HELLO))
+		{
+			return WireProtocol.BINARY;
+		}
+		// version inconnue : on se replie sur la sérialisation
+		return WireProtocol.SERIALIZED;
+	}
+
+	/**
+	 * Encodage d'un message en une trame complète (taille comprise)
+	 * @param message le message à encoder
+	 * @return les octets de la trame
+	 */
+	public static byte[] encode(Message message)
+	{
+		byte[] author = message.hasAuthor()
+		    ? message.getAuthor().getBytes(UTF8) : null;
+		byte[] content = message.getContent().getBytes(UTF8);
+		long date = message.getTimestamp();
+		long sequence = message.getSequence();
+
+		int bodySize = 1 + varintSize(date) + varintSize(content.length)
+		    + content.length;
+		int flags = 0;
+		if (message.getKind() != Message.MessageKind.CHAT)
+		{
+			bodySize++;
+			flags |= HASKIND;
+		}
+		if (sequence != 0)
+		{
+			bodySize += varintSize(sequence);
+			flags |= HASSEQUENCE;
+		}
+		if (author != null)
+		{
+			bodySize += varintSize(author.length) + author.length;
+			flags |= HASAUTHOR;
+		}
+
+		byte[] frame = new byte[varintSize(bodySize) + bodySize];
+		int pos = putVarint(frame, 0, bodySize);
+		frame[pos++] = (byte) flags;
+		if ((flags & HASKIND) != 0)
+		{
+			frame[pos++] = message.getKind().getCode();
+		}
+		pos = putVarint(frame, pos, date);
+		if (sequence != 0)
+		{
+			pos = putVarint(frame, pos, sequence);
+		}
+		if (author != null)
+		{
+			pos = putVarint(frame, pos, author.length);
+			System.arraycopy(author, 0, frame, pos, author.length);
+			pos += author.length;
+		}
+		pos = putVarint(frame, pos, content.length);
+		System.arraycopy(content, 0, frame, pos, content.length);
+		return frame;
+	}
+
+	/**
+	 * Ecriture de l'en-tête d'un flux binaire
+	 * @param out le flux sur lequel écrire
+	 * @throws IOException si l'écriture échoue
+	 */
+	public static void writeHeader(OutputStream out) throws IOException
+	{
+		out.write(HEADER);
+	}
+
+	/**
+	 * Ecriture d'un message sur un flux binaire
+	 * @param out le flux sur lequel écrire
+	 * @param message le message à écrire
+	 * @throws IOException si l'écriture échoue
+	 */
+	public static void write(OutputStream out, Message message)
+		throws IOException
+	{
+		out.write(encode(message));
+	}
+
+	/**
+	 * Lecture et vérification de l'en-tête d'un flux binaire
+	 * @param in le flux à lire
+	 * @throws IOException si la lecture échoue ou que l'en-tête est invalide
+	 */
+	public static void readHeader(InputStream in) throws IOException
+	{
+		byte[] header = new byte[HEADER.length];
+		readFully(in, header);
+		if (!isHeader(header))
+		{
+			throw new StreamCorruptedException("invalid binary stream header");
+		}
+	}
+
+	/**
+	 * Vérification d'un en-tête de flux binaire
+	 * @param header les octets de l'en-tête
+	 * @return true si l'en-tête est celui d'un flux binaire d'une version
+	 * comprise entre {@link #MINVERSION} et {@link #VERSION}
+	 */
+	public static boolean isHeader(byte[] header)
+	{
+		if (header.length != HEADER.length)
+		{
+			return false;
+		}
+		int last = HEADER.length - 1;
+		return Arrays.equals(Arrays.copyOf(header, last),
+		                     Arrays.copyOf(HEADER, last))
+		    && (header[last] >= MINVERSION) && (header[last] <= VERSION);
+	}
+
+	/**
+	 * Lecture d'un message sur un flux binaire (après son en-tête)
+	 * @param in le flux à lire
+	 * @return le message lu ou bien null si la fin du flux a été atteinte
+	 * @throws IOException si la lecture échoue, si le flux se termine au
+	 * milieu d'une trame ou bien si la trame est invalide
+	 */
+	public static Message read(InputStream in) throws IOException
+	{
+		int first = in.read();
+		if (first < 0)
+		{
+			return null;
+		}
+		long bodySize = readVarint(in, first);
+		if ((bodySize <= 0) || (bodySize > MAXFRAMESIZE))
+		{
+			throw new StreamCorruptedException("invalid frame size "
+			    + bodySize);
+		}
+		byte[] body = new byte[(int) bodySize];
+		readFully(in, body);
+		return decode(body);
+	}
+
+	/**
+	 * Lecture d'un message dans un tampon contenant une suite de trames (par
+	 * exemple un segment de journal). Une taille de trame nulle marque la fin
+	 * des trames écrites (le reste du tampon n'a pas encore été écrit).
+	 * @param buffer le tampon à lire (sa position est avancée après la
+	 * trame lue, elle est inchangée si aucun message n'est lu)
+	 * @return le message lu ou bien null si la fin des trames a été atteinte
+	 * @throws StreamCorruptedException si la trame est tronquée ou invalide
+	 * (la position du tampon est alors inchangée)
+	 */
+	public static Message read(ByteBuffer buffer)
+		throws StreamCorruptedException
+	{
+		int start = buffer.position();
+		if (!buffer.hasRemaining())
+		{
+			return null;
+		}
+		try
+		{
+			long bodySize = 0;
+			int b;
+			int shift = 0;
+			do
+			{
+				if (shift >= 64)
+				{
+					throw new StreamCorruptedException("malformed varint");
+				}
+				b = buffer.get();
+				bodySize |= (long) (b & 0x7F) << shift;
+				shift += 7;
+			}
+			while ((b & 0x80) != 0);
+			if (bodySize == 0)
+			{
+				buffer.position(start);
+				return null;
+			}
+			if ((bodySize > MAXFRAMESIZE) || (bodySize > buffer.remaining()))
+			{
+				throw new StreamCorruptedException("invalid frame size "
+				    + bodySize);
+			}
+			byte[] body = new byte[(int) bodySize];
+			buffer.get(body);
+			return decode(body);
+		}
+		catch (StreamCorruptedException | BufferUnderflowException e)
+		{
+			buffer.position(start);
+			throw new StreamCorruptedException("truncated frame at " + start);
+		}
+	}
+
+	/**
+	 * Position de la trame suivant une trame dans un tableau contenant une
+	 * suite de trames (par exemple un segment de journal), sans la décoder
+	 * @param bytes le tableau des trames
+	 * @param offset la position de la trame
+	 * @return la position qui suit la trame
+	 * @throws StreamCorruptedException si la taille de la trame est invalide
+	 */
+	public static int skip(byte[] bytes, int offset)
+		throws StreamCorruptedException
+	{
+		int[] pos = {offset};
+		try
+		{
+			long bodySize = getVarint(bytes, pos);
+			return pos[0] + (int) bodySize;
+		}
+		catch (ArrayIndexOutOfBoundsException e)
+		{
+			throw new StreamCorruptedException("truncated frame at " + offset);
+		}
+	}
+
+	/**
+	 * Lecture de la date d'un message dans une trame sans décoder le
+	 * reste de la trame (voir {@link #encode(Message)} pour la disposition
+	 * des champs d'une trame)
+	 * @param bytes le tableau contenant la trame
+	 * @param offset la position de la trame (taille comprise)
+	 * @return la date du message (en ms)
+	 * @throws StreamCorruptedException si la trame est tronquée ou invalide
+	 */
+	public static long readDate(byte[] bytes, int offset)
+		throws StreamCorruptedException
+	{
+		int[] pos = {offset};
+		try
+		{
+			getVarint(bytes, pos); // taille de la trame
+			int flags = bytes[pos[0]++];
+			if ((flags & HASKIND) != 0)
+			{
+				pos[0]++;
+			}
+			return getVarint(bytes, pos);
+		}
+		catch (ArrayIndexOutOfBoundsException e)
+		{
+			throw new StreamCorruptedException("truncated frame at " + offset);
+		}
+	}
+
+	/**
+	 * Décodage du corps d'une trame
+	 * @param body le corps de la trame
+	 * @return le message correspondant
+	 * @throws StreamCorruptedException si le corps de la trame est invalide
+	 */
+	private static Message decode(byte[] body) throws StreamCorruptedException
+	{
+		int[] pos = {0};
+		try
+		{
+			int flags = body[pos[0]++];
+			Message.MessageKind kind = Message.MessageKind.CHAT;
+			if ((flags & HASKIND) != 0)
+			{
+				kind = Message.MessageKind.fromCode(body[pos[0]++]);
+				if (kind == null)
+				{
+					throw new StreamCorruptedException("unknown message kind "
+					    + body[pos[0] - 1]);
+				}
+			}
+			long date = getVarint(body, pos);
+			long sequence = 0;
+			if ((flags & HASSEQUENCE) != 0)
+			{
+				sequence = getVarint(body, pos);
+			}
+			String author = null;
+			if ((flags & HASAUTHOR) != 0)
+			{
+				author = getString(body, pos);
+			}
+			String content = getString(body, pos);
+			return new Message(date, content, author, kind, sequence);
+		}
+		catch (ArrayIndexOutOfBoundsException e)
+		{
+			throw new StreamCorruptedException("truncated frame");
+		}
+	}
+
+	/**
+	 * Lecture d'une chaine UTF-8 précédée de sa taille dans un tableau
+	 * @param bytes le tableau
+	 * @param pos la position de lecture (mise à jour)
+	 * @return la chaine lue
+	 * @throws StreamCorruptedException si la taille de la chaine est invalide
+	 */
+	private static String getString(byte[] bytes, int[] pos)
+		throws StreamCorruptedException
+	{
+		long length = getVarint(bytes, pos);
+		if ((length < 0) || (length > (bytes.length - pos[0])))
+		{
+			throw new StreamCorruptedException("invalid string size " + length);
+		}
+		String value = new String(bytes, pos[0], (int) length, UTF8);
+		pos[0] += (int) length;
+		return value;
+	}
+
+	/**
+	 * Nombre d'octets nécessaires au codage d'un varint
+	 * @param value la valeur (positive) à coder
+	 * @return le nombre d'octets du varint
+	 */
+	private static int varintSize(long value)
+	{
+		int size = 1;
+		while ((value & ~0x7FL) != 0)
+		{
+			value >>>= 7;
+			size++;
+		}
+		return size;
+	}
+
+	/**
+	 * Codage d'un varint dans un tableau
+	 * @param bytes le tableau
+	 * @param pos la position d'écriture
+	 * @param value la valeur (positive) à coder
+	 * @return la position qui suit le varint
+	 */
+	private static int putVarint(byte[] bytes, int pos, long value)
+	{
+		while ((value & ~0x7FL) != 0)
+		{
+			bytes[pos++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		bytes[pos++] = (byte) value;
+		return pos;
+	}
+
+	/**
+	 * Décodage d'un varint depuis un tableau
+	 * @param bytes le tableau
+	 * @param pos la position de lecture (mise à jour)
+	 * @return la valeur décodée
+	 * @throws StreamCorruptedException si le varint est trop long
+	 */
+	private static long getVarint(byte[] bytes, int[] pos)
+		throws StreamCorruptedException
+	{
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7)
+		{
+			int b = bytes[pos[0]++];
+			value |= (long) (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+			{
+				return value;
+			}
+		}
+		throw new StreamCorruptedException("malformed varint");
+	}
+
+	/**
+	 * Décodage d'un varint depuis un flux
+	 * @param in le flux
+	 * @param first le premier octet du varint (déjà lu)
+	 * @return la valeur décodée
+	 * @throws IOException si la lecture échoue ou que le varint est invalide
+	 */
+	private static long readVarint(InputStream in, int first) throws IOException
+	{
+		long value = first & 0x7F;
+		int b = first;
+		for (int shift = 7; (b & 0x80) != 0; shift += 7)
+		{
+			if (shift >= 64)
+			{
+				throw new StreamCorruptedException("malformed varint");
+			}
+			b = in.read();
+			if (b < 0)
+			{
+				throw new EOFException("end of stream within a frame");
+			}
+			value |= (long) (b & 0x7F) << shift;
+		}
+		return value;
+	}
+
+	/**
+	 * Lecture complète d'un tableau d'octets depuis un flux
+	 * @param in le flux
+	 * @param bytes le tableau à remplir
+	 * @throws IOException si la lecture échoue ou que le flux se termine
+	 * avant que le tableau soit rempli
+	 */
+	private static void readFully(InputStream in, byte[] bytes)
+		throws IOException
+	{
+		int offset = 0;
+		while (offset < bytes.length)
+		{
+			int count = in.read(bytes, offset, bytes.length - offset);
+			if (count < 0)
+			{
+				throw new EOFException("end of stream within a frame");
+			}
+			offset += count;
+		}
+	}
+}
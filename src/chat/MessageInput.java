@@ -0,0 +1,107 @@
+package chat;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.PushbackInputStream;
+
+import models.Message;
+
+/**
+ * Flux d'entrée de {@link Message}s dont le format ({@link WireProtocol})
+ * est déterminé d'après les premiers octets du flux :
+ * <ul>
+ * <li>l'en-tête {@link MessageCodec#HEADER} pour un flux binaire</li>
+ * <li>l'en-tête d'un flux d'objets ({@link ObjectInputStream}) sinon</li>
+ * </ul>
+ * Un client peut ainsi lire aussi bien les messages d'un serveur ayant
+ * accepté le format binaire que ceux d'un serveur historique.
+ *
+ * @author davidroussel
+ */
+public class MessageInput implements Closeable
+{
+	/**
+	 * Le flux binaire (null si le flux est sérialisé)
+	 */
+	private final InputStream binaryIn;
+
+	/**
+	 * Le flux d'objets (null si le flux est binaire)
+	 */
+	private final ObjectInputStream objectIn;
+
+	/**
+	 * Constructeur d'un flux d'entrée de messages : lit l'en-tête du flux
+	 * afin d'en déterminer le format (appel bloquant)
+	 * @param in le flux d'entrée
+	 * @throws IOException si la lecture de l'en-tête échoue ou que celui ci
+	 * est invalide
+	 */
+	public MessageInput(InputStream in) throws IOException
+	{
+		PushbackInputStream pushIn = new PushbackInputStream(in, 1);
+		int first = pushIn.read();
+		if (first >= 0)
+		{
+			pushIn.unread(first);
+		}
+		if (first == MessageCodec.HEADER[0])
+		{
+			MessageCodec.readHeader(pushIn);
+			binaryIn = pushIn;
+			objectIn = null;
+		}
+		else
+		{
+			// l'ObjectInputStream vérifie lui même son en-tête
+			binaryIn = null;
+			objectIn = new ObjectInputStream(pushIn);
+		}
+	}
+
+	/**
+	 * Format du flux
+	 * @return le format du flux
+	 */
+	public WireProtocol getProtocol()
+	{
+		return (binaryIn != null ? WireProtocol.BINARY : WireProtocol.SERIALIZED);
+	}
+
+	/**
+	 * Lecture (bloquante) du prochain message
+	 * @return le message lu ou bien null si la fin d'un flux binaire a été
+	 * atteinte
+	 * @throws IOException si la lecture échoue (ou que la fin d'un flux
+	 * sérialisé a été atteinte : {@link java.io.EOFException})
+	 * @throws ClassNotFoundException si la classe d'un objet sérialisé est
+	 * inconnue
+	 */
+	public Message readMessage() throws IOException, ClassNotFoundException
+	{
+		if (binaryIn != null)
+		{
+			return MessageCodec.read(binaryIn);
+		}
+		return (Message) objectIn.readObject();
+	}
+
+	/**
+	 * Fermeture du flux
+	 * @throws IOException si la fermeture échoue
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		if (binaryIn != null)
+		{
+			binaryIn.close();
+		}
+		else
+		{
+			objectIn.close();
+		}
+	}
+}
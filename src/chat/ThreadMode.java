@@ -0,0 +1,143 @@
+package chat;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Les différents types de threads utilisables pour exécuter les handlers
+ * bloquants du client et du serveur de chat ({@link chat.server.ClientHandler},
+ * ainsi que UserHandler et ServerHandler du client).
+ * Chaque mode fournit un {@link ExecutorService} lançant chaque tâche dans
+ * son propre thread.
+ */
+public enum ThreadMode
+{
+	/**
+	 * Threads "plateforme" classiques (un thread du système par tâche)
+	 */
+	PLATFORM,
+	/**
+	 * Threads virtuels (disponibles à partir de Java 21), beaucoup plus légers
+	 * que les threads plateforme lorsqu'ils sont bloqués sur des I/O
+	 */
+	VIRTUAL;
+
+	/**
+	 * Affichage sous forme de texte des modes possibles
+	 */
+	@Override
+	public String toString()
+	{
+		switch (this)
+		{
+			case PLATFORM:
+				return new String("platform");
+			case VIRTUAL:
+				return new String("virtual");
+		}
+		throw new AssertionError("ThreadMode: unknown mode: " + this);
+	}
+
+	/**
+	 * Indique si ce mode est disponible sur la JVM courante
+	 * @return true si ce mode est disponible
+	 */
+	public boolean isAvailable()
+	{
+		switch (this)
+		{
+			case VIRTUAL:
+				return virtualBuilder("") != null;
+			case PLATFORM:
+			default:
+				return true;
+		}
+	}
+
+	/**
+	 * Création d'un {@link ExecutorService} lançant chaque tâche dans un
+	 * nouveau thread de ce mode. L'exécuteur doit être terminé avec
+	 * {@link ExecutorService#shutdown()} lorsqu'il n'est plus utilisé.
+	 * @param prefix le préfixe des noms des threads créés
+	 * @return un nouvel exécuteur
+	 * @throws UnsupportedOperationException si ce mode n'est pas disponible
+	 * sur la JVM courante
+	 */
+	public ExecutorService newExecutor(String prefix)
+	{
+		switch (this)
+		{
+			case VIRTUAL:
+				Object builder = virtualBuilder(prefix);
+				if (builder == null)
+				{
+					throw new UnsupportedOperationException(
+					    "Virtual threads require Java 21 or later");
+				}
+				try
+				{
+					ThreadFactory factory = (ThreadFactory) Class
+					    .forName("java.lang.Thread$Builder")
+					    .getMethod("factory").invoke(builder);
+					return (ExecutorService) Executors.class
+					    .getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+					    .invoke(null, factory);
+				}
+				catch (ReflectiveOperationException | SecurityException e)
+				{
+					throw new UnsupportedOperationException(e);
+				}
+			case PLATFORM:
+			default:
+				final AtomicInteger count = new AtomicInteger();
+				return Executors.newCachedThreadPool((Runnable r) ->
+				{
+					return new Thread(r, prefix + "-" + count.getAndIncrement());
+				});
+		}
+	}
+
+	/**
+	 * Obtention (par introspection afin de rester compilable avec les JDK
+	 * antérieurs) d'un Thread.Builder.OfVirtual nommant ses threads avec
+	 * le préfixe fourni
+	 * @param prefix le préfixe des noms des threads
+	 * @return le builder de threads virtuels ou bien null si les threads
+	 * virtuels ne sont pas disponibles
+	 */
+	private static Object virtualBuilder(String prefix)
+	{
+		try
+		{
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			Method name = Class.forName("java.lang.Thread$Builder")
+			    .getMethod("name", String.class, long.class);
+			return name.invoke(builder, prefix + "-", 0L);
+		}
+		catch (ReflectiveOperationException | SecurityException e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Conversion d'une chaine de caractères en mode
+	 * @param value la chaine à convertir ("platform" ou "virtual")
+	 * @return le mode correspondant ou bien null si la chaine ne correspond
+	 * à aucun mode
+	 */
+	public static ThreadMode fromString(String value)
+	{
+		for (ThreadMode mode : values())
+		{
+			if (mode.toString().equals(value))
+			{
+				return mode;
+			}
+		}
+		return null;
+	}
+}
@@ -21,6 +21,14 @@ public interface Vocabulary
 	 */
 	public final static String kickCmd="kick";
 
+	/**
+	 * Mot clé utilisé par un client pour rechercher des messages dans
+	 * l'historique du serveur :
+	 * history [from auteur] [since date] [until date] [with mot] [page n]
+	 * les résultats ne sont envoyés qu'au client qui les a demandés
+	 */
+	public final static String historyCmd="history";
+
 	/**
 	 * Sauts de ligne du système d'exploitation (utilisé dans le texte)
 	 */
@@ -30,6 +38,6 @@ public interface Vocabulary
 	 * Un tableau contenant l'ensemble des commandes du serveur afin de pouvoir
 	 * le parcourir
 	 */
-	public final static String[] commands = {byeCmd, kickCmd, killCmd};
+	public final static String[] commands = {byeCmd, historyCmd, kickCmd, killCmd};
 
 }
@@ -0,0 +1,40 @@
+package chat;
+
+/**
+ * Les différents formats dans lesquels le serveur peut envoyer les
+ * {@link models.Message}s à un client. Le format est négocié lors de la
+ * connection du client : un client qui envoie la ligne
+ * {@link MessageCodec#HELLO} avant son nom reçoit des trames
+ * {@link #BINARY}, les autres clients (historiques) reçoivent des messages
+ * {@link #SERIALIZED}.
+ *
+ * @author davidroussel
+ */
+public enum WireProtocol
+{
+	/**
+	 * Sérialisation Java des messages (lus avec un
+	 * {@link java.io.ObjectInputStream})
+	 */
+	SERIALIZED,
+	/**
+	 * Trames binaires compactes de {@link MessageCodec}
+	 */
+	BINARY;
+
+	/**
+	 * Affichage sous forme de texte des formats possibles
+	 */
+	@Override
+	public String toString()
+	{
+		switch (this)
+		{
+			case SERIALIZED:
+				return new String("serialized");
+			case BINARY:
+				return new String("binary");
+		}
+		throw new AssertionError("WireProtocol: unknown protocol: " + this);
+	}
+}
@@ -6,9 +6,13 @@ import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 import chat.Failure;
+import chat.MessageCodec;
+import chat.ThreadMode;
 import chat.UserOutputType;
 import logger.LoggerFactory;
 
@@ -89,6 +93,12 @@ public class ChatClient implements Runnable
 	 */
 	private boolean ready;
 
+	/**
+	 * Le type de threads dans lesquels sont excuts le {@link #userHandler} et
+	 * le {@link #serverHandler}
+	 */
+	private ThreadMode threadMode;
+
 	/**
 	 * Le logger utilis pour afficher les messages d'infos|erreurs|warnings
 	 */
@@ -107,6 +117,8 @@ public class ChatClient implements Runnable
 	 * @param l'tat d'excution commun avec un autre runnable. ou bien null
 	 *            s'il n'y a pas d'autre runnable  synchroniser avec ceux
 	 *            lancs dans le ChatClient
+	 * @param threadMode le type de threads dans lesquels excuter le
+	 * {@link UserHandler} et le {@link ServerHandler}
 	 * @param verbose niveau de debug pour les messages
 	 */
 	public ChatClient(String host,
@@ -116,10 +128,12 @@ public class ChatClient implements Runnable
 	                  OutputStream out,
 	                  UserOutputType outType,
 	                  Boolean commonRun,
+	                  ThreadMode threadMode,
 	                  Logger parentLogger)
 	{
 		userName = name;
 		ready = false;
+		this.threadMode = threadMode;
 
 		// Cration du logger
 		logger = LoggerFactory.getParentLogger(getClass(),
@@ -200,6 +214,8 @@ public class ChatClient implements Runnable
 			serverOutPW = new PrintWriter(serverOut, true);
 			logger.info("ChatClient: sending name to server ... ");
 
+			// demande de rception des messages au format binaire
+			serverOutPW.println(MessageCodec.HELLO);
 			serverOutPW.println(userName);
 			if (serverOutPW.checkError())
 			{
@@ -259,6 +275,34 @@ public class ChatClient implements Runnable
 		ready = true;
 	}
 
+	/**
+	 * Constructeur d'un client de chat utilisant des threads plateforme
+	 *
+	 * @param host l'adresse du serveur
+	 * @param port le port  utiliser pour communiquer avec le serveur
+	 * @param name le nom d'utilisateur utilis
+	 * @param in le flux d'entre depuis l'utilisateur
+	 * @param out le flux de sortie vers l'utilisateur
+	 * @param outType le type de donnes attendues dans le flux de sortie vers
+	 * le client (texte ou objets)
+	 * @param l'tat d'excution commun avec un autre runnable. ou bien null
+	 *            s'il n'y a pas d'autre runnable  synchroniser avec ceux
+	 *            lancs dans le ChatClient
+	 * @param verbose niveau de debug pour les messages
+	 */
+	public ChatClient(String host,
+	                  int port,
+	                  String name,
+	                  InputStream in,
+	                  OutputStream out,
+	                  UserOutputType outType,
+	                  Boolean commonRun,
+	                  Logger parentLogger)
+	{
+		this(host, port, name, in, out, outType, commonRun,
+		     ThreadMode.PLATFORM, parentLogger);
+	}
+
 	/**
 	 * Accs en lecture de l'tat du client
 	 *
@@ -292,32 +336,25 @@ public class ChatClient implements Runnable
 		 * peuvent continuer
 		 */
 
-		Thread[] threads = new Thread[2];
-
-		// Cration du thread du UserHandler
-		threads[0] = new Thread(userHandler);
+		ExecutorService executor = threadMode.newExecutor("ChatClient");
 
-		// Cration du thread du ServerHandler
-		threads[1] = new Thread(serverHandler);
-
-		// Lancement des threads
-		for (int i = 0; i < threads.length; i++)
-		{
-			threads[i].start();
-		}
+		// Lancement du UserHandler et du ServerHandler dans leurs threads
+		executor.execute(userHandler);
+		executor.execute(serverHandler);
 
 		// Attente de la fin des 2 threads
-		for (int i = 0; i < threads.length; i++)
+		executor.shutdown();
+		try
 		{
-			try
+			while (!executor.awaitTermination(1, TimeUnit.SECONDS))
 			{
-				threads[i].join();
-			}
-			catch (InterruptedException e)
-			{
-				logger.warning("Join thread " + i + " interrupted");
+				logger.fine("ChatClient: waiting for handlers ...");
 			}
 		}
+		catch (InterruptedException e)
+		{
+			logger.warning("ChatClient: handlers termination interrupted");
+		}
 
 		logger.info("ChatClient: All threads terminated");
 
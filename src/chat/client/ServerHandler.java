@@ -2,13 +2,13 @@ package chat.client;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
 import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.util.logging.Logger;
 
 import chat.Failure;
+import chat.MessageCodec;
+import chat.MessageInput;
 import chat.UserOutputType;
 import logger.LoggerFactory;
 import models.Message;
@@ -25,9 +25,10 @@ import models.Message;
 class ServerHandler implements Runnable
 {
 	/**
-	 * Flux d'entre objet en provenance du serveur
+	 * Flux d'entre des messages en provenance du serveur (au format binaire
+	 * si le serveur l'a accept, srialiss sinon)
 	 */
-	private ObjectInputStream serverInOS;
+	private MessageInput serverInOS;
 
 	/**
 	 * Le type de flux  utiliser pour envoyer les message au client.
@@ -41,15 +42,22 @@ class ServerHandler implements Runnable
 	private PrintWriter userOutPW;
 
 	/**
-	 * Flux de sortie objet vers l'utilisateur
+	 * Flux de sortie des messages (au format binaire de {@link MessageCodec})
+	 * vers l'utilisateur
 	 */
-	private ObjectOutputStream userOutOS;
+	private OutputStream userOutOS;
 
 	/**
 	 * Etat d'excution commun du ServerHandler et du {@link UserHandler}
 	 */
 	private Boolean commonRun;
 
+	/**
+	 * Numro de squence du dernier message reu du serveur : les messages
+	 * dont le numro de squence n'est pas suprieur sont des doublons
+	 */
+	private long lastSequence = 0;
+
 	/**
 	 * Logger utilis pour afficher (ou pas) les messages d'erreurs
 	 */
@@ -90,7 +98,9 @@ class ServerHandler implements Runnable
 			
 			serverInOS = null;
 			try {
-				serverInOS = new ObjectInputStream(in);
+				serverInOS = new MessageInput(in);
+				logger.info("ServerHandler: server protocol is "
+				    + serverInOS.getProtocol());
 			} 
 			catch (IOException e) {
 				logger.severe("ServerHandler : " + Failure.CLIENT_INPUT_STREAM);
@@ -123,7 +133,9 @@ class ServerHandler implements Runnable
 					userOutPW = null;
 					// userOutOS = TODO Complete ...
 					try {
-						userOutOS = new ObjectOutputStream(out);
+						userOutOS = out;
+						MessageCodec.writeHeader(userOutOS);
+						userOutOS.flush();
 					} 
 					catch (IOException e) {
 						logger.severe("ServerHandler: " + Failure.USER_OUTPUT_STREAM);
@@ -189,7 +201,7 @@ class ServerHandler implements Runnable
 			 */
 			Message message = null;
 			try {
-				message = (Message) serverInOS.readObject();
+				message = serverInOS.readMessage();
 			} 
 			catch (ClassNotFoundException e) {
 				logger.warning("ServerHandler: Classe not found");
@@ -202,6 +214,17 @@ class ServerHandler implements Runnable
 				commonRun = Boolean.FALSE;
 			}
 
+			if ((message != null) && message.hasSequence())
+			{
+				if (message.getSequence() <= lastSequence)
+				{
+					logger.info("ServerHandler: duplicate message "
+					    + message.getSequence() + " ignored");
+					continue;
+				}
+				lastSequence = message.getSequence();
+			}
+
 			if ((message != null))
 			{
 				/*
@@ -217,7 +240,8 @@ class ServerHandler implements Runnable
 					case OBJECT:
 						// TODO userOutOS...
 						try {
-							userOutOS.writeObject(message);
+							MessageCodec.write(userOutOS, message);
+							userOutOS.flush();
 						} catch (IOException e) {
 							logger.warning("run: Error while displaying message");
 							logger.warning(e.getLocalizedMessage());
@@ -228,6 +252,15 @@ class ServerHandler implements Runnable
 						break; // Break this switch
 					case TEXT:
 					default:
+						/*
+						 * Les vnements de prsence ne servent qu' tenir 
+						 * jour la liste des utilisateurs des interfaces
+						 * recevant des messages : ils ne sont pas affichs
+						 */
+						if (message.isPresence())
+						{
+							break;
+						}
 						// TODO userOutPW...
 						userOutPW.println(message);
 						if(userOutPW.checkError()) {
@@ -0,0 +1,758 @@
+package chat.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+import chat.Command;
+import chat.Vocabulary;
+import chat.WireProtocol;
+import logger.LoggerFactory;
+import models.Message;
+import models.Message.MessageKind;
+
+/**
+ * Classe abstraite de base des serveurs de chat. Elle contient l'ensemble des
+ * clients enregistrés ainsi que le traitement des lignes envoyées par les
+ * clients (messages ordinaires ou commandes de {@link Vocabulary}) qui est
+ * commun aux différents moteurs de serveur :
+ * <ul>
+ * <li>{@link ChatServer} : un thread par client avec des flux bloquants</li>
+ * <li>{@link NioChatServer} : un nombre fixe de threads d'I/O utilisant des
+ * {@link java.nio.channels.Selector}s et des canaux non bloquants</li>
+ * </ul>
+ *
+ * @author davidroussel
+ */
+public abstract class AbstractChatServer implements Runnable
+{
+	/**
+	 * Le port par défaut utilisé
+	 */
+	public final static int DEFAULTPORT = 1394;
+
+	/**
+	 * Temps d'attente (en ms) par défaut d'une connection d'un client. Au bout
+	 * de ce temps une {@link SocketTimeoutException} est générée et on peut
+	 * choisir de recommencer à attendre (s'il reste des clients) ou bien
+	 * arrêter le serveur (s'il n'y a plus de clients)
+	 */
+	public final static int DEFAULTTIMEOUT = 1000;
+
+	/**
+	 * Temps maximum (en ms) par défaut dont dispose un client pour envoyer
+	 * son nom après s'être connecté. Au delà, sa connection est fermée.
+	 */
+	public final static int DEFAULTHANDSHAKETIMEOUT = 5000;
+
+	/**
+	 * L'ensemble des différents clients enregistrés, indexés par nom. Le plus
+	 * ancien des clients enregistrés est considéré comme le
+	 * super-utilisateur.
+	 * Ce registre peut être accédé sans synchronisation par les différents
+	 * threads traitant les différents clients.
+	 */
+	protected ClientRegistry<OutputClient> clients;
+
+	/**
+	 * logger pour afficher les messages d'erreur
+	 */
+	protected Logger logger;
+
+	/**
+	 * Etat d'écoute du serveur. Cet état est vrai au départ et passe à false
+	 * lorsque le dernier client se déconnecte.
+	 */
+	protected volatile boolean listening;
+
+	/**
+	 * Termine le serveur lorsque le dernier client se délogue
+	 */
+	protected final boolean quitOnLastClient;
+
+	/**
+	 * Capacité des files d'émission ({@link OutboundQueue}) des clients
+	 */
+	protected int queueCapacity;
+
+	/**
+	 * Politique appliquée lorsque la file d'émission d'un client est pleine
+	 */
+	protected OverflowPolicy overflowPolicy;
+
+	/**
+	 * Temps maximum (en ms) dont dispose un client pour envoyer son nom
+	 * après s'être connecté (0 pour attendre indéfiniment)
+	 */
+	protected int handshakeTimeout;
+
+	/**
+	 * Le séquenceur par lequel passent toutes les diffusions de messages
+	 */
+	protected final Sequencer sequencer;
+
+	/**
+	 * Le thread du {@link #sequencer}
+	 */
+	private Thread sequencerThread;
+
+	/**
+	 * L'historique des derniers messages diffusés, rejoué à chaque nouveau
+	 * client. Les ajouts à l'historique et les enregistrements de clients
+	 * sont synchronisés sur l'historique afin que chaque message soit reçu
+	 * par un nouveau client soit dans le rejeu, soit par diffusion, mais
+	 * jamais les deux ni dans le désordre.
+	 */
+	protected MessageHistory history;
+
+	/**
+	 * L'historique interrogeable des messages diffusés (null si le serveur
+	 * ne conserve pas d'historique interrogeable), voir
+	 * {@link Vocabulary#historyCmd}
+	 */
+	protected MessageStore store;
+
+	/**
+	 * Le journal persistant des messages diffusés (null si les messages ne
+	 * sont pas journalisés)
+	 */
+	protected MessageJournal journal;
+
+	/**
+	 * Le thread du {@link #journal}
+	 */
+	private Thread journalThread;
+
+	/**
+	 * Constructeur [protégé] d'un serveur de chat
+	 * @param quitOnLastClient quitte le serveur lorsque le dernier client
+	 * se délogue
+	 * @param parentLogger logger parent pour l'affichage des messages de
+	 * debug
+	 */
+	protected AbstractChatServer(boolean quitOnLastClient, Logger parentLogger)
+	{
+		this.quitOnLastClient = quitOnLastClient;
+		logger = LoggerFactory.getParentLogger(getClass(),
+		                                       parentLogger,
+		                                       parentLogger.getLevel());
+		clients = new ClientRegistry<OutputClient>();
+		listening = false;
+		queueCapacity = OutboundQueue.DEFAULTCAPACITY;
+		overflowPolicy = OutboundQueue.DEFAULTPOLICY;
+		handshakeTimeout = DEFAULTHANDSHAKETIMEOUT;
+		sequencer = new Sequencer(this, Sequencer.DEFAULTCAPACITY, logger);
+		sequencerThread = null;
+		history = new MessageHistory(MessageHistory.DEFAULTCAPACITY);
+		store = (MessageStore.DEFAULTCAPACITY > 0) ?
+		    new MessageStore(MessageStore.DEFAULTCAPACITY) : null;
+		journal = null;
+		journalThread = null;
+	}
+
+	/**
+	 * Accesseur en lecture du {@link #quitOnLastClient}
+	 * @return la valeu du {@link #quitOnLastClient}
+	 */
+	public boolean isQuitOnLastClient()
+	{
+		return quitOnLastClient;
+	}
+
+	/**
+	 * Mise en place des caractéristiques des files d'émission des clients.
+	 * Doit être appelé avant le lancement du serveur afin de s'appliquer à
+	 * tous les clients
+	 * @param capacity la capacité de la file d'émission de chaque client
+	 * @param policy la politique à appliquer lorsque la file d'émission d'un
+	 * client est pleine. La politique {@link OverflowPolicy#BLOCK} est
+	 * refusée (et remplacée par {@link OverflowPolicy#DISCONNECT}) : les
+	 * messages étant déposés dans les files de tous les clients par le seul
+	 * thread du {@link #sequencer}, l'attente d'une place dans la file d'un
+	 * client lent retarderait la diffusion vers tous les autres clients.
+	 */
+	public void setOutboundQueues(int capacity, OverflowPolicy policy)
+	{
+		if (policy == OverflowPolicy.BLOCK)
+		{
+			logger.warning("AbstractChatServer: " + policy
+			    + " overflow policy would stall the sequencer for all clients,"
+			    + " using " + OverflowPolicy.DISCONNECT + " instead");
+			policy = OverflowPolicy.DISCONNECT;
+		}
+		queueCapacity = capacity;
+		overflowPolicy = policy;
+		logger.info("AbstractChatServer: outbound queues capacity = "
+		    + capacity + ", overflow policy = " + policy);
+	}
+
+	/**
+	 * Mise en place du temps maximum dont dispose un client pour envoyer son
+	 * nom après s'être connecté. Doit être appelé avant le lancement du
+	 * serveur.
+	 * @param timeout le temps maximum (en ms) d'attente du nom d'un client
+	 * (0 pour attendre indéfiniment)
+	 */
+	public void setHandshakeTimeout(int timeout)
+	{
+		handshakeTimeout = Math.max(0, timeout);
+		logger.info("AbstractChatServer: handshake timeout = "
+		    + handshakeTimeout + " ms");
+	}
+
+	/**
+	 * Mise en place du nombre de messages conservés dans l'historique
+	 * rejoué aux nouveaux clients. Doit être appelé avant le lancement du
+	 * serveur.
+	 * @param depth le nombre maximum de messages conservés (0 pour ne pas
+	 * conserver d'historique)
+	 */
+	public void setHistoryDepth(int depth)
+	{
+		history = new MessageHistory(depth);
+		logger.info("AbstractChatServer: history depth = "
+		    + history.getCapacity());
+	}
+
+	/**
+	 * Mise en place du nombre de messages conservés dans l'historique
+	 * interrogeable ({@link Vocabulary#historyCmd}). Doit être appelé avant le
+	 * lancement du serveur.
+	 * @param capacity le nombre maximum de messages conservés (0 pour ne pas
+	 * conserver d'historique interrogeable)
+	 */
+	public void setStoreCapacity(int capacity)
+	{
+		store = (capacity > 0) ? new MessageStore(capacity) : null;
+		logger.info("AbstractChatServer: store capacity = " + capacity);
+	}
+
+	/**
+	 * Mise en place du journal persistant des messages diffusés : le dernier
+	 * segment du journal est relu afin de reconstruire les historiques des
+	 * messages et de poursuivre la numérotation des messages. Doit être
+	 * appelé avant le lancement du serveur (et après
+	 * {@link #setHistoryDepth(int)} et {@link #setStoreCapacity(int)}).
+	 * @param directory le répertoire des segments du journal
+	 * @throws IOException si le journal ne peut être ouvert
+	 */
+	public void setJournal(File directory) throws IOException
+	{
+		journal = new MessageJournal(directory,
+		                             MessageJournal.DEFAULTSEGMENTSIZE,
+		                             logger);
+		long last = journal.recover(history, store);
+		sequencer.setSequence(last, journal.getLastTimestamp());
+		logger.info("AbstractChatServer: journal " + directory
+		    + ", last sequence = " + last);
+	}
+
+	/**
+	 * Accesseur en lecture de l'historique des messages
+	 * @return l'historique des derniers messages diffusés
+	 */
+	public MessageHistory getHistory()
+	{
+		return history;
+	}
+
+	/**
+	 * Accesseur en lecture de l'historique interrogeable des messages
+	 * @return l'historique interrogeable des messages diffusés ou bien null
+	 */
+	public MessageStore getStore()
+	{
+		return store;
+	}
+
+	/**
+	 * Accesseur en lecture du temps maximum d'attente du nom d'un client
+	 * @return le temps maximum (en ms) dont dispose un client pour envoyer
+	 * son nom après s'être connecté
+	 */
+	public int getHandshakeTimeout()
+	{
+		return handshakeTimeout;
+	}
+
+	/**
+	 * Création d'une file d'émission pour un nouveau client
+	 * @param <E> le type des éléments de la file
+	 * @return une nouvelle file d'émission ayant les caractéristiques
+	 * définies par {@link #setOutboundQueues(int, OverflowPolicy)}
+	 */
+	protected <E> OutboundQueue<E> newOutboundQueue()
+	{
+		return new OutboundQueue<E>(queueCapacity, overflowPolicy);
+	}
+
+	/**
+	 * Lancement du thread du {@link #sequencer} (et de celui du
+	 * {@link #journal} s'il y en a un), à appeler au début de l'exécution du
+	 * serveur
+	 */
+	protected void startSequencer()
+	{
+		if (journal != null)
+		{
+			journalThread = new Thread(journal, "Journal");
+			journalThread.start();
+		}
+		sequencerThread = new Thread(sequencer, "Sequencer");
+		sequencerThread.start();
+	}
+
+	/**
+	 * Arrêt du thread du {@link #sequencer} après la diffusion des messages
+	 * en attente (puis de celui du {@link #journal} après l'écriture des
+	 * messages diffusés), à appeler à la fin de l'exécution du serveur
+	 */
+	protected void stopSequencer()
+	{
+		sequencer.close();
+		if (sequencerThread != null)
+		{
+			try
+			{
+				sequencerThread.join();
+			}
+			catch (InterruptedException e)
+			{
+				logger.severe("AbstractChatServer: sequencer join interrupted");
+			}
+		}
+		if (journal != null)
+		{
+			journal.close();
+			if (journalThread != null)
+			{
+				try
+				{
+					journalThread.join();
+				}
+				catch (InterruptedException e)
+				{
+					logger.severe("AbstractChatServer: journal join interrupted");
+				}
+			}
+		}
+		logger.info("AbstractChatServer: " + history);
+		if (store != null)
+		{
+			logger.info("AbstractChatServer: " + store);
+		}
+	}
+
+	/**
+	 * Change l'état d'écoute du serveur
+	 * @param value la nouvelle valeur
+	 */
+	public synchronized void setListening(boolean value)
+	{
+		listening = value;
+	}
+
+	/**
+	 * Accesseur en lecture de l'état d'écoute du serveur
+	 * @return l'état d'écoute du serveur
+	 */
+	public boolean isListening()
+	{
+		return listening;
+	}
+
+	/**
+	 * Ajout d'un client à l'ensemble des clients enregistrés si aucun autre
+	 * client ne porte déjà le même nom. La vérification du nom et l'ajout
+	 * sont atomiques. Une fois ajouté, l'historique des messages est rejoué
+	 * au client ({@link OutputClient#replay(List)}) avant tout autre
+	 * message, suivi (pour les clients {@link WireProtocol#BINARY}) de la
+	 * liste complète des clients enregistrés en un seul évènement de présence
+	 * ({@link MessageKind#ROSTER}). L'arrivée du client est ensuite diffusée
+	 * aux autres clients ({@link MessageKind#JOIN}).
+	 * @param client le client à ajouter
+	 * @return true si le client a été ajouté, false si un autre client porte
+	 * déjà le même nom
+	 */
+	protected boolean addClient(OutputClient client)
+	{
+		synchronized (history)
+		{
+			if (!clients.register(client))
+			{
+				return false;
+			}
+			List<EncodedMessage> replay = history.toList();
+			if (client.getProtocol() == WireProtocol.BINARY)
+			{
+				/*
+				 * La liste des clients est obtenue sous le même verrou que
+				 * les destinataires des diffusions : tout évènement de
+				 * présence ultérieur à cette liste sera reçu par le client
+				 */
+				List<OutputClient> registered = clients.snapshot();
+				List<String> names = new ArrayList<String>(registered.size());
+				for (OutputClient c : registered)
+				{
+					names.add(c.getName());
+				}
+				replay = new ArrayList<EncodedMessage>(replay);
+				replay.add(EncodedMessage.encode(Message.roster(names)));
+			}
+			if (!replay.isEmpty())
+			{
+				logger.fine("AbstractChatServer: replaying " + replay.size()
+				    + " messages to " + client.getName());
+				client.replay(replay);
+			}
+		}
+		announce(MessageKind.JOIN, client.getName());
+		return true;
+	}
+
+	/**
+	 * Retrait d'un client de l'ensemble des clients enregistrés. Le départ
+	 * du client est diffusé aux autres clients ({@link MessageKind#LEAVE}).
+	 * @param client le client à retirer
+	 * @return true si le client était enregistré et qu'il a été retiré
+	 */
+	protected boolean removeClient(OutputClient client)
+	{
+		if (clients.remove(client))
+		{
+			announce(MessageKind.LEAVE, client.getName());
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Diffusion d'un évènement de présence concernant un client
+	 * @param kind la nature de l'évènement
+	 * @param name le nom du client concerné
+	 */
+	protected void announce(MessageKind kind, String name)
+	{
+		try
+		{
+			broadcast(new Message(kind, name));
+		}
+		catch (IOException e)
+		{
+			logger.warning("AbstractChatServer: unable to announce " + kind
+			    + " " + name + ": " + e.getLocalizedMessage());
+		}
+	}
+
+	/**
+	 * Indique si un client est le super-utilisateur (le plus ancien des
+	 * clients encore enregistrés)
+	 * @param client le client à tester
+	 * @return true si le client est le super-utilisateur
+	 */
+	protected boolean isSuperUser(OutputClient client)
+	{
+		return clients.isFirst(client);
+	}
+
+	/**
+	 * Recherche parmis les clients déjà enregistrés un client portant le même
+	 * nom que l'argument (en temps constant)
+	 *
+	 * @param clientName le nom du client à rechercher parmis les clients déjà
+	 *            enregistrés
+	 * @return le client recherché s'il existe ou bien null s'il n'existe pas
+	 */
+	protected OutputClient searchClientByName(String clientName)
+	{
+		return clients.get(clientName);
+	}
+
+	/**
+	 * Traitement d'une ligne envoyée par un client : s'il s'agit d'un message
+	 * ordinaire celui ci est diffusé à tous les clients, s'il s'agit d'une
+	 * commande de {@link Vocabulary} (reconnue par
+	 * {@link Command#parse(String)}) celle ci est exécutée. Les déconnections
+	 * et éjections de clients sont notifiées à tous les clients
+	 * ({@link MessageKind#COMMAND}), les refus ou erreurs des commandes ne
+	 * sont envoyés qu'au client ayant envoyé la commande
+	 * ({@link MessageKind#ERROR}).
+	 * @param sender le client ayant envoyé la ligne
+	 * @param clientInput la ligne envoyée par le client
+	 * @return true si le client peut continuer à envoyer des lignes, false
+	 * si le client s'est délogué, a été banni ou a terminé le serveur
+	 * @throws IOException si la diffusion du message échoue
+	 */
+	protected boolean handleInput(OutputClient sender, String clientInput)
+		throws IOException
+	{
+		// Affiche ce qui est reçu par le serveur dans la console
+		System.out.println(sender.getName() + " > " + clientInput);
+
+		// on vérifie que ce client n'a pas été banni par un super utilisateur
+		if (sender.isBanned())
+		{
+			logger.info(sender.getName() + " is banned");
+			return false;
+		}
+
+		Command command = Command.parse(clientInput);
+		if (command == null)
+		{
+			// Il s'agit d'un message ordinaire
+			broadcast(new Message(clientInput, sender.getName()));
+			return true;
+		}
+
+		switch (command)
+		{
+			// Le client veut nous quitter
+			case BYE:
+				/*
+				 * Le message de départ doit être déposé dans la file
+				 * d'émission du client avant que celui ci ne soit nettoyé
+				 */
+				sequencer.awaitDispatched(broadcast(new Message(
+				    MessageKind.COMMAND, sender.getName() + " logged out")));
+				return false;
+			// Le client recherche des messages dans l'historique
+			case HISTORY:
+				sendHistory(sender, command.arguments(clientInput));
+				return true;
+			// on vérifie si un kill est demandé par le client
+			case KILL:
+				// on vérifie que le client est super-utilisateur
+				// (1er de tous les clients)
+				if (isSuperUser(sender))
+				{
+					setListening(false);
+					return false;
+				}
+				sender.sendMessage(new Message(MessageKind.ERROR,
+				    Vocabulary.killCmd + " [request denied by server]"));
+				return true;
+			// on vérifie si un kick est demandé par le client
+			case KICK:
+				kick(sender, command.arguments(clientInput));
+				return true;
+		}
+		throw new AssertionError("AbstractChatServer: unknown command "
+		    + command);
+	}
+
+	/**
+	 * Ejection d'un client demandée par un autre client : si le demandeur
+	 * est le super-utilisateur (le 1er de tous les clients) et que le client
+	 * à éjecter existe, celui ci est banni et son éjection est diffusée à
+	 * tous les clients, sinon le refus n'est envoyé qu'au demandeur
+	 * @param sender le client demandant l'éjection
+	 * @param kickedName le nom du client à éjecter (éventuellement vide)
+	 * @throws IOException si l'envoi du résultat échoue
+	 */
+	protected void kick(OutputClient sender, String kickedName)
+		throws IOException
+	{
+		StringBuilder messageContent = new StringBuilder(Vocabulary.kickCmd);
+		MessageKind kind = MessageKind.ERROR;
+		if (kickedName.isEmpty())
+		{
+			logger.warning("ChatServer: Error retreiving client name to kick");
+			messageContent.append(" [no client name to kick]");
+		}
+		else
+		{
+			messageContent.append(" " + kickedName);
+			if (!isSuperUser(sender))
+			{
+				messageContent.append(" [request denied by server]");
+			}
+			else
+			{
+				OutputClient kickedClient = searchClientByName(kickedName);
+				if (kickedClient != null)
+				{
+					kickedClient.setBanned(true);
+					logger.info("ChatServer[" + sender.getName() + "] client "
+					    + kickedName + " banned");
+					messageContent.append(" [request granted by server]");
+					kind = MessageKind.COMMAND;
+				}
+				else
+				{
+					messageContent.append(" [client " + kickedName
+					    + " does not exist]");
+				}
+			}
+		}
+		messageContent.append(" by " + sender.getName());
+
+		Message message = new Message(kind, messageContent.toString());
+		if (kind == MessageKind.COMMAND)
+		{
+			broadcast(message);
+			announce(MessageKind.KICK, kickedName);
+		}
+		else
+		{
+			sender.sendMessage(message);
+		}
+	}
+
+	/**
+	 * Envoi à un client (et à lui seul) d'une page de résultats d'une
+	 * recherche dans l'historique interrogeable ({@link #store}) : une
+	 * réponse ({@link MessageKind#ACK}) décrivant la requête, les messages
+	 * trouvés (du plus ancien au plus récent) puis une seconde réponse
+	 * marquant la fin des résultats et indiquant, si la page est complète,
+	 * la commande permettant d'obtenir la page suivante. Les clients
+	 * distinguent ainsi les résultats d'après la nature des messages et non
+	 * d'après leur contenu. Une requête invalide ne reçoit qu'une erreur
+	 * ({@link MessageKind#ERROR}).
+	 * Les messages trouvés sont envoyés sans leur numéro de séquence afin
+	 * que les clients ne les écartent pas comme des doublons des messages
+	 * déjà reçus.
+	 * @param client le client ayant demandé la recherche
+	 * @param arguments les arguments de la commande
+	 * {@link Vocabulary#historyCmd}
+	 * @throws IOException si l'envoi des messages échoue
+	 */
+	protected void sendHistory(OutputClient client, String arguments)
+		throws IOException
+	{
+		if (store == null)
+		{
+			client.sendMessage(new Message(MessageKind.ERROR,
+			    Vocabulary.historyCmd + ": no history on this server"));
+			return;
+		}
+		HistoryQuery query;
+		try
+		{
+			query = HistoryQuery.parse(arguments);
+		}
+		catch (ParseException e)
+		{
+			client.sendMessage(new Message(MessageKind.ERROR,
+			    Vocabulary.historyCmd + ": " + e.getMessage() + ", usage: " + Vocabulary.historyCmd
+			    + " [from author] [since " + HistoryQuery.DATEFORMAT
+			    + "] [until " + HistoryQuery.DATEFORMAT
+			    + "] [with word] [page n]"));
+			return;
+		}
+
+		int pageSize = MessageStore.DEFAULTPAGESIZE;
+		List<Message> results = store.query(query, pageSize);
+		logger.fine("AbstractChatServer: " + client.getName() + " history "
+		    + query + " : " + results.size() + " messages");
+		client.sendMessage(new Message(MessageKind.ACK, Vocabulary.historyCmd
+		    + " " + query + " : " + results.size() + " messages"));
+		for (Message m : results)
+		{
+			client.sendMessage(new Message(m.getTimestamp(),
+			                               m.getContent(),
+			                               m.getAuthor(),
+			                               m.getKind(),
+			                               0));
+		}
+		if (results.size() == pageSize)
+		{
+			client.sendMessage(new Message(MessageKind.ACK,
+			    Vocabulary.historyCmd + ": more messages with "
+			    + Vocabulary.historyCmd + " " + query.next()));
+		}
+		else
+		{
+			client.sendMessage(new Message(MessageKind.ACK,
+			    Vocabulary.historyCmd + ": no more messages"));
+		}
+	}
+
+	/**
+	 * Diffusion d'un message à tous les clients : le message est déposé
+	 * auprès du {@link #sequencer} qui lui attribuera un numéro de séquence
+	 * puis le diffusera ({@link #dispatch(Message)}).
+	 * Garantie d'ordre : tous les messages passant par l'unique thread du
+	 * séquenceur, tous les clients reçoivent les messages dans le même ordre
+	 * (celui de leurs numéros de séquence), y compris lorsque plusieurs
+	 * clients envoient des messages simultanément, et ce sans qu'aucun
+	 * verrou global ne soit pris par les threads des clients.
+	 * @param message le message à diffuser
+	 * @return le ticket du message permettant d'attendre sa diffusion
+	 * (voir {@link Sequencer#awaitDispatched(long)})
+	 * @throws IOException si la diffusion du message échoue
+	 */
+	protected long broadcast(Message message) throws IOException
+	{
+		return sequencer.submit(message);
+	}
+
+	/**
+	 * Envoi d'un message séquencé à tous les clients [appelé par le
+	 * {@link #sequencer}].
+	 * Le message est sérialisé une seule fois ({@link EncodedMessage}) quel
+	 * que soit le nombre de clients, puis la même trame est envoyée à chacun
+	 * des clients.
+	 * L'envoi d'un message à un client se contente de le déposer dans la
+	 * file d'émission du client (voir {@link OutboundQueue}) : un client lent
+	 * ne bloque donc pas la diffusion vers les autres clients.
+	 * Les destinataires sont ceux de la liste immuable des clients
+	 * ({@link ClientRegistry#snapshot()}) au moment de la diffusion : aucun
+	 * verrou n'est pris, de sorte que des clients peuvent se connecter ou se
+	 * déconnecter pendant la diffusion.
+	 * Le message est ajouté à l'{@link #history} en même temps que la liste
+	 * des destinataires est obtenue, puis ajouté à l'historique interrogeable
+	 * ({@link #store}) et déposé auprès du {@link #journal} qui l'écrira dans
+	 * son propre thread.
+	 * Les évènements de présence ({@link Message#isPresence()}) ne sont
+	 * conservés dans aucun historique et ne sont envoyés qu'aux clients
+	 * {@link WireProtocol#BINARY}, les autres clients ne sachant pas les
+	 * distinguer des messages ordinaires.
+	 * @param message le message à envoyer
+	 * @throws IOException si l'envoi du message à l'un des clients échoue
+	 */
+	protected void dispatch(Message message) throws IOException
+	{
+		EncodedMessage encoded = EncodedMessage.encode(message);
+		boolean presence = message.isPresence();
+		List<OutputClient> recipients;
+		synchronized (history)
+		{
+			if (!presence)
+			{
+				history.add(encoded);
+			}
+			recipients = clients.snapshot();
+		}
+		if (!presence)
+		{
+			if (store != null)
+			{
+				store.add(encoded);
+			}
+			if (journal != null)
+			{
+				journal.append(encoded);
+			}
+		}
+		for (OutputClient c : recipients)
+		{
+			if (presence && (c.getProtocol() != WireProtocol.BINARY))
+			{
+				continue;
+			}
+			if (c.isReady())
+			{
+				c.sendMessage(encoded);
+			}
+			else
+			{
+				logger.warning("ChatServer: Client " + c.getName()
+					+ " not ready");
+			}
+		}
+	}
+}
@@ -0,0 +1,271 @@
+package chat.server;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ensemble des clients enregistrés auprès d'un serveur, indexé par nom.
+ * <ul>
+ * <li>la recherche d'un client par son nom ({@link #get(String)}) se fait
+ * en temps constant quel que soit le nombre de clients</li>
+ * <li>l'enregistrement d'un client ({@link #register(OutputClient)})
+ * vérifie l'unicité de son nom et l'ajoute de manière atomique</li>
+ * <li>les clients sont également rangés par ordre d'arrivée : le premier
+ * des clients encore enregistrés est le super-utilisateur
+ * ({@link #isFirst(OutputClient)})</li>
+ * </ul>
+ * Aucune de ces opérations ne nécessite de verrou global : le registre peut
+ * être utilisé simultanément par l'ensemble des threads du serveur. Le
+ * parcours des clients ({@link #iterator()}) se fait dans l'ordre d'arrivée
+ * et n'échoue pas si des clients sont enregistrés ou retirés pendant le
+ * parcours.
+ * Les diffusions utilisent plutôt {@link #snapshot()} : une liste immuable
+ * des clients publiée à chaque version du registre. Cette liste n'est
+ * reconstruite (une seule fois) que lors de la première demande qui suit
+ * une modification, de sorte que les enregistrements restent en temps
+ * constant et que les diffusions concurrentes partagent la même liste.
+ *
+ * @param <C> le type des clients enregistrés
+ * @author davidroussel
+ */
+public class ClientRegistry<C extends OutputClient> implements Iterable<C>
+{
+	/**
+	 * Les inscriptions des clients indexées par nom
+	 */
+	private final ConcurrentMap<String, Registration<C>> byName;
+
+	/**
+	 * Les clients indexés par numéro d'arrivée
+	 */
+	private final ConcurrentSkipListMap<Long, C> byArrival;
+
+	/**
+	 * Compteur des numéros d'arrivée
+	 */
+	private final AtomicLong arrivals;
+
+	/**
+	 * Version du registre, incrémentée après chaque modification
+	 */
+	private final AtomicLong version;
+
+	/**
+	 * La dernière liste immuable des clients publiée
+	 */
+	private volatile Snapshot<C> snapshot;
+
+	/**
+	 * Constructeur d'un registre vide
+	 */
+	public ClientRegistry()
+	{
+		byName = new ConcurrentHashMap<String, Registration<C>>();
+		byArrival = new ConcurrentSkipListMap<Long, C>();
+		arrivals = new AtomicLong();
+		version = new AtomicLong();
+		snapshot = new Snapshot<C>(0, Collections.<C>emptyList());
+	}
+
+	/**
+	 * Enregistrement d'un client si aucun autre client ne porte déjà le même
+	 * nom
+	 * @param client le client à enregistrer
+	 * @return true si le client a été enregistré, false si un autre client
+	 * porte déjà le même nom
+	 */
+	public boolean register(C client)
+	{
+		Registration<C> registration =
+			new Registration<C>(client, arrivals.getAndIncrement());
+		if (byName.putIfAbsent(client.getName(), registration) != null)
+		{
+			return false;
+		}
+		byArrival.put(registration.arrival, client);
+		version.incrementAndGet();
+		return true;
+	}
+
+	/**
+	 * Retrait d'un client
+	 * @param client le client à retirer
+	 * @return true si ce client était enregistré et qu'il a été retiré
+	 */
+	public boolean remove(C client)
+	{
+		String name = client.getName();
+		if (name == null)
+		{
+			return false;
+		}
+		Registration<C> registration = byName.get(name);
+		if ((registration != null) && (registration.client == client)
+		    && byName.remove(name, registration))
+		{
+			byArrival.remove(registration.arrival);
+			version.incrementAndGet();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Recherche d'un client par son nom
+	 * @param name le nom du client recherché
+	 * @return le client portant ce nom ou bien null s'il n'existe pas
+	 */
+	public C get(String name)
+	{
+		Registration<C> registration = byName.get(name);
+		return registration != null ? registration.client : null;
+	}
+
+	/**
+	 * Indique si un client est le premier des clients encore enregistrés
+	 * @param client le client à tester
+	 * @return true si le client est le plus ancien des clients enregistrés
+	 */
+	public boolean isFirst(C client)
+	{
+		Map.Entry<Long, C> first = byArrival.firstEntry();
+		return (first != null) && (first.getValue() == client);
+	}
+
+	/**
+	 * Nombre de clients enregistrés
+	 * @return le nombre de clients enregistrés
+	 */
+	public int size()
+	{
+		return byName.size();
+	}
+
+	/**
+	 * Indique si le registre est vide
+	 * @return true s'il n'y a aucun client enregistré
+	 */
+	public boolean isEmpty()
+	{
+		return byName.isEmpty();
+	}
+
+	/**
+	 * Retrait de tous les clients
+	 */
+	public void clear()
+	{
+		byName.clear();
+		byArrival.clear();
+		version.incrementAndGet();
+	}
+
+	/**
+	 * Liste immuable des clients enregistrés (dans leur ordre d'arrivée) à
+	 * utiliser pour diffuser un message sans bloquer ni les autres
+	 * diffusions ni les enregistrements et retraits de clients. La liste
+	 * contient tous les clients dont l'enregistrement (ou le retrait) est
+	 * terminé au moment de l'appel.
+	 * @return la liste des clients de la version courante du registre
+	 */
+	public List<C> snapshot()
+	{
+		Snapshot<C> current = snapshot;
+		long currentVersion = version.get();
+		if (current.version == currentVersion)
+		{
+			return current.clients;
+		}
+		synchronized (this)
+		{
+			current = snapshot;
+			currentVersion = version.get();
+			if (current.version != currentVersion)
+			{
+				/*
+				 * Une modification ayant lieu pendant la copie incrémentera
+				 * de nouveau la version : la liste sera alors reconstruite
+				 * lors de l'appel suivant
+				 */
+				List<C> clients = new ArrayList<C>(byArrival.values());
+				current = new Snapshot<C>(currentVersion,
+				                          Collections.unmodifiableList(clients));
+				snapshot = current;
+			}
+			return current.clients;
+		}
+	}
+
+	/**
+	 * Itérateur sur les clients enregistrés dans leur ordre d'arrivée
+	 * @return un itérateur (faiblement cohérent) sur les clients
+	 */
+	@Override
+	public Iterator<C> iterator()
+	{
+		return byArrival.values().iterator();
+	}
+
+	/**
+	 * Liste immuable des clients correspondant à une version du registre
+	 * @param <C> le type des clients enregistrés
+	 */
+	private static class Snapshot<C>
+	{
+		/**
+		 * La version du registre
+		 */
+		private final long version;
+
+		/**
+		 * Les clients de cette version
+		 */
+		private final List<C> clients;
+
+		/**
+		 * Constructeur d'une liste de clients
+		 * @param version la version du registre
+		 * @param clients les clients de cette version
+		 */
+		public Snapshot(long version, List<C> clients)
+		{
+			this.version = version;
+			this.clients = clients;
+		}
+	}
+
+	/**
+	 * Inscription d'un client : le client et son numéro d'arrivée
+	 * @param <C> le type des clients enregistrés
+	 */
+	private static class Registration<C>
+	{
+		/**
+		 * Le client inscrit
+		 */
+		private final C client;
+
+		/**
+		 * Le numéro d'arrivée du client
+		 */
+		private final long arrival;
+
+		/**
+		 * Constructeur d'une inscription
+		 * @param client le client inscrit
+		 * @param arrival le numéro d'arrivée du client
+		 */
+		public Registration(C client, long arrival)
+		{
+			this.client = client;
+			this.arrival = arrival;
+		}
+	}
+}
@@ -0,0 +1,352 @@
+package chat.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamConstants;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import chat.MessageCodec;
+import chat.WireProtocol;
+import models.Message;
+
+/**
+ * Message encodé une seule fois (pour chaque {@link WireProtocol} utilisé)
+ * en vue de sa diffusion à l'ensemble des clients. Chaque encodage produit
+ * une "trame" autonome qui ne dépend d'aucun élément précédemment écrit sur
+ * le flux d'un client et peut donc être écrite telle quelle à la suite de
+ * l'en-tête du flux ({@link #header(WireProtocol)}) :
+ * <ul>
+ * <li>{@link WireProtocol#SERIALIZED} : un marqueur
+ * {@link ObjectStreamConstants#TC_RESET} qui vide la table des références du
+ * {@link java.io.ObjectInputStream} du client suivi du {@link Message}
+ * sérialisé (y compris les descripteurs de ses classes). Les clients
+ * historiques lisent ainsi les messages avec un simple
+ * {@link java.io.ObjectInputStream#readObject()}.</li>
+ * <li>{@link WireProtocol#BINARY} : une trame de {@link MessageCodec}</li>
+ * </ul>
+ * Chaque trame n'est calculée que lorsqu'un client utilisant le protocole
+ * correspondant en a besoin. Les octets des trames sont immuables et
+ * partagés par tous les destinataires.
+ *
+ * @author davidroussel
+ */
+public class EncodedMessage
+{
+	/**
+	 * En-tête d'un flux d'objets, à écrire une fois au début de la connection
+	 * de chaque client {@link WireProtocol#SERIALIZED} avant toute trame
+	 */
+	public final static byte[] STREAMHEADER = {
+		(byte) (ObjectStreamConstants.STREAM_MAGIC >>> 8),
+		(byte) ObjectStreamConstants.STREAM_MAGIC,
+		(byte) (ObjectStreamConstants.STREAM_VERSION >>> 8),
+		(byte) ObjectStreamConstants.STREAM_VERSION
+	};
+
+	/**
+	 * Encodeur de chaque thread : un {@link ObjectOutputStream} réutilisé
+	 * d'un message à l'autre (et vidé par un reset avant chaque message)
+	 */
+	private final static ThreadLocal<Encoder> encoders =
+		new ThreadLocal<Encoder>()
+		{
+			@Override
+			protected Encoder initialValue()
+			{
+				return new Encoder();
+			}
+		};
+
+	/**
+	 * Le message encodé
+	 */
+	private final Message message;
+
+	/**
+	 * Les trames du message pour chacun des protocoles (indexées par
+	 * {@link WireProtocol#ordinal()}), null tant qu'elles n'ont pas été
+	 * calculées
+	 */
+	private final Frame[] frames;
+
+	/**
+	 * Constructeur privé d'un message encodé
+	 * @param message le message à encoder
+	 */
+	private EncodedMessage(Message message)
+	{
+		this.message = message;
+		frames = new Frame[WireProtocol.values().length];
+	}
+
+	/**
+	 * Encodage d'un message
+	 * @param message le message à encoder
+	 * @return le message encodé
+	 */
+	public static EncodedMessage encode(Message message)
+	{
+		return new EncodedMessage(message);
+	}
+
+	/**
+	 * En-tête à écrire au début d'un flux utilisant un protocole
+	 * @param protocol le protocole du flux
+	 * @return les octets de l'en-tête
+	 */
+	public static byte[] header(WireProtocol protocol)
+	{
+		switch (protocol)
+		{
+			case BINARY:
+				return MessageCodec.HEADER;
+			case SERIALIZED:
+			default:
+				return STREAMHEADER;
+		}
+	}
+
+	/**
+	 * Accesseur en lecture du message encodé
+	 * @return le message encodé
+	 */
+	public Message getMessage()
+	{
+		return message;
+	}
+
+	/**
+	 * Taille de la trame d'un protocole
+	 * @param protocol le protocole
+	 * @return le nombre d'octets de la trame
+	 * @throws IOException si l'encodage du message échoue
+	 */
+	public int size(WireProtocol protocol) throws IOException
+	{
+		return frame(protocol).bytes.length;
+	}
+
+	/**
+	 * Nombre d'objets de la trame d'un protocole, c'est à dire le nombre de
+	 * références que le flux du client conserve après avoir lu la trame
+	 * (jusqu'au {@link ObjectStreamConstants#TC_RESET} de la trame suivante).
+	 * @param protocol le protocole
+	 * @return le nombre d'objets sérialisés dans la trame (0 pour une trame
+	 * {@link WireProtocol#BINARY} qui ne contient aucune référence)
+	 * @throws IOException si l'encodage du message échoue
+	 */
+	public int objects(WireProtocol protocol) throws IOException
+	{
+		return frame(protocol).objects;
+	}
+
+	/**
+	 * Mémoire occupée par les trames déjà calculées du message
+	 * @return le nombre d'octets des trames calculées
+	 */
+	public synchronized long getRetainedBytes()
+	{
+		long retained = 0;
+		for (Frame frame : frames)
+		{
+			if (frame != null)
+			{
+				retained += frame.bytes.length;
+			}
+		}
+		return retained;
+	}
+
+	/**
+	 * Obtention d'un tampon permettant d'écrire la trame d'un protocole sur
+	 * un canal. Chaque appel fournit un nouveau tampon (en lecture seule)
+	 * partageant les octets de la trame mais possédant sa propre position.
+	 * @param protocol le protocole
+	 * @return un nouveau tampon positionné au début de la trame
+	 * @throws IOException si l'encodage du message échoue
+	 */
+	public ByteBuffer buffer(WireProtocol protocol) throws IOException
+	{
+		return frame(protocol).buffer.duplicate();
+	}
+
+	/**
+	 * Ecriture de la trame d'un protocole sur un flux
+	 * @param out le flux sur lequel écrire la trame
+	 * @param protocol le protocole du flux
+	 * @throws IOException si l'encodage du message ou l'écriture échoue
+	 */
+	public void writeTo(OutputStream out, WireProtocol protocol)
+		throws IOException
+	{
+		out.write(frame(protocol).bytes);
+	}
+
+	/**
+	 * Obtention (et calcul lors du premier appel) de la trame d'un protocole
+	 * @param protocol le protocole
+	 * @return la trame du message pour ce protocole
+	 * @throws IOException si l'encodage du message échoue
+	 */
+	private synchronized Frame frame(WireProtocol protocol) throws IOException
+	{
+		Frame frame = frames[protocol.ordinal()];
+		if (frame == null)
+		{
+			switch (protocol)
+			{
+				case BINARY:
+					frame = new Frame(MessageCodec.encode(message), 0);
+					break;
+				case SERIALIZED:
+				default:
+					Encoder encoder = encoders.get();
+					byte[] bytes = encoder.encode(message);
+					frame = new Frame(bytes, encoder.getObjects());
+					break;
+			}
+			frames[protocol.ordinal()] = frame;
+		}
+		return frame;
+	}
+
+	/**
+	 * Trame d'un message
+	 */
+	private static class Frame
+	{
+		/**
+		 * Les octets de la trame
+		 */
+		private final byte[] bytes;
+
+		/**
+		 * Tampon (en lecture seule) enveloppant les octets de la trame et
+		 * utilisé pour les écritures sur des canaux : les trames étant
+		 * conservées dans les historiques, leurs octets ne sont pas copiés
+		 * dans un tampon direct (le canal utilise son propre tampon direct
+		 * temporaire lors de l'écriture)
+		 */
+		private final ByteBuffer buffer;
+
+		/**
+		 * Nombre d'objets sérialisés dans la trame
+		 */
+		private final int objects;
+
+		/**
+		 * Constructeur d'une trame
+		 * @param bytes les octets de la trame
+		 * @param objects le nombre d'objets sérialisés dans la trame
+		 */
+		public Frame(byte[] bytes, int objects)
+		{
+			this.bytes = bytes;
+			this.objects = objects;
+			buffer = ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+		}
+	}
+
+	/**
+	 * Encodeur de messages propre à un thread
+	 */
+	private static class Encoder
+	{
+		/**
+		 * Flux d'octets dans lequel sont sérialisés les messages
+		 */
+		private final ByteArrayOutputStream outBytes;
+
+		/**
+		 * Flux de sérialisation des messages
+		 */
+		private CountingObjectOutputStream outOS;
+
+		/**
+		 * Constructeur d'un encodeur
+		 */
+		public Encoder()
+		{
+			outBytes = new ByteArrayOutputStream();
+			outOS = null;
+		}
+
+		/**
+		 * Encodage d'un message en une trame autonome
+		 * @param message le message à encoder
+		 * @return les octets de la trame
+		 * @throws IOException si la sérialisation échoue
+		 */
+		public byte[] encode(Message message) throws IOException
+		{
+			if (outOS == null)
+			{
+				outOS = new CountingObjectOutputStream(outBytes);
+				outOS.flush();
+			}
+			outBytes.reset(); // abandon de l'en-tête ou de la trame précédente
+			try
+			{
+				outOS.reset(); // TC_RESET
+				outOS.objects = 0;
+				outOS.writeObject(message);
+				outOS.flush();
+			}
+			catch (IOException e)
+			{
+				// le flux est dans un état indéterminé : on le recréera
+				outOS = null;
+				throw e;
+			}
+			return outBytes.toByteArray();
+		}
+
+		/**
+		 * Nombre d'objets sérialisés lors du dernier encodage
+		 * @return le nombre d'objets de la dernière trame
+		 */
+		public int getObjects()
+		{
+			return outOS != null ? outOS.objects : 0;
+		}
+	}
+
+	/**
+	 * Flux de sérialisation comptant les objets écrits (hors descripteurs de
+	 * classes), c'est à dire les entrées ajoutées à sa table des références
+	 */
+	private static class CountingObjectOutputStream extends ObjectOutputStream
+	{
+		/**
+		 * Nombre d'objets écrits depuis la dernière remise à zéro
+		 */
+		private int objects;
+
+		/**
+		 * Constructeur d'un flux de sérialisation comptant les objets écrits
+		 * @param out le flux sous-jacent
+		 * @throws IOException si l'écriture de l'en-tête échoue
+		 */
+		public CountingObjectOutputStream(OutputStream out) throws IOException
+		{
+			super(out);
+			enableReplaceObject(true);
+			objects = 0;
+		}
+
+		/**
+		 * Appelé une fois pour chaque nouvel objet écrit : on le compte sans
+		 * le remplacer
+		 * @param obj l'objet à écrire
+		 * @return l'objet lui même
+		 */
+		@Override
+		protected Object replaceObject(Object obj)
+		{
+			objects++;
+			return obj;
+		}
+	}
+}
@@ -0,0 +1,293 @@
+package chat.server;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import chat.Vocabulary;
+import models.Message;
+
+/**
+ * Critères d'une recherche dans l'historique des messages d'un serveur
+ * ({@link MessageStore}) : auteur des messages, intervalle de dates et mot
+ * contenu dans les messages, ainsi que la page de résultats demandée. Tous
+ * les critères sont optionnels. Une requête est obtenue à partir des
+ * arguments de la commande {@link Vocabulary#historyCmd} :
+ * <pre>
+ * history [from auteur] [since date] [until date] [with mot] [page n]
+ * </pre>
+ * où les dates sont au format {@link #DATEFORMAT}.
+ *
+ * @author davidroussel
+ */
+public class HistoryQuery
+{
+	/**
+	 * Format des dates des requêtes (la date d'affichage des messages dont
+	 * l'espace est remplacé par un tiret)
+	 */
+	public final static String DATEFORMAT = "yyyy/MM/dd-HH:mm:ss";
+
+	/**
+	 * Auteur des messages recherchés (null pour tous les auteurs)
+	 */
+	private final String author;
+
+	/**
+	 * Date minimum (incluse, en ms) des messages recherchés
+	 */
+	private final long from;
+
+	/**
+	 * Date maximum (incluse, en ms) des messages recherchés
+	 */
+	private final long to;
+
+	/**
+	 * Mot (en minuscules) contenu dans les messages recherchés (null pour
+	 * tous les messages)
+	 */
+	private final String word;
+
+	/**
+	 * Numéro de la page de résultats demandée (à partir de 1, la première
+	 * page contenant les résultats les plus récents)
+	 */
+	private final int page;
+
+	/**
+	 * Constructeur d'une requête
+	 * @param author l'auteur des messages recherchés ou null
+	 * @param from la date minimum (incluse, en ms) ou bien
+	 * {@link Long#MIN_VALUE}
+	 * @param to la date maximum (incluse, en ms) ou bien
+	 * {@link Long#MAX_VALUE}
+	 * @param word le mot contenu dans les messages recherchés ou null
+	 * @param page le numéro de la page de résultats demandée (à partir de 1)
+	 */
+	public HistoryQuery(String author, long from, long to, String word,
+	                    int page)
+	{
+		this.author = author;
+		this.from = from;
+		this.to = to;
+		this.word = (word != null ? word.toLowerCase(Locale.ROOT) : null);
+		this.page = Math.max(1, page);
+	}
+
+	/**
+	 * Obtention d'une requête à partir des arguments de la commande
+	 * {@link Vocabulary#historyCmd}
+	 * @param arguments les arguments de la commande (ce qui suit le nom de
+	 * la commande)
+	 * @return la requête correspondante
+	 * @throws ParseException si les arguments sont invalides
+	 */
+	public static HistoryQuery parse(String arguments) throws ParseException
+	{
+		String author = null;
+		long from = Long.MIN_VALUE;
+		long to = Long.MAX_VALUE;
+		String word = null;
+		int page = 1;
+		String[] tokens = arguments.trim().split("\\s+");
+		SimpleDateFormat format = new SimpleDateFormat(DATEFORMAT);
+		format.setLenient(false);
+		for (int i = 0; i < tokens.length; i++)
+		{
+			String key = tokens[i].toLowerCase(Locale.ROOT);
+			if (key.isEmpty())
+			{
+				continue;
+			}
+			if (i == (tokens.length - 1))
+			{
+				throw new ParseException("missing value for " + key, i);
+			}
+			String value = tokens[++i];
+			if (key.equals("from"))
+			{
+				author = value;
+			}
+			else if (key.equals("since"))
+			{
+				from = format.parse(value).getTime();
+			}
+			else if (key.equals("until"))
+			{
+				to = format.parse(value).getTime();
+			}
+			else if (key.equals("with"))
+			{
+				word = value;
+			}
+			else if (key.equals("page"))
+			{
+				try
+				{
+					page = Integer.parseInt(value);
+				}
+				catch (NumberFormatException e)
+				{
+					throw new ParseException("invalid page " + value, i);
+				}
+			}
+			else
+			{
+				throw new ParseException("unknown criterion " + key, i - 1);
+			}
+		}
+		return new HistoryQuery(author, from, to, word, page);
+	}
+
+	/**
+	 * Découpage du contenu d'un message en mots : suites de lettres ou de
+	 * chiffres, en minuscules, sans doublons
+	 * @param content le contenu à découper
+	 * @return la liste des mots distincts du contenu dans leur ordre
+	 * d'apparition
+	 */
+	public static List<String> words(String content)
+	{
+		List<String> words = new ArrayList<String>();
+		int length = content.length();
+		int start = -1;
+		for (int i = 0; i <= length; i++)
+		{
+			boolean inWord = (i < length)
+			    && Character.isLetterOrDigit(content.charAt(i));
+			if (inWord && (start < 0))
+			{
+				start = i;
+			}
+			else if (!inWord && (start >= 0))
+			{
+				String word =
+				    content.substring(start, i).toLowerCase(Locale.ROOT);
+				if (!words.contains(word))
+				{
+					words.add(word);
+				}
+				start = -1;
+			}
+		}
+		return words;
+	}
+
+	/**
+	 * Vérification (sans index) qu'un message satisfait tous les critères de
+	 * la requête
+	 * @param message le message à vérifier
+	 * @return true si le message satisfait tous les critères
+	 */
+	public boolean matches(Message message)
+	{
+		if ((author != null) && !author.equals(message.getAuthor()))
+		{
+			return false;
+		}
+		long date = message.getTimestamp();
+		if ((date < from) || (date > to))
+		{
+			return false;
+		}
+		return (word == null) || words(message.getContent()).contains(word);
+	}
+
+	/**
+	 * Accesseur en lecture de l'auteur recherché
+	 * @return l'auteur des messages recherchés ou null
+	 */
+	public String getAuthor()
+	{
+		return author;
+	}
+
+	/**
+	 * Accesseur en lecture de la date minimum
+	 * @return la date minimum (incluse, en ms) des messages recherchés
+	 */
+	public long getFrom()
+	{
+		return from;
+	}
+
+	/**
+	 * Accesseur en lecture de la date maximum
+	 * @return la date maximum (incluse, en ms) des messages recherchés
+	 */
+	public long getTo()
+	{
+		return to;
+	}
+
+	/**
+	 * Indique si la requête porte sur un intervalle de dates
+	 * @return true si une date minimum ou maximum a été spécifiée
+	 */
+	public boolean hasDates()
+	{
+		return (from != Long.MIN_VALUE) || (to != Long.MAX_VALUE);
+	}
+
+	/**
+	 * Accesseur en lecture du mot recherché
+	 * @return le mot (en minuscules) contenu dans les messages recherchés ou
+	 * null
+	 */
+	public String getWord()
+	{
+		return word;
+	}
+
+	/**
+	 * Accesseur en lecture de la page demandée
+	 * @return le numéro de la page de résultats demandée (à partir de 1)
+	 */
+	public int getPage()
+	{
+		return page;
+	}
+
+	/**
+	 * Obtention de la requête de la page suivante
+	 * @return une requête identique portant sur la page suivante
+	 */
+	public HistoryQuery next()
+	{
+		return new HistoryQuery(author, from, to, word, page + 1);
+	}
+
+	/**
+	 * Représentation de la requête sous la forme des arguments de la
+	 * commande {@link Vocabulary#historyCmd}
+	 * @return les arguments de la commande correspondant à la requête
+	 */
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder();
+		SimpleDateFormat format = new SimpleDateFormat(DATEFORMAT);
+		if (author != null)
+		{
+			sb.append(" from " + author);
+		}
+		if (from != Long.MIN_VALUE)
+		{
+			sb.append(" since " + format.format(new Date(from)));
+		}
+		if (to != Long.MAX_VALUE)
+		{
+			sb.append(" until " + format.format(new Date(to)));
+		}
+		if (word != null)
+		{
+			sb.append(" with " + word);
+		}
+		sb.append(" page " + page);
+		return sb.toString().substring(1);
+	}
+}
@@ -50,7 +50,7 @@ public class InputClient
 	 *
 	 * @uml.property name="ready"
 	 */
-	protected boolean ready;
+	protected volatile boolean ready;
 
 	/**
 	 * Etat de bannissement du client. Idée : le premier utilisateur du serveur
@@ -59,7 +59,7 @@ public class InputClient
 	 *
 	 * @uml.property name="banned"
 	 */
-	protected boolean banned;
+	protected volatile boolean banned;
 
 	/**
 	 * logger pour afficher les messages de debug
@@ -69,21 +69,26 @@ public class InputClient
 	/**
 	 * Constructeur d'un MainClient
 	 * @param socket the client's socket
+	 * @param reader le flux d'entrée déjà créé sur la socket du client (pour
+	 * lire son nom) ou bien null pour en créer un nouveau
 	 * @param name the client's name
 	 * @param parentLogger logger parent pour l'affichage des messages de debug
 	 */
-	public InputClient(Socket socket, String name, Logger parentLogger)
+	public InputClient(Socket socket,
+	                   BufferedReader reader,
+	                   String name,
+	                   Logger parentLogger)
 	{
 		clientSocket = socket;
 		this.name = name;
-		inBR = null;
-		ready = false;
+		inBR = reader;
+		ready = reader != null;
 
 		logger = LoggerFactory.getParentLogger(getClass(),
 		                                       parentLogger,
 		                                       parentLogger.getLevel());
 
-		if (socket != null)
+		if ((socket != null) && (inBR == null))
 		{
 			logger.info("InputClient: Creating Input Stream ... ");
 			try
@@ -100,6 +105,17 @@ public class InputClient
 		}
 	}
 
+	/**
+	 * Constructeur d'un MainClient
+	 * @param socket the client's socket
+	 * @param name the client's name
+	 * @param parentLogger logger parent pour l'affichage des messages de debug
+	 */
+	public InputClient(Socket socket, String name, Logger parentLogger)
+	{
+		this(socket, null, name, parentLogger);
+	}
+
 	/**
 	 * Accesseur en lecture du nom du client
 	 *
@@ -1,10 +1,17 @@
 package chat.server;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.ObjectOutputStream;
+import java.io.OutputStream;
 import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 import chat.Failure;
+import chat.WireProtocol;
+import models.Message;
 
 
 /**
@@ -13,31 +20,65 @@ import chat.Failure;
  * Un client "normal" ajoute aussi le flux de sortie sur lequel on écrit les
  * messages vers le client
  * <ul>
- * 	<li>out : {@link ObjectOutputStream}</li>
+ * 	<li>channel : {@link MessageOutputChannel} sur lequel on écrit les
+ * 	trames des messages encodés ({@link EncodedMessage}) dans le protocole
+ * 	({@link WireProtocol}) négocié avec le client et dont l'état conservé
+ * 	reste borné quel que soit le nombre de messages envoyés</li>
+ * 	<li>outQueue : la file d'émission ({@link OutboundQueue}) dans laquelle
+ * 	sont déposés les messages à envoyer et qui est vidée par le writer du
+ * 	client ({@link #getWriter()}) dans son propre thread</li>
  * </ul>
  * @author davidroussel
  *
  */
-public class InputOutputClient extends InputClient
+public class InputOutputClient extends InputClient implements OutputClient
 {
 	/**
-	 * Le flux de sortie vers le client (celui sur lequel on écrit au client)
+	 * Le canal de sortie vers le client (celui sur lequel on écrit au client)
 	 */
-	private ObjectOutputStream outOS;
+	private MessageOutputChannel channel;
+
+	/**
+	 * La file des messages en attente d'émission vers le client
+	 */
+	private final OutboundQueue<EncodedMessage> outQueue;
+
+	/**
+	 * Verrou signalant la fin du writer du client
+	 */
+	private final CountDownLatch writerDone;
+
+	/**
+	 * Les messages de l'historique à écrire par le writer juste après
+	 * l'en-tête du flux (null s'il n'y en a pas)
+	 */
+	private volatile List<EncodedMessage> replay;
 
 	/**
 	 * Constructeur d'un client
 	 * @param socket la socket du client
+	 * @param reader le flux d'entrée déjà créé sur la socket du client (pour
+	 * lire son nom) ou bien null pour en créer un nouveau
 	 * @param name le nom du client
-	 * @param verbose niveau de debug pour les messages
+	 * @param protocol le protocole utilisé pour envoyer les messages au
+	 * client
+	 * @param outQueue la file d'émission des messages vers le client
 	 * @param parentLogger logger parent pour l'affichage des messages
 	 */
-	public InputOutputClient(Socket socket, String name, Logger parentLogger)
+	public InputOutputClient(Socket socket,
+	                         BufferedReader reader,
+	                         String name,
+	                         WireProtocol protocol,
+	                         OutboundQueue<EncodedMessage> outQueue,
+	                         Logger parentLogger)
 	{
-		super(socket, name, parentLogger);
+		super(socket, reader, name, parentLogger);
+		this.outQueue = outQueue;
+		writerDone = new CountDownLatch(1);
+		replay = null;
 		if (ready)
 		{
-			outOS = null;
+			channel = null;
 			ready = false;
 
 			if (clientSocket != null)
@@ -45,7 +86,9 @@ public class InputOutputClient extends InputClient
 				logger.info("Client: Creating Output Stream ... ");
 				try
 				{
-					outOS = new ObjectOutputStream(clientSocket.getOutputStream());
+					OutputStream out =
+						new BufferedOutputStream(clientSocket.getOutputStream());
+					channel = new MessageOutputChannel(out, protocol);
 					ready = true;
 				}
 				catch (IOException e)
@@ -63,24 +106,167 @@ public class InputOutputClient extends InputClient
 	}
 
 	/**
-	 * Accesseur en lecture du flux de sortie d'un client
-	 * @return the out
+	 * Constructeur d'un client historique (messages sérialisés) utilisant une
+	 * file d'émission par défaut
+	 * @param socket la socket du client
+	 * @param name le nom du client
+	 * @param parentLogger logger parent pour l'affichage des messages
 	 */
-	public ObjectOutputStream getOut()
+	public InputOutputClient(Socket socket, String name, Logger parentLogger)
+	{
+		this(socket,
+		     null,
+		     name,
+		     WireProtocol.SERIALIZED,
+		     new OutboundQueue<EncodedMessage>(OutboundQueue.DEFAULTCAPACITY,
+		                                       OutboundQueue.DEFAULTPOLICY),
+		     parentLogger);
+	}
+
+	/**
+	 * Accesseur en lecture du canal de sortie d'un client (et de ses mesures)
+	 * @return le canal de sortie du client
+	 */
+	public MessageOutputChannel getChannel()
+	{
+		return channel;
+	}
+
+	/**
+	 * Accesseur en lecture du protocole négocié avec le client
+	 * @return le protocole utilisé pour envoyer les messages au client
+	 */
+	@Override
+	public WireProtocol getProtocol()
 	{
-		return outOS;
+		return (channel != null ? channel.getProtocol()
+		    : WireProtocol.SERIALIZED);
 	}
 
 	/**
-	 * Nettoyage d'un client : fermeture du flux de sortie et super.cleanup()
+	 * Envoi d'un message vers le client : le message est encodé puis déposé
+	 * dans la file d'émission du client
+	 * @param message le message à envoyer
+	 * @throws IOException si l'encodage du message échoue
+	 * @see #sendMessage(EncodedMessage)
+	 */
+	@Override
+	public void sendMessage(Message message) throws IOException
+	{
+		sendMessage(EncodedMessage.encode(message));
+	}
+
+	/**
+	 * Envoi d'un message encodé vers le client : le message est déposé dans
+	 * la file d'émission du client et sera écrit sur son flux de sortie par
+	 * le writer du client. Si la file est pleine et que sa politique
+	 * l'exige, le client est déconnecté.
+	 * @param message le message encodé à envoyer
+	 * @throws IOException jamais : les erreurs d'écriture sont traitées par
+	 * le writer du client
+	 */
+	@Override
+	public void sendMessage(EncodedMessage message) throws IOException
+	{
+		if (!outQueue.offer(message) && ready)
+		{
+			logger.warning("Client[" + name + "]: outbound queue overflow ("
+			    + outQueue.getPolicy() + "), disconnecting client");
+			disconnect();
+		}
+	}
+
+	/**
+	 * Rejeu de l'historique des messages : ceux ci seront écrits par le
+	 * writer du client juste après l'en-tête du flux et avant les messages
+	 * de la file d'émission, en une seule rafale suivie d'un unique vidage
+	 * du flux. Doit être appelé avant le lancement du writer.
+	 * @param history les messages encodés de l'historique, du plus ancien au
+	 * plus récent
+	 */
+	@Override
+	public void replay(List<EncodedMessage> history)
+	{
+		replay = history;
+	}
+
+	/**
+	 * Nombre de messages destinés à ce client qui ont été abandonnés parce
+	 * que sa file d'émission était pleine
+	 * @return le nombre de messages abandonnés
+	 */
+	@Override
+	public long getDroppedMessages()
+	{
+		return outQueue.getDropped();
+	}
+
+	/**
+	 * Obtention du writer du client chargé d'écrire l'en-tête du flux puis
+	 * de vider la file d'émission sur le flux de sortie du client. Celui ci
+	 * doit être exécuté dans son propre thread et se termine lorsque le
+	 * client est nettoyé ou que l'écriture échoue.
+	 * @return le writer du client
+	 */
+	public Runnable getWriter()
+	{
+		return new Writer();
+	}
+
+	/**
+	 * Déconnection du client (file d'émission pleine ou écriture impossible) :
+	 * on ferme la file d'émission ainsi que le flux d'entrée de la socket, ce
+	 * qui termine le {@link ClientHandler} du client qui se chargera alors de
+	 * le nettoyer.
+	 */
+	private void disconnect()
+	{
+		ready = false;
+		outQueue.close();
+		outQueue.clear();
+		try
+		{
+			clientSocket.shutdownInput();
+		}
+		catch (IOException e)
+		{
+			logger.warning("Client[" + name + "]: unable to shutdown input: "
+			    + e.getLocalizedMessage());
+		}
+	}
+
+	/**
+	 * Nettoyage d'un client : fermeture de la file d'émission, attente de
+	 * l'écriture des derniers messages par le writer, fermeture du flux de
+	 * sortie puis super.cleanup()
 	 */
 	@Override
 	public void cleanup()
 	{
+		outQueue.close();
+		try
+		{
+			if (!writerDone.await(OutboundQueue.DEFAULTBLOCKTIMEOUT,
+			                      TimeUnit.MILLISECONDS))
+			{
+				logger.warning("Client[" + name + "]: writer still running");
+			}
+		}
+		catch (InterruptedException e)
+		{
+			logger.warning("Client[" + name + "]: writer wait interrupted");
+		}
+		long dropped = outQueue.getDropped();
+		if (dropped > 0)
+		{
+			logger.warning("Client[" + name + "]: " + dropped
+			    + " messages dropped");
+		}
+		logger.info("Client[" + name + "]: " + channel);
 		logger.info("Client::cleanup: closing output stream ... ");
 		try
 		{
-			outOS.close();
+			channel.close();
 		}
 		catch (IOException e)
 		{
@@ -89,4 +275,66 @@ public class InputOutputClient extends InputClient
 		}
 		super.cleanup();
 	}
+
+	/**
+	 * Writer du client : écrit sur le flux de sortie du client les messages
+	 * retirés de la file d'émission
+	 */
+	private class Writer implements Runnable
+	{
+		/**
+		 * Boucle d'écriture des messages de la file d'émission jusqu'à sa
+		 * fermeture
+		 */
+		@Override
+		public void run()
+		{
+			try
+			{
+				channel.writeHeader();
+				List<EncodedMessage> history = replay;
+				if (history != null)
+				{
+					replay = null;
+					for (EncodedMessage m : history)
+					{
+						channel.write(m);
+					}
+					channel.flush();
+				}
+				EncodedMessage message;
+				while ((message = outQueue.take()) != null)
+				{
+					channel.write(message);
+					/*
+					 * On ne vide le tampon vers la socket que lorsqu'il n'y a
+					 * plus de messages en attente afin de regrouper les
+					 * écritures des rafales de messages
+					 */
+					if (outQueue.size() == 0)
+					{
+						channel.flush();
+					}
+				}
+			}
+			catch (InterruptedException e)
+			{
+				logger.warning("Client[" + name + "]: writer interrupted");
+				disconnect();
+			}
+			catch (IOException e)
+			{
+				if (ready)
+				{
+					logger.warning("Client[" + name + "]: write failed: "
+					    + e.getLocalizedMessage());
+					disconnect();
+				}
+			}
+			finally
+			{
+				writerDone.countDown();
+			}
+		}
+	}
 }
@@ -0,0 +1,225 @@
+package chat.server;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import chat.MessageCodec;
+import chat.WireProtocol;
+import logger.LoggerFactory;
+
+/**
+ * Etape de connection (handshake) d'un client du {@link ChatServer} :
+ * lecture de l'éventuelle négociation du protocole puis du nom du client
+ * dans un thread distinct de celui qui accepte les connections, avec un
+ * temps d'attente maximum pour l'ensemble du handshake. Un client qui se
+ * connecte sans jamais envoyer son nom (ou qui l'envoie octet par octet) ne
+ * bloque donc plus les connections des autres clients et finit par être
+ * déconnecté.
+ * Une fois le nom obtenu, le client est confié au serveur
+ * ({@link ChatServer#login(Socket, BufferedReader, String, WireProtocol)}).
+ *
+ * @author davidroussel
+ */
+class LoginHandler implements Runnable
+{
+	/**
+	 * Le serveur auquel confier le client
+	 */
+	private final ChatServer server;
+
+	/**
+	 * La socket du client
+	 */
+	private final Socket clientSocket;
+
+	/**
+	 * Temps maximum (en ms) d'attente du handshake complet
+	 */
+	private final int timeout;
+
+	/**
+	 * Logger pour l'affichage des messages de debug
+	 */
+	private final Logger logger;
+
+	/**
+	 * Constructeur d'un handler de connection
+	 * @param server le serveur auquel confier le client
+	 * @param clientSocket la socket du client
+	 * @param timeout temps maximum (en ms) d'attente du handshake complet
+	 * (0 pour attendre indéfiniment)
+	 * @param parentLogger logger parent pour l'affichage des messages de
+	 * debug
+	 */
+	public LoginHandler(ChatServer server,
+	                    Socket clientSocket,
+	                    int timeout,
+	                    Logger parentLogger)
+	{
+		this.server = server;
+		this.clientSocket = clientSocket;
+		this.timeout = timeout;
+		logger = LoggerFactory.getParentLogger(getClass(),
+		                                       parentLogger,
+		                                       parentLogger.getLevel());
+	}
+
+	/**
+	 * Lecture du nom du client (éventuellement précédé de la négociation du
+	 * protocole) puis enregistrement du client auprès du serveur. Si le
+	 * client n'envoie pas son nom à temps ou se déconnecte, sa socket est
+	 * fermée.
+	 */
+	@Override
+	public void run()
+	{
+		String clientName = null;
+		WireProtocol protocol = WireProtocol.SERIALIZED;
+		BufferedReader reader = null;
+		try
+		{
+			DeadlineInputStream in =
+				new DeadlineInputStream(clientSocket, timeout);
+			reader = new BufferedReader(new InputStreamReader(in));
+			logger.info("LoginHandler: reading client's name: ");
+			clientName = reader.readLine();
+			WireProtocol requested = MessageCodec.negotiate(clientName);
+			if (requested != null)
+			{
+				protocol = requested;
+				clientName = reader.readLine();
+			}
+			// une fois connecté, le client peut rester silencieux
+			in.clearDeadline();
+		}
+		catch (SocketTimeoutException ste)
+		{
+			logger.warning("LoginHandler: no client name within " + timeout
+			    + " ms, closing connection from "
+			    + clientSocket.getRemoteSocketAddress());
+			close();
+			return;
+		}
+		catch (IOException e)
+		{
+			logger.warning("LoginHandler: unable to read client name: "
+			    + e.getLocalizedMessage());
+			close();
+			return;
+		}
+
+		if (clientName == null)
+		{
+			logger.warning("LoginHandler: connection closed before client name");
+			close();
+			return;
+		}
+
+		logger.info("LoginHandler: client name " + clientName + " ("
+		    + protocol + ")");
+		server.login(clientSocket, reader, clientName, protocol);
+	}
+
+	/**
+	 * Fermeture de la socket d'un client qui ne s'est pas connecté
+	 */
+	private void close()
+	{
+		try
+		{
+			clientSocket.close();
+		}
+		catch (IOException e)
+		{
+			logger.warning("LoginHandler: unable to close client socket: "
+			    + e.getLocalizedMessage());
+		}
+	}
+
+	/**
+	 * Flux d'entrée d'une socket dont les lectures échouent (avec une
+	 * {@link SocketTimeoutException}) une fois une échéance dépassée : avant
+	 * chaque lecture le timeout de la socket est réduit au temps restant
+	 * avant l'échéance
+	 */
+	private static class DeadlineInputStream extends FilterInputStream
+	{
+		/**
+		 * La socket lue
+		 */
+		private final Socket socket;
+
+		/**
+		 * L'échéance (en ns, voir {@link System#nanoTime()}) ou bien 0 s'il
+		 * n'y a pas d'échéance
+		 */
+		private long deadline;
+
+		/**
+		 * Constructeur d'un flux avec échéance
+		 * @param socket la socket à lire
+		 * @param timeout le temps (en ms) avant l'échéance, ou bien 0 pour
+		 * ne pas avoir d'échéance
+		 * @throws IOException si le flux de la socket ne peut être obtenu
+		 */
+		public DeadlineInputStream(Socket socket, int timeout)
+			throws IOException
+		{
+			super(socket.getInputStream());
+			this.socket = socket;
+			deadline = (timeout > 0)
+			    ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout)
+			    : 0;
+		}
+
+		/**
+		 * Suppression de l'échéance : les lectures suivantes attendent
+		 * indéfiniment
+		 * @throws IOException si le timeout de la socket ne peut être changé
+		 */
+		public void clearDeadline() throws IOException
+		{
+			deadline = 0;
+			socket.setSoTimeout(0);
+		}
+
+		/**
+		 * Mise en place du timeout de la socket pour la prochaine lecture
+		 * @throws IOException si l'échéance est dépassée ou si le timeout de
+		 * la socket ne peut être changé
+		 */
+		private void arm() throws IOException
+		{
+			if (deadline != 0)
+			{
+				long remaining = TimeUnit.NANOSECONDS.toMillis(
+					deadline - System.nanoTime());
+				if (remaining <= 0)
+				{
+					throw new SocketTimeoutException("handshake timeout");
+				}
+				socket.setSoTimeout((int) Math.min(remaining, Integer.MAX_VALUE));
+			}
+		}
+
+		@Override
+		public int read() throws IOException
+		{
+			arm();
+			return super.read();
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException
+		{
+			arm();
+			return super.read(b, off, len);
+		}
+	}
+}
@@ -0,0 +1,167 @@
+package chat.server;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Historique des derniers messages diffusés par un serveur, rejoué à chaque
+ * client qui se connecte afin qu'il ne démarre pas avec une conversation
+ * vide.
+ * L'historique est un tampon circulaire préalloué de {@link #getCapacity()}
+ * messages encodés ({@link EncodedMessage}) : lorsqu'il est plein, chaque
+ * nouveau message remplace le plus ancien. Le nombre de messages conservés
+ * est donc borné et aucune allocation n'est faite lors de l'ajout d'un
+ * message. Les messages étant conservés sous leur forme encodée, les trames
+ * déjà calculées lors de leur diffusion sont réutilisées telles quelles lors
+ * du rejeu. La mémoire occupée par les trames conservées peut être mesurée
+ * avec {@link #getRetainedBytes()}.
+ * Toutes les méthodes sont synchronisées sur l'historique.
+ *
+ * @author davidroussel
+ */
+public class MessageHistory
+{
+	/**
+	 * Nombre par défaut de messages conservés
+	 */
+	public final static int DEFAULTCAPACITY = 100;
+
+	/**
+	 * Le tampon circulaire des messages
+	 */
+	private final EncodedMessage[] ring;
+
+	/**
+	 * Index de la prochaine case à remplir dans le {@link #ring}
+	 */
+	private int next;
+
+	/**
+	 * Nombre de messages conservés
+	 */
+	private int count;
+
+	/**
+	 * Nombre total de messages ajoutés à l'historique
+	 */
+	private long added;
+
+	/**
+	 * Constructeur d'un historique
+	 * @param capacity le nombre maximum de messages conservés (0 pour ne
+	 * conserver aucun message)
+	 */
+	public MessageHistory(int capacity)
+	{
+		ring = new EncodedMessage[Math.max(0, capacity)];
+		next = 0;
+		count = 0;
+		added = 0;
+	}
+
+	/**
+	 * Ajout d'un message à l'historique, en remplacement du plus ancien
+	 * message si l'historique est plein
+	 * @param message le message encodé à ajouter
+	 */
+	public synchronized void add(EncodedMessage message)
+	{
+		added++;
+		if (ring.length == 0)
+		{
+			return;
+		}
+		ring[next] = message;
+		next = (next + 1) % ring.length;
+		if (count < ring.length)
+		{
+			count++;
+		}
+	}
+
+	/**
+	 * Obtention des messages conservés
+	 * @return une nouvelle liste des messages conservés, du plus ancien au
+	 * plus récent
+	 */
+	public synchronized List<EncodedMessage> toList()
+	{
+		List<EncodedMessage> messages = new ArrayList<EncodedMessage>(count);
+		int first = (next - count + ring.length) % Math.max(1, ring.length);
+		for (int i = 0; i < count; i++)
+		{
+			messages.add(ring[(first + i) % ring.length]);
+		}
+		return messages;
+	}
+
+	/**
+	 * Vidage de l'historique
+	 */
+	public synchronized void clear()
+	{
+		for (int i = 0; i < ring.length; i++)
+		{
+			ring[i] = null;
+		}
+		next = 0;
+		count = 0;
+	}
+
+	/**
+	 * Accesseur en lecture de la capacité de l'historique
+	 * @return le nombre maximum de messages conservés
+	 */
+	public int getCapacity()
+	{
+		return ring.length;
+	}
+
+	/**
+	 * Nombre de messages conservés
+	 * @return le nombre de messages actuellement conservés
+	 */
+	public synchronized int size()
+	{
+		return count;
+	}
+
+	/**
+	 * Nombre total de messages ajoutés
+	 * @return le nombre de messages ajoutés depuis la création de
+	 * l'historique (y compris ceux qui ne sont plus conservés)
+	 */
+	public synchronized long getAdded()
+	{
+		return added;
+	}
+
+	/**
+	 * Mémoire occupée par les trames des messages conservés
+	 * @return le nombre d'octets des trames conservées (voir
+	 * {@link EncodedMessage#getRetainedBytes()})
+	 */
+	public synchronized long getRetainedBytes()
+	{
+		long bytes = 0;
+		for (int i = 0; i < ring.length; i++)
+		{
+			if (ring[i] != null)
+			{
+				bytes += ring[i].getRetainedBytes();
+			}
+		}
+		return bytes;
+	}
+
+	/**
+	 * Représentation des mesures de l'historique sous forme de chaine
+	 * @return une chaine décrivant l'occupation de l'historique
+	 */
+	@Override
+	public String toString()
+	{
+		return "history: " + size() + "/" + getCapacity() + " messages ("
+		    + getAdded() + " added), " + getRetainedBytes() + " bytes";
+	}
+}
@@ -0,0 +1,453 @@
+package chat.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.logging.Logger;
+
+import chat.MessageCodec;
+import chat.WireProtocol;
+import logger.LoggerFactory;
+import models.Message;
+
+/**
+ * Journal persistant des messages diffusés par un serveur : les messages
+ * sont ajoutés (et jamais modifiés) à la fin de fichiers "segments" projetés
+ * en mémoire ({@link MappedByteBuffer}).
+ * Chaque segment de {@link #DEFAULTSEGMENTSIZE} octets commence par
+ * l'en-tête {@link MessageCodec#HEADER} suivi des trames
+ * {@link WireProtocol#BINARY} des messages (celles de leurs
+ * {@link EncodedMessage}s, qui sont donc partagées avec les clients
+ * utilisant ce protocole). La partie non encore écrite d'un segment ne
+ * contient que des zéros, ce qui marque la fin des trames. Lorsqu'une
+ * trame ne tient plus dans le segment courant, un nouveau segment est créé.
+ * Les segments sont nommés {@link #PREFIX}numéro{@link #SUFFIX}.
+ * Les ajouts ({@link #append(EncodedMessage)}) se contentent de déposer les
+ * messages dans une file : c'est le thread du journal ({@link #run()}) qui
+ * copie dans le segment tous les messages en attente puis force leur
+ * écriture sur disque une seule fois pour l'ensemble de ces messages
+ * ("group commit"). L'écriture du journal ne ralentit donc pas la diffusion
+ * des messages : si le disque ne suit pas et que la file est pleine, les plus
+ * anciens messages en attente sont abandonnés (et comptés), et si une
+ * écriture échoue le journal est désactivé (les ajouts suivants sont
+ * ignorés).
+ * Au démarrage, {@link #recover(MessageHistory, MessageStore)} relit le
+ * dernier segment afin de reconstruire les historiques des messages et de
+ * retrouver le dernier numéro de séquence attribué.
+ *
+ * @author davidroussel
+ */
+public class MessageJournal implements Runnable
+{
+	/**
+	 * Taille par défaut (en octets) d'un segment
+	 */
+	public final static int DEFAULTSEGMENTSIZE = 16 << 20;
+
+	/**
+	 * Nombre maximum par défaut de messages en attente d'écriture (au delà,
+	 * les plus anciens messages en attente sont abandonnés)
+	 */
+	public final static int DEFAULTCAPACITY = 1 << 16;
+
+	/**
+	 * Préfixe du nom des segments
+	 */
+	public final static String PREFIX = "journal-";
+
+	/**
+	 * Suffixe du nom des segments
+	 */
+	public final static String SUFFIX = ".seg";
+
+	/**
+	 * Le répertoire contenant les segments
+	 */
+	private final File directory;
+
+	/**
+	 * Taille (en octets) d'un segment
+	 */
+	private final int segmentSize;
+
+	/**
+	 * Les messages en attente d'écriture
+	 */
+	private final OutboundQueue<EncodedMessage> queue;
+
+	/**
+	 * Indique que l'écriture du journal a échoué et que les messages ne sont
+	 * plus journalisés
+	 */
+	private volatile boolean failed;
+
+	/**
+	 * Le canal du fichier du segment courant
+	 */
+	private FileChannel channel;
+
+	/**
+	 * Le segment courant projeté en mémoire, positionné à la fin des trames
+	 * écrites
+	 */
+	private MappedByteBuffer segment;
+
+	/**
+	 * Numéro du segment courant
+	 */
+	private int segmentNumber;
+
+	/**
+	 * Date (en ms) du dernier message relu par
+	 * {@link #recover(MessageHistory, MessageStore)}
+	 */
+	private long lastTimestamp;
+
+	/**
+	 * Nombre de messages écrits dans le journal
+	 */
+	private volatile long written;
+
+	/**
+	 * Nombre d'écritures forcées sur disque
+	 */
+	private volatile long commits;
+
+	/**
+	 * Nombre de segments créés
+	 */
+	private volatile int segments;
+
+	/**
+	 * Logger pour l'affichage des messages de debug
+	 */
+	private final Logger logger;
+
+	/**
+	 * Constructeur d'un journal. Aucun segment n'est ouvert avant l'appel de
+	 * {@link #recover(MessageHistory, MessageStore)}.
+	 * @param directory le répertoire contenant les segments (créé s'il
+	 * n'existe pas)
+	 * @param segmentSize la taille (en octets) d'un segment
+	 * @param parentLogger logger parent pour l'affichage des messages de
+	 * debug
+	 */
+	public MessageJournal(File directory, int segmentSize, Logger parentLogger)
+	{
+		this.directory = directory;
+		this.segmentSize = segmentSize;
+		queue = new OutboundQueue<EncodedMessage>(DEFAULTCAPACITY,
+		                                          OverflowPolicy.DROP_OLDEST);
+		failed = false;
+		lastTimestamp = 0;
+		channel = null;
+		segment = null;
+		segmentNumber = 0;
+		written = 0;
+		commits = 0;
+		segments = 0;
+		logger = LoggerFactory.getParentLogger(getClass(),
+		                                       parentLogger,
+		                                       parentLogger.getLevel());
+	}
+
+	/**
+	 * Ouverture du journal : le dernier segment est relu afin de retrouver
+	 * la fin des trames écrites et chacun de ses messages est ajouté à
+	 * l'historique (qui n'en conserve que les plus récents) ainsi qu'à
+	 * l'historique interrogeable. S'il n'y a pas encore de segment, un
+	 * premier segment est créé.
+	 * @param history l'historique dans lequel ajouter les messages relus
+	 * @param store l'historique interrogeable dans lequel ajouter les
+	 * messages relus (ou bien null)
+	 * @return le numéro de séquence du dernier message relu (0 s'il n'y en a
+	 * pas)
+	 * @throws IOException si le répertoire ou les segments ne peuvent être
+	 * ouverts
+	 */
+	public long recover(MessageHistory history, MessageStore store)
+		throws IOException
+	{
+		if (!directory.isDirectory() && !directory.mkdirs())
+		{
+			throw new IOException("unable to create journal directory "
+			    + directory);
+		}
+
+		String[] names = directory.list();
+		int last = 0;
+		if (names != null)
+		{
+			for (String name : names)
+			{
+				if (name.startsWith(PREFIX) && name.endsWith(SUFFIX))
+				{
+					try
+					{
+						int number = Integer.parseInt(name.substring(
+						    PREFIX.length(), name.length() - SUFFIX.length()));
+						last = Math.max(last, number);
+					}
+					catch (NumberFormatException e)
+					{
+						logger.warning("MessageJournal: ignoring " + name);
+					}
+				}
+			}
+		}
+
+		if (last == 0)
+		{
+			openSegment(1, segmentSize);
+			return 0;
+		}
+
+		File file = segmentFile(last);
+		openSegment(last, (int) Math.max(file.length(), segmentSize));
+		byte[] header = new byte[MessageCodec.HEADER.length];
+		segment.position(0);
+		segment.get(header);
+		if (!MessageCodec.isHeader(header))
+		{
+			throw new StreamCorruptedException("invalid journal segment "
+			    + file);
+		}
+
+		long sequence = 0;
+		long recovered = 0;
+		long start = System.nanoTime();
+		while (true)
+		{
+			Message message;
+			try
+			{
+				message = MessageCodec.read(segment);
+			}
+			catch (StreamCorruptedException e)
+			{
+				/*
+				 * Trame partiellement écrite lors de l'arrêt du serveur : on
+				 * l'efface afin de reprendre l'écriture à sa place
+				 */
+				logger.warning("MessageJournal: " + e.getLocalizedMessage()
+				    + " in " + file + ", discarding end of segment");
+				int end = segment.position();
+				while (segment.hasRemaining())
+				{
+					segment.put((byte) 0);
+				}
+				segment.position(end);
+				break;
+			}
+			if (message == null)
+			{
+				break;
+			}
+			sequence = Math.max(sequence, message.getSequence());
+			lastTimestamp = Math.max(lastTimestamp, message.getTimestamp());
+			EncodedMessage encoded = EncodedMessage.encode(message);
+			history.add(encoded);
+			if (store != null)
+			{
+				store.add(encoded);
+			}
+			recovered++;
+		}
+		logger.info("MessageJournal: recovered " + recovered
+		    + " messages from " + file + " in "
+		    + ((System.nanoTime() - start) / 1000000) + " ms");
+		return sequence;
+	}
+
+	/**
+	 * Ajout d'un message au journal : le message est déposé dans la file du
+	 * journal et sera écrit par le thread du journal. Cet ajout ne bloque
+	 * jamais : si la file est pleine le plus ancien message en attente est
+	 * abandonné, et si le journal a été désactivé suite à un échec
+	 * d'écriture le message est ignoré.
+	 * @param message le message encodé à ajouter
+	 */
+	public void append(EncodedMessage message)
+	{
+		if (!queue.offer(message) && !failed)
+		{
+			logger.warning("MessageJournal: message " + message.getMessage()
+			    .getSequence() + " not journaled (journal closed)");
+		}
+	}
+
+	/**
+	 * Fermeture du journal : les messages en attente seront encore écrits
+	 * puis le thread du journal se terminera
+	 */
+	public void close()
+	{
+		queue.close();
+	}
+
+	/**
+	 * Boucle d'écriture des messages en attente jusqu'à la fermeture du
+	 * journal : tous les messages en attente sont copiés dans le segment
+	 * puis leur écriture sur disque est forcée une seule fois
+	 */
+	@Override
+	public void run()
+	{
+		try
+		{
+			EncodedMessage message;
+			while ((message = queue.take()) != null)
+			{
+				do
+				{
+					write(message);
+				}
+				while ((message = queue.poll()) != null);
+				segment.force();
+				commits++;
+			}
+		}
+		catch (InterruptedException e)
+		{
+			logger.warning("MessageJournal: interrupted");
+		}
+		catch (IOException e)
+		{
+			failed = true;
+			logger.severe("MessageJournal: write failed: "
+			    + e.getLocalizedMessage() + ", journal disabled");
+		}
+		finally
+		{
+			/*
+			 * Plus aucun message ne sera écrit : la file est fermée (et vidée)
+			 * afin que les ajouts suivants soient ignorés sans attendre
+			 */
+			queue.close();
+			queue.clear();
+			closeSegment();
+			logger.info("MessageJournal: " + this);
+		}
+	}
+
+	/**
+	 * Nombre de messages écrits
+	 * @return le nombre de messages écrits dans le journal
+	 */
+	public long getWritten()
+	{
+		return written;
+	}
+
+	/**
+	 * Date du dernier message relu
+	 * @return la date (en ms) du plus récent message relu par
+	 * {@link #recover(MessageHistory, MessageStore)} (0 s'il n'y en a pas)
+	 */
+	public long getLastTimestamp()
+	{
+		return lastTimestamp;
+	}
+
+	/**
+	 * Nombre d'écritures forcées sur disque
+	 * @return le nombre de "group commits" effectués
+	 */
+	public long getCommits()
+	{
+		return commits;
+	}
+
+	/**
+	 * Représentation des mesures du journal sous forme de chaine
+	 * @return une chaine décrivant les mesures du journal
+	 */
+	@Override
+	public String toString()
+	{
+		return "journal " + directory + ": " + written + " messages, "
+		    + commits + " commits, " + segments + " new segments, "
+		    + queue.getDropped() + " dropped";
+	}
+
+	/**
+	 * Copie de la trame d'un message à la fin du segment courant [appelé
+	 * par le thread du journal]. Si la trame ne tient pas dans le segment
+	 * courant, un nouveau segment est créé.
+	 * @param message le message à écrire
+	 * @throws IOException si l'encodage du message ou la création d'un
+	 * segment échoue
+	 */
+	private void write(EncodedMessage message) throws IOException
+	{
+		ByteBuffer frame = message.buffer(WireProtocol.BINARY);
+		if (frame.remaining() > segment.remaining())
+		{
+			segment.force();
+			closeSegment();
+			openSegment(segmentNumber + 1,
+			            Math.max(segmentSize,
+			                     MessageCodec.HEADER.length + frame.remaining()));
+		}
+		segment.put(frame);
+		written++;
+	}
+
+	/**
+	 * Ouverture (et création si besoin) d'un segment
+	 * @param number le numéro du segment
+	 * @param size la taille du segment
+	 * @throws IOException si le segment ne peut être ouvert
+	 */
+	private void openSegment(int number, int size) throws IOException
+	{
+		File file = segmentFile(number);
+		boolean created = !file.exists();
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		channel = raf.getChannel();
+		segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+		segmentNumber = number;
+		if (created)
+		{
+			segment.put(MessageCodec.HEADER);
+			segments++;
+			logger.info("MessageJournal: new segment " + file);
+		}
+	}
+
+	/**
+	 * Fermeture du canal du segment courant (la projection en mémoire reste
+	 * valide jusqu'à ce que le segment ne soit plus référencé)
+	 */
+	private void closeSegment()
+	{
+		if (channel != null)
+		{
+			try
+			{
+				channel.close();
+			}
+			catch (IOException e)
+			{
+				logger.warning("MessageJournal: unable to close segment "
+				    + segmentNumber + ": " + e.getLocalizedMessage());
+			}
+			channel = null;
+		}
+	}
+
+	/**
+	 * Fichier d'un segment
+	 * @param number le numéro du segment
+	 * @return le fichier du segment
+	 */
+	private File segmentFile(int number)
+	{
+		return new File(directory, PREFIX + String.format("%08d", number)
+		    + SUFFIX);
+	}
+}
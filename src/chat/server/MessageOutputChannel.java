@@ -0,0 +1,215 @@
+package chat.server;
+
+import java.io.IOException;
+import java.io.ObjectStreamConstants;
+import java.io.OutputStream;
+
+import chat.WireProtocol;
+
+/**
+ * Canal de sortie des messages vers un client dont l'état conservé reste
+ * borné quelle que soit la durée de la connection.
+ * Un {@link java.io.ObjectOutputStream} unique par client sur lequel on
+ * appelle writeObject pour chaque message conserve dans sa table des
+ * références tous les messages déjà envoyés (de même que
+ * l'{@link java.io.ObjectInputStream} du client) : une fuite mémoire
+ * proportionnelle au trafic de la connection.
+ * Le canal n'utilise donc aucun flux d'objets propre au client : il écrit
+ * l'en-tête du flux ({@link #writeHeader()}) puis les trames autonomes des {@link EncodedMessage}s,
+ * chaque trame {@link WireProtocol#SERIALIZED} commençant par un
+ * {@link ObjectStreamConstants#TC_RESET} qui vide la table des références du
+ * client. Le canal tient à jour des mesures permettant de vérifier que
+ * l'état conservé reste constant :
+ * <ul>
+ * <li>{@link #getFrames()} : nombre de trames écrites</li>
+ * <li>{@link #getBytes()} : nombre d'octets écrits</li>
+ * <li>{@link #getResets()} : nombre de remises à zéro de la table des
+ * références du client</li>
+ * <li>{@link #getRetainedObjects()} : nombre d'objets actuellement
+ * référencés par la table du client</li>
+ * <li>{@link #getMaxRetainedObjects()} : maximum de ce nombre depuis le
+ * début de la connection</li>
+ * </ul>
+ * Un canal n'est utilisé que par le writer de son client, mais ses mesures
+ * peuvent être lues depuis n'importe quel thread.
+ *
+ * @author davidroussel
+ */
+public class MessageOutputChannel
+{
+	/**
+	 * Le flux de sortie vers le client
+	 */
+	private final OutputStream out;
+
+	/**
+	 * Le protocole utilisé pour envoyer les messages au client
+	 */
+	private final WireProtocol protocol;
+
+	/**
+	 * Nombre de trames écrites
+	 */
+	private volatile long frames;
+
+	/**
+	 * Nombre d'octets écrits (en-tête compris)
+	 */
+	private volatile long bytes;
+
+	/**
+	 * Nombre de remises à zéro de la table des références du client
+	 */
+	private volatile long resets;
+
+	/**
+	 * Nombre d'objets référencés par la table du client
+	 */
+	private volatile int retainedObjects;
+
+	/**
+	 * Nombre maximum d'objets référencés par la table du client
+	 */
+	private volatile int maxRetainedObjects;
+
+	/**
+	 * Constructeur d'un canal de sortie. Rien n'est écrit sur le flux avant
+	 * l'appel de {@link #writeHeader()}.
+	 * @param out le flux de sortie vers le client
+	 * @param protocol le protocole utilisé pour envoyer les messages au
+	 * client
+	 */
+	public MessageOutputChannel(OutputStream out, WireProtocol protocol)
+	{
+		this.out = out;
+		this.protocol = protocol;
+		frames = 0;
+		bytes = 0;
+		resets = 0;
+		retainedObjects = 0;
+		maxRetainedObjects = 0;
+	}
+
+	/**
+	 * Accesseur en lecture du protocole du canal
+	 * @return le protocole utilisé pour envoyer les messages au client
+	 */
+	public WireProtocol getProtocol()
+	{
+		return protocol;
+	}
+
+	/**
+	 * Ecriture (et envoi) de l'en-tête du flux correspondant au protocole, à
+	 * faire une fois avant toute trame
+	 * @throws IOException si l'écriture de l'en-tête échoue
+	 */
+	public void writeHeader() throws IOException
+	{
+		byte[] header = EncodedMessage.header(protocol);
+		out.write(header);
+		out.flush();
+		bytes += header.length;
+	}
+
+	/**
+	 * Ecriture de la trame d'un message (sans vider le flux)
+	 * @param message le message encodé à écrire
+	 * @throws IOException si l'encodage du message ou l'écriture échoue
+	 */
+	public void write(EncodedMessage message) throws IOException
+	{
+		message.writeTo(out, protocol);
+		bytes += message.size(protocol);
+		frames++;
+		if (protocol == WireProtocol.SERIALIZED)
+		{
+			// chaque trame commence par un TC_RESET
+			resets++;
+			int objects = message.objects(protocol);
+			retainedObjects = objects;
+			if (objects > maxRetainedObjects)
+			{
+				maxRetainedObjects = objects;
+			}
+		}
+	}
+
+	/**
+	 * Vidage du flux vers le client
+	 * @throws IOException si l'écriture échoue
+	 */
+	public void flush() throws IOException
+	{
+		out.flush();
+	}
+
+	/**
+	 * Fermeture du flux vers le client
+	 * @throws IOException si la fermeture échoue
+	 */
+	public void close() throws IOException
+	{
+		out.close();
+	}
+
+	/**
+	 * Nombre de trames écrites
+	 * @return le nombre de messages écrits sur le canal
+	 */
+	public long getFrames()
+	{
+		return frames;
+	}
+
+	/**
+	 * Nombre d'octets écrits
+	 * @return le nombre d'octets écrits sur le canal, en-tête compris
+	 */
+	public long getBytes()
+	{
+		return bytes;
+	}
+
+	/**
+	 * Nombre de remises à zéro de la table des références du client
+	 * @return le nombre de {@link ObjectStreamConstants#TC_RESET} écrits
+	 */
+	public long getResets()
+	{
+		return resets;
+	}
+
+	/**
+	 * Nombre d'objets actuellement référencés par la table du client,
+	 * c'est à dire les objets de la dernière trame (le serveur lui même ne
+	 * conserve aucune référence vers les messages envoyés)
+	 * @return le nombre d'objets conservés pour cette connection
+	 */
+	public int getRetainedObjects()
+	{
+		return retainedObjects;
+	}
+
+	/**
+	 * Nombre maximum d'objets référencés par la table du client depuis le
+	 * début de la connection
+	 * @return le maximum du nombre d'objets conservés pour cette connection
+	 */
+	public int getMaxRetainedObjects()
+	{
+		return maxRetainedObjects;
+	}
+
+	/**
+	 * Représentation des mesures du canal sous forme de chaine
+	 * @return une chaine décrivant les mesures du canal
+	 */
+	@Override
+	public String toString()
+	{
+		return protocol + " channel: " + frames + " frames, " + bytes
+		    + " bytes, " + resets + " resets, " + retainedObjects
+		    + " retained objects (max " + maxRetainedObjects + ")";
+	}
+}
@@ -0,0 +1,704 @@
+package chat.server;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import chat.MessageCodec;
+import chat.WireProtocol;
+import models.Message;
+
+/**
+ * Historique interrogeable des messages diffusés par un serveur, permettant
+ * de répondre aux requêtes ({@link HistoryQuery}) "messages de l'auteur X
+ * entre T1 et T2" ou "messages contenant le mot W" sans parcourir tous les
+ * messages.
+ * Les messages sont stockés dans des segments de {@link #SEGMENTSIZE}
+ * messages. Chaque segment contient :
+ * <ul>
+ * <li>le journal des trames {@link WireProtocol#BINARY} de ses messages,
+ * mises bout à bout dans un tableau d'octets</li>
+ * <li>un index temporel creux : pour chaque bloc de {@link #BLOCKSIZE}
+ * messages consécutifs, la position de sa première trame dans le journal,
+ * la date maximum de ses messages et de ceux des blocs précédents ainsi que
+ * la date minimum de ses messages et de ceux des blocs suivants</li>
+ * <li>un index des auteurs : pour chaque auteur, la liste croissante des
+ * numéros de ses messages dans le segment</li>
+ * <li>un index inversé des mots : pour chaque mot
+ * ({@link HistoryQuery#words(String)}), la liste croissante des numéros des
+ * messages qui le contiennent</li>
+ * </ul>
+ * Une requête parcourt les segments du plus récent au plus ancien, obtient
+ * les messages candidats grâce aux index (intersection des listes de
+ * l'auteur et du mot, restreinte aux blocs de l'intervalle de dates) et ne
+ * décode que les messages de la page demandée.
+ * Le nombre de messages conservés est borné : lorsque la capacité est
+ * atteinte, le plus ancien segment est abandonné.
+ * Les messages sont ajoutés par un seul thread (celui du
+ * {@link Sequencer}) alors que les requêtes peuvent être faites par
+ * n'importe quel thread.
+ *
+ * @author davidroussel
+ */
+public class MessageStore
+{
+	/**
+	 * Nombre maximum par défaut de messages conservés par un serveur : 0,
+	 * l'historique interrogeable n'est mis en place qu'à la demande
+	 * (chaque message conservé occupe environ 100 octets, soit environ
+	 * 100 Mo par million de messages)
+	 */
+	public final static int DEFAULTCAPACITY = 0;
+
+	/**
+	 * Nombre de messages d'un segment
+	 */
+	public final static int SEGMENTSIZE = 1 << 16;
+
+	/**
+	 * Nombre de messages d'un bloc de l'index temporel creux
+	 */
+	public final static int BLOCKSIZE = 64;
+
+	/**
+	 * Nombre par défaut de messages d'une page de résultats
+	 */
+	public final static int DEFAULTPAGESIZE = 20;
+
+	/**
+	 * Nombre maximum de segments conservés
+	 */
+	private final int maxSegments;
+
+	/**
+	 * Les segments, du plus ancien au plus récent
+	 */
+	private final ArrayDeque<Segment> segments;
+
+	/**
+	 * Verrou permettant des requêtes simultanées pendant lesquelles aucun
+	 * message ne peut être ajouté
+	 */
+	private final ReentrantReadWriteLock lock;
+
+	/**
+	 * Nombre total de messages ajoutés
+	 */
+	private long added;
+
+	/**
+	 * Nombre de messages abandonnés avec les plus anciens segments
+	 */
+	private long evicted;
+
+	/**
+	 * Constructeur d'un historique interrogeable
+	 * @param capacity le nombre maximum de messages conservés (arrondi au
+	 * multiple supérieur de {@link #SEGMENTSIZE})
+	 */
+	public MessageStore(int capacity)
+	{
+		maxSegments = Math.max(1, (capacity + SEGMENTSIZE - 1) / SEGMENTSIZE);
+		segments = new ArrayDeque<Segment>();
+		lock = new ReentrantReadWriteLock();
+		added = 0;
+		evicted = 0;
+	}
+
+	/**
+	 * Ajout d'un message à l'historique
+	 * @param message le message encodé à ajouter
+	 * @throws IOException si l'encodage du message échoue
+	 */
+	public void add(EncodedMessage message) throws IOException
+	{
+		ByteBuffer frame = message.buffer(WireProtocol.BINARY);
+		Message m = message.getMessage();
+		List<String> words = HistoryQuery.words(m.getContent());
+		lock.writeLock().lock();
+		try
+		{
+			Segment segment = segments.peekLast();
+			if ((segment == null) || segment.isFull())
+			{
+				segment = new Segment();
+				segments.addLast(segment);
+				if (segments.size() > maxSegments)
+				{
+					evicted += segments.removeFirst().count;
+				}
+			}
+			segment.add(frame, m, words);
+			added++;
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Recherche indexée des messages satisfaisant une requête
+	 * @param query la requête
+	 * @param pageSize le nombre de messages d'une page de résultats
+	 * @return les messages de la page demandée par la requête (la première
+	 * page contient les messages les plus récents), du plus ancien au plus
+	 * récent
+	 * @throws StreamCorruptedException si un message stocké ne peut être
+	 * décodé
+	 */
+	public List<Message> query(HistoryQuery query, int pageSize)
+		throws StreamCorruptedException
+	{
+		return search(query, pageSize, true);
+	}
+
+	/**
+	 * Recherche des messages satisfaisant une requête en décodant et en
+	 * vérifiant chacun des messages (sans utiliser les index). Le résultat
+	 * est le même que celui de {@link #query(HistoryQuery, int)}.
+	 * @param query la requête
+	 * @param pageSize le nombre de messages d'une page de résultats
+	 * @return les messages de la page demandée par la requête, du plus
+	 * ancien au plus récent
+	 * @throws StreamCorruptedException si un message stocké ne peut être
+	 * décodé
+	 */
+	public List<Message> scan(HistoryQuery query, int pageSize)
+		throws StreamCorruptedException
+	{
+		return search(query, pageSize, false);
+	}
+
+	/**
+	 * Nombre de messages conservés
+	 * @return le nombre de messages actuellement conservés
+	 */
+	public int size()
+	{
+		lock.readLock().lock();
+		try
+		{
+			int size = 0;
+			for (Segment segment : segments)
+			{
+				size += segment.count;
+			}
+			return size;
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Mémoire occupée (approximativement) par les messages et les index
+	 * @return une estimation du nombre d'octets occupés par l'historique
+	 */
+	public long getRetainedBytes()
+	{
+		lock.readLock().lock();
+		try
+		{
+			long bytes = 0;
+			for (Segment segment : segments)
+			{
+				bytes += segment.retainedBytes();
+			}
+			return bytes;
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Représentation des mesures de l'historique sous forme de chaine
+	 * @return une chaine décrivant l'occupation de l'historique
+	 */
+	@Override
+	public String toString()
+	{
+		lock.readLock().lock();
+		try
+		{
+			return "store: " + size() + " messages in " + segments.size()
+			    + " segments (" + added + " added, " + evicted
+			    + " evicted), " + getRetainedBytes() + " bytes";
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Recherche des messages satisfaisant une requête
+	 * @param query la requête
+	 * @param pageSize le nombre de messages d'une page de résultats
+	 * @param indexed true pour utiliser les index, false pour vérifier
+	 * chacun des messages
+	 * @return les messages de la page demandée, du plus ancien au plus récent
+	 * @throws StreamCorruptedException si un message stocké ne peut être
+	 * décodé
+	 */
+	private List<Message> search(HistoryQuery query, int pageSize,
+	                             boolean indexed)
+		throws StreamCorruptedException
+	{
+		int skip = (query.getPage() - 1) * pageSize;
+		List<Message> results = new ArrayList<Message>(pageSize);
+		lock.readLock().lock();
+		try
+		{
+			for (Iterator<Segment> it = segments.descendingIterator();
+			     it.hasNext() && (results.size() < pageSize);)
+			{
+				Segment segment = it.next();
+				skip = indexed
+				    ? segment.query(query, skip, pageSize, results)
+				    : segment.scan(query, skip, pageSize, results);
+			}
+		}
+		finally
+		{
+			lock.readLock().unlock();
+		}
+		Collections.reverse(results);
+		return results;
+	}
+
+	/**
+	 * Segment de l'historique : journal des trames de {@link #SEGMENTSIZE}
+	 * messages au plus et index de ces messages
+	 */
+	private static class Segment
+	{
+		/**
+		 * Le journal des trames des messages
+		 */
+		private byte[] log;
+
+		/**
+		 * Nombre d'octets utilisés dans le {@link #log}
+		 */
+		private int logSize;
+
+		/**
+		 * Nombre de messages du segment
+		 */
+		private int count;
+
+		/**
+		 * Position dans le {@link #log} de la première trame de chaque bloc
+		 */
+		private final int[] blockOffsets;
+
+		/**
+		 * Date maximum des messages de chaque bloc et de tous les blocs
+		 * précédents (valeurs croissantes permettant une recherche
+		 * dichotomique)
+		 */
+		private final long[] runningMax;
+
+		/**
+		 * Date minimum des messages de chaque bloc et de tous les blocs
+		 * suivants (valeurs croissantes permettant une recherche
+		 * dichotomique)
+		 */
+		private final long[] runningMin;
+
+		/**
+		 * Index des auteurs : numéros des messages de chaque auteur
+		 */
+		private final Map<String, IntList> authors;
+
+		/**
+		 * Index inversé des mots : numéros des messages contenant chaque mot
+		 */
+		private final Map<String, IntList> words;
+
+		/**
+		 * Constructeur d'un segment vide
+		 */
+		public Segment()
+		{
+			log = new byte[4096];
+			logSize = 0;
+			count = 0;
+			int blocks = SEGMENTSIZE / BLOCKSIZE;
+			blockOffsets = new int[blocks];
+			runningMax = new long[blocks];
+			runningMin = new long[blocks];
+			authors = new HashMap<String, IntList>();
+			words = new HashMap<String, IntList>();
+		}
+
+		/**
+		 * Indique si le segment est plein
+		 * @return true si le segment contient {@link #SEGMENTSIZE} messages
+		 */
+		public boolean isFull()
+		{
+			return count == SEGMENTSIZE;
+		}
+
+		/**
+		 * Ajout d'un message au segment
+		 * @param frame la trame du message
+		 * @param message le message
+		 * @param messageWords les mots du message
+		 */
+		public void add(ByteBuffer frame, Message message,
+		                List<String> messageWords)
+		{
+			int id = count++;
+			int block = id / BLOCKSIZE;
+			long date = message.getTimestamp();
+			if ((id % BLOCKSIZE) == 0)
+			{
+				blockOffsets[block] = logSize;
+				runningMax[block] = (block > 0) ? runningMax[block - 1] : date;
+				runningMin[block] = date;
+			}
+			runningMax[block] = Math.max(runningMax[block], date);
+			/*
+			 * Un message plus ancien que ceux des blocs précédents (dates non
+			 * croissantes, par exemple relues d'un ancien journal) abaisse la
+			 * date minimum de ces blocs
+			 */
+			for (int b = block; (b >= 0) && (runningMin[b] > date); b--)
+			{
+				runningMin[b] = date;
+			}
+
+			int size = frame.remaining();
+			if ((logSize + size) > log.length)
+			{
+				log = Arrays.copyOf(log,
+				                    Math.max(log.length * 2, logSize + size));
+			}
+			frame.get(log, logSize, size);
+			logSize += size;
+
+			if (message.hasAuthor())
+			{
+				index(authors, message.getAuthor(), id);
+			}
+			for (String word : messageWords)
+			{
+				index(words, word, id);
+			}
+		}
+
+		/**
+		 * Recherche indexée des messages du segment satisfaisant une requête,
+		 * du plus récent au plus ancien
+		 * @param query la requête
+		 * @param skip le nombre de messages satisfaisant la requête à ignorer
+		 * (ceux des pages précédentes)
+		 * @param pageSize le nombre de messages d'une page de résultats
+		 * @param results les résultats auxquels ajouter les messages trouvés
+		 * @return le nombre de messages restant à ignorer
+		 * @throws StreamCorruptedException si un message ne peut être décodé
+		 */
+		public int query(HistoryQuery query, int skip, int pageSize,
+		                 List<Message> results)
+			throws StreamCorruptedException
+		{
+			IntList byAuthor = null;
+			IntList byWord = null;
+			if (query.getAuthor() != null)
+			{
+				byAuthor = authors.get(query.getAuthor());
+				if (byAuthor == null)
+				{
+					return skip;
+				}
+			}
+			if (query.getWord() != null)
+			{
+				byWord = words.get(query.getWord());
+				if (byWord == null)
+				{
+					return skip;
+				}
+			}
+
+			/*
+			 * Intervalle des numéros de messages d'après l'index temporel :
+			 * aucun message postérieur à la date minimum n'est avant le
+			 * premier bloc dont la date maximum (cumulée) l'atteint, et aucun
+			 * message antérieur à la date maximum n'est à partir du premier
+			 * bloc dont la date minimum (cumulée) la dépasse
+			 */
+			int blocks = (count + BLOCKSIZE - 1) / BLOCKSIZE;
+			int low = firstBlock(runningMax, query.getFrom(), false, blocks)
+			    * BLOCKSIZE;
+			int high = Math.min(count,
+			    firstBlock(runningMin, query.getTo(), true, blocks)
+			    * BLOCKSIZE);
+
+			/*
+			 * Parcours des candidats du plus récent au plus ancien : la plus
+			 * courte des listes de l'auteur et du mot, vérifiée dans l'autre
+			 * liste
+			 */
+			IntList driver = byAuthor;
+			IntList other = byWord;
+			if ((driver == null) || ((other != null)
+			    && (other.size < driver.size)))
+			{
+				driver = byWord;
+				other = byAuthor;
+			}
+			int i = (driver != null) ? driver.lowerBound(high) - 1 : high - 1;
+			for (; (i >= 0) && (results.size() < pageSize); i--)
+			{
+				int id = (driver != null) ? driver.values[i] : i;
+				if (id < low)
+				{
+					break;
+				}
+				if ((other != null) && !other.contains(id))
+				{
+					continue;
+				}
+				int offset = -1;
+				if (query.hasDates())
+				{
+					offset = offsetOf(id);
+					long date = MessageCodec.readDate(log, offset);
+					if ((date < query.getFrom()) || (date > query.getTo()))
+					{
+						continue;
+					}
+				}
+				if (skip > 0)
+				{
+					skip--;
+					continue;
+				}
+				results.add(decode(offset >= 0 ? offset : offsetOf(id)));
+			}
+			return skip;
+		}
+
+		/**
+		 * Recherche sans index des messages du segment satisfaisant une
+		 * requête, du plus récent au plus ancien : chaque message est décodé
+		 * puis vérifié
+		 * @param query la requête
+		 * @param skip le nombre de messages satisfaisant la requête à ignorer
+		 * @param pageSize le nombre de messages d'une page de résultats
+		 * @param results les résultats auxquels ajouter les messages trouvés
+		 * @return le nombre de messages restant à ignorer
+		 * @throws StreamCorruptedException si un message ne peut être décodé
+		 */
+		public int scan(HistoryQuery query, int skip, int pageSize,
+		                List<Message> results)
+			throws StreamCorruptedException
+		{
+			List<Message> all = new ArrayList<Message>(count);
+			ByteBuffer buffer = ByteBuffer.wrap(log, 0, logSize);
+			Message message;
+			while ((message = MessageCodec.read(buffer)) != null)
+			{
+				all.add(message);
+			}
+			for (int i = all.size() - 1;
+			     (i >= 0) && (results.size() < pageSize); i--)
+			{
+				message = all.get(i);
+				if (query.matches(message))
+				{
+					if (skip > 0)
+					{
+						skip--;
+					}
+					else
+					{
+						results.add(message);
+					}
+				}
+			}
+			return skip;
+		}
+
+		/**
+		 * Mémoire occupée (approximativement) par le segment
+		 * @return une estimation du nombre d'octets occupés par le journal
+		 * et les index du segment
+		 */
+		public long retainedBytes()
+		{
+			long bytes = log.length + (blockOffsets.length * 20L);
+			for (IntList list : authors.values())
+			{
+				bytes += 64 + (list.values.length * 4L);
+			}
+			for (Map.Entry<String, IntList> entry : words.entrySet())
+			{
+				bytes += 64 + (entry.getKey().length() * 2L)
+				    + (entry.getValue().values.length * 4L);
+			}
+			return bytes;
+		}
+
+		/**
+		 * Premier bloc dont la date cumulée atteint ou dépasse une date
+		 * (recherche dichotomique dans {@link #runningMax} ou
+		 * {@link #runningMin})
+		 * @param bounds les dates cumulées (croissantes) des blocs
+		 * @param date la date
+		 * @param strict true pour chercher le premier bloc dont la date
+		 * cumulée est strictement supérieure à la date, false pour
+		 * supérieure ou égale
+		 * @param blocks le nombre de blocs du segment
+		 * @return le numéro du premier bloc ou bien blocks s'il n'y en a pas
+		 */
+		private int firstBlock(long[] bounds, long date, boolean strict,
+		                       int blocks)
+		{
+			int low = 0;
+			int high = blocks;
+			while (low < high)
+			{
+				int middle = (low + high) >>> 1;
+				if ((bounds[middle] > date)
+				    || (!strict && (bounds[middle] == date)))
+				{
+					high = middle;
+				}
+				else
+				{
+					low = middle + 1;
+				}
+			}
+			return low;
+		}
+
+		/**
+		 * Position de la trame d'un message dans le journal : position du
+		 * début de son bloc puis saut des trames précédentes du bloc
+		 * @param id le numéro du message
+		 * @return la position de la trame du message
+		 * @throws StreamCorruptedException si une trame est invalide
+		 */
+		private int offsetOf(int id) throws StreamCorruptedException
+		{
+			int offset = blockOffsets[id / BLOCKSIZE];
+			for (int skipped = id % BLOCKSIZE; skipped > 0; skipped--)
+			{
+				offset = MessageCodec.skip(log, offset);
+			}
+			return offset;
+		}
+
+		/**
+		 * Décodage d'un message
+		 * @param offset la position de la trame du message
+		 * @return le message décodé
+		 * @throws StreamCorruptedException si la trame est invalide
+		 */
+		private Message decode(int offset) throws StreamCorruptedException
+		{
+			return MessageCodec.read(
+			    ByteBuffer.wrap(log, offset, logSize - offset));
+		}
+
+		/**
+		 * Ajout d'un numéro de message à la liste d'une clé d'un index
+		 * @param index l'index
+		 * @param key la clé
+		 * @param id le numéro du message
+		 */
+		private static void index(Map<String, IntList> index, String key,
+		                          int id)
+		{
+			IntList list = index.get(key);
+			if (list == null)
+			{
+				list = new IntList();
+				index.put(key, list);
+			}
+			list.add(id);
+		}
+	}
+
+	/**
+	 * Liste croissante d'entiers stockés dans un tableau
+	 */
+	private static class IntList
+	{
+		/**
+		 * Les valeurs de la liste
+		 */
+		private int[] values = new int[4];
+
+		/**
+		 * Nombre de valeurs de la liste
+		 */
+		private int size = 0;
+
+		/**
+		 * Ajout d'une valeur supérieure à toutes les valeurs de la liste
+		 * @param value la valeur à ajouter
+		 */
+		public void add(int value)
+		{
+			if (size == values.length)
+			{
+				values = Arrays.copyOf(values, size * 2);
+			}
+			values[size++] = value;
+		}
+
+		/**
+		 * Position de la première valeur supérieure ou égale à une valeur
+		 * @param value la valeur
+		 * @return la position de la première valeur supérieure ou égale ou
+		 * bien le nombre de valeurs s'il n'y en a pas
+		 */
+		public int lowerBound(int value)
+		{
+			int low = 0;
+			int high = size;
+			while (low < high)
+			{
+				int middle = (low + high) >>> 1;
+				if (values[middle] < value)
+				{
+					low = middle + 1;
+				}
+				else
+				{
+					high = middle;
+				}
+			}
+			return low;
+		}
+
+		/**
+		 * Indique si la liste contient une valeur
+		 * @param value la valeur recherchée
+		 * @return true si la liste contient la valeur
+		 */
+		public boolean contains(int value)
+		{
+			int position = lowerBound(value);
+			return (position < size) && (values[position] == value);
+		}
+	}
+}
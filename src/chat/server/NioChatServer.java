@@ -0,0 +1,247 @@
+package chat.server;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.logging.Logger;
+
+import chat.Failure;
+
+/**
+ * Moteur de serveur de chat non bloquant. Contrairement au {@link ChatServer}
+ * qui utilise un thread (et un {@link ClientHandler}) par client, ce serveur
+ * utilise :
+ * <ul>
+ * <li>le thread exécutant {@link #run()} pour accepter les connections sur un
+ * {@link ServerSocketChannel}</li>
+ * <li>un nombre fixe de {@link NioWorker}s (chacun dans son propre thread et
+ * avec son propre {@link Selector}) auxquels sont répartis les clients
+ * acceptés et qui effectuent les lectures et écritures non bloquantes</li>
+ * </ul>
+ * Le protocole reste le même que celui du {@link ChatServer} : le client
+ * envoie son nom, puis des lignes de texte et reçoit en retour des
+ * {@link models.Message}s sérialisés.
+ *
+ * @author davidroussel
+ */
+public class NioChatServer extends AbstractChatServer
+{
+	/**
+	 * Nombre par défaut de threads d'I/O
+	 */
+	public final static int DEFAULTIOTHREADS =
+		Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+	/**
+	 * Le canal serveur sur lequel on accepte les connections
+	 */
+	private ServerSocketChannel serverChannel;
+
+	/**
+	 * Le sélecteur utilisé pour attendre les connections
+	 */
+	private Selector acceptSelector;
+
+	/**
+	 * Temps d'attente (en ms) d'une connection avant de réexaminer l'état
+	 * d'écoute du serveur
+	 */
+	private final int timeout;
+
+	/**
+	 * Les workers traitant les I/O des clients
+	 */
+	private final NioWorker[] workers;
+
+	/**
+	 * Index du prochain worker auquel confier un client accepté
+	 */
+	private int nextWorker;
+
+	/**
+	 * Constructeur valué d'un serveur de chat non bloquant
+	 * @param port le port sur lequel on écoute les requètes
+	 * @param timeout temps d'attente de connection d'un client
+	 * @param ioThreads nombre de threads d'I/O traitant les clients
+	 * @param quitOnLastClient quitte le serveur lorsque le dernier client
+	 * se délogue
+	 * @param parentLogger logger parent pour l'affichage des messages de
+	 * debug
+	 * @throws IOException Si une erreur intervient lors de la création du
+	 * {@link ServerSocketChannel} ou des {@link Selector}s
+	 */
+	public NioChatServer(int port,
+	                     int timeout,
+	                     int ioThreads,
+	                     boolean quitOnLastClient,
+	                     Logger parentLogger)
+		throws IOException
+	{
+		super(quitOnLastClient, parentLogger);
+		this.timeout = timeout;
+
+		logger.info("NioChatServer::NioChatServer(port = " + port
+		    + ", timeout = " + timeout + ", ioThreads = " + ioThreads
+		    + ", quit = " + (quitOnLastClient ? "true" : "false") + ")");
+
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.bind(new InetSocketAddress(port));
+		serverChannel.configureBlocking(false);
+		acceptSelector = Selector.open();
+		serverChannel.register(acceptSelector, SelectionKey.OP_ACCEPT);
+
+		workers = new NioWorker[Math.max(1, ioThreads)];
+		for (int i = 0; i < workers.length; i++)
+		{
+			workers[i] = new NioWorker(this, logger);
+		}
+		nextWorker = 0;
+	}
+
+	/**
+	 * Change l'état d'écoute du serveur et réveille le sélecteur d'acceptation
+	 * afin qu'il prenne en compte ce nouvel état
+	 * @param value la nouvelle valeur
+	 */
+	@Override
+	public synchronized void setListening(boolean value)
+	{
+		super.setListening(value);
+		acceptSelector.wakeup();
+	}
+
+	/**
+	 * Exécution du serveur de chat : lancement des threads des workers, puis
+	 * acceptation des connections tant que le serveur est en écoute. Chaque
+	 * connection acceptée est confiée à l'un des workers (à tour de rôle).
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run()
+	{
+		Thread[] workerThreads = new Thread[workers.length];
+		for (int i = 0; i < workers.length; i++)
+		{
+			workerThreads[i] = new Thread(workers[i], "NioWorker-" + i);
+			workerThreads[i].start();
+		}
+
+		startSequencer();
+		listening = true;
+
+		while (listening)
+		{
+			try
+			{
+				if (acceptSelector.select(timeout) == 0)
+				{
+					logger.fine("NioChatServer: select timeout, rewaiting ...");
+					continue;
+				}
+
+				for (Iterator<SelectionKey> it =
+				     acceptSelector.selectedKeys().iterator(); it.hasNext();)
+				{
+					SelectionKey key = it.next();
+					it.remove();
+					if (key.isValid() && key.isAcceptable())
+					{
+						SocketChannel channel;
+						while ((channel = serverChannel.accept()) != null)
+						{
+							logger.fine("NioChatServer: client connection accepted");
+							channel.configureBlocking(false);
+							workers[nextWorker].register(channel);
+							nextWorker = (nextWorker + 1) % workers.length;
+						}
+					}
+				}
+			}
+			catch (IOException e)
+			{
+				logger.severe(Failure.SERVER_CONNECTION.toString()
+				    + ": " + e.getLocalizedMessage());
+				System.exit(Failure.SERVER_CONNECTION.toInteger());
+			}
+		}
+
+		// Arrêt des workers et attente de la fin de leurs threads
+		for (NioWorker worker : workers)
+		{
+			worker.shutdown();
+		}
+		for (Thread t : workerThreads)
+		{
+			try
+			{
+				t.join();
+			}
+			catch (InterruptedException e)
+			{
+				logger.severe("NioChatServer::run: workers join interrupted");
+				logger.severe(e.getLocalizedMessage());
+			}
+		}
+
+		logger.info("NioChatServer::run: all workers terminated");
+
+		stopSequencer();
+		clients.clear();
+
+		// Fermeture du canal du serveur
+		logger.info("NioChatServer::run: Closing server channel ... ");
+		try
+		{
+			acceptSelector.close();
+			serverChannel.close();
+		}
+		catch (IOException e)
+		{
+			logger.severe("Close server channel Failed !");
+			logger.severe(e.getLocalizedMessage());
+		}
+	}
+
+	/**
+	 * Enregistrement d'un client dont on vient de recevoir le nom, à
+	 * condition qu'aucun autre client ne porte le même nom
+	 * @param client le client à enregistrer
+	 * @return true si le client a été enregistré, false si un autre client
+	 * porte déjà le même nom
+	 */
+	protected boolean register(NioClient client)
+	{
+		return addClient(client);
+	}
+
+	/**
+	 * Méthode invoquée par les {@link NioWorker}s lorsqu'un client enregistré
+	 * se déconnecte pour éventuellement arrêter le serveur lorsqu'il n'y a
+	 * plus de clients
+	 * @param client le client qui se déconnecte
+	 */
+	protected void unregister(NioClient client)
+	{
+		if (removeClient(client))
+		{
+			int nbClients = clients.size();
+			if (nbClients <= 0)
+			{
+				if (quitOnLastClient)
+				{
+					setListening(false);
+					logger.info("NioChatServer::run: no more clients.");
+				}
+			}
+			else
+			{
+				logger.info("NioChatServer::run: still " + nbClients +
+				            " clients remaining ...");
+			}
+		}
+	}
+}
@@ -0,0 +1,518 @@
+package chat.server;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+import chat.MessageCodec;
+import chat.Vocabulary;
+import chat.WireProtocol;
+import models.Message;
+
+/**
+ * Client du {@link NioChatServer}. Regroupe l'ensemble de l'état d'une
+ * connection non bloquante :
+ * <ul>
+ * <li>le canal du client et sa clé de sélection</li>
+ * <li>le tampon de lecture et la ligne en cours de lecture</li>
+ * <li>la file bornée ({@link OutboundQueue}) des messages en attente
+ * d'émission vers le client et le tampon en cours d'écriture</li>
+ * </ul>
+ * Les lectures et écritures sur le canal sont toujours effectuées par le
+ * thread du {@link NioWorker} auquel appartient le client, alors que
+ * {@link #sendMessage(EncodedMessage)} peut être appelé depuis n'importe quel
+ * thread.
+ *
+ * @author davidroussel
+ */
+class NioClient implements OutputClient
+{
+	/**
+	 * Taille initiale du tampon de lecture d'une ligne
+	 */
+	private final static int LINECAPACITY = 128;
+
+	/**
+	 * Charset utilisé pour décoder les lignes reçues et encoder le texte
+	 * envoyé (le même que celui des {@link java.io.InputStreamReader} du
+	 * {@link ChatServer})
+	 */
+	private final static Charset charset = Charset.defaultCharset();
+
+	/**
+	 * Le serveur auquel appartient ce client
+	 */
+	private final NioChatServer server;
+
+	/**
+	 * Le worker traitant les I/O de ce client
+	 */
+	private final NioWorker worker;
+
+	/**
+	 * Le canal du client
+	 */
+	private final SocketChannel channel;
+
+	/**
+	 * La clé de sélection du {@link #channel}
+	 */
+	private final SelectionKey key;
+
+	/**
+	 * Tampon de lecture des données en provenance du client
+	 */
+	private final ByteBuffer readBuffer;
+
+	/**
+	 * Octets de la ligne en cours de lecture
+	 */
+	private byte[] line;
+
+	/**
+	 * Nombre d'octets de la ligne en cours de lecture
+	 */
+	private int lineLength;
+
+	/**
+	 * Messages en attente d'émission vers le client
+	 */
+	private final OutboundQueue<EncodedMessage> outQueue;
+
+	/**
+	 * Tampon en cours d'écriture vers le client (null s'il n'y en a pas)
+	 */
+	private ByteBuffer pending;
+
+	/**
+	 * Indique que le client a été accepté par le serveur et que les messages
+	 * de la {@link #outQueue} peuvent lui être écrits
+	 */
+	private boolean accepted;
+
+	/**
+	 * Le protocole utilisé pour envoyer les messages au client
+	 */
+	private WireProtocol protocol;
+
+	/**
+	 * Le nom du client (null tant que celui ci n'a pas été reçu)
+	 */
+	private String name;
+
+	/**
+	 * Le client est prêt lorsqu'il a été enregistré auprès du serveur
+	 */
+	private volatile boolean ready;
+
+	/**
+	 * Etat de bannissement du client
+	 */
+	private volatile boolean banned;
+
+	/**
+	 * Indique que le client doit être fermé dès que la {@link #outQueue} a
+	 * été vidée
+	 */
+	private volatile boolean closing;
+
+	/**
+	 * Date de connection du client (en ns, voir {@link System#nanoTime()})
+	 */
+	private final long connected;
+
+	/**
+	 * logger pour afficher les messages de debug
+	 */
+	private final Logger logger;
+
+	/**
+	 * Constructeur d'un client non bloquant
+	 * @param server le serveur auquel appartient ce client
+	 * @param worker le worker traitant les I/O de ce client
+	 * @param channel le canal du client
+	 * @param key la clé de sélection du canal
+	 * @param logger logger pour l'affichage des messages de debug
+	 */
+	public NioClient(NioChatServer server,
+	                 NioWorker worker,
+	                 SocketChannel channel,
+	                 SelectionKey key,
+	                 Logger logger)
+	{
+		this.server = server;
+		this.worker = worker;
+		this.channel = channel;
+		this.key = key;
+		this.logger = logger;
+		readBuffer = ByteBuffer.allocate(LINECAPACITY);
+		line = new byte[LINECAPACITY];
+		lineLength = 0;
+		outQueue = server.newOutboundQueue();
+		pending = null;
+		accepted = false;
+		protocol = WireProtocol.SERIALIZED;
+		name = null;
+		ready = false;
+		banned = false;
+		closing = false;
+		connected = System.nanoTime();
+	}
+
+	/**
+	 * Accesseur en lecture du nom du client
+	 * @return le nom du client ou null s'il n'a pas encore été reçu
+	 */
+	@Override
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * Accesseur en lecture de l'état du client
+	 * @return true si le client a été enregistré et n'est pas encore fermé
+	 */
+	@Override
+	public boolean isReady()
+	{
+		return ready;
+	}
+
+	/**
+	 * Accesseur en lecture du protocole négocié avec le client
+	 * @return le protocole utilisé pour envoyer les messages au client
+	 */
+	@Override
+	public WireProtocol getProtocol()
+	{
+		return protocol;
+	}
+
+	/**
+	 * Accesseur en lecture de l'état de banissement
+	 * @return l'état de banissement
+	 */
+	@Override
+	public boolean isBanned()
+	{
+		return banned;
+	}
+
+	/**
+	 * Accesseur en écriture de l'état de banissement
+	 * @param banned l'état de banissement à mettre en place
+	 */
+	@Override
+	public void setBanned(boolean banned)
+	{
+		this.banned = banned;
+	}
+
+	/**
+	 * Envoi d'un message vers le client : le message est encodé puis déposé
+	 * dans la file d'émission du client
+	 * @param message le message à envoyer
+	 * @throws IOException si l'encodage du message échoue
+	 * @see #sendMessage(EncodedMessage)
+	 */
+	@Override
+	public void sendMessage(Message message) throws IOException
+	{
+		if (ready)
+		{
+			sendMessage(EncodedMessage.encode(message));
+		}
+	}
+
+	/**
+	 * Dépôt d'un message encodé dans la file d'émission du client et demande
+	 * d'écriture auprès du {@link #worker}. Si la file est pleine et que sa
+	 * politique l'exige, le client est déconnecté.
+	 * @param message le message encodé à envoyer
+	 * @throws IOException jamais : les erreurs d'écriture sont traitées par
+	 * le {@link #worker}
+	 */
+	@Override
+	public void sendMessage(EncodedMessage message) throws IOException
+	{
+		if (!ready)
+		{
+			return;
+		}
+		if (outQueue.offer(message))
+		{
+			worker.requestWrite(this);
+		}
+		else if (ready)
+		{
+			logger.warning("NioClient[" + name + "]: outbound queue overflow ("
+			    + outQueue.getPolicy() + "), disconnecting client");
+			disconnect();
+		}
+	}
+
+	/**
+	 * Rejeu de l'historique des messages [appelé par le thread du worker lors
+	 * de l'enregistrement du client] : les trames de l'historique sont
+	 * ajoutées à la suite de l'en-tête du flux dans le tampon en cours
+	 * d'écriture, de sorte que l'en-tête et l'historique soient envoyés en
+	 * une seule écriture avant les messages de la file d'émission
+	 * @param history les messages encodés de l'historique, du plus ancien au
+	 * plus récent
+	 */
+	@Override
+	public void replay(List<EncodedMessage> history)
+	{
+		try
+		{
+			int size = (pending != null) ? pending.remaining() : 0;
+			for (EncodedMessage message : history)
+			{
+				size += message.size(protocol);
+			}
+			ByteBuffer batch = ByteBuffer.allocate(size);
+			if (pending != null)
+			{
+				batch.put(pending);
+			}
+			for (EncodedMessage message : history)
+			{
+				batch.put(message.buffer(protocol));
+			}
+			batch.flip();
+			pending = batch;
+		}
+		catch (IOException e)
+		{
+			logger.warning("NioClient[" + name + "]: unable to replay history: "
+			    + e.getLocalizedMessage());
+		}
+	}
+
+	/**
+	 * Nombre de messages destinés à ce client qui ont été abandonnés parce
+	 * que sa file d'émission était pleine
+	 * @return le nombre de messages abandonnés
+	 */
+	@Override
+	public long getDroppedMessages()
+	{
+		return outQueue.getDropped();
+	}
+
+	/**
+	 * Déconnection du client (peut être appelé depuis n'importe quel thread) :
+	 * les messages en attente sont abandonnés et le client sera fermé par le
+	 * {@link #worker} dès que le tampon en cours d'écriture aura été écrit
+	 */
+	private void disconnect()
+	{
+		ready = false;
+		closing = true;
+		outQueue.close();
+		outQueue.clear();
+		worker.requestWrite(this);
+	}
+
+	/**
+	 * Lecture des données disponibles sur le canal et traitement de chacune
+	 * des lignes complètes reçues [appelé par le thread du worker]
+	 * @throws IOException si la lecture échoue ou que le client a fermé sa
+	 * connection
+	 */
+	void read() throws IOException
+	{
+		int count = channel.read(readBuffer);
+		if (count < 0)
+		{
+			throw new IOException("connection closed by client");
+		}
+
+		readBuffer.flip();
+		while (readBuffer.hasRemaining() && !closing)
+		{
+			byte b = readBuffer.get();
+			if (b == '\n')
+			{
+				int length = lineLength;
+				if ((length > 0) && (line[length - 1] == '\r'))
+				{
+					length--;
+				}
+				lineLength = 0;
+				processLine(new String(line, 0, length, charset));
+			}
+			else
+			{
+				if (lineLength == line.length)
+				{
+					line = Arrays.copyOf(line, line.length * 2);
+				}
+				line[lineLength++] = b;
+			}
+		}
+		readBuffer.clear();
+	}
+
+	/**
+	 * Indique si le client n'a toujours pas envoyé son nom après le temps
+	 * maximum du handshake
+	 * @param now la date courante (en ns, voir {@link System#nanoTime()})
+	 * @param timeout le temps maximum (en ns) d'attente du nom du client
+	 * @return true si le client n'a pas envoyé son nom à temps
+	 */
+	boolean isHandshakeExpired(long now, long timeout)
+	{
+		return (name == null) && !closing && ((now - connected) > timeout);
+	}
+
+	/**
+	 * Traitement d'une ligne reçue : la première ligne contient le nom du
+	 * client (éventuellement précédée d'une ligne de négociation du
+	 * protocole, voir {@link MessageCodec#negotiate(String)}), les suivantes
+	 * sont traitées par le serveur
+	 * @param input la ligne reçue
+	 * @throws IOException si la diffusion du message correspondant échoue
+	 */
+	private void processLine(String input) throws IOException
+	{
+		if (name == null)
+		{
+			WireProtocol requested = MessageCodec.negotiate(input);
+			if (requested != null)
+			{
+				protocol = requested;
+				logger.info("NioClient: protocol " + protocol);
+				return;
+			}
+			name = input;
+			logger.info("NioClient: client name " + name);
+			/*
+			 * Le flux de sérialisation (et son en-tête) est créé avant
+			 * l'enregistrement afin qu'aucun message diffusé juste après
+			 * l'enregistrement ne soit perdu
+			 */
+			pending = ByteBuffer.wrap(EncodedMessage.header(protocol));
+			accepted = true;
+			ready = true;
+			enableWrite();
+			if (!server.register(this)) // un client avec ce nom existe déjà
+			{
+				ready = false;
+				accepted = false;
+				outQueue.clear();
+				// on notifie au client qu'il est refusé
+				pending = ByteBuffer.wrap(
+				    ("server > Sorry another client already use the name "
+				    + name + Vocabulary.newLine
+				    + "Hit ^D to close your client and try another name"
+				    + Vocabulary.newLine).getBytes(charset));
+				finish();
+			}
+		}
+		else if (!server.handleInput(this, input))
+		{
+			finish();
+		}
+	}
+
+	/**
+	 * Fin de session du client : celui ci est retiré du serveur et sera
+	 * fermé dès que ses données en attente auront été écrites
+	 */
+	private void finish()
+	{
+		server.unregister(this);
+		closing = true;
+		worker.requestWrite(this);
+	}
+
+	/**
+	 * Ajout de l'intérêt en écriture à la clé du client [appelé par le thread
+	 * du worker]
+	 */
+	void enableWrite()
+	{
+		if (key.isValid())
+		{
+			key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+		}
+	}
+
+	/**
+	 * Ecriture des données en attente sur le canal [appelé par le thread du
+	 * worker] : le tampon en cours d'écriture puis les trames des messages
+	 * de la file d'émission. Lorsque toutes les données
+	 * ont été écrites on retire l'intérêt en écriture et le client est
+	 * éventuellement fermé.
+	 * @throws IOException si l'écriture échoue
+	 */
+	void flush() throws IOException
+	{
+		while (true)
+		{
+			if ((pending == null) || !pending.hasRemaining())
+			{
+				EncodedMessage message = (accepted ? outQueue.poll() : null);
+				if (message == null)
+				{
+					pending = null;
+					break;
+				}
+				pending = message.buffer(protocol);
+			}
+			channel.write(pending);
+			if (pending.hasRemaining())
+			{
+				// le tampon d'émission de la socket est plein
+				return;
+			}
+		}
+
+		key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+
+		if (closing)
+		{
+			worker.close(this);
+		}
+	}
+
+	/**
+	 * Nettoyage du client : fermeture de son canal (sans effet si celui ci
+	 * est déjà fermé)
+	 */
+	void cleanup()
+	{
+		if (!channel.isOpen())
+		{
+			// client déjà nettoyé
+			return;
+		}
+		ready = false;
+		closing = true;
+		outQueue.close();
+		long dropped = outQueue.getDropped();
+		if (dropped > 0)
+		{
+			logger.warning("NioClient[" + name + "]: " + dropped
+			    + " messages dropped");
+		}
+		logger.info("NioClient::cleanup: closing client channel ... ");
+		key.cancel();
+		try
+		{
+			channel.close();
+		}
+		catch (IOException e)
+		{
+			logger.severe("NioClient::cleanup: unable to close client channel");
+			logger.severe(e.getLocalizedMessage());
+		}
+	}
+}
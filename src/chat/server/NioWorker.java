@@ -0,0 +1,297 @@
+package chat.server;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import logger.LoggerFactory;
+
+/**
+ * Worker d'I/O du {@link NioChatServer}. Chaque worker possède son propre
+ * {@link Selector} sur lequel sont enregistrés les canaux des clients qui
+ * lui ont été confiés, et effectue dans son thread l'ensemble des lectures
+ * (et traitement des lignes lues) et des écritures non bloquantes de ces
+ * clients.
+ * Les demandes provenant d'autres threads (nouveaux canaux, données à écrire)
+ * sont déposées dans des files puis prises en compte par le thread du
+ * worker après un {@link Selector#wakeup()}.
+ * Les clients qui n'ont pas envoyé leur nom dans le temps imparti
+ * ({@link AbstractChatServer#getHandshakeTimeout()}) sont fermés.
+ *
+ * @author davidroussel
+ */
+class NioWorker implements Runnable
+{
+	/**
+	 * Le serveur auquel appartient ce worker
+	 */
+	private final NioChatServer server;
+
+	/**
+	 * Le sélecteur de ce worker
+	 */
+	private final Selector selector;
+
+	/**
+	 * Intervalle (en ms) de recherche des clients n'ayant pas envoyé leur
+	 * nom à temps
+	 */
+	private final static long SWEEPINTERVAL = 250;
+
+	/**
+	 * Les canaux nouvellement acceptés qu'il faut enregistrer sur le
+	 * {@link #selector}
+	 */
+	private final Queue<SocketChannel> pendingChannels;
+
+	/**
+	 * Les clients ayant des données en attente d'écriture
+	 */
+	private final Queue<NioClient> pendingWrites;
+
+	/**
+	 * Etat d'exécution du worker
+	 */
+	private volatile boolean running;
+
+	/**
+	 * Logger pour l'affichage des messages de debug
+	 */
+	private final Logger logger;
+
+	/**
+	 * Constructeur d'un worker
+	 * @param server le serveur auquel appartient ce worker
+	 * @param parentLogger logger parent pour l'affichage des messages de debug
+	 * @throws IOException si le {@link Selector} ne peut être créé
+	 */
+	public NioWorker(NioChatServer server, Logger parentLogger)
+		throws IOException
+	{
+		this.server = server;
+		selector = Selector.open();
+		pendingChannels = new ConcurrentLinkedQueue<SocketChannel>();
+		pendingWrites = new ConcurrentLinkedQueue<NioClient>();
+		running = true;
+		logger = LoggerFactory.getParentLogger(getClass(),
+		                                       parentLogger,
+		                                       parentLogger.getLevel());
+	}
+
+	/**
+	 * Confie un nouveau canal client à ce worker (peut être appelé depuis
+	 * n'importe quel thread)
+	 * @param channel le canal du client (non bloquant)
+	 */
+	public void register(SocketChannel channel)
+	{
+		pendingChannels.add(channel);
+		selector.wakeup();
+	}
+
+	/**
+	 * Signale qu'un client a des données en attente d'écriture (peut être
+	 * appelé depuis n'importe quel thread)
+	 * @param client le client à traiter
+	 */
+	public void requestWrite(NioClient client)
+	{
+		pendingWrites.add(client);
+		selector.wakeup();
+	}
+
+	/**
+	 * Demande l'arrêt du worker
+	 */
+	public void shutdown()
+	{
+		running = false;
+		selector.wakeup();
+	}
+
+	/**
+	 * Boucle de traitement des évènements du {@link #selector}
+	 * @see java.lang.Runnable#run()
+	 */
+	@Override
+	public void run()
+	{
+		long handshakeTimeout =
+			TimeUnit.MILLISECONDS.toNanos(server.getHandshakeTimeout());
+		long nextSweep = System.nanoTime();
+		while (running)
+		{
+			try
+			{
+				if (handshakeTimeout > 0)
+				{
+					selector.select(SWEEPINTERVAL);
+				}
+				else
+				{
+					selector.select();
+				}
+			}
+			catch (IOException e)
+			{
+				logger.severe("NioWorker: select failed: "
+				    + e.getLocalizedMessage());
+				break;
+			}
+
+			registerPendingChannels();
+			processPendingWrites();
+			if ((handshakeTimeout > 0) && (System.nanoTime() - nextSweep >= 0))
+			{
+				closeExpiredHandshakes(handshakeTimeout);
+				nextSweep = System.nanoTime()
+				    + TimeUnit.MILLISECONDS.toNanos(SWEEPINTERVAL);
+			}
+
+			for (Iterator<SelectionKey> it =
+			     selector.selectedKeys().iterator(); it.hasNext();)
+			{
+				SelectionKey key = it.next();
+				it.remove();
+				NioClient client = (NioClient) key.attachment();
+				try
+				{
+					if (key.isValid() && key.isReadable())
+					{
+						client.read();
+					}
+					if (key.isValid() && key.isWritable())
+					{
+						client.flush();
+					}
+				}
+				catch (CancelledKeyException cke)
+				{
+					close(client);
+				}
+				catch (IOException e)
+				{
+					logger.warning("NioWorker: I/O failed for client "
+					    + client.getName() + ": " + e.getLocalizedMessage());
+					close(client);
+				}
+			}
+		}
+
+		/*
+		 * Fermeture de l'ensemble des clients restants après une dernière
+		 * tentative d'écriture de leurs données en attente (comme le message
+		 * de départ du dernier client)
+		 */
+		for (SelectionKey key : selector.keys())
+		{
+			NioClient client = (NioClient) key.attachment();
+			try
+			{
+				if (key.isValid())
+				{
+					client.flush();
+				}
+			}
+			catch (IOException | CancelledKeyException e)
+			{
+				logger.fine("NioWorker: last flush failed for client "
+				    + client.getName());
+			}
+			close(client);
+		}
+		try
+		{
+			selector.close();
+		}
+		catch (IOException e)
+		{
+			logger.severe("NioWorker: closing selector failed");
+			logger.severe(e.getLocalizedMessage());
+		}
+	}
+
+	/**
+	 * Enregistrement des canaux nouvellement acceptés sur le {@link #selector}
+	 */
+	private void registerPendingChannels()
+	{
+		SocketChannel channel;
+		while ((channel = pendingChannels.poll()) != null)
+		{
+			try
+			{
+				SelectionKey key = channel.register(selector,
+				                                    SelectionKey.OP_READ);
+				key.attach(new NioClient(server, this, channel, key, logger));
+			}
+			catch (IOException e)
+			{
+				logger.warning("NioWorker: unable to register client channel: "
+				    + e.getLocalizedMessage());
+				try
+				{
+					channel.close();
+				}
+				catch (IOException e1)
+				{
+					logger.warning(e1.getLocalizedMessage());
+				}
+			}
+		}
+	}
+
+	/**
+	 * Fermeture des clients qui n'ont pas envoyé leur nom à temps
+	 * @param timeout le temps maximum (en ns) d'attente du nom d'un client
+	 */
+	private void closeExpiredHandshakes(long timeout)
+	{
+		long now = System.nanoTime();
+		for (SelectionKey key : selector.keys())
+		{
+			NioClient client = (NioClient) key.attachment();
+			if ((client != null) && client.isHandshakeExpired(now, timeout))
+			{
+				logger.warning("NioWorker: no client name within "
+				    + TimeUnit.NANOSECONDS.toMillis(timeout)
+				    + " ms, closing connection");
+				close(client);
+			}
+		}
+	}
+
+	/**
+	 * Prise en compte des demandes d'écriture : on ajoute l'intérêt en
+	 * écriture aux clients concernés
+	 */
+	private void processPendingWrites()
+	{
+		NioClient client;
+		while ((client = pendingWrites.poll()) != null)
+		{
+			client.enableWrite();
+		}
+	}
+
+	/**
+	 * Fermeture d'un client : celui ci est retiré du serveur et son canal
+	 * fermé
+	 * @param client le client à fermer
+	 */
+	void close(NioClient client)
+	{
+		if (client != null)
+		{
+			server.unregister(client);
+			client.cleanup();
+		}
+	}
+}
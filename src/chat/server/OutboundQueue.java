@@ -0,0 +1,347 @@
+package chat.server;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * File bornée des éléments en attente d'émission vers un client. Les
+ * éléments sont déposés par les threads diffusant les messages
+ * ({@link #offer(Object)}) et retirés par l'unique "writer" du client
+ * ({@link #take()} ou {@link #poll()}), de sorte que la diffusion d'un
+ * message ne dépende plus de la vitesse de lecture du client le plus lent.
+ * Lorsque la file est pleine, l'{@link OverflowPolicy} de la file détermine
+ * si l'on abandonne le plus ancien élément, si l'on déconnecte le client ou
+ * si l'on attend qu'une place se libère.
+ *
+ * @param <E> le type des éléments de la file
+ * @author davidroussel
+ */
+public class OutboundQueue<E>
+{
+	/**
+	 * Capacité par défaut des files d'émission
+	 */
+	public final static int DEFAULTCAPACITY = 256;
+
+	/**
+	 * Politique par défaut lorsque la file est pleine
+	 */
+	public final static OverflowPolicy DEFAULTPOLICY = OverflowPolicy.DROP_OLDEST;
+
+	/**
+	 * Temps d'attente maximum (en ms) d'une place dans la file avec la
+	 * politique {@link OverflowPolicy#BLOCK}
+	 */
+	public final static long DEFAULTBLOCKTIMEOUT = 1000;
+
+	/**
+	 * Les éléments en attente
+	 */
+	private final ArrayDeque<E> elements;
+
+	/**
+	 * Capacité maximale de la file
+	 */
+	private final int capacity;
+
+	/**
+	 * Politique à appliquer lorsque la file est pleine
+	 */
+	private final OverflowPolicy policy;
+
+	/**
+	 * Temps d'attente maximum (en ms) d'une place dans la file avec la
+	 * politique {@link OverflowPolicy#BLOCK}
+	 */
+	private final long blockTimeout;
+
+	/**
+	 * Verrou protégeant la file
+	 */
+	private final ReentrantLock lock;
+
+	/**
+	 * Condition signalée lorsque la file n'est plus vide
+	 */
+	private final Condition notEmpty;
+
+	/**
+	 * Condition signalée lorsque la file n'est plus pleine
+	 */
+	private final Condition notFull;
+
+	/**
+	 * Etat de fermeture de la file
+	 */
+	private boolean closed;
+
+	/**
+	 * Nombre d'éléments abandonnés parce que la file était pleine
+	 */
+	private long dropped;
+
+	/**
+	 * Nombre de fois où la file a été trouvée pleine
+	 */
+	private long overflows;
+
+	/**
+	 * Constructeur d'une file d'émission
+	 * @param capacity la capacité maximale de la file
+	 * @param policy la politique à appliquer lorsque la file est pleine
+	 * @param blockTimeout le temps d'attente maximum (en ms) d'une place
+	 * dans la file avec la politique {@link OverflowPolicy#BLOCK}
+	 */
+	public OutboundQueue(int capacity, OverflowPolicy policy, long blockTimeout)
+	{
+		this.capacity = Math.max(1, capacity);
+		this.policy = policy;
+		this.blockTimeout = blockTimeout;
+		elements = new ArrayDeque<E>(Math.min(this.capacity, 16));
+		lock = new ReentrantLock();
+		notEmpty = lock.newCondition();
+		notFull = lock.newCondition();
+		closed = false;
+		dropped = 0;
+		overflows = 0;
+	}
+
+	/**
+	 * Constructeur d'une file d'émission utilisant le temps d'attente par
+	 * défaut {@link #DEFAULTBLOCKTIMEOUT}
+	 * @param capacity la capacité maximale de la file
+	 * @param policy la politique à appliquer lorsque la file est pleine
+	 */
+	public OutboundQueue(int capacity, OverflowPolicy policy)
+	{
+		this(capacity, policy, DEFAULTBLOCKTIMEOUT);
+	}
+
+	/**
+	 * Dépôt d'un élément dans la file en appliquant la {@link #policy} si
+	 * celle ci est pleine
+	 * @param element l'élément à déposer
+	 * @return true si l'élément a été déposé (éventuellement au détriment du
+	 * plus ancien élément), false si la file est fermée ou bien si le client
+	 * doit être déconnecté
+	 */
+	public boolean offer(E element)
+	{
+		lock.lock();
+		try
+		{
+			if (closed)
+			{
+				return false;
+			}
+			if (elements.size() >= capacity)
+			{
+				overflows++;
+				switch (policy)
+				{
+					case DROP_OLDEST:
+						elements.poll();
+						dropped++;
+						break;
+					case BLOCK:
+						long remaining =
+							TimeUnit.MILLISECONDS.toNanos(blockTimeout);
+						while ((elements.size() >= capacity) && !closed)
+						{
+							if (remaining <= 0)
+							{
+								dropped++;
+								return false;
+							}
+							try
+							{
+								remaining = notFull.awaitNanos(remaining);
+							}
+							catch (InterruptedException e)
+							{
+								Thread.currentThread().interrupt();
+								dropped++;
+								return false;
+							}
+						}
+						if (closed)
+						{
+							return false;
+						}
+						break;
+					case DISCONNECT:
+					default:
+						dropped++;
+						return false;
+				}
+			}
+			elements.add(element);
+			notEmpty.signal();
+			return true;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Retrait (bloquant) du prochain élément de la file
+	 * @return le prochain élément de la file ou bien null si la file a été
+	 * fermée et qu'il n'y a plus d'éléments en attente
+	 * @throws InterruptedException si l'attente est interrompue
+	 */
+	public E take() throws InterruptedException
+	{
+		lock.lock();
+		try
+		{
+			while (elements.isEmpty() && !closed)
+			{
+				notEmpty.await();
+			}
+			E element = elements.poll();
+			if (element != null)
+			{
+				notFull.signal();
+			}
+			return element;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Retrait (non bloquant) du prochain élément de la file
+	 * @return le prochain élément de la file ou bien null si la file est
+	 * vide
+	 */
+	public E poll()
+	{
+		lock.lock();
+		try
+		{
+			E element = elements.poll();
+			if (element != null)
+			{
+				notFull.signal();
+			}
+			return element;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Fermeture de la file : plus aucun élément ne peut y être déposé, les
+	 * éléments déjà en attente peuvent encore être retirés (utiliser
+	 * {@link #clear()} pour les abandonner) et les threads en attente sur la
+	 * file sont réveillés
+	 */
+	public void close()
+	{
+		lock.lock();
+		try
+		{
+			closed = true;
+			notEmpty.signalAll();
+			notFull.signalAll();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Vidage de la file sans la fermer
+	 */
+	public void clear()
+	{
+		lock.lock();
+		try
+		{
+			elements.clear();
+			notFull.signalAll();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Nombre d'éléments en attente
+	 * @return le nombre d'éléments en attente dans la file
+	 */
+	public int size()
+	{
+		lock.lock();
+		try
+		{
+			return elements.size();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Accesseur en lecture de la capacité de la file
+	 * @return la capacité maximale de la file
+	 */
+	public int getCapacity()
+	{
+		return capacity;
+	}
+
+	/**
+	 * Accesseur en lecture de la politique de la file
+	 * @return la politique appliquée lorsque la file est pleine
+	 */
+	public OverflowPolicy getPolicy()
+	{
+		return policy;
+	}
+
+	/**
+	 * Nombre d'éléments abandonnés
+	 * @return le nombre d'éléments abandonnés parce que la file était pleine
+	 */
+	public long getDropped()
+	{
+		lock.lock();
+		try
+		{
+			return dropped;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Nombre de débordements
+	 * @return le nombre de fois où la file a été trouvée pleine
+	 */
+	public long getOverflows()
+	{
+		lock.lock();
+		try
+		{
+			return overflows;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package chat.server;
+
+import java.io.IOException;
+import java.util.List;
+
+import chat.WireProtocol;
+import models.Message;
+
+/**
+ * Interface commune à tous les clients auxquels le serveur peut diffuser des
+ * {@link Message}s, quel que soit le moteur du serveur utilisé
+ * ({@link ChatServer} avec un thread par client ou {@link NioChatServer}
+ * avec un {@link java.nio.channels.Selector}).
+ *
+ * @author davidroussel
+ */
+public interface OutputClient
+{
+	/**
+	 * Accesseur en lecture du nom du client
+	 * @return le nom du client
+	 */
+	public String getName();
+
+	/**
+	 * Indique si le client est prêt à recevoir des messages
+	 * @return true si le client est prêt à recevoir des messages
+	 */
+	public boolean isReady();
+
+	/**
+	 * Accesseur en lecture du protocole négocié avec le client. Seuls les
+	 * clients {@link WireProtocol#BINARY} reçoivent les évènements de
+	 * présence ({@link Message#isPresence()}).
+	 * @return le protocole utilisé pour envoyer les messages au client
+	 */
+	public WireProtocol getProtocol();
+
+	/**
+	 * Accesseur en lecture de l'état de banissement
+	 * @return l'état de banissement
+	 */
+	public boolean isBanned();
+
+	/**
+	 * Accesseur en écriture de l'état de banissement
+	 * @param banned l'état de banissement à mettre en place
+	 */
+	public void setBanned(boolean banned);
+
+	/**
+	 * Envoi d'un message vers le client
+	 * @param message le message à envoyer
+	 * @throws IOException si l'envoi du message échoue
+	 */
+	public void sendMessage(Message message) throws IOException;
+
+	/**
+	 * Envoi d'un message déjà encodé vers le client. Un même message encodé
+	 * peut être envoyé à plusieurs clients.
+	 * @param message le message encodé à envoyer
+	 * @throws IOException si l'envoi du message échoue
+	 */
+	public void sendMessage(EncodedMessage message) throws IOException;
+
+	/**
+	 * Rejeu de l'historique des messages à un client qui vient d'être
+	 * enregistré : les messages doivent lui être envoyés avant tout autre
+	 * message, si possible en une seule écriture
+	 * @param history les messages encodés de l'historique, du plus ancien au
+	 * plus récent
+	 */
+	public void replay(List<EncodedMessage> history);
+
+	/**
+	 * Nombre de messages destinés à ce client qui ont été abandonnés parce
+	 * que sa file d'émission était pleine
+	 * @return le nombre de messages abandonnés
+	 */
+	public long getDroppedMessages();
+}
@@ -0,0 +1,65 @@
+package chat.server;
+
+/**
+ * Politiques appliquées lorsque la file d'émission ({@link OutboundQueue})
+ * d'un client est pleine, c'est à dire lorsque le client ne lit pas ses
+ * messages aussi vite qu'ils sont diffusés
+ *
+ * @author davidroussel
+ */
+public enum OverflowPolicy
+{
+	/**
+	 * Le plus ancien message en attente est abandonné pour faire de la place
+	 * au nouveau message
+	 */
+	DROP_OLDEST,
+	/**
+	 * Le client est déconnecté
+	 */
+	DISCONNECT,
+	/**
+	 * L'émetteur attend qu'une place se libère dans la file pendant au plus
+	 * un certain temps, au delà duquel le client est déconnecté. Réservée aux
+	 * files dont chaque émetteur peut attendre sans retarder les autres
+	 * destinataires : le serveur, qui diffuse tous les messages depuis le
+	 * thread de son {@link Sequencer}, la refuse.
+	 */
+	BLOCK;
+
+	/**
+	 * Affichage sous forme de texte des politiques possibles
+	 */
+	@Override
+	public String toString()
+	{
+		switch (this)
+		{
+			case DROP_OLDEST:
+				return new String("drop");
+			case DISCONNECT:
+				return new String("disconnect");
+			case BLOCK:
+				return new String("block");
+		}
+		throw new AssertionError("OverflowPolicy: unknown policy: " + this);
+	}
+
+	/**
+	 * Conversion d'une chaine de caractères en politique
+	 * @param value la chaine à convertir ("drop", "disconnect" ou "block")
+	 * @return la politique correspondante ou bien null si la chaine ne
+	 * correspond à aucune politique
+	 */
+	public static OverflowPolicy fromString(String value)
+	{
+		for (OverflowPolicy policy : values())
+		{
+			if (policy.toString().equals(value))
+			{
+				return policy;
+			}
+		}
+		return null;
+	}
+}
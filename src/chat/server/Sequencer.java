@@ -0,0 +1,284 @@
+package chat.server;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.logging.Logger;
+
+import logger.LoggerFactory;
+import models.Message;
+
+/**
+ * Séquenceur des diffusions d'un serveur : unique thread par lequel passent
+ * tous les messages diffusés. Les threads traitant les clients déposent
+ * leurs messages ({@link #submit(Message)}) puis le séquenceur, dans l'ordre
+ * des dépôts, attribue à chaque message un numéro de séquence strictement
+ * croissant ainsi qu'une date de diffusion ne décroissant jamais
+ * ({@link Message#withSequence(long, long)}) et le diffuse à l'ensemble
+ * des clients ({@link AbstractChatServer#dispatch(Message)}).
+ * Les messages étant datés par les threads des clients, deux messages datés
+ * à quelques ms d'intervalle pourraient sinon être séquencés dans l'ordre
+ * inverse de leurs dates : les dates des messages diffusés sont donc
+ * croissantes (au sens large) avec leurs numéros de séquence.
+ * Tous les clients reçoivent donc les messages dans le même ordre (celui des
+ * numéros de séquence) sans qu'aucun verrou global ne soit pris par les
+ * threads des clients.
+ * Le nombre de messages en attente est borné : au delà, les threads qui
+ * déposent des messages attendent que le séquenceur en ait diffusé.
+ *
+ * @author davidroussel
+ */
+public class Sequencer implements Runnable
+{
+	/**
+	 * Nombre maximum par défaut de messages en attente de diffusion
+	 */
+	public final static int DEFAULTCAPACITY = 4096;
+
+	/**
+	 * Le serveur diffusant les messages
+	 */
+	private final AbstractChatServer server;
+
+	/**
+	 * Les messages en attente de diffusion
+	 */
+	private final ArrayDeque<Message> pending;
+
+	/**
+	 * Nombre maximum de messages en attente de diffusion
+	 */
+	private final int capacity;
+
+	/**
+	 * Dernier numéro de séquence attribué
+	 */
+	private long sequence;
+
+	/**
+	 * Date (en ms) du dernier message séquencé
+	 */
+	private long timestamp;
+
+	/**
+	 * Nombre de messages déposés
+	 */
+	private long submitted;
+
+	/**
+	 * Nombre de messages diffusés
+	 */
+	private long dispatched;
+
+	/**
+	 * Etat de fermeture du séquenceur
+	 */
+	private boolean closed;
+
+	/**
+	 * Indique que le thread du séquenceur est terminé
+	 */
+	private boolean stopped;
+
+	/**
+	 * Logger pour l'affichage des messages de debug
+	 */
+	private final Logger logger;
+
+	/**
+	 * Constructeur d'un séquenceur
+	 * @param server le serveur diffusant les messages
+	 * @param capacity nombre maximum de messages en attente de diffusion
+	 * @param parentLogger logger parent pour l'affichage des messages de
+	 * debug
+	 */
+	public Sequencer(AbstractChatServer server,
+	                 int capacity,
+	                 Logger parentLogger)
+	{
+		this.server = server;
+		this.capacity = Math.max(1, capacity);
+		pending = new ArrayDeque<Message>();
+		sequence = 0;
+		timestamp = 0;
+		submitted = 0;
+		dispatched = 0;
+		closed = false;
+		stopped = false;
+		logger = LoggerFactory.getParentLogger(getClass(),
+		                                       parentLogger,
+		                                       parentLogger.getLevel());
+	}
+
+	/**
+	 * Dépôt d'un message à diffuser. Si le thread du séquenceur est terminé
+	 * le message est séquencé et diffusé directement par le thread appelant.
+	 * @param message le message à diffuser
+	 * @return le ticket du message à utiliser avec
+	 * {@link #awaitDispatched(long)}
+	 * @throws IOException si le thread du séquenceur est terminé et que la
+	 * diffusion échoue
+	 */
+	public synchronized long submit(Message message) throws IOException
+	{
+		while (!closed && (pending.size() >= capacity))
+		{
+			try
+			{
+				wait();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		long ticket = ++submitted;
+		if (stopped)
+		{
+			server.dispatch(stamp(message));
+			dispatched++;
+			notifyAll();
+		}
+		else
+		{
+			pending.add(message);
+			notifyAll();
+		}
+		return ticket;
+	}
+
+	/**
+	 * Attente de la diffusion d'un message
+	 * @param ticket le ticket du message obtenu avec {@link #submit(Message)}
+	 */
+	public synchronized void awaitDispatched(long ticket)
+	{
+		while (dispatched < ticket)
+		{
+			try
+			{
+				wait();
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Fermeture du séquenceur : les messages en attente (ou déposés avant la
+	 * fin du thread du séquenceur) seront encore diffusés, puis le thread du
+	 * séquenceur se terminera. Les messages déposés ensuite sont diffusés
+	 * directement par les threads qui les déposent.
+	 */
+	public synchronized void close()
+	{
+		closed = true;
+		notifyAll();
+	}
+
+	/**
+	 * Reprise de la numérotation après un numéro de séquence (par exemple
+	 * celui du dernier message d'un journal), à appeler avant le lancement
+	 * du thread du séquenceur
+	 * @param last le dernier numéro de séquence déjà attribué
+	 * @param lastTimestamp la date (en ms) du dernier message déjà séquencé,
+	 * en deçà de laquelle aucun message ne sera daté
+	 */
+	public synchronized void setSequence(long last, long lastTimestamp)
+	{
+		sequence = Math.max(sequence, last);
+		timestamp = Math.max(timestamp, lastTimestamp);
+	}
+
+	/**
+	 * Séquencement d'un message : attribution du numéro de séquence suivant
+	 * et d'une date de diffusion (la date courante, ou bien celle du message
+	 * précédent si l'horloge a reculé) [appelé avec le verrou du séquenceur]
+	 * @param message le message à séquencer
+	 * @return une copie séquencée et datée du message
+	 */
+	private Message stamp(Message message)
+	{
+		timestamp = Math.max(timestamp, System.currentTimeMillis());
+		return message.withSequence(++sequence, timestamp);
+	}
+
+	/**
+	 * Dernier numéro de séquence attribué
+	 * @return le numéro de séquence du dernier message diffusé
+	 */
+	public synchronized long getSequence()
+	{
+		return sequence;
+	}
+
+	/**
+	 * Boucle de diffusion des messages déposés jusqu'à la fermeture du
+	 * séquenceur
+	 */
+	@Override
+	public void run()
+	{
+		ArrayDeque<Message> batch = new ArrayDeque<Message>();
+		while (true)
+		{
+			synchronized (this)
+			{
+				while (pending.isEmpty() && !closed)
+				{
+					try
+					{
+						wait();
+					}
+					catch (InterruptedException e)
+					{
+						logger.warning("Sequencer: interrupted");
+						closed = true;
+					}
+				}
+				if (pending.isEmpty())
+				{
+					stopped = true;
+					notifyAll();
+					break;
+				}
+				// on récupère tous les messages en attente d'un coup
+				batch.addAll(pending);
+				pending.clear();
+				notifyAll();
+			}
+
+			Message message;
+			while ((message = batch.poll()) != null)
+			{
+				/*
+				 * Seul ce thread attribue les numéros de séquence tant qu'il
+				 * n'est pas terminé
+				 */
+				synchronized (this)
+				{
+					message = stamp(message);
+				}
+				try
+				{
+					server.dispatch(message);
+				}
+				catch (IOException e)
+				{
+					logger.warning("Sequencer: dispatch of message "
+					    + message.getSequence() + " failed: "
+					    + e.getLocalizedMessage());
+				}
+				synchronized (this)
+				{
+					dispatched++;
+					notifyAll();
+				}
+			}
+		}
+		logger.info("Sequencer: terminated after " + sequence + " messages");
+	}
+}
@@ -0,0 +1,186 @@
+package examples;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import chat.WireProtocol;
+import chat.server.EncodedMessage;
+import models.Message;
+
+/**
+ * Comparaison du coût CPU de la diffusion d'un message à N clients :
+ * <ul>
+ * <li>legacy : le message est sérialisé dans l'{@link ObjectOutputStream} de
+ * chacun des clients (comportement historique du serveur)</li>
+ * <li>once : le message est sérialisé une seule fois
+ * ({@link EncodedMessage}) et la même trame est écrite pour chacun des
+ * clients</li>
+ * <li>binary : le message est encodé une seule fois au format binaire
+ * ({@link WireProtocol#BINARY}) et la même trame est écrite pour chacun des
+ * clients</li>
+ * </ul>
+ * Les flux des clients sont remplacés par des flux ignorant les octets reçus
+ * afin de ne mesurer que le coût de la diffusion elle même.
+ * <pre>
+ * java examples.BroadcastBenchmark [--broadcasts N] [--size S]
+ * </pre>
+ * @author davidroussel
+ */
+public class BroadcastBenchmark
+{
+	/**
+	 * Nombres de clients testés
+	 */
+	private final static int[] CLIENTS = {10, 100, 1000};
+
+	/**
+	 * Flux de sortie ignorant les octets écrits
+	 */
+	private static class NullOutputStream extends OutputStream
+	{
+		@Override
+		public void write(int b)
+		{
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len)
+		{
+		}
+	}
+
+	/**
+	 * Diffusion de messages avec une sérialisation par client
+	 * @param nbClients nombre de clients
+	 * @param broadcasts nombre de messages diffusés
+	 * @param content contenu des messages
+	 * @return le temps CPU moyen (en ns) d'une diffusion
+	 * @throws IOException si la sérialisation échoue
+	 */
+	private static double legacy(int nbClients, int broadcasts, String content)
+		throws IOException
+	{
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		NullOutputStream[] sinks = new NullOutputStream[nbClients];
+		ObjectOutputStream[] streams = new ObjectOutputStream[nbClients];
+		for (int i = 0; i < nbClients; i++)
+		{
+			sinks[i] = new NullOutputStream();
+			streams[i] = new ObjectOutputStream(sinks[i]);
+		}
+		long start = bean.getCurrentThreadCpuTime();
+		for (int b = 0; b < broadcasts; b++)
+		{
+			Message message = new Message(content, "author" + (b % 16));
+			for (ObjectOutputStream out : streams)
+			{
+				out.writeObject(message);
+			}
+		}
+		long elapsed = bean.getCurrentThreadCpuTime() - start;
+		return (double) elapsed / broadcasts;
+	}
+
+	/**
+	 * Diffusion de messages encodés une seule fois
+	 * @param nbClients nombre de clients
+	 * @param broadcasts nombre de messages diffusés
+	 * @param content contenu des messages
+	 * @param protocol le protocole utilisé pour encoder les messages
+	 * @return le temps CPU moyen (en ns) d'une diffusion
+	 * @throws IOException si l'encodage échoue
+	 */
+	private static double once(int nbClients,
+	                           int broadcasts,
+	                           String content,
+	                           WireProtocol protocol)
+		throws IOException
+	{
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		NullOutputStream[] sinks = new NullOutputStream[nbClients];
+		for (int i = 0; i < nbClients; i++)
+		{
+			sinks[i] = new NullOutputStream();
+			sinks[i].write(EncodedMessage.header(protocol));
+		}
+		long start = bean.getCurrentThreadCpuTime();
+		for (int b = 0; b < broadcasts; b++)
+		{
+			Message message = new Message(content, "author" + (b % 16));
+			EncodedMessage encoded = EncodedMessage.encode(message);
+			for (OutputStream out : sinks)
+			{
+				encoded.writeTo(out, protocol);
+			}
+		}
+		long elapsed = bean.getCurrentThreadCpuTime() - start;
+		return (double) elapsed / broadcasts;
+	}
+
+	/**
+	 * Programme principal
+	 * @param args arguments
+	 * <ul>
+	 * <li>--broadcasts N : nombre de messages diffusés pour chaque mesure
+	 * [2000]</li>
+	 * <li>--size S : taille du contenu des messages [100]</li>
+	 * </ul>
+	 * @throws IOException si la sérialisation échoue
+	 */
+	public static void main(String[] args) throws IOException
+	{
+		int broadcasts = 2000;
+		int size = 100;
+		for (int i = 0; i < (args.length - 1); i++)
+		{
+			if (args[i].equals("--broadcasts"))
+			{
+				broadcasts = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("--size"))
+			{
+				size = Integer.parseInt(args[++i]);
+			}
+		}
+		StringBuilder builder = new StringBuilder(size);
+		for (int i = 0; i < size; i++)
+		{
+			builder.append((char) ('a' + (i % 26)));
+		}
+		String content = builder.toString();
+
+		// Préchauffage du JIT
+		for (int w = 0; w < 3; w++)
+		{
+			legacy(100, broadcasts, content);
+			once(100, broadcasts, content, WireProtocol.SERIALIZED);
+			once(100, broadcasts, content, WireProtocol.BINARY);
+		}
+
+		EncodedMessage sample =
+			EncodedMessage.encode(new Message(content, "author"));
+		System.out.println("frame size : serialized "
+		    + sample.size(WireProtocol.SERIALIZED) + " bytes, binary "
+		    + sample.size(WireProtocol.BINARY) + " bytes");
+
+		System.out.println("clients   legacy (us/broadcast)   once (us/broadcast)   binary (us/broadcast)");
+		for (int nbClients : CLIENTS)
+		{
+			// moins de diffusions pour les grands nombres de clients
+			int count = Math.max(10, broadcasts * 10 / nbClients);
+			double legacyTime = legacy(nbClients, count, content);
+			double onceTime = once(nbClients, count, content,
+			                       WireProtocol.SERIALIZED);
+			double binaryTime = once(nbClients, count, content,
+			                         WireProtocol.BINARY);
+			System.out.printf("%7d   %21.1f   %19.1f   %21.1f%n",
+			                  nbClients,
+			                  legacyTime / 1000.0,
+			                  onceTime / 1000.0,
+			                  binaryTime / 1000.0);
+		}
+	}
+}
@@ -0,0 +1,210 @@
+package examples;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Random;
+
+import chat.Command;
+import chat.Vocabulary;
+
+/**
+ * Mesure du coût de la reconnaissance des commandes dans les lignes reçues
+ * par le serveur (95% de messages ordinaires et 5% de commandes par
+ * défaut) :
+ * <ul>
+ * <li>legacy : chaque ligne est convertie en minuscules pour chacune des
+ * commandes de {@link Vocabulary#commands} puis le contenu du message est
+ * recopié dans un {@link StringBuffer} (comportement historique du
+ * serveur)</li>
+ * <li>table : reconnaissance de la commande avec la table précalculée de
+ * {@link Command#parse(String)}, le contenu d'un message ordinaire étant
+ * la ligne elle même</li>
+ * </ul>
+ * On mesure le temps moyen par ligne ainsi que, lorsque la JVM le permet,
+ * le nombre moyen d'octets alloués par ligne.
+ * <pre>
+ * java examples.CommandParseBenchmark [--lines N] [--commands pourcent]
+ * </pre>
+ * @author davidroussel
+ */
+public class CommandParseBenchmark
+{
+	/**
+	 * Nombre de répétitions de chaque mesure
+	 */
+	private final static int REPEAT = 5;
+
+	/**
+	 * Reconnaissance historique d'une ligne
+	 * @param line la ligne reçue
+	 * @return le contenu du message ordinaire ou bien le mot clé de la
+	 * commande reconnue
+	 */
+	public static String legacy(String line)
+	{
+		boolean controlMessage = false;
+		for (String command : Vocabulary.commands)
+		{
+			if (line.toLowerCase().startsWith(command))
+			{
+				controlMessage = true;
+				break;
+			}
+		}
+		StringBuffer messageContent = new StringBuffer();
+		if (controlMessage)
+		{
+			if (line.toLowerCase().equals(Vocabulary.byeCmd))
+			{
+				return Vocabulary.byeCmd;
+			}
+			else if (line.toLowerCase().startsWith(Vocabulary.historyCmd))
+			{
+				return Vocabulary.historyCmd;
+			}
+			else if (line.toLowerCase().startsWith(Vocabulary.killCmd))
+			{
+				return Vocabulary.killCmd;
+			}
+			else if (line.toLowerCase().startsWith(Vocabulary.kickCmd))
+			{
+				return Vocabulary.kickCmd;
+			}
+		}
+		else
+		{
+			messageContent.append(line);
+		}
+		return messageContent.toString();
+	}
+
+	/**
+	 * Reconnaissance d'une ligne avec la table des commandes
+	 * @param line la ligne reçue
+	 * @return le contenu du message ordinaire ou bien le mot clé de la
+	 * commande reconnue
+	 */
+	public static String table(String line)
+	{
+		Command command = Command.parse(line);
+		if (command == null)
+		{
+			return line;
+		}
+		return command.getKeyword();
+	}
+
+	/**
+	 * Nombre d'octets alloués par le thread courant
+	 * @param bean le bean des threads
+	 * @return le nombre d'octets alloués ou bien -1 si la JVM ne permet pas
+	 * de l'obtenir
+	 */
+	private static long allocated(ThreadMXBean bean)
+	{
+		if (bean instanceof com.sun.management.ThreadMXBean)
+		{
+			return ((com.sun.management.ThreadMXBean) bean)
+			    .getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+	/**
+	 * Reconnaissance de toutes les lignes
+	 * @param lines les lignes
+	 * @param useTable true pour utiliser la table des commandes, false pour
+	 * la reconnaissance historique
+	 * @return une valeur dépendant des résultats (afin qu'ils ne soient pas
+	 * éliminés par le JIT)
+	 */
+	private static long parseAll(String[] lines, boolean useTable)
+	{
+		long check = 0;
+		for (String line : lines)
+		{
+			String result = (useTable ? table(line) : legacy(line));
+			check += result.length();
+		}
+		return check;
+	}
+
+	/**
+	 * Programme principal
+	 * @param args arguments
+	 * <ul>
+	 * <li>--lines N : nombre de lignes [1000000]</li>
+	 * <li>--commands pourcent : pourcentage de commandes parmi les lignes
+	 * [5]</li>
+	 * </ul>
+	 */
+	public static void main(String[] args)
+	{
+		int nbLines = 1000000;
+		int commandsPercent = 5;
+		for (int i = 0; i < (args.length - 1); i++)
+		{
+			if (args[i].equals("--lines"))
+			{
+				nbLines = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("--commands"))
+			{
+				commandsPercent = Integer.parseInt(args[++i]);
+			}
+		}
+
+		Random random = new Random(42);
+		String[] commands = {"bye", "history from user12 page 2",
+		    "kick user7", "kill", "History with hello"};
+		String[] lines = new String[nbLines];
+		for (int i = 0; i < nbLines; i++)
+		{
+			if (random.nextInt(100) < commandsPercent)
+			{
+				lines[i] = commands[random.nextInt(commands.length)];
+			}
+			else
+			{
+				lines[i] = "Hello everyone, this is message number " + i;
+			}
+		}
+		for (String line : lines)
+		{
+			if (!legacy(line).equals(table(line)))
+			{
+				System.out.println("  MISMATCH for \"" + line + "\"");
+			}
+		}
+
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		System.out.printf("%d lines, %d%% commands%n", nbLines,
+		    commandsPercent);
+		for (int round = 0; round < 2; round++)
+		{
+			// premier tour : préchauffage du JIT
+			boolean print = (round > 0);
+			for (boolean useTable : new boolean[] {false, true})
+			{
+				long check = 0;
+				long bytes = allocated(bean);
+				long start = System.nanoTime();
+				for (int r = 0; r < REPEAT; r++)
+				{
+					check += parseAll(lines, useTable);
+				}
+				double elapsed = (double) (System.nanoTime() - start)
+				    / ((long) REPEAT * nbLines);
+				long end = allocated(bean);
+				double perLine = (bytes >= 0 ?
+				    (double) (end - bytes) / ((long) REPEAT * nbLines) : -1);
+				if (print)
+				{
+					System.out.printf("%-6s : %6.1f ns/line, %6.1f bytes/line"
+					    + " (%d)%n", (useTable ? "table" : "legacy"), elapsed,
+					    perLine, check);
+				}
+			}
+		}
+	}
+}
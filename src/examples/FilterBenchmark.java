@@ -0,0 +1,161 @@
+package examples;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import javax.swing.DefaultListSelectionModel;
+import javax.swing.ListSelectionModel;
+
+import models.AuthorListFilter;
+import models.Message;
+import models.Message.MessageKind;
+import models.MessageListModel;
+import models.NameSetListModel;
+
+/**
+ * Mesure du temps de mise en place (et de retrait) du filtre des messages
+ * par auteurs d'un {@link MessageListModel} (500 auteurs et 200000 messages
+ * par défaut) suivant le nombre d'auteurs sélectionnés :
+ * <ul>
+ * <li>selection : le filtre recherche l'index de l'auteur de chaque message
+ * dans la liste des utilisateurs ({@link NameSetListModel#getIndex(String)})
+ * puis vérifie que cet index est sélectionné</li>
+ * <li>scan : le filtre recherche l'auteur de chaque message dans l'ensemble
+ * des auteurs sélectionnés</li>
+ * <li>index : le filtre {@link AuthorListFilter} permet au modèle de
+ * fusionner les listes de messages des auteurs sélectionnés</li>
+ * </ul>
+ * <pre>
+ * java examples.FilterBenchmark [--messages N] [--authors N]
+ * </pre>
+ * @author davidroussel
+ */
+public class FilterBenchmark
+{
+	/**
+	 * Nombre de répétitions de chaque mesure
+	 */
+	private final static int REPEAT = 20;
+
+	/**
+	 * Mesure du temps moyen de mise en place puis de retrait d'un filtre
+	 * @param model le modèle des messages
+	 * @param filter le filtre
+	 * @return le temps moyen (en ms) de mise en place puis de retrait du
+	 * filtre
+	 */
+	private static double toggle(MessageListModel model,
+	                             Predicate<Message> filter)
+	{
+		// Préchauffage du JIT
+		model.setFilter(filter);
+		model.setFilter(null);
+		long start = System.nanoTime();
+		for (int i = 0; i < REPEAT; i++)
+		{
+			model.setFilter(filter);
+			model.setFilter(null);
+		}
+		return (System.nanoTime() - start) / 1e6 / REPEAT;
+	}
+
+	/**
+	 * Liste des messages affichés par un modèle
+	 * @param model le modèle
+	 * @return les messages affichés
+	 */
+	private static List<Message> shown(MessageListModel model)
+	{
+		List<Message> shown = new ArrayList<Message>(model.getSize());
+		for (int i = 0; i < model.getSize(); i++)
+		{
+			shown.add(model.getElementAt(i));
+		}
+		return shown;
+	}
+
+	/**
+	 * Programme principal
+	 * @param args arguments
+	 * <ul>
+	 * <li>--messages N : nombre de messages [200000]</li>
+	 * <li>--authors N : nombre d'auteurs [500]</li>
+	 * </ul>
+	 */
+	public static void main(String[] args)
+	{
+		int nbMessages = 200000;
+		int nbAuthors = 500;
+		for (int i = 0; i < (args.length - 1); i++)
+		{
+			if (args[i].equals("--messages"))
+			{
+				nbMessages = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("--authors"))
+			{
+				nbAuthors = Integer.parseInt(args[++i]);
+			}
+		}
+
+		Random random = new Random(42);
+		NameSetListModel users = new NameSetListModel();
+		String[] authors = new String[nbAuthors];
+		for (int i = 0; i < nbAuthors; i++)
+		{
+			authors[i] = String.format("user%04d", i);
+			users.add(authors[i]);
+		}
+		MessageListModel model = new MessageListModel();
+		long origin = System.currentTimeMillis() - nbMessages;
+		List<Message> batch = new ArrayList<Message>();
+		for (int i = 0; i < nbMessages; i++)
+		{
+			Message message = new Message(origin + i,
+			                              "message " + i,
+			                              authors[random.nextInt(nbAuthors)],
+			                              MessageKind.CHAT,
+			                              i + 1);
+			batch.add(message);
+		}
+		model.addAll(batch);
+		System.out.printf("%d messages, %d authors%n", nbMessages, nbAuthors);
+
+		for (int selected : new int[] {1, 10, 100})
+		{
+			ListSelectionModel selection = new DefaultListSelectionModel();
+			List<String> selectedAuthors = new ArrayList<String>();
+			for (int i = 0; i < selected; i++)
+			{
+				int index = (i * nbAuthors) / selected;
+				selection.addSelectionInterval(index, index);
+				selectedAuthors.add(users.getElementAt(index));
+			}
+			AuthorListFilter authorFilter =
+			    new AuthorListFilter(selectedAuthors);
+			Predicate<Message> selectionFilter = (Message m) ->
+			    m.hasAuthor()
+			    && selection.isSelectedIndex(users.getIndex(m.getAuthor()));
+			Predicate<Message> scanFilter = (Message m) -> authorFilter.test(m);
+
+			model.setFilter(scanFilter);
+			List<Message> scanned = shown(model);
+			model.setFilter(authorFilter);
+			List<Message> indexed = shown(model);
+			model.setFilter(null);
+			if (!scanned.equals(indexed))
+			{
+				System.out.println("  MISMATCH for " + authorFilter);
+			}
+
+			double selectionTime = toggle(model, selectionFilter);
+			double scanTime = toggle(model, scanFilter);
+			double indexTime = toggle(model, authorFilter);
+			System.out.printf("%3d selected (%6d messages) : selection %8.2f"
+			    + " ms, scan %6.2f ms, index %6.2f ms%n", selected,
+			    indexed.size(), selectionTime, scanTime, indexTime);
+		}
+	}
+}
@@ -0,0 +1,232 @@
+package examples;
+
+import java.util.List;
+import java.util.Random;
+
+import chat.server.EncodedMessage;
+import chat.server.HistoryQuery;
+import chat.server.MessageStore;
+import models.Message;
+import models.Message.MessageKind;
+
+/**
+ * Mesure des temps de réponse de l'historique interrogeable d'un serveur
+ * ({@link MessageStore}) sur un corpus synthétique de messages (10 millions
+ * par défaut) : messages d'auteurs et de mots tirés au hasard (avec une
+ * graine fixe), dont les dates augmentent d'une milliseconde par message.
+ * Un message sur {@link #COMMANDPERIOD} est une notification de commande
+ * ({@link MessageKind#COMMAND}) dont la trame contient la nature du message.
+ * Un message sur {@link #LATEPERIOD} est daté {@link #LATENESS} ms plus tôt
+ * que ses voisins (comme ceux relus d'un journal écrit avant que le
+ * séquenceur ne date les messages), soit plusieurs blocs de l'index temporel
+ * après les messages de même date.
+ * Pour chaque requête on compare la recherche indexée
+ * ({@link MessageStore#query(HistoryQuery, int)}) à la recherche par
+ * décodage de tous les messages ({@link MessageStore#scan(HistoryQuery, int)}),
+ * qui doivent renvoyer les mêmes messages quelle que soit leur nature.
+ * Le corpus occupant plusieurs centaines de Mo, le programme doit être lancé
+ * avec une taille de tas suffisante (-Xmx3g par exemple).
+ * <pre>
+ * java -Xmx3g examples.HistoryQueryBenchmark [--messages N] [--authors N]
+ * 	[--words N]
+ * </pre>
+ * @author davidroussel
+ */
+public class HistoryQueryBenchmark
+{
+	/**
+	 * Nombre de mots par message
+	 */
+	private final static int WORDSPERMESSAGE = 4;
+
+	/**
+	 * Période des notifications de commande parmi les messages du corpus
+	 */
+	private final static int COMMANDPERIOD = 2;
+
+	/**
+	 * Période des messages en retard parmi les messages du corpus
+	 */
+	private final static int LATEPERIOD = 1000;
+
+	/**
+	 * Retard (en ms, c'est à dire en nombre de messages) des messages en
+	 * retard
+	 */
+	private final static int LATENESS = 4 * MessageStore.BLOCKSIZE;
+
+	/**
+	 * Nombre de répétitions de chaque recherche
+	 */
+	private final static int REPEAT = 5;
+
+	/**
+	 * Mesure du temps moyen d'une recherche
+	 * @param store l'historique interrogé
+	 * @param query la requête
+	 * @param indexed true pour la recherche indexée, false pour la recherche
+	 * par décodage de tous les messages
+	 * @return le temps moyen (en ms) d'une recherche
+	 * @throws Exception si un message ne peut être décodé
+	 */
+	private static double time(MessageStore store,
+	                           HistoryQuery query,
+	                           boolean indexed)
+		throws Exception
+	{
+		int repeat = (indexed ? REPEAT * 20 : REPEAT);
+		int found = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < repeat; i++)
+		{
+			List<Message> results = (indexed ?
+			    store.query(query, MessageStore.DEFAULTPAGESIZE) :
+			    store.scan(query, MessageStore.DEFAULTPAGESIZE));
+			found += results.size();
+		}
+		double elapsed = (System.nanoTime() - start) / 1e6 / repeat;
+		if (found == 0)
+		{
+			System.out.println("  (no result for " + query + ")");
+		}
+		return elapsed;
+	}
+
+	/**
+	 * Comparaison des recherches indexée et par décodage pour une requête
+	 * @param label le nom de la requête
+	 * @param store l'historique interrogé
+	 * @param query la requête
+	 * @throws Exception si un message ne peut être décodé
+	 */
+	private static void compare(String label,
+	                            MessageStore store,
+	                            HistoryQuery query)
+		throws Exception
+	{
+		List<Message> indexed = store.query(query,
+		                                    MessageStore.DEFAULTPAGESIZE);
+		List<Message> scanned = store.scan(query,
+		                                   MessageStore.DEFAULTPAGESIZE);
+		if (!indexed.equals(scanned))
+		{
+			System.out.println("  MISMATCH for " + query + ": " + indexed
+			    + " != " + scanned);
+		}
+		double indexTime = time(store, query, true);
+		double scanTime = time(store, query, false);
+		System.out.printf("%-22s : index %9.3f ms, scan %9.1f ms (x%.0f)"
+		    + " [%s]%n", label, indexTime, scanTime, scanTime / indexTime,
+		    query);
+	}
+
+	/**
+	 * Programme principal
+	 * @param args arguments
+	 * <ul>
+	 * <li>--messages N : nombre de messages du corpus [10000000]</li>
+	 * <li>--authors N : nombre d'auteurs [1000]</li>
+	 * <li>--words N : nombre de mots du vocabulaire [5000]</li>
+	 * </ul>
+	 * @throws Exception si un message ne peut être encodé ou décodé
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		int nbMessages = 10000000;
+		int nbAuthors = 1000;
+		int nbWords = 5000;
+		for (int i = 0; i < (args.length - 1); i++)
+		{
+			if (args[i].equals("--messages"))
+			{
+				nbMessages = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("--authors"))
+			{
+				nbAuthors = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("--words"))
+			{
+				nbWords = Integer.parseInt(args[++i]);
+			}
+		}
+
+		Random random = new Random(42);
+		String[] authors = new String[nbAuthors];
+		for (int i = 0; i < nbAuthors; i++)
+		{
+			authors[i] = "user" + i;
+		}
+		String[] words = new String[nbWords];
+		for (int i = 0; i < nbWords; i++)
+		{
+			words[i] = "w" + Integer.toString(i, 36);
+		}
+
+		MessageStore store = new MessageStore(nbMessages);
+		long origin = System.currentTimeMillis() - nbMessages;
+		long start = System.nanoTime();
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < nbMessages; i++)
+		{
+			sb.setLength(0);
+			for (int w = 0; w < WORDSPERMESSAGE; w++)
+			{
+				if (w > 0)
+				{
+					sb.append(' ');
+				}
+				sb.append(words[random.nextInt(nbWords)]);
+			}
+			long date = origin + i;
+			if ((i % LATEPERIOD) == (LATEPERIOD - 1))
+			{
+				date -= LATENESS;
+			}
+			Message message = new Message(date,
+			                              sb.toString(),
+			                              authors[random.nextInt(nbAuthors)],
+			                              ((i % COMMANDPERIOD) == 0 ?
+			                               MessageKind.COMMAND :
+			                               MessageKind.CHAT),
+			                              i + 1);
+			store.add(EncodedMessage.encode(message));
+		}
+		double build = (System.nanoTime() - start) / 1e9;
+		System.gc();
+		System.out.printf("corpus                 : %d messages, %d authors,"
+		    + " %d words%n", nbMessages, nbAuthors, nbWords);
+		System.out.printf("build                  : %.1f s (%.0f msg/s)%n",
+		                  build, nbMessages / build);
+		System.out.printf("retained               : %d MB (%.1f bytes/msg)%n",
+		                  store.getRetainedBytes() >> 20,
+		                  (double) store.getRetainedBytes() / nbMessages);
+
+		// Requêtes sur le premier dixième du corpus (les plus anciens messages)
+		long from = origin;
+		long to = origin + (nbMessages / 10);
+		compare("author", store,
+		        new HistoryQuery(authors[7], Long.MIN_VALUE, Long.MAX_VALUE,
+		                         null, 1));
+		compare("author + dates", store,
+		        new HistoryQuery(authors[7], from, to, null, 1));
+		compare("word", store,
+		        new HistoryQuery(null, Long.MIN_VALUE, Long.MAX_VALUE,
+		                         words[11], 1));
+		compare("author + word", store,
+		        new HistoryQuery(authors[7], Long.MIN_VALUE, Long.MAX_VALUE,
+		                         words[11], 1));
+		// Date du premier message en retard suivant ce dixième
+		long late = origin + ((((nbMessages / 10) / LATEPERIOD) + 1)
+		    * LATEPERIOD) - 1 - LATENESS;
+		compare("dates, late messages", store,
+		        new HistoryQuery(null, late - MessageStore.BLOCKSIZE, late,
+		                         null, 1));
+		compare("dates, deep page", store,
+		        new HistoryQuery(null, from, to, null, 1000));
+		compare("word, deep page", store,
+		        new HistoryQuery(null, Long.MIN_VALUE, Long.MAX_VALUE,
+		                         words[11], 50));
+		System.out.println(store);
+	}
+}
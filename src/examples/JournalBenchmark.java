@@ -0,0 +1,190 @@
+package examples;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import chat.WireProtocol;
+import chat.server.EncodedMessage;
+import chat.server.MessageHistory;
+import chat.server.MessageJournal;
+import logger.LoggerFactory;
+import models.Message;
+
+/**
+ * Mesure du débit (messages par seconde) de l'étape de diffusion du serveur
+ * avec et sans journal persistant ({@link MessageJournal}) :
+ * <ul>
+ * <li>off : chaque message est séquencé et encodé (comme lors de sa
+ * diffusion) sans être journalisé</li>
+ * <li>on : chaque message est en plus déposé auprès du journal. On mesure
+ * d'une part le débit vu par la diffusion (dépôts dans la file du journal)
+ * et d'autre part le débit des messages effectivement écrits sur disque
+ * (jusqu'à la fin du thread du journal)</li>
+ * </ul>
+ * Le journal est créé dans un répertoire temporaire supprimé à la fin du
+ * programme. On mesure enfin le temps de reprise du journal (relecture du
+ * dernier segment).
+ * <pre>
+ * java examples.JournalBenchmark [--messages N] [--size octets]
+ * </pre>
+ * @author davidroussel
+ */
+public class JournalBenchmark
+{
+	/**
+	 * Création d'un message séquencé
+	 * @param i le numéro du message
+	 * @param content le contenu du message
+	 * @return le message encodé
+	 */
+	private static EncodedMessage message(long i, String content)
+	{
+		Message message = new Message(content, "user" + (i % 16));
+		return EncodedMessage.encode(message.withSequence(i + 1));
+	}
+
+	/**
+	 * Mesure sans journal
+	 * @param nbMessages nombre de messages
+	 * @param content contenu des messages
+	 * @return le nombre de messages par seconde
+	 * @throws IOException si l'encodage échoue
+	 */
+	private static double off(int nbMessages, String content)
+		throws IOException
+	{
+		long start = System.nanoTime();
+		for (int i = 0; i < nbMessages; i++)
+		{
+			message(i, content).buffer(WireProtocol.BINARY);
+		}
+		return nbMessages / ((System.nanoTime() - start) / 1e9);
+	}
+
+	/**
+	 * Mesure avec journal
+	 * @param directory répertoire du journal
+	 * @param nbMessages nombre de messages
+	 * @param content contenu des messages
+	 * @param logger logger du journal
+	 * @return le nombre de messages par seconde vus par la diffusion puis
+	 * écrits sur disque
+	 * @throws Exception si l'écriture du journal échoue
+	 */
+	private static double[] on(File directory,
+	                           int nbMessages,
+	                           String content,
+	                           Logger logger)
+		throws Exception
+	{
+		MessageJournal journal = new MessageJournal(directory,
+		    MessageJournal.DEFAULTSEGMENTSIZE, logger);
+		journal.recover(new MessageHistory(0), null);
+		Thread thread = new Thread(journal, "Journal");
+		thread.start();
+		long start = System.nanoTime();
+		for (int i = 0; i < nbMessages; i++)
+		{
+			journal.append(message(i, content));
+		}
+		long appended = System.nanoTime();
+		journal.close();
+		thread.join();
+		long durable = System.nanoTime();
+		System.out.println("  " + journal);
+		return new double[] {
+			nbMessages / ((appended - start) / 1e9),
+			nbMessages / ((durable - start) / 1e9)
+		};
+	}
+
+	/**
+	 * Suppression d'un répertoire de journal
+	 * @param directory le répertoire à supprimer
+	 */
+	private static void delete(File directory)
+	{
+		File[] files = directory.listFiles();
+		if (files != null)
+		{
+			for (File file : files)
+			{
+				file.delete();
+			}
+		}
+		directory.delete();
+	}
+
+	/**
+	 * Programme principal
+	 * @param args arguments
+	 * <ul>
+	 * <li>--messages N : nombre de messages [1000000]</li>
+	 * <li>--size octets : taille du contenu des messages [64]</li>
+	 * </ul>
+	 * @throws Exception si le journal ne peut être écrit
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		int nbMessages = 1000000;
+		int size = 64;
+		for (int i = 0; i < (args.length - 1); i++)
+		{
+			if (args[i].equals("--messages"))
+			{
+				nbMessages = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("--size"))
+			{
+				size = Integer.parseInt(args[++i]);
+			}
+		}
+		StringBuilder sb = new StringBuilder();
+		while (sb.length() < size)
+		{
+			sb.append((char) ('a' + (sb.length() % 26)));
+		}
+		String content = sb.toString();
+
+		Logger logger = LoggerFactory.getConsoleLogger(JournalBenchmark.class,
+		                                               Level.WARNING);
+		File directory = File.createTempFile("journal", "");
+		directory.delete();
+
+		try
+		{
+			// Préchauffage du JIT
+			off(nbMessages / 10, content);
+			on(directory, nbMessages / 10, content, logger);
+			delete(directory);
+
+			double offRate = off(nbMessages, content);
+			double[] onRates = on(directory, nbMessages, content, logger);
+
+			MessageHistory history = new MessageHistory(
+			    MessageHistory.DEFAULTCAPACITY);
+			MessageJournal journal = new MessageJournal(directory,
+			    MessageJournal.DEFAULTSEGMENTSIZE, logger);
+			long start = System.nanoTime();
+			long last = journal.recover(history, null);
+			long recovery = System.nanoTime() - start;
+
+			System.out.printf("messages             : %d x %d bytes%n",
+			                  nbMessages, size);
+			System.out.printf("journal off          : %12.0f msg/s%n", offRate);
+			System.out.printf("journal on (append)  : %12.0f msg/s%n",
+			                  onRates[0]);
+			System.out.printf("journal on (durable) : %12.0f msg/s%n",
+			                  onRates[1]);
+			System.out.printf("recovery             : %d ms (last sequence %d,"
+			    + " %d messages in history)%n", recovery / 1000000, last,
+			    history.size());
+		}
+		finally
+		{
+			delete(directory);
+		}
+	}
+}
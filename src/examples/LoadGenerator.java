@@ -0,0 +1,540 @@
+package examples;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import chat.MessageCodec;
+import chat.MessageInput;
+import chat.ThreadMode;
+import chat.WireProtocol;
+import chat.server.AbstractChatServer;
+import chat.server.ChatServer;
+import chat.server.NioChatServer;
+import logger.LoggerFactory;
+import models.Message;
+
+/**
+ * Générateur de charge d'un serveur de chat : on lance un serveur
+ * ({@link ChatServer} ou {@link NioChatServer}) dans ce processus puis on y
+ * connecte (sur l'interface locale) N clients simulés qui utilisent le
+ * véritable protocole des clients (négociation du format, nom, puis flux de
+ * {@link Message}s). Une partie de ces clients envoie des messages à un
+ * rythme fixe et tous les clients lisent les messages diffusés. On mesure :
+ * <ul>
+ * <li>le temps d'établissement des connections (de l'ouverture de la socket
+ * jusqu'à la réception de l'en-tête du flux de messages)</li>
+ * <li>la latence de bout en bout des diffusions (de la date prévue de
+ * l'envoi d'un message jusqu'à sa réception par chacun des clients) :
+ * p50, p99, p99.9 et maximum</li>
+ * <li>le débit des messages envoyés et des messages reçus ainsi que le
+ * nombre de messages perdus (abandonnés par les files d'émission du
+ * serveur)</li>
+ * </ul>
+ * Chaque message envoyé contient la date (System.nanoTime) à laquelle il
+ * devait être envoyé : un envoi retardé est donc compté dans la latence
+ * plutôt que d'être ignoré. Les messages envoyés durant la période de
+ * préchauffage ne sont pas mesurés. L'affichage par le serveur des lignes
+ * reçues sur la sortie standard est abandonné durant le test.
+ * <pre>
+ * java examples.LoadGenerator [--clients N] [--senders S] [--rate R]
+ *                             [--duration ms] [--warmup ms]
+ *                             [--engine thread|nio]
+ *                             [--protocol binary|serialized] [--port P]
+ * </pre>
+ * @author davidroussel
+ */
+public class LoadGenerator
+{
+	/**
+	 * Préfixe du contenu des messages envoyés par les clients simulés
+	 */
+	private final static String PREFIX = "load ";
+
+	/**
+	 * Début de la période de mesure (en ns)
+	 */
+	private static volatile long measureStart = Long.MAX_VALUE;
+
+	/**
+	 * Fin de la période de mesure (en ns)
+	 */
+	private static volatile long measureEnd = Long.MAX_VALUE;
+
+	/**
+	 * Histogramme de durées (en ns) à précision relative constante : les
+	 * durées inférieures à 128 ns sont comptées exactement, puis chaque
+	 * puissance de 2 est découpée en 64 intervalles (soit une erreur
+	 * inférieure à 1.6%)
+	 */
+	private static class Histogram
+	{
+		/**
+		 * Nombre de bits des durées comptées exactement
+		 */
+		private final static int SUBBITS = 7;
+
+		/**
+		 * Nombre d'intervalles par puissance de 2
+		 */
+		private final static int HALF = 1 << (SUBBITS - 1);
+
+		/**
+		 * Plus grande durée mesurable (environ 18 minutes), les durées plus
+		 * grandes sont comptées comme celle ci
+		 */
+		private final static long MAXVALUE = (1L << 40) - 1;
+
+		/**
+		 * Nombre de durées dans chacun des intervalles
+		 */
+		private final long[] counts = new long[index(MAXVALUE) + 1];
+
+		/**
+		 * Nombre total de durées
+		 */
+		private long total = 0;
+
+		/**
+		 * Plus grande durée
+		 */
+		private long max = 0;
+
+		/**
+		 * Index de l'intervalle d'une durée
+		 * @param value la durée
+		 * @return l'index de l'intervalle contenant la durée
+		 */
+		private static int index(long value)
+		{
+			if (value < (2 * HALF))
+			{
+				return (int) value;
+			}
+			int shift = 64 - Long.numberOfLeadingZeros(value) - SUBBITS;
+			return (shift * HALF) + (int) (value >>> shift);
+		}
+
+		/**
+		 * Plus grande durée d'un intervalle
+		 * @param index l'index de l'intervalle
+		 * @return la plus grande durée comptée dans cet intervalle
+		 */
+		private static long highest(int index)
+		{
+			if (index < (2 * HALF))
+			{
+				return index;
+			}
+			int shift = (index / HALF) - 1;
+			return (((long) (index - (shift * HALF)) + 1) << shift) - 1;
+		}
+
+		/**
+		 * Ajout d'une durée
+		 * @param value la durée (en ns)
+		 */
+		public void record(long value)
+		{
+			long v = Math.max(0, Math.min(value, MAXVALUE));
+			counts[index(v)]++;
+			total++;
+			if (v > max)
+			{
+				max = v;
+			}
+		}
+
+		/**
+		 * Ajout des durées d'un autre histogramme
+		 * @param other l'autre histogramme
+		 */
+		public void add(Histogram other)
+		{
+			for (int i = 0; i < counts.length; i++)
+			{
+				counts[i] += other.counts[i];
+			}
+			total += other.total;
+			max = Math.max(max, other.max);
+		}
+
+		/**
+		 * Nombre total de durées
+		 * @return le nombre de durées ajoutées
+		 */
+		public long getTotal()
+		{
+			return total;
+		}
+
+		/**
+		 * Percentile des durées
+		 * @param percent le pourcentage de durées inférieures ou égales au
+		 * percentile
+		 * @return le percentile (en ns) ou bien 0 si l'histogramme est vide
+		 */
+		public long percentile(double percent)
+		{
+			long rank = (long) Math.ceil((percent / 100.0) * total);
+			long count = 0;
+			for (int i = 0; i < counts.length; i++)
+			{
+				count += counts[i];
+				if ((count > 0) && (count >= rank))
+				{
+					return Math.min(highest(i), max);
+				}
+			}
+			return max;
+		}
+
+		/**
+		 * Affichage des percentiles de l'histogramme (en ms)
+		 * @return une chaine contenant les percentiles
+		 */
+		@Override
+		public String toString()
+		{
+			return String.format("p50 %8.3f ms, p99 %8.3f ms, p99.9 %8.3f ms,"
+			    + " max %8.3f ms", percentile(50) / 1e6, percentile(99) / 1e6,
+			    percentile(99.9) / 1e6, max / 1e6);
+		}
+	}
+
+	/**
+	 * Client simulé : un thread lit les messages diffusés par le serveur et
+	 * mesure la latence des messages des clients simulés, et (s'il s'agit
+	 * d'un émetteur) une tâche périodique envoie ses messages
+	 */
+	private static class SimulatedClient implements Runnable
+	{
+		/**
+		 * Le nom du client
+		 */
+		private final String name;
+
+		/**
+		 * La socket du client
+		 */
+		private final Socket socket;
+
+		/**
+		 * Le flux d'envoi des lignes au serveur
+		 */
+		private final PrintWriter out;
+
+		/**
+		 * Le flux des messages reçus du serveur
+		 */
+		private final MessageInput in;
+
+		/**
+		 * Temps d'établissement de la connection (en ns)
+		 */
+		private final long connectTime;
+
+		/**
+		 * Le thread de lecture des messages
+		 */
+		private final Thread reader;
+
+		/**
+		 * Latences des messages reçus durant la période de mesure
+		 */
+		private final Histogram latencies = new Histogram();
+
+		/**
+		 * Nombre de messages des clients simulés reçus (toutes périodes
+		 * confondues)
+		 */
+		private final AtomicLong received = new AtomicLong();
+
+		/**
+		 * Connection d'un client simulé : négociation du format des messages,
+		 * envoi du nom, lecture de l'en-tête du flux de messages puis
+		 * lancement du thread de lecture des messages
+		 * @param name le nom du client
+		 * @param port le port du serveur
+		 * @param protocol le format des messages demandé au serveur
+		 * @throws IOException si la connection échoue
+		 */
+		public SimulatedClient(String name, int port, WireProtocol protocol)
+			throws IOException
+		{
+			this.name = name;
+			long start = System.nanoTime();
+			socket = new Socket("localhost", port);
+			socket.setTcpNoDelay(true);
+			out = new PrintWriter(socket.getOutputStream(), true);
+			if (protocol == WireProtocol.BINARY)
+			{
+				out.println(MessageCodec.HELLO);
+			}
+			out.println(name);
+			in = new MessageInput(socket.getInputStream());
+			connectTime = System.nanoTime() - start;
+			reader = new Thread(this, name);
+			reader.start();
+		}
+
+		/**
+		 * Envoi d'un message
+		 * @param planned la date prévue de l'envoi (en ns)
+		 */
+		public void send(long planned)
+		{
+			out.println(PREFIX + planned);
+		}
+
+		/**
+		 * Lecture des messages diffusés jusqu'à la fermeture du flux
+		 */
+		@Override
+		public void run()
+		{
+			try
+			{
+				Message message;
+				while ((message = in.readMessage()) != null)
+				{
+					long now = System.nanoTime();
+					String content = message.getContent();
+					if (message.isPresence() || !content.startsWith(PREFIX))
+					{
+						continue;
+					}
+					received.incrementAndGet();
+					long sent = Long.parseLong(content.substring(
+					    PREFIX.length()));
+					if ((sent >= measureStart) && (sent < measureEnd))
+					{
+						synchronized (latencies)
+						{
+							latencies.record(now - sent);
+						}
+					}
+				}
+			}
+			catch (IOException | ClassNotFoundException e)
+			{
+				// fin du flux
+			}
+		}
+
+		/**
+		 * Déconnection du client : envoi de la commande bye puis attente de
+		 * la fermeture du flux des messages par le serveur
+		 * @throws InterruptedException si l'attente est interrompue
+		 */
+		public void logout() throws InterruptedException
+		{
+			out.println("bye");
+			reader.join(AbstractChatServer.DEFAULTHANDSHAKETIMEOUT);
+			try
+			{
+				socket.close();
+			}
+			catch (IOException e)
+			{
+				System.err.println(name + ": " + e);
+			}
+		}
+	}
+
+	/**
+	 * Programme principal
+	 * @param args arguments
+	 * <ul>
+	 * <li>--clients N : nombre de clients simulés [100]</li>
+	 * <li>--senders S : nombre de clients envoyant des messages [10]</li>
+	 * <li>--rate R : nombre de messages par seconde de chaque émetteur
+	 * [10]</li>
+	 * <li>--duration ms : durée de la mesure [10000]</li>
+	 * <li>--warmup ms : durée du préchauffage [2000]</li>
+	 * <li>--engine thread|nio : moteur du serveur [thread]</li>
+	 * <li>--protocol binary|serialized : format des messages reçus par les
+	 * clients [binary]</li>
+	 * <li>--port P : port du serveur [1396]</li>
+	 * </ul>
+	 * @throws Exception si le test échoue
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		int nbClients = 100;
+		int nbSenders = 10;
+		double rate = 10;
+		long duration = 10000;
+		long warmup = 2000;
+		boolean nio = false;
+		WireProtocol protocol = WireProtocol.BINARY;
+		int port = AbstractChatServer.DEFAULTPORT + 2;
+		for (int i = 0; i < (args.length - 1); i++)
+		{
+			if (args[i].equals("--clients"))
+			{
+				nbClients = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("--senders"))
+			{
+				nbSenders = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("--rate"))
+			{
+				rate = Double.parseDouble(args[++i]);
+			}
+			else if (args[i].equals("--duration"))
+			{
+				duration = Long.parseLong(args[++i]);
+			}
+			else if (args[i].equals("--warmup"))
+			{
+				warmup = Long.parseLong(args[++i]);
+			}
+			else if (args[i].equals("--engine"))
+			{
+				nio = args[++i].equals("nio");
+			}
+			else if (args[i].equals("--protocol"))
+			{
+				protocol = args[++i].equals("serialized") ?
+				    WireProtocol.SERIALIZED : WireProtocol.BINARY;
+			}
+			else if (args[i].equals("--port"))
+			{
+				port = Integer.parseInt(args[++i]);
+			}
+		}
+		nbSenders = Math.max(0, Math.min(nbSenders, nbClients));
+
+		PrintStream console = System.out;
+		System.setOut(new PrintStream(new OutputStream()
+		{
+			@Override
+			public void write(int b)
+			{
+			}
+		}));
+
+		Logger logger = LoggerFactory.getConsoleLogger(LoadGenerator.class,
+		                                               Level.WARNING);
+		AbstractChatServer server;
+		if (nio)
+		{
+			server = new NioChatServer(port, AbstractChatServer.DEFAULTTIMEOUT,
+			    NioChatServer.DEFAULTIOTHREADS, true, logger);
+		}
+		else
+		{
+			server = new ChatServer(port, AbstractChatServer.DEFAULTTIMEOUT,
+			    true, ThreadMode.PLATFORM, logger);
+		}
+		Thread serverThread = new Thread(server);
+		serverThread.start();
+
+		// Connection des clients
+		SimulatedClient[] clients = new SimulatedClient[nbClients];
+		Histogram connections = new Histogram();
+		long start = System.nanoTime();
+		for (int i = 0; i < nbClients; i++)
+		{
+			clients[i] = new SimulatedClient(String.format("load%05d", i),
+			                                 port, protocol);
+			connections.record(clients[i].connectTime);
+		}
+		long setupTime = System.nanoTime() - start;
+
+		// Envois à rythme fixe, les émetteurs étant décalés les uns des autres
+		final long period = (long) (1e9 / rate);
+		final AtomicLong sent = new AtomicLong();
+		ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(
+		    Math.max(1, Math.min(nbSenders,
+		                         Runtime.getRuntime().availableProcessors())));
+		Random random = new Random(42);
+		final long origin = System.nanoTime();
+		measureStart = origin + TimeUnit.MILLISECONDS.toNanos(warmup);
+		measureEnd = measureStart + TimeUnit.MILLISECONDS.toNanos(duration);
+		for (int i = 0; i < nbSenders; i++)
+		{
+			final SimulatedClient sender = clients[i];
+			final long offset = (long) (random.nextDouble() * period);
+			scheduler.scheduleAtFixedRate(new Runnable()
+			{
+				/**
+				 * Nombre de messages envoyés par cet émetteur
+				 */
+				private long count = 0;
+
+				@Override
+				public void run()
+				{
+					long planned = origin + offset + (count++ * period);
+					sender.send(planned);
+					if ((planned >= measureStart) && (planned < measureEnd))
+					{
+						sent.incrementAndGet();
+					}
+				}
+			}, offset, period, TimeUnit.NANOSECONDS);
+		}
+		Thread.sleep(warmup + duration);
+		scheduler.shutdown();
+		scheduler.awaitTermination(1, TimeUnit.SECONDS);
+
+		// Attente de la réception des derniers messages envoyés
+		long previous = -1;
+		long total = 0;
+		while (total != previous)
+		{
+			previous = total;
+			Thread.sleep(500);
+			total = 0;
+			for (SimulatedClient client : clients)
+			{
+				total += client.received.get();
+			}
+		}
+
+		Histogram latencies = new Histogram();
+		for (SimulatedClient client : clients)
+		{
+			synchronized (client.latencies)
+			{
+				latencies.add(client.latencies);
+			}
+		}
+		long expected = sent.get() * nbClients;
+
+		console.println("engine / protocol  : " + (nio ? "nio" : "thread")
+		    + " / " + protocol);
+		console.println("clients / senders  : " + nbClients + " / "
+		    + nbSenders + " (" + rate + " msg/s each)");
+		console.printf("connection setup   : %d ms (%.1f conn/s)%n",
+		                  setupTime / 1000000, nbClients / (setupTime / 1e9));
+		console.println("connection time    : " + connections);
+		console.printf("sent               : %d msg (%.1f msg/s)%n",
+		                  sent.get(), sent.get() * 1000.0 / duration);
+		console.printf("received           : %d / %d msg (%.1f msg/s),"
+		    + " %d lost%n", latencies.getTotal(), expected,
+		    latencies.getTotal() * 1000.0 / duration,
+		    expected - latencies.getTotal());
+		console.println("broadcast latency  : " + latencies);
+
+		// Déconnection de tous les clients : le serveur s'arrête de lui même
+		for (SimulatedClient client : clients)
+		{
+			client.logout();
+		}
+		serverThread.join();
+		System.setOut(console);
+	}
+}
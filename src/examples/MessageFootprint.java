@@ -0,0 +1,118 @@
+package examples;
+
+import java.io.StreamCorruptedException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import chat.MessageCodec;
+import models.Message;
+
+/**
+ * Mesure de la mémoire occupée par les {@link Message}s conservés (par
+ * exemple dans l'historique d'un client) : on conserve N messages (1000000
+ * par défaut) de 100 auteurs différents puis on mesure l'augmentation du
+ * tas par million de messages :
+ * <ul>
+ * <li>constructed : messages construits à partir de contenus et de noms
+ * d'auteurs existants (seuls les messages et leurs dates sont mesurés)</li>
+ * <li>decoded : messages décodés depuis des trames binaires
+ * ({@link MessageCodec}), comme ceux reçus par un client : chaque message
+ * décodé contient de nouvelles chaines pour son contenu et pour le nom de
+ * son auteur (à moins que celui ci ne soit partagé)</li>
+ * </ul>
+ * <pre>
+ * java examples.MessageFootprint [--messages N]
+ * </pre>
+ * @author davidroussel
+ */
+public class MessageFootprint
+{
+	/**
+	 * Nombre d'auteurs différents
+	 */
+	private final static int AUTHORS = 100;
+
+	/**
+	 * Mémoire du tas utilisée après un garbage collect
+	 * @return le nombre d'octets utilisés dans le tas
+	 */
+	private static long usedHeap()
+	{
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++)
+		{
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * Programme principal
+	 * @param args arguments
+	 * <ul>
+	 * <li>--messages N : nombre de messages conservés [1000000]</li>
+	 * </ul>
+	 */
+	public static void main(String[] args)
+	{
+		int nbMessages = 1000000;
+		for (int i = 0; i < (args.length - 1); i++)
+		{
+			if (args[i].equals("--messages"))
+			{
+				nbMessages = Integer.parseInt(args[++i]);
+			}
+		}
+
+		Random random = new Random(42);
+		String[] authors = new String[AUTHORS];
+		for (int i = 0; i < AUTHORS; i++)
+		{
+			authors[i] = String.format("user%04d", i);
+		}
+		long origin = System.currentTimeMillis() - nbMessages;
+		String[] contents = new String[nbMessages];
+		int[] messageAuthors = new int[nbMessages];
+		for (int i = 0; i < nbMessages; i++)
+		{
+			contents[i] = "message " + i;
+			messageAuthors[i] = random.nextInt(AUTHORS);
+		}
+
+		for (boolean decoded : new boolean[] {false, true})
+		{
+			List<Message> messages = new ArrayList<Message>(nbMessages);
+			long before = usedHeap();
+			for (int i = 0; i < nbMessages; i++)
+			{
+				Message message = new Message(new Date(origin + i), contents[i],
+				                              authors[messageAuthors[i]]);
+				if (decoded)
+				{
+					try
+					{
+						message = MessageCodec.read(
+						    ByteBuffer.wrap(MessageCodec.encode(message)));
+					}
+					catch (StreamCorruptedException e)
+					{
+						System.err.println("invalid frame: " + e);
+						return;
+					}
+				}
+				messages.add(message);
+			}
+			long after = usedHeap();
+			System.out.printf("%-11s : %6.1f MB per million messages"
+			    + " (%.1f bytes per message)%n",
+			    (decoded ? "decoded" : "constructed"),
+			    (after - before) / 1e6 * (1000000.0 / nbMessages),
+			    (double) (after - before) / nbMessages);
+			// les messages restent accessibles jusqu'à la fin de la mesure
+			messages.clear();
+		}
+	}
+}
@@ -0,0 +1,287 @@
+package examples;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Predicate;
+
+import models.AuthorListFilter;
+import models.Message;
+import models.Message.MessageKind;
+import models.MessageComparator;
+import models.MessageListModel;
+
+/**
+ * Vérification de la cohérence des listes d'un {@link MessageListModel}
+ * (liste triée des messages, liste des messages affichés et listes des
+ * messages par auteur) lorsque des messages sont ajoutés dans le désordre
+ * (messages reçus puis messages plus anciens rechargés), triés puis retirés
+ * au delà des limites, pour différents ordres et filtres. Les auteurs et
+ * contenus étant peu nombreux, beaucoup de messages sont équivalents suivant
+ * ces ordres. On simule enfin des rechargements successifs (comme ceux des
+ * messages retirés que l'on fait défiler dans un
+ * {@link widgets.ClientFrame2}) : page de messages antérieurs au plus
+ * ancien message conservé, nouveaux messages reçus puis retrait des messages
+ * rechargés. Après chaque étape on vérifie que :
+ * <ul>
+ * <li>les messages conservés sont rangés comme le ferait un nouveau tri
+ * ({@link MessageListModel#sort()})</li>
+ * <li>les messages affichés sont les messages conservés satisfaisant le
+ * filtre, dans le même ordre</li>
+ * <li>les messages d'un auteur sont les mêmes avec un
+ * {@link AuthorListFilter} (fusion des listes des messages par auteur) et
+ * avec un filtre quelconque (vérification de chacun des messages)</li>
+ * <li>le nombre de messages conservés reste borné par les limites</li>
+ * </ul>
+ * <pre>
+ * java examples.MessageListModelTest [--messages N] [--limit N]
+ * </pre>
+ * @author davidroussel
+ */
+public class MessageListModelTest
+{
+	/**
+	 * Les auteurs des messages
+	 */
+	private final static String[] AUTHORS = {"alice", "bob", "carol", "dave"};
+
+	/**
+	 * Les contenus des messages
+	 */
+	private final static String[] CONTENTS = {"hello", "hi", "bye"};
+
+	/**
+	 * Les ordres vérifiés
+	 */
+	private final static String[] ORDERS = {"", "author", "content",
+	                                        "author,content"};
+
+	/**
+	 * Nombre de rechargements successifs
+	 */
+	private final static int CYCLES = 20;
+
+	/**
+	 * Nombre d'erreurs constatées
+	 */
+	private static int errors = 0;
+
+	/**
+	 * Liste des messages affichés par un modèle
+	 * @param model le modèle
+	 * @return les messages affichés
+	 */
+	private static List<Message> shown(MessageListModel model)
+	{
+		List<Message> shown = new ArrayList<Message>(model.getSize());
+		for (int i = 0; i < model.getSize(); i++)
+		{
+			shown.add(model.getElementAt(i));
+		}
+		return shown;
+	}
+
+	/**
+	 * Vérification de la cohérence d'un modèle
+	 * @param label la description de l'étape vérifiée
+	 * @param model le modèle
+	 * @param filter le filtre du modèle (ou bien null)
+	 */
+	private static void check(String label,
+	                          MessageListModel model,
+	                          Predicate<Message> filter)
+	{
+		check(label, model, filter, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Vérification de la cohérence d'un modèle et du nombre de messages
+	 * conservés
+	 * @param label la description de l'étape vérifiée
+	 * @param model le modèle
+	 * @param filter le filtre du modèle (ou bien null)
+	 * @param maxCount le nombre maximum de messages conservés attendu
+	 */
+	private static void check(String label,
+	                          MessageListModel model,
+	                          Predicate<Message> filter,
+	                          int maxCount)
+	{
+		if (model.getMessageCount() > maxCount)
+		{
+			error(label, model.getMessageCount() + " messages kept, more than "
+			    + maxCount);
+		}
+		List<Message> before = shown(model);
+		model.setFilter(null);
+		List<Message> all = shown(model);
+		if (all.size() != model.getMessageCount())
+		{
+			error(label, all.size() + " messages shown but "
+			    + model.getMessageCount() + " kept");
+		}
+		List<Message> sorted = new ArrayList<Message>(all);
+		Collections.sort(sorted, model.getOrder().thenComparingArrival());
+		if (!all.equals(sorted))
+		{
+			error(label, "messages " + all + " not sorted " + sorted);
+		}
+		List<Message> expected = new ArrayList<Message>();
+		for (Message message : all)
+		{
+			if ((filter == null) || filter.test(message))
+			{
+				expected.add(message);
+			}
+		}
+		if (!before.equals(expected))
+		{
+			error(label, "shown " + before + " != kept " + expected);
+		}
+
+		AuthorListFilter authorFilter =
+		    new AuthorListFilter(Collections.singletonList(AUTHORS[1]));
+		model.setFilter(authorFilter);
+		List<Message> indexed = shown(model);
+		model.setFilter((Message m) -> authorFilter.test(m));
+		List<Message> scanned = shown(model);
+		if (!indexed.equals(scanned))
+		{
+			error(label, "by author " + indexed + " != scanned " + scanned);
+		}
+		model.setFilter(filter);
+	}
+
+	/**
+	 * Affichage d'une erreur
+	 * @param label la description de l'étape vérifiée
+	 * @param cause la description de l'erreur
+	 */
+	private static void error(String label, String cause)
+	{
+		errors++;
+		System.out.println("  MISMATCH after " + label + ": " + cause);
+	}
+
+	/**
+	 * Création d'un message
+	 * @param random le générateur aléatoire
+	 * @param sequence le numéro de séquence (et la date) du message
+	 * @return un nouveau message d'auteur et de contenu tirés au hasard
+	 */
+	private static Message message(Random random, long sequence)
+	{
+		return new Message(sequence,
+		                   CONTENTS[random.nextInt(CONTENTS.length)],
+		                   AUTHORS[random.nextInt(AUTHORS.length)],
+		                   MessageKind.CHAT,
+		                   sequence);
+	}
+
+	/**
+	 * Programme principal
+	 * @param args arguments
+	 * <ul>
+	 * <li>--messages N : nombre de messages reçus (et de messages plus
+	 * anciens rechargés) [200]</li>
+	 * <li>--limit N : nombre maximum de messages conservés [50]</li>
+	 * </ul>
+	 */
+	public static void main(String[] args)
+	{
+		int nbMessages = 200;
+		int limit = 50;
+		for (int i = 0; i < (args.length - 1); i++)
+		{
+			if (args[i].equals("--messages"))
+			{
+				nbMessages = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("--limit"))
+			{
+				limit = Integer.parseInt(args[++i]);
+			}
+		}
+
+		List<Predicate<Message>> filters = new ArrayList<Predicate<Message>>();
+		filters.add(null);
+		filters.add(new AuthorListFilter(
+		    Collections.singletonList(AUTHORS[1])));
+		filters.add((Message m) -> !m.getContent().equals(CONTENTS[0]));
+
+		for (String specification : ORDERS)
+		{
+			MessageComparator order = MessageComparator.parse(specification);
+			for (Predicate<Message> filter : filters)
+			{
+				String label = order + (filter == null ? "" :
+				    (filter instanceof AuthorListFilter ? " " + filter :
+				     " filtered"));
+				Random random = new Random(42);
+				MessageListModel model = new MessageListModel();
+				model.setOrder(order);
+				model.setFilter(filter);
+
+				// Messages reçus, un par un puis par lots
+				long sequence = nbMessages;
+				for (int i = 0; i < (nbMessages / 2); i++)
+				{
+					model.add(message(random, ++sequence));
+				}
+				List<Message> batch = new ArrayList<Message>();
+				for (int i = nbMessages / 2; i < nbMessages; i++)
+				{
+					batch.add(message(random, ++sequence));
+				}
+				model.addAll(batch);
+				check(label + " received", model, filter);
+
+				// Messages plus anciens rechargés par pages
+				for (long last = nbMessages; last > 0; last -= 20)
+				{
+					List<Message> page = new ArrayList<Message>();
+					for (long s = Math.max(1, last - 19); s <= last; s++)
+					{
+						page.add(message(random, s));
+					}
+					model.addOlder(page);
+				}
+				check(label + " older", model, filter);
+
+				model.setLimits(limit, 0);
+				check(label + " evicted", model, filter);
+
+				model.sort();
+				model.setLimits(limit / 2, 0);
+				check(label + " sorted and evicted", model, filter);
+
+				model.releaseOlder();
+				check(label + " released", model, filter);
+
+				// Rechargements successifs
+				int reloaded = limit / 2;
+				for (int cycle = 0; cycle < CYCLES; cycle++)
+				{
+					long oldest = model.getOldestDate().getTime();
+					List<Message> page = new ArrayList<Message>();
+					for (long s = Math.max(1, oldest - reloaded); s < oldest;
+					     s++)
+					{
+						page.add(message(random, s));
+					}
+					model.addOlder(page);
+					check(label + " reload " + cycle, model, filter, limit);
+					for (int i = 0; i < (limit / 5); i++)
+					{
+						model.add(message(random, ++sequence));
+					}
+					model.releaseOlder();
+					check(label + " release " + cycle, model, filter,
+					      limit / 2);
+				}
+			}
+		}
+		System.out.println(errors == 0 ? "ok" : errors + " errors");
+	}
+}
@@ -0,0 +1,293 @@
+package examples;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import chat.WireProtocol;
+import chat.server.ClientRegistry;
+import chat.server.EncodedMessage;
+import chat.server.OutboundQueue;
+import chat.server.OutputClient;
+import chat.server.OverflowPolicy;
+import models.Message;
+
+/**
+ * Mesure du débit de diffusion (messages diffusés par seconde) lorsque
+ * plusieurs clients diffusent simultanément, en fonction du nombre de
+ * threads émetteurs :
+ * <ul>
+ * <li>locked : chaque diffusion parcourt les clients sous un verrou global
+ * (comportement historique du serveur), qui est aussi pris par les
+ * connections et déconnections</li>
+ * <li>snapshot : chaque diffusion parcourt la liste immuable des clients
+ * ({@link ClientRegistry#snapshot()}) sans verrou</li>
+ * </ul>
+ * Chaque destinataire possède sa propre {@link OutboundQueue} (qui abandonne
+ * les plus anciens messages) et un thread simule en continu des connections
+ * et déconnections de clients.
+ * <pre>
+ * java examples.MultiSenderBenchmark [--clients N] [--threads T]
+ * [--duration ms]
+ * </pre>
+ * @author davidroussel
+ */
+public class MultiSenderBenchmark
+{
+	/**
+	 * Client dont les messages sont déposés dans une file d'émission qui
+	 * n'est jamais vidée
+	 */
+	private static class QueueClient implements OutputClient
+	{
+		/**
+		 * Le nom du client
+		 */
+		private final String name;
+
+		/**
+		 * La file d'émission du client
+		 */
+		private final OutboundQueue<EncodedMessage> queue;
+
+		/**
+		 * Constructeur d'un client
+		 * @param name le nom du client
+		 */
+		public QueueClient(String name)
+		{
+			this.name = name;
+			queue = new OutboundQueue<EncodedMessage>(
+				OutboundQueue.DEFAULTCAPACITY, OverflowPolicy.DROP_OLDEST);
+		}
+
+		@Override
+		public String getName()
+		{
+			return name;
+		}
+
+		@Override
+		public boolean isReady()
+		{
+			return true;
+		}
+
+		@Override
+		public WireProtocol getProtocol()
+		{
+			return WireProtocol.BINARY;
+		}
+
+		@Override
+		public boolean isBanned()
+		{
+			return false;
+		}
+
+		@Override
+		public void setBanned(boolean banned)
+		{
+		}
+
+		@Override
+		public void sendMessage(Message message) throws IOException
+		{
+			sendMessage(EncodedMessage.encode(message));
+		}
+
+		@Override
+		public void sendMessage(EncodedMessage message) throws IOException
+		{
+			queue.offer(message);
+		}
+
+		@Override
+		public void replay(List<EncodedMessage> history)
+		{
+			for (EncodedMessage message : history)
+			{
+				queue.offer(message);
+			}
+		}
+
+		@Override
+		public long getDroppedMessages()
+		{
+			return queue.getDropped();
+		}
+	}
+
+	/**
+	 * Mesure du débit de diffusion
+	 * @param nbClients nombre de destinataires
+	 * @param nbThreads nombre de threads émetteurs
+	 * @param duration durée de la mesure (en ms)
+	 * @param locked true pour diffuser sous un verrou global, false pour
+	 * utiliser la liste immuable des clients
+	 * @return le nombre de messages diffusés par seconde
+	 * @throws InterruptedException si l'attente des threads est interrompue
+	 */
+	private static double run(int nbClients,
+	                          int nbThreads,
+	                          final long duration,
+	                          final boolean locked)
+		throws InterruptedException
+	{
+		final ClientRegistry<OutputClient> clients =
+			new ClientRegistry<OutputClient>();
+		for (int i = 0; i < nbClients; i++)
+		{
+			clients.register(new QueueClient("user" + i));
+		}
+		final AtomicBoolean running = new AtomicBoolean(true);
+		final AtomicLong broadcasts = new AtomicLong();
+		final CountDownLatch done = new CountDownLatch(nbThreads + 1);
+
+		// connections et déconnections continues
+		Thread churn = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				int n = 0;
+				while (running.get())
+				{
+					OutputClient client = new QueueClient("churn" + (n++));
+					if (locked)
+					{
+						synchronized (clients)
+						{
+							clients.register(client);
+						}
+						synchronized (clients)
+						{
+							clients.remove(client);
+						}
+					}
+					else
+					{
+						clients.register(client);
+						clients.remove(client);
+					}
+					try
+					{
+						Thread.sleep(1);
+					}
+					catch (InterruptedException e)
+					{
+						break;
+					}
+				}
+				done.countDown();
+			}
+		});
+
+		Thread[] senders = new Thread[nbThreads];
+		for (int t = 0; t < nbThreads; t++)
+		{
+			final String author = "sender" + t;
+			senders[t] = new Thread(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					long count = 0;
+					try
+					{
+						while (running.get())
+						{
+							EncodedMessage encoded = EncodedMessage.encode(
+								new Message("message " + count, author));
+							if (locked)
+							{
+								synchronized (clients)
+								{
+									for (OutputClient c : clients)
+									{
+										c.sendMessage(encoded);
+									}
+								}
+							}
+							else
+							{
+								for (OutputClient c : clients.snapshot())
+								{
+									c.sendMessage(encoded);
+								}
+							}
+							count++;
+						}
+					}
+					catch (IOException e)
+					{
+						System.err.println(author + ": " + e);
+					}
+					broadcasts.addAndGet(count);
+					done.countDown();
+				}
+			});
+		}
+
+		churn.start();
+		for (Thread sender : senders)
+		{
+			sender.start();
+		}
+		Thread.sleep(duration);
+		running.set(false);
+		done.await();
+		return broadcasts.get() * 1000.0 / duration;
+	}
+
+	/**
+	 * Programme principal
+	 * @param args arguments
+	 * <ul>
+	 * <li>--clients N : nombre de destinataires [100]</li>
+	 * <li>--threads T : nombre maximum de threads émetteurs [nombre de
+	 * processeurs, au moins 4]</li>
+	 * <li>--duration ms : durée de chaque mesure [1000]</li>
+	 * </ul>
+	 * @throws InterruptedException si l'attente des threads est interrompue
+	 */
+	public static void main(String[] args) throws InterruptedException
+	{
+		int nbClients = 100;
+		int maxThreads = Math.max(4, Runtime.getRuntime().availableProcessors());
+		long duration = 1000;
+		for (int i = 0; i < (args.length - 1); i++)
+		{
+			if (args[i].equals("--clients"))
+			{
+				nbClients = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("--threads"))
+			{
+				maxThreads = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("--duration"))
+			{
+				duration = Long.parseLong(args[++i]);
+			}
+		}
+
+		System.out.println(Runtime.getRuntime().availableProcessors()
+		    + " processors, " + nbClients + " recipients");
+
+		// Préchauffage du JIT
+		run(nbClients, 2, duration / 2, true);
+		run(nbClients, 2, duration / 2, false);
+
+		System.out.println("senders   locked (msg/s)   snapshot (msg/s)");
+		for (int nbThreads = 1; nbThreads <= maxThreads; nbThreads *= 2)
+		{
+			System.out.printf("%7d   %14.0f   %16.0f%n",
+			                  nbThreads,
+			                  run(nbClients, nbThreads, duration, true),
+			                  run(nbClients, nbThreads, duration, false));
+		}
+	}
+}
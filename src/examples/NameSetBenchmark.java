@@ -0,0 +1,277 @@
+package examples;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import javax.swing.AbstractListModel;
+import javax.swing.event.ListDataEvent;
+import javax.swing.event.ListDataListener;
+
+import models.NameSetListModel;
+
+/**
+ * Comparaison des temps d'accès à une liste de noms uniques et triés (10000
+ * noms par défaut) entre le {@link NameSetListModel} (liste triée et
+ * recherche par dichotomie) et un modèle parcourant un {@link TreeSet} depuis
+ * son début pour chaque accès indexé (l'implémentation précédente du
+ * {@link NameSetListModel}) :
+ * <ul>
+ * <li>add : ajout de tous les noms dans un ordre aléatoire</li>
+ * <li>repaint : lecture des 30 lignes visibles pour 1000 positions de
+ * défilement</li>
+ * <li>getIndex : recherche de l'index de chacun des noms</li>
+ * <li>remove : retrait de tous les noms d'après leur index</li>
+ * </ul>
+ * On compte aussi le nombre total de lignes notifiées aux listeners lors des
+ * ajouts et des retraits (lignes qu'une {@link javax.swing.JList} doit à
+ * nouveau mesurer et dessiner).
+ * <pre>
+ * java examples.NameSetBenchmark [--names N]
+ * </pre>
+ * @author davidroussel
+ */
+public class NameSetBenchmark
+{
+	/**
+	 * Nombre de lignes visibles d'une liste
+	 */
+	private final static int VISIBLEROWS = 30;
+
+	/**
+	 * Nombre de positions de défilement de la mesure repaint
+	 */
+	private final static int SCROLLS = 1000;
+
+	/**
+	 * Modèle de noms parcourant un TreeSet pour chaque accès indexé et
+	 * notifiant l'ensemble des éléments à chaque modification
+	 */
+	private static class IteratedNameSet extends AbstractListModel<String>
+	{
+		/**
+		 * Ensemble de noms triés
+		 */
+		private final TreeSet<String> nameSet = new TreeSet<String>();
+
+		/**
+		 * Ajout d'un nom
+		 * @param value le nom à ajouter
+		 */
+		public void add(String value)
+		{
+			nameSet.add(value);
+			fireContentsChanged(this, 0, nameSet.size() - 1);
+		}
+
+		/**
+		 * Retrait du nom situé à un index
+		 * @param index l'index du nom à retirer
+		 */
+		public void remove(int index)
+		{
+			int count = 0;
+			for (Iterator<String> it = nameSet.iterator(); it.hasNext();)
+			{
+				it.next();
+				if (count == index)
+				{
+					it.remove();
+					fireContentsChanged(this, 0, nameSet.size() - 1);
+					return;
+				}
+				count++;
+			}
+		}
+
+		/**
+		 * Recherche de l'index d'un nom
+		 * @param s le nom recherché
+		 * @return l'index du nom ou bien -1 s'il n'est pas présent
+		 */
+		public int getIndex(String s)
+		{
+			int count = 0;
+			for (String name : nameSet)
+			{
+				if (name.equals(s))
+				{
+					return count;
+				}
+				count++;
+			}
+			return -1;
+		}
+
+		@Override
+		public int getSize()
+		{
+			return nameSet.size();
+		}
+
+		@Override
+		public String getElementAt(int index)
+		{
+			int count = 0;
+			for (String name : nameSet)
+			{
+				if (count == index)
+				{
+					return name;
+				}
+				count++;
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Listener comptant les lignes notifiées
+	 */
+	private static class NotifiedRows implements ListDataListener
+	{
+		/**
+		 * Nombre de lignes notifiées
+		 */
+		private long rows = 0;
+
+		@Override
+		public void intervalAdded(ListDataEvent e)
+		{
+			rows += (e.getIndex1() - e.getIndex0()) + 1;
+		}
+
+		@Override
+		public void intervalRemoved(ListDataEvent e)
+		{
+			rows += (e.getIndex1() - e.getIndex0()) + 1;
+		}
+
+		@Override
+		public void contentsChanged(ListDataEvent e)
+		{
+			rows += (e.getIndex1() - e.getIndex0()) + 1;
+		}
+	}
+
+	/**
+	 * Temps écoulé depuis une date
+	 * @param start la date de départ (en ns)
+	 * @return le temps écoulé (en ms)
+	 */
+	private static double elapsed(long start)
+	{
+		return (System.nanoTime() - start) / 1e6;
+	}
+
+	/**
+	 * Programme principal
+	 * @param args arguments
+	 * <ul>
+	 * <li>--names N : nombre de noms [10000]</li>
+	 * </ul>
+	 */
+	public static void main(String[] args)
+	{
+		int nbNames = 10000;
+		for (int i = 0; i < (args.length - 1); i++)
+		{
+			if (args[i].equals("--names"))
+			{
+				nbNames = Integer.parseInt(args[++i]);
+			}
+		}
+		List<String> names = new ArrayList<String>(nbNames);
+		for (int i = 0; i < nbNames; i++)
+		{
+			names.add(String.format("user%06d", i));
+		}
+		Random random = new Random(42);
+		Collections.shuffle(names, random);
+		int[] scrolls = new int[SCROLLS];
+		for (int i = 0; i < SCROLLS; i++)
+		{
+			scrolls[i] = random.nextInt(Math.max(1, nbNames - VISIBLEROWS));
+		}
+
+		for (int round = 0; round < 2; round++)
+		{
+			// premier tour : préchauffage du JIT
+			boolean print = (round > 0);
+			for (boolean sorted : new boolean[] {false, true})
+			{
+				NameSetListModel sortedModel = new NameSetListModel();
+				IteratedNameSet iteratedModel = new IteratedNameSet();
+				AbstractListModel<String> model = (sorted ? sortedModel :
+				                                   iteratedModel);
+				NotifiedRows notified = new NotifiedRows();
+				model.addListDataListener(notified);
+
+				long start = System.nanoTime();
+				for (String name : names)
+				{
+					if (sorted)
+					{
+						sortedModel.add(name);
+					}
+					else
+					{
+						iteratedModel.add(name);
+					}
+				}
+				double add = elapsed(start);
+
+				start = System.nanoTime();
+				for (int scroll : scrolls)
+				{
+					for (int row = scroll; row < (scroll + VISIBLEROWS); row++)
+					{
+						if (model.getElementAt(row) == null)
+						{
+							System.out.println("  no name at " + row);
+						}
+					}
+				}
+				double repaint = elapsed(start);
+
+				start = System.nanoTime();
+				for (String name : names)
+				{
+					int index = (sorted ? sortedModel.getIndex(name) :
+					             iteratedModel.getIndex(name));
+					if (!name.equals(model.getElementAt(index)))
+					{
+						System.out.println("  wrong index for " + name);
+					}
+				}
+				double getIndex = elapsed(start);
+
+				start = System.nanoTime();
+				for (int i = nbNames; i > 0; i--)
+				{
+					int index = random.nextInt(i);
+					if (sorted)
+					{
+						sortedModel.remove(index);
+					}
+					else
+					{
+						iteratedModel.remove(index);
+					}
+				}
+				double remove = elapsed(start);
+
+				if (print)
+				{
+					System.out.printf("%-8s : add %6.1f ms, repaint %8.2f ms,"
+					    + " getIndex %7.1f ms, remove %6.1f ms, %9d rows"
+					    + " notified%n", (sorted ? "sorted" : "treeset"), add,
+					    repaint, getIndex, remove, notified.rows);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,209 @@
+package examples;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Vector;
+
+import chat.WireProtocol;
+import chat.server.ClientRegistry;
+import chat.server.EncodedMessage;
+import chat.server.OutputClient;
+import models.Message;
+
+/**
+ * Comparaison du temps d'enregistrement (login) puis de retrait (logout)
+ * d'un client en fonction du nombre de clients déjà enregistrés :
+ * <ul>
+ * <li>vector : recherche linéaire du nom dans un {@link Vector} puis ajout,
+ * le tout sous verrou (comportement historique du serveur)</li>
+ * <li>registry : enregistrement atomique dans un {@link ClientRegistry}</li>
+ * </ul>
+ * <pre>
+ * java examples.RegistryBenchmark [--logins N]
+ * </pre>
+ * @author davidroussel
+ */
+public class RegistryBenchmark
+{
+	/**
+	 * Nombres de clients déjà enregistrés testés
+	 */
+	private final static int[] CLIENTS = {100, 1000, 10000, 100000};
+
+	/**
+	 * Client factice ne recevant aucun message
+	 */
+	private static class DummyClient implements OutputClient
+	{
+		/**
+		 * Le nom du client
+		 */
+		private final String name;
+
+		/**
+		 * Constructeur d'un client factice
+		 * @param name le nom du client
+		 */
+		public DummyClient(String name)
+		{
+			this.name = name;
+		}
+
+		@Override
+		public String getName()
+		{
+			return name;
+		}
+
+		@Override
+		public boolean isReady()
+		{
+			return true;
+		}
+
+		@Override
+		public WireProtocol getProtocol()
+		{
+			return WireProtocol.BINARY;
+		}
+
+		@Override
+		public boolean isBanned()
+		{
+			return false;
+		}
+
+		@Override
+		public void setBanned(boolean banned)
+		{
+		}
+
+		@Override
+		public void sendMessage(Message message) throws IOException
+		{
+		}
+
+		@Override
+		public void sendMessage(EncodedMessage message) throws IOException
+		{
+		}
+
+		@Override
+		public void replay(List<EncodedMessage> history)
+		{
+		}
+
+		@Override
+		public long getDroppedMessages()
+		{
+			return 0;
+		}
+	}
+
+	/**
+	 * Enregistrement historique : recherche linéaire puis ajout sous verrou
+	 * @param clients la liste des clients
+	 * @param client le client à enregistrer
+	 * @return true si le client a été enregistré
+	 */
+	private static boolean vectorLogin(Vector<OutputClient> clients,
+	                                   OutputClient client)
+	{
+		synchronized (clients)
+		{
+			for (OutputClient c : clients)
+			{
+				if (c.getName().equals(client.getName()))
+				{
+					return false;
+				}
+			}
+			clients.add(client);
+			return true;
+		}
+	}
+
+	/**
+	 * Temps moyen d'un login dans un {@link Vector} de nbClients clients
+	 * @param nbClients nombre de clients déjà enregistrés
+	 * @param logins nombre de logins mesurés
+	 * @return le temps moyen (en ns) d'un login
+	 */
+	private static double vector(int nbClients, int logins)
+	{
+		Vector<OutputClient> clients = new Vector<OutputClient>();
+		for (int i = 0; i < nbClients; i++)
+		{
+			vectorLogin(clients, new DummyClient("user" + i));
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < logins; i++)
+		{
+			OutputClient client = new DummyClient("new" + i);
+			vectorLogin(clients, client);
+			clients.remove(client);
+		}
+		return (double) (System.nanoTime() - start) / logins;
+	}
+
+	/**
+	 * Temps moyen d'un login dans un {@link ClientRegistry} de nbClients
+	 * clients
+	 * @param nbClients nombre de clients déjà enregistrés
+	 * @param logins nombre de logins mesurés
+	 * @return le temps moyen (en ns) d'un login
+	 */
+	private static double registry(int nbClients, int logins)
+	{
+		ClientRegistry<OutputClient> clients =
+			new ClientRegistry<OutputClient>();
+		for (int i = 0; i < nbClients; i++)
+		{
+			clients.register(new DummyClient("user" + i));
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < logins; i++)
+		{
+			OutputClient client = new DummyClient("new" + i);
+			clients.register(client);
+			clients.remove(client);
+		}
+		return (double) (System.nanoTime() - start) / logins;
+	}
+
+	/**
+	 * Programme principal
+	 * @param args arguments
+	 * <ul>
+	 * <li>--logins N : nombre de logins mesurés pour chaque taille
+	 * [2000]</li>
+	 * </ul>
+	 */
+	public static void main(String[] args)
+	{
+		int logins = 2000;
+		for (int i = 0; i < (args.length - 1); i++)
+		{
+			if (args[i].equals("--logins"))
+			{
+				logins = Integer.parseInt(args[++i]);
+			}
+		}
+
+		// Préchauffage du JIT
+		for (int w = 0; w < 3; w++)
+		{
+			vector(1000, logins);
+			registry(1000, logins);
+		}
+
+		System.out.println("clients   vector (us/login)   registry (us/login)");
+		for (int nbClients : CLIENTS)
+		{
+			System.out.printf("%7d   %17.2f   %19.2f%n",
+			                  nbClients,
+			                  vector(nbClients, logins) / 1000.0,
+			                  registry(nbClients, logins) / 1000.0);
+		}
+	}
+}
@@ -0,0 +1,161 @@
+package examples;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import chat.ThreadMode;
+import chat.server.ChatServer;
+import chat.server.ClientHandler;
+import logger.LoggerFactory;
+
+/**
+ * Test de charge des connections d'un {@link ChatServer} : on lance un
+ * serveur dans ce processus puis on y connecte N clients inactifs (qui
+ * n'envoient que leur nom) afin de mesurer le temps d'établissement des
+ * connections ainsi que la mémoire et le nombre de threads utilisés par
+ * connection en fonction du {@link ThreadMode} des handlers du serveur.
+ * <pre>
+ * java examples.RunConnectionLoadTest [--clients N] [--port P]
+ *                                     [--threads platform|virtual]
+ * </pre>
+ * @author davidroussel
+ */
+public class RunConnectionLoadTest
+{
+	/**
+	 * Mémoire du tas utilisée après un garbage collect
+	 * @return le nombre d'octets utilisés dans le tas
+	 */
+	private static long usedHeap()
+	{
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++)
+		{
+			System.gc();
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * Mémoire résidente du processus (incluant les piles des threads),
+	 * uniquement disponible sous Linux
+	 * @return le nombre d'octets résidents ou bien -1 si celui ci n'est pas
+	 * disponible
+	 */
+	private static long residentMemory()
+	{
+		try (BufferedReader reader =
+		     new BufferedReader(new FileReader("/proc/self/status")))
+		{
+			String line;
+			while ((line = reader.readLine()) != null)
+			{
+				if (line.startsWith("VmRSS:"))
+				{
+					String[] fields = line.trim().split("\\s+");
+					return Long.parseLong(fields[1]) * 1024;
+				}
+			}
+		}
+		catch (IOException | NumberFormatException e)
+		{
+			// non disponible
+		}
+		return -1;
+	}
+
+	/**
+	 * Programme principal
+	 * @param args arguments
+	 * <ul>
+	 * <li>--clients N : nombre de clients à connecter [1000]</li>
+	 * <li>--port P : port du serveur [1395]</li>
+	 * <li>--threads platform|virtual : threads des handlers [platform]</li>
+	 * </ul>
+	 * @throws Exception si le test échoue
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		int nbClients = 1000;
+		int port = ChatServer.DEFAULTPORT + 1;
+		ThreadMode mode = ThreadMode.PLATFORM;
+		for (int i = 0; i < (args.length - 1); i++)
+		{
+			if (args[i].equals("--clients"))
+			{
+				nbClients = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("--port"))
+			{
+				port = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("--threads"))
+			{
+				mode = ThreadMode.fromString(args[++i]);
+			}
+		}
+		if ((mode == null) || !mode.isAvailable())
+		{
+			System.err.println("Requested thread mode unavailable on this JVM");
+			System.exit(1);
+		}
+
+		Logger logger = LoggerFactory.getConsoleLogger(RunConnectionLoadTest.class,
+		                                               Level.WARNING);
+
+		long heapBefore = usedHeap();
+		long rssBefore = residentMemory();
+		int threadsBefore = ManagementFactory.getThreadMXBean().getThreadCount();
+
+		ChatServer server =
+			new ChatServer(port, ChatServer.DEFAULTTIMEOUT, true, mode, logger);
+		Thread serverThread = new Thread(server);
+		serverThread.start();
+
+		Socket[] sockets = new Socket[nbClients];
+		long start = System.nanoTime();
+		for (int i = 0; i < nbClients; i++)
+		{
+			sockets[i] = new Socket("localhost", port);
+			PrintWriter out = new PrintWriter(sockets[i].getOutputStream(), true);
+			out.println("client" + i);
+		}
+		while (ClientHandler.getNbThreads() < nbClients)
+		{
+			Thread.sleep(10);
+		}
+		long setupTime = System.nanoTime() - start;
+
+		long heapAfter = usedHeap();
+		long rssAfter = residentMemory();
+		int threadsAfter = ManagementFactory.getThreadMXBean().getThreadCount();
+
+		System.out.println("threads mode         : " + mode);
+		System.out.println("connections          : " + ClientHandler.getNbThreads());
+		System.out.printf("connection setup     : %d ms (%.1f conn/s)%n",
+		                  setupTime / 1000000,
+		                  nbClients / (setupTime / 1e9));
+		System.out.printf("heap / connection    : %.1f kB%n",
+		                  (heapAfter - heapBefore) / 1024.0 / nbClients);
+		if ((rssBefore >= 0) && (rssAfter >= 0))
+		{
+			System.out.printf("rss / connection     : %.1f kB%n",
+			                  (rssAfter - rssBefore) / 1024.0 / nbClients);
+		}
+		System.out.println("platform threads     : " + threadsBefore + " -> "
+		    + threadsAfter);
+
+		// Déconnection de tous les clients : le serveur s'arrête de lui même
+		for (Socket socket : sockets)
+		{
+			socket.close();
+		}
+		serverThread.join();
+	}
+}
@@ -0,0 +1,187 @@
+package examples;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import chat.ThreadMode;
+import chat.server.ChatServer;
+import logger.LoggerFactory;
+
+/**
+ * Test de la résistance d'un {@link ChatServer} aux connections "slow
+ * loris" : on lance un serveur dans ce processus, on y ouvre K connections
+ * qui envoient leur nom un octet à la fois sans jamais le terminer, puis on
+ * mesure le nombre de connections (login complet : envoi du nom puis
+ * réception de l'en-tête du flux des messages) que des clients normaux
+ * parviennent à établir dans le temps imparti.
+ * <pre>
+ * java examples.SlowLorisTest [--loris K] [--clients N] [--port P]
+ *                             [--duration ms]
+ * </pre>
+ * @author davidroussel
+ */
+public class SlowLorisTest
+{
+	/**
+	 * Intervalle (en ms) entre deux octets envoyés par les connections
+	 * "slow loris"
+	 */
+	private final static long DRIBBLE = 200;
+
+	/**
+	 * Programme principal
+	 * @param args arguments
+	 * <ul>
+	 * <li>--loris K : nombre de connections "slow loris" [20]</li>
+	 * <li>--clients N : nombre de clients normaux à connecter [500]</li>
+	 * <li>--port P : port du serveur [1396]</li>
+	 * <li>--duration ms : temps imparti aux clients normaux [10000]</li>
+	 * </ul>
+	 * @throws Exception si le test échoue
+	 */
+	public static void main(String[] args) throws Exception
+	{
+		int nbLoris = 20;
+		int nbClients = 500;
+		int port = ChatServer.DEFAULTPORT + 2;
+		long duration = 10000;
+		for (int i = 0; i < (args.length - 1); i++)
+		{
+			if (args[i].equals("--loris"))
+			{
+				nbLoris = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("--clients"))
+			{
+				nbClients = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("--port"))
+			{
+				port = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("--duration"))
+			{
+				duration = Long.parseLong(args[++i]);
+			}
+		}
+
+		Logger logger = LoggerFactory.getConsoleLogger(SlowLorisTest.class,
+		                                               Level.SEVERE);
+		ChatServer server = new ChatServer(port,
+		                                   ChatServer.DEFAULTTIMEOUT,
+		                                   false,
+		                                   ThreadMode.PLATFORM,
+		                                   logger);
+		Thread serverThread = new Thread(server);
+		serverThread.setDaemon(true);
+		serverThread.start();
+
+		// Connections "slow loris" : un octet du nom toutes les DRIBBLE ms
+		final Socket[] loris = new Socket[nbLoris];
+		for (int i = 0; i < nbLoris; i++)
+		{
+			loris[i] = new Socket("localhost", port);
+		}
+		Thread dribbler = new Thread(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				while (true)
+				{
+					for (Socket socket : loris)
+					{
+						try
+						{
+							OutputStream out = socket.getOutputStream();
+							out.write('z');
+							out.flush();
+						}
+						catch (IOException e)
+						{
+							// connection fermée par le serveur
+						}
+					}
+					try
+					{
+						Thread.sleep(DRIBBLE);
+					}
+					catch (InterruptedException e)
+					{
+						return;
+					}
+				}
+			}
+		});
+		dribbler.setDaemon(true);
+		dribbler.start();
+		Thread.sleep(DRIBBLE);
+
+		// Connections des clients normaux
+		Socket[] sockets = new Socket[nbClients];
+		int logins = 0;
+		long maxLatency = 0;
+		long start = System.nanoTime();
+		long end = start + duration * 1000000L;
+		for (int i = 0; i < nbClients; i++)
+		{
+			long remaining = (end - System.nanoTime()) / 1000000L;
+			if (remaining <= 0)
+			{
+				break;
+			}
+			long loginStart = System.nanoTime();
+			sockets[i] = new Socket("localhost", port);
+			sockets[i].setSoTimeout((int) remaining);
+			PrintWriter out =
+				new PrintWriter(sockets[i].getOutputStream(), true);
+			out.println("client" + i);
+			try
+			{
+				// attente de l'en-tête du flux des messages
+				InputStream in = sockets[i].getInputStream();
+				int received = 0;
+				while ((received < 4) && (in.read() >= 0))
+				{
+					received++;
+				}
+				if (received < 4)
+				{
+					break;
+				}
+			}
+			catch (SocketTimeoutException ste)
+			{
+				break;
+			}
+			maxLatency = Math.max(maxLatency, System.nanoTime() - loginStart);
+			logins++;
+		}
+		long elapsed = System.nanoTime() - start;
+
+		System.out.println("slow loris connections : " + nbLoris);
+		System.out.println("logins completed       : " + logins + " / "
+		    + nbClients);
+		System.out.printf("elapsed                : %d ms%n",
+		                  elapsed / 1000000);
+		System.out.printf("login rate             : %.1f logins/s%n",
+		                  logins / (elapsed / 1e9));
+		System.out.printf("max login latency      : %.1f ms%n",
+		                  maxLatency / 1e6);
+
+		for (Socket socket : sockets)
+		{
+			if (socket != null)
+			{
+				socket.close();
+			}
+		}
+		System.exit(0);
+	}
+}
@@ -0,0 +1,226 @@
+package examples;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Vector;
+import java.util.function.Consumer;
+
+import models.Message;
+import models.Message.MessageKind;
+import models.Message.MessageOrder;
+import models.MessageComparator;
+
+/**
+ * Mesure du temps de tri d'un ensemble de messages (1000000 messages de 100
+ * auteurs par défaut, rangés par ordre d'arrivée comme ceux d'un
+ * {@link models.MessageListModel} lorsque l'utilisateur choisit un autre
+ * ordre) suivant différents critères d'ordre :
+ * <ul>
+ * <li>legacy : critères d'ordre partagés par tous les messages dans un
+ * {@link Vector} statique et parcourus à chaque comparaison (comme le
+ * faisait auparavant {@link Message#compareTo(Message)}), précédé d'un tri
+ * suivant l'ordre d'arrivée afin que les messages équivalents restent dans
+ * leur ordre d'arrivée (comme le faisait auparavant
+ * {@link models.MessageListModel#sort()})</li>
+ * <li>comparator : tri unique par un {@link MessageComparator} composé une
+ * fois pour toutes, complété par l'ordre d'arrivée</li>
+ * </ul>
+ * <pre>
+ * java examples.SortBenchmark [--messages N] [--authors N]
+ * </pre>
+ * @author davidroussel
+ */
+public class SortBenchmark
+{
+	/**
+	 * Nombre de répétitions de chaque mesure
+	 */
+	private final static int REPEAT = 5;
+
+	/**
+	 * Les critères d'ordre mesurés
+	 */
+	private final static MessageOrder[][] SPECS = {
+		{},
+		{MessageOrder.AUTHOR},
+		{MessageOrder.CONTENT},
+		{MessageOrder.AUTHOR, MessageOrder.DATE},
+		{MessageOrder.AUTHOR, MessageOrder.CONTENT},
+		{MessageOrder.CONTENT, MessageOrder.AUTHOR, MessageOrder.DATE}
+	};
+
+	/**
+	 * Comparateur de l'ordre d'arrivée des messages
+	 */
+	private final static Comparator<Message> arrival =
+	    MessageComparator.ARRIVAL;
+
+	/**
+	 * Critères d'ordre partagés de l'ancienne comparaison des messages
+	 */
+	private static Vector<MessageOrder> orders = new Vector<MessageOrder>();
+
+	/**
+	 * Ancienne comparaison des messages : parcours des critères d'ordre
+	 * partagés à chaque comparaison
+	 */
+	private final static Comparator<Message> legacy =
+	    (Message m1, Message m2) ->
+	{
+		if (orders.isEmpty())
+		{
+			return arrival.compare(m1, m2);
+		}
+		int compare = 0;
+		for (Iterator<MessageOrder> it = orders.iterator(); it.hasNext();)
+		{
+			switch (it.next())
+			{
+				case AUTHOR:
+					String a1 = m1.getAuthor();
+					String a2 = m2.getAuthor();
+					if (a1 != null)
+					{
+						compare = (a2 != null ? a1.compareTo(a2) : 1);
+					}
+					else
+					{
+						compare = (a2 != null ? -1 : 0);
+					}
+					break;
+				case DATE:
+					compare = arrival.compare(m1, m2);
+					break;
+				case CONTENT:
+					compare = m1.getContent().compareTo(m2.getContent());
+					break;
+			}
+			if (compare != 0)
+			{
+				break;
+			}
+		}
+		return compare;
+	};
+
+	/**
+	 * Tri par l'ancienne comparaison
+	 * @param list la liste à trier
+	 */
+	private static void legacySort(List<Message> list)
+	{
+		Collections.sort(list, arrival);
+		Collections.sort(list, legacy);
+	}
+
+	/**
+	 * Tri par un comparateur
+	 * @param list la liste à trier
+	 * @param comparator le comparateur suivi de l'ordre d'arrivée
+	 */
+	private static void comparatorSort(List<Message> list,
+	                                   Comparator<Message> comparator)
+	{
+		Collections.sort(list, comparator);
+	}
+
+	/**
+	 * Mesure du temps moyen de tri d'une copie de messages
+	 * @param received les messages dans leur ordre d'arrivée
+	 * @param sorter le tri à mesurer
+	 * @param sorted la liste triée (remplie par la dernière répétition)
+	 * @return le temps moyen de tri (en ms)
+	 */
+	private static double time(List<Message> received,
+	                           Consumer<List<Message>> sorter,
+	                           List<Message> sorted)
+	{
+		// Préchauffage du JIT
+		sorted.clear();
+		sorted.addAll(received);
+		sorter.accept(sorted);
+		long total = 0;
+		for (int i = 0; i < REPEAT; i++)
+		{
+			sorted.clear();
+			sorted.addAll(received);
+			long start = System.nanoTime();
+			sorter.accept(sorted);
+			total += System.nanoTime() - start;
+		}
+		return total / 1e6 / REPEAT;
+	}
+
+	/**
+	 * Programme principal
+	 * @param args arguments
+	 * <ul>
+	 * <li>--messages N : nombre de messages [1000000]</li>
+	 * <li>--authors N : nombre d'auteurs [100]</li>
+	 * </ul>
+	 */
+	public static void main(String[] args)
+	{
+		int nbMessages = 1000000;
+		int nbAuthors = 100;
+		for (int i = 0; i < (args.length - 1); i++)
+		{
+			if (args[i].equals("--messages"))
+			{
+				nbMessages = Integer.parseInt(args[++i]);
+			}
+			else if (args[i].equals("--authors"))
+			{
+				nbAuthors = Integer.parseInt(args[++i]);
+			}
+		}
+
+		Random random = new Random(42);
+		String[] authors = new String[nbAuthors];
+		for (int i = 0; i < nbAuthors; i++)
+		{
+			authors[i] = String.format("user%04d", i);
+		}
+		long origin = System.currentTimeMillis() - nbMessages;
+		List<Message> received = new ArrayList<Message>(nbMessages);
+		for (int i = 0; i < nbMessages; i++)
+		{
+			received.add(new Message(origin + i,
+			                         "message " + random.nextInt(1000),
+			                         authors[random.nextInt(nbAuthors)],
+			                         MessageKind.CHAT,
+			                         i + 1));
+		}
+		System.out.printf("%d messages, %d authors%n", nbMessages, nbAuthors);
+
+		List<Message> legacySorted = new ArrayList<Message>(nbMessages);
+		List<Message> comparatorSorted = new ArrayList<Message>(nbMessages);
+		for (MessageOrder[] spec : SPECS)
+		{
+			MessageComparator comparator = new MessageComparator(spec);
+			Comparator<Message> sorted = comparator.thenComparingArrival();
+			orders.clear();
+			for (MessageOrder order : spec)
+			{
+				orders.add(order);
+			}
+
+			double legacyTime = time(received, SortBenchmark::legacySort,
+			                         legacySorted);
+			double comparatorTime =
+			    time(received, (List<Message> list) -> comparatorSort(list, sorted),
+			         comparatorSorted);
+			if (!legacySorted.equals(comparatorSorted))
+			{
+				System.out.println("  MISMATCH for " + comparator);
+			}
+			System.out.printf("%-24s : legacy %8.1f ms, comparator %8.1f ms"
+			    + " (x%.2f)%n", comparator, legacyTime, comparatorTime,
+			    legacyTime / comparatorTime);
+		}
+	}
+}
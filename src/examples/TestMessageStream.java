@@ -8,6 +8,7 @@ import java.util.function.Predicate;
 
 import models.Message;
 import models.Message.MessageOrder;
+import models.MessageComparator;
 
 /**
  * Test du flux tri et filtr des messages
@@ -58,19 +59,19 @@ public class TestMessageStream
 		System.out.println("Flux entier des messages tris par date : ");
 		messages.stream().sorted().forEach(messagePrinter);
 
-		Message.removeOrder(MessageOrder.DATE);
-		Message.addOrder(MessageOrder.AUTHOR);
+		MessageComparator byAuthor = new MessageComparator(MessageOrder.AUTHOR);
+		MessageComparator byAuthorContent = byAuthor.with(MessageOrder.CONTENT);
+		MessageComparator byAuthorContentDate =
+		    byAuthorContent.with(MessageOrder.DATE);
 
 		System.out.println("Flux entier des messages tris par auteur : ");
-		messages.stream().sorted().forEach(messagePrinter);
+		messages.stream().sorted(byAuthor).forEach(messagePrinter);
 
-		Message.addOrder(MessageOrder.CONTENT);
 		System.out.println("Flux entier des messages tris par auteur et par contenu: ");
-		messages.stream().sorted().forEach(messagePrinter);
+		messages.stream().sorted(byAuthorContent).forEach(messagePrinter);
 
-		Message.addOrder(MessageOrder.DATE);
 		System.out.println("Flux entier des messages tris par auteur et par contenu et par date: ");
-		messages.stream().sorted().forEach(messagePrinter);
+		messages.stream().sorted(byAuthorContentDate).forEach(messagePrinter);
 
 		Predicate<Message> zebulonFilter = (Message m) ->
 		{
@@ -89,11 +90,7 @@ public class TestMessageStream
 
 		// Flux filtr (pour Zbulon) des messages tris
 		System.out.println("Flux filtr (Zbulon) des messages tris par auteur et par contenu : ");
-		messages.stream().sorted().filter(zebulonFilter).forEach(messagePrinter);
-		Message.removeOrder(MessageOrder.CONTENT);
-		Message.removeOrder(MessageOrder.AUTHOR);
-		Message.clearOrders();
-		Message.addOrder(MessageOrder.DATE);
+		messages.stream().sorted(byAuthorContentDate).filter(zebulonFilter).forEach(messagePrinter);
 
 		System.out.println("Flux filtr (Zbulon) des messages re-tris par date: ");
 		messages.stream().filter(zebulonFilter).sorted().forEach(messagePrinter);
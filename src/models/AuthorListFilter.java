@@ -0,0 +1,72 @@
+package models;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Filtre des messages dont l'auteur fait partie d'un ensemble d'auteurs
+ * référencés dans ce filtre. La vérification d'un message ne dépend pas du
+ * nombre d'auteurs référencés (recherche de l'auteur dans un
+ * {@link HashSet}).
+ * Lorsqu'il est utilisé comme filtre d'un {@link MessageListModel}, les
+ * messages affichés ne sont pas obtenus en vérifiant chacun des messages mais
+ * en fusionnant les listes (triées) des messages de chacun des auteurs
+ * référencés, que le modèle tient à jour au fur et à mesure de l'arrivée des
+ * messages.
+ * Les auteurs référencés ne peuvent plus être modifiés après la création du
+ * filtre : pour changer d'auteurs on crée un nouveau filtre.
+ * @author davidroussel
+ */
+public class AuthorListFilter implements Predicate<Message>
+{
+	/**
+	 * Les auteurs référencés
+	 */
+	private final Set<String> authors;
+
+	/**
+	 * Constructeur d'un filtre à partir des auteurs référencés
+	 * @param authors les auteurs dont les messages satisfont le filtre
+	 */
+	public AuthorListFilter(Collection<String> authors)
+	{
+		this.authors = Collections.unmodifiableSet(
+		    new HashSet<String>(authors));
+	}
+
+	/**
+	 * Accesseur en lecture des auteurs référencés
+	 * @return l'ensemble (non modifiable) des auteurs référencés
+	 */
+	public Set<String> getAuthors()
+	{
+		return authors;
+	}
+
+	/**
+	 * Vérification d'un message
+	 * @param message le message à vérifier
+	 * @return true si le message a un auteur qui fait partie des auteurs
+	 * référencés
+	 * @see java.util.function.Predicate#test(java.lang.Object)
+	 */
+	@Override
+	public boolean test(Message message)
+	{
+		return (message != null) && message.hasAuthor()
+		    && authors.contains(message.getAuthor());
+	}
+
+	/**
+	 * Représentation du filtre sous forme de chaine
+	 * @return une chaine décrivant les auteurs référencés
+	 */
+	@Override
+	public String toString()
+	{
+		return "authors " + authors;
+	}
+}
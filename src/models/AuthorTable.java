@@ -0,0 +1,70 @@
+package models;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Table des noms d'auteurs partagée par tous les {@link Message}s : chaque
+ * message décodé ou désérialisé contient une nouvelle chaine pour le nom de
+ * son auteur, la table permet de remplacer cette chaine par celle déjà
+ * utilisée par les messages précédents du même auteur. Un historique de
+ * messages ne contient ainsi qu'une seule chaine par auteur.
+ * La table est thread safe et ne contient au plus que {@link #CAPACITY}
+ * noms : lorsqu'elle est pleine les nouveaux noms ne sont plus partagés
+ * (ce qui évite qu'elle ne croisse indéfiniment).
+ * @author davidroussel
+ */
+public final class AuthorTable
+{
+	/**
+	 * Nombre maximum de noms dans la table
+	 */
+	public final static int CAPACITY = 65536;
+
+	/**
+	 * La table des noms (chaque nom est associé à lui même)
+	 */
+	private final static ConcurrentHashMap<String, String> names =
+	    new ConcurrentHashMap<String, String>();
+
+	/**
+	 * Constructeur privé : classe utilitaire
+	 */
+	private AuthorTable()
+	{
+	}
+
+	/**
+	 * Nom partagé égal à un nom
+	 * @param name le nom recherché (éventuellement null)
+	 * @return la chaine de la table égale à ce nom, ou bien le nom lui même
+	 * s'il n'était pas dans la table (il y est alors ajouté si la table
+	 * n'est pas pleine), ou bien null si le nom est null
+	 */
+	public static String intern(String name)
+	{
+		if (name == null)
+		{
+			return null;
+		}
+		String shared = names.get(name);
+		if (shared != null)
+		{
+			return shared;
+		}
+		if (names.size() >= CAPACITY)
+		{
+			return name;
+		}
+		shared = names.putIfAbsent(name, name);
+		return (shared != null ? shared : name);
+	}
+
+	/**
+	 * Nombre de noms dans la table
+	 * @return le nombre de noms partagés
+	 */
+	public static int size()
+	{
+		return names.size();
+	}
+}
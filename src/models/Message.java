@@ -1,11 +1,21 @@
 package models;
 
+import java.io.IOException;
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamException;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
-import java.text.SimpleDateFormat;
-import java.util.Calendar;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
-import java.util.Vector;
+import java.util.List;
 
 /**
  * Classe contenant un message envoyé par le serveur.
@@ -14,14 +24,34 @@ import java.util.Vector;
  * 	<li>la date d'arrivée du message</li>
  * 	<li>le contenu du message></li>
  * 	<li>(eventuellement) un author</li>
+ * 	<li>(eventuellement) le numéro de séquence attribué par le serveur lors
+ * 	de sa diffusion</li>
+ * 	<li>la nature du message ({@link MessageKind}) : un message ordinaire,
+ * 	le résultat d'une commande (notification diffusée à tous, réponse ou
+ * 	erreur destinée au seul client ayant envoyé la commande) ou bien un
+ * 	évènement de présence diffusé par le serveur (arrivée, départ ou
+ * 	éjection d'un utilisateur, liste complète des utilisateurs connectés)
+ * 	dont le contenu est le ou les noms d'utilisateurs concernés</li>
  * </ul>
- * Les message peuvent être comparés entre eux pour obtenir l'ordre des messages
- * avec la méthode compareTo(Message m). Les critère d'ordre des messages
- * peuvent être customizés.
+ * Les message peuvent être comparés entre eux pour obtenir l'ordre d'arrivée
+ * des messages avec la méthode compareTo(Message m). D'autres ordres
+ * (composés de critères {@link MessageOrder}) sont obtenus avec des
+ * {@link MessageComparator}s.
+ * Un message est immuable (aucun de ses attributs n'est modifié après sa
+ * construction ou sa désérialisation) : il peut être partagé entre threads
+ * et conservé dans des historiques sans être copié. Sa date est conservée
+ * sous la forme d'un nombre de millisecondes et les noms de ses auteurs sont
+ * partagés par tous les messages grâce à l'{@link AuthorTable}.
  * @author davidroussel
  */
 public class Message implements Serializable, Comparable<Message>
 {
+	/**
+	 * Numéro de version de la sérialisation des messages (fixé afin que les
+	 * clients et serveurs d'une version antérieure restent compatibles)
+	 */
+	private static final long serialVersionUID = 7454580897122671278L;
+
 	/**
 	 * Les différents ordres de comparaison possibles pour un message
 	 */
@@ -61,48 +91,328 @@ public class Message implements Serializable, Comparable<Message>
 	}
 
 	/**
-	 * Ensemble des critères de tri [Initialisé à vide]
-	 * Les critères de tri peuvent contenir une et une seule instance
-	 * des différents éléments de {@link MessageOrder} dans n'importe quel
-	 * ordre.
+	 * Les différentes natures de messages. Chaque nature est identifiée par
+	 * un code sur un octet ({@link #getCode()}) utilisé par les formats
+	 * d'échange des messages. Le code 0 correspond aux messages ordinaires,
+	 * ce qui est aussi la nature des messages envoyés par les versions
+	 * antérieures.
+	 */
+	public enum MessageKind
+	{
+		/**
+		 * Message ordinaire (d'un utilisateur ou du serveur)
+		 */
+		CHAT(0),
+		/**
+		 * Arrivée d'un utilisateur (le contenu est son nom)
+		 */
+		JOIN(1),
+		/**
+		 * Départ d'un utilisateur (le contenu est son nom)
+		 */
+		LEAVE(2),
+		/**
+		 * Ejection d'un utilisateur par le super-utilisateur (le contenu est
+		 * son nom)
+		 */
+		KICK(3),
+		/**
+		 * Liste complète des utilisateurs connectés, envoyée par le serveur
+		 * à un nouveau client (le contenu est la liste des noms séparés par
+		 * des sauts de ligne)
+		 */
+		ROSTER(4),
+		/**
+		 * Notification diffusée à tous les clients de l'exécution d'une
+		 * commande par un utilisateur (déconnection, éjection d'un autre
+		 * utilisateur)
+		 */
+		COMMAND(5),
+		/**
+		 * Réponse du serveur à une commande, envoyée au seul client ayant
+		 * envoyé la commande (par exemple l'en-tête puis la fin des
+		 * résultats d'une recherche dans l'historique)
+		 */
+		ACK(6),
+		/**
+		 * Refus ou erreur d'une commande, envoyé au seul client ayant envoyé
+		 * la commande
+		 */
+		ERROR(7);
+
+		/**
+		 * Les natures de messages indexées par leur code
+		 */
+		private final static MessageKind[] byCode =
+		    new MessageKind[values().length];
+
+		static
+		{
+			for (MessageKind kind : values())
+			{
+				byCode[kind.code] = kind;
+			}
+		}
+
+		/**
+		 * Le code de la nature de message
+		 */
+		private final byte code;
+
+		/**
+		 * Constructeur d'une nature de message
+		 * @param code le code de la nature de message
+		 */
+		private MessageKind(int code)
+		{
+			this.code = (byte) code;
+		}
+
+		/**
+		 * Accesseur en lecture du code de la nature de message
+		 * @return le code de la nature de message
+		 */
+		public byte getCode()
+		{
+			return code;
+		}
+
+		/**
+		 * Obtention d'une nature de message d'après son code
+		 * @param code le code de la nature de message
+		 * @return la nature de message correspondante ou bien null si ce code
+		 * ne correspond à aucune nature de message
+		 */
+		public static MessageKind fromCode(int code)
+		{
+			if ((code >= 0) && (code < byCode.length))
+			{
+				return byCode[code];
+			}
+			return null;
+		}
+
+		/**
+		 * Indique si cette nature de message est un évènement de présence
+		 * @return true pour {@link #JOIN}, {@link #LEAVE}, {@link #KICK} et
+		 * {@link #ROSTER}
+		 */
+		public boolean isPresence()
+		{
+			return (code >= JOIN.code) && (code <= ROSTER.code);
+		}
+
+		/**
+		 * Affichage d'une nature de message
+		 * @return une chaine de caractère représentant une nature de message
+		 */
+		@Override
+		public String toString()
+		{
+			switch (this)
+			{
+				case CHAT:
+					return new String("chat");
+				case JOIN:
+					return new String("join");
+				case LEAVE:
+					return new String("leave");
+				case KICK:
+					return new String("kick");
+				case ROSTER:
+					return new String("roster");
+				case COMMAND:
+					return new String("command");
+				case ACK:
+					return new String("ack");
+				case ERROR:
+					return new String("error");
+			}
+			throw new AssertionError("MessageKind: unknown kind: " + this);
+		}
+	}
+
+	/**
+	 * Les attributs sérialisés d'un message : ce sont ceux des versions
+	 * précédentes (dont la date sous forme de {@link Date}) afin que les
+	 * messages restent lisibles par les clients historiques, et que ceux
+	 * qu'ils envoient restent lisibles
 	 */
-	protected static Vector<MessageOrder> orders = new Vector<MessageOrder>();
+	private static final ObjectStreamField[] serialPersistentFields = {
+		new ObjectStreamField("date", Date.class),
+		new ObjectStreamField("content", String.class),
+		new ObjectStreamField("author", String.class),
+		new ObjectStreamField("sequence", Long.TYPE),
+		new ObjectStreamField("kind", Byte.TYPE)
+	};
 
 	/**
-	 * La date d'arrivée du message
+	 * La date d'arrivée du message (en ms depuis le 1er janvier 1970)
 	 */
-	private Date date;
+	private final long timestamp;
 
 	/**
 	 * Le contenu du message
 	 */
-	private String content;
+	private final String content;
 
 	/**
-	 * L'auteur du message (optionnel).
+	 * L'auteur du message (optionnel), partagé grâce à l'{@link AuthorTable}.
 	 * Un message du serveur peut éventuellement ne pas avoir d'auteur
 	 */
-	private String author;
+	private final String author;
 
 	/**
-	 * Formatteur pour l'affichage de la date des messages
+	 * Le numéro de séquence attribué par le serveur lors de la diffusion du
+	 * message (0 si le message n'a pas encore été diffusé). Les messages
+	 * diffusés par un serveur ont des numéros strictement croissants dans
+	 * l'ordre dans lequel ils sont reçus par tous les clients.
 	 */
-	protected static SimpleDateFormat dateFormat =
-	    new SimpleDateFormat("yyyy/MM/dd HH:mm:ss");
+	private final long sequence;
 
 	/**
-	 * Constructeur valué d'un message
-	 * @param date la date d'arrivée du message
+	 * Le code de la nature du message ({@link MessageKind#getCode()}).
+	 * Les messages sérialisés par des versions antérieures n'ayant pas cet
+	 * attribut sont lus avec le code 0, c'est à dire des messages ordinaires.
+	 */
+	private final byte kind;
+
+	/**
+	 * Message construit par {@link #readObject(ObjectInputStream)} d'après
+	 * les attributs lus, puis renvoyé par {@link #readResolve()} à la place
+	 * de l'instance désérialisée (dont les attributs, finaux, ne peuvent pas
+	 * être affectés). La lecture des attributs d'un message et son
+	 * remplacement ont lieu successivement dans le thread de lecture, sans
+	 * autre message désérialisé entre les deux.
+	 */
+	private final static ThreadLocal<Message> deserialized =
+	    new ThreadLocal<Message>();
+
+	/**
+	 * Formatteur pour l'affichage de la date des messages (immuable, il peut
+	 * donc être utilisé simultanément par plusieurs threads)
+	 */
+	protected final static DateTimeFormatter dateFormat =
+	    DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss")
+	    .withZone(ZoneId.systemDefault());
+
+	/**
+	 * Une seconde et sa date formattée
+	 */
+	private final static class FormattedSecond
+	{
+		/**
+		 * La seconde (depuis le 1er janvier 1970)
+		 */
+		private final long second;
+
+		/**
+		 * La date formattée de cette seconde
+		 */
+		private final String text;
+
+		/**
+		 * Constructeur d'une seconde formattée
+		 * @param second la seconde (depuis le 1er janvier 1970)
+		 */
+		private FormattedSecond(long second)
+		{
+			this.second = second;
+			text = dateFormat.format(Instant.ofEpochSecond(second));
+		}
+	}
+
+	/**
+	 * Dernière seconde formattée : les messages arrivés durant la même
+	 * seconde réutilisent sa date formattée. Cette seconde est immuable et
+	 * remplacée d'un bloc, elle peut donc être partagée entre threads sans
+	 * synchronisation.
+	 */
+	private static volatile FormattedSecond lastSecond =
+	    new FormattedSecond(0);
+
+	/**
+	 * Constructeur valué d'un message de nature quelconque
+	 * @param timestamp la date d'arrivée du message (en ms depuis le 1er
+	 * janvier 1970)
 	 * @param content le contenu du message
 	 * @param author l'auteur du message
+	 * @param kind la nature du message
+	 * @param sequence le numéro de séquence attribué par le serveur (ou bien
+	 * 0 si le message n'a pas encore été diffusé)
 	 */
-	public Message(Date date, String content, String author)
+	public Message(long timestamp,
+	               String content,
+	               String author,
+	               MessageKind kind,
+	               long sequence)
 	{
-		// date ne doit pas être null
-		this.date = (date != null ? date : Calendar.getInstance().getTime());
+		this.timestamp = timestamp;
 		// content ne doit pas être null
 		this.content = (content != null ? content : new String());
-		this.author = author;
+		this.author = AuthorTable.intern(author);
+		this.kind = kind.getCode();
+		this.sequence = sequence;
+	}
+
+	/**
+	 * Constructeur valué d'un message
+	 * @param date la date d'arrivée du message (ou bien null pour
+	 * "maintenant")
+	 * @param content le contenu du message
+	 * @param author l'auteur du message
+	 */
+	public Message(Date date, String content, String author)
+	{
+		this(date, content, author, MessageKind.CHAT);
+	}
+
+	/**
+	 * Constructeur valué d'un message de nature quelconque
+	 * @param date la date d'arrivée du message (ou bien null pour
+	 * "maintenant")
+	 * @param content le contenu du message
+	 * @param author l'auteur du message
+	 * @param kind la nature du message
+	 */
+	public Message(Date date, String content, String author, MessageKind kind)
+	{
+		this(date != null ? date.getTime() : System.currentTimeMillis(),
+		     content, author, kind, 0);
+	}
+
+	/**
+	 * Constructeur d'un message du serveur (sans auteur, daté de
+	 * "maintenant") d'une nature quelconque, par exemple un évènement de
+	 * présence concernant un utilisateur ou bien le résultat d'une commande
+	 * @param kind la nature du message
+	 * @param content le contenu du message (le nom de l'utilisateur concerné
+	 * pour {@link MessageKind#JOIN}, {@link MessageKind#LEAVE} ou
+	 * {@link MessageKind#KICK})
+	 */
+	public Message(MessageKind kind, String content)
+	{
+		this(null, content, null, kind);
+	}
+
+	/**
+	 * Création d'un évènement de présence contenant la liste complète des
+	 * utilisateurs connectés ({@link MessageKind#ROSTER})
+	 * @param names les noms des utilisateurs connectés
+	 * @return un nouveau message contenant les noms des utilisateurs
+	 */
+	public static Message roster(Collection<String> names)
+	{
+		StringBuilder sb = new StringBuilder();
+		for (Iterator<String> it = names.iterator(); it.hasNext();)
+		{
+			sb.append(it.next());
+			if (it.hasNext())
+			{
+				sb.append('\n');
+			}
+		}
+		return new Message(MessageKind.ROSTER, sb.toString());
 	}
 
 	/**
@@ -117,12 +427,9 @@ public class Message implements Serializable, Comparable<Message>
 
 	/**
 	 * Constructeur valué d'un message.
-	 * La date d'arrivée est implicitement initialisée à "maintenant" en
-	 * utilisant le calendrier
+	 * La date d'arrivée est implicitement initialisée à "maintenant"
 	 * @param content le contenu du message
 	 * @param author l'auteur du message
-	 * @see Calendar#getInstance()
-	 * @see Calendar#getTime()
 	 */
 	public Message(String content, String author)
 	{
@@ -131,11 +438,8 @@ public class Message implements Serializable, Comparable<Message>
 
 	/**
 	 * Constructeur valué d'un message.
-	 * La date d'arrivée est implicitement initialisée à "maintenant" en
-	 * utilisant le calendrier
+	 * La date d'arrivée est implicitement initialisée à "maintenant"
 	 * @param content le contenu du message
-	 * @see Calendar#getInstance()
-	 * @see Calendar#getTime()
 	 */
 	public Message(String content)
 	{
@@ -144,20 +448,37 @@ public class Message implements Serializable, Comparable<Message>
 
 	/**
 	 * Accesseur en lecture de la date du message
-	 * @return la date du message
+	 * @return une nouvelle {@link Date} contenant la date du message
 	 */
 	public Date getDate()
 	{
-		return date;
+		return new Date(timestamp);
+	}
+
+	/**
+	 * Accesseur en lecture de la date du message (sans allocation)
+	 * @return la date du message en ms depuis le 1er janvier 1970
+	 */
+	public long getTimestamp()
+	{
+		return timestamp;
 	}
 
 	/**
 	 * Accesseur en lecture de la chaîne formattée de la date du message
+	 * (thread safe)
 	 * @return la chaîne formattée de la date du message
 	 */
 	public String getFormattedDate()
 	{
-		return dateFormat.format(date);
+		long second = Math.floorDiv(timestamp, 1000L);
+		FormattedSecond formatted = lastSecond;
+		if (formatted.second != second)
+		{
+			formatted = new FormattedSecond(second);
+			lastSecond = formatted;
+		}
+		return formatted.text;
 	}
 
 	/**
@@ -190,24 +511,114 @@ public class Message implements Serializable, Comparable<Message>
 		return author != null;
 	}
 
+	/**
+	 * Accesseur en lecture du numéro de séquence du message
+	 * @return le numéro de séquence attribué par le serveur ou bien 0 si le
+	 * message n'a pas encore été diffusé
+	 */
+	public long getSequence()
+	{
+		return sequence;
+	}
+
+	/**
+	 * Copie du message avec un numéro de séquence (utilisé par le serveur
+	 * lors de la diffusion du message)
+	 * @param sequence le numéro de séquence du message
+	 * @return un nouveau message identique à celui ci mais avec ce numéro de
+	 * séquence
+	 */
+	public Message withSequence(long sequence)
+	{
+		return new Message(timestamp, content, author, getKind(), sequence);
+	}
+
+	/**
+	 * Copie du message avec un numéro de séquence et une date de diffusion
+	 * (utilisé par le {@link chat.server.Sequencer} du serveur afin que les
+	 * dates des messages diffusés croissent avec leurs numéros de séquence)
+	 * @param sequence le numéro de séquence du message
+	 * @param timestamp la date de diffusion du message (en ms depuis le 1er
+	 * janvier 1970)
+	 * @return un nouveau message identique à celui ci mais avec ce numéro de
+	 * séquence et cette date
+	 */
+	public Message withSequence(long sequence, long timestamp)
+	{
+		return new Message(timestamp, content, author, getKind(), sequence);
+	}
+
+	/**
+	 * Indique si le message possède un numéro de séquence
+	 * @return true si le message a été diffusé par un serveur attribuant
+	 * des numéros de séquence
+	 */
+	public boolean hasSequence()
+	{
+		return sequence != 0;
+	}
+
+	/**
+	 * Accesseur en lecture de la nature du message
+	 * @return la nature du message
+	 */
+	public MessageKind getKind()
+	{
+		return MessageKind.fromCode(kind);
+	}
+
+	/**
+	 * Indique si le message est un évènement de présence
+	 * @return true si le message est un évènement de présence
+	 * @see MessageKind#isPresence()
+	 */
+	public boolean isPresence()
+	{
+		return getKind().isPresence();
+	}
+
+	/**
+	 * Noms des utilisateurs concernés par un évènement de présence
+	 * @return la liste des noms des utilisateurs connectés pour un
+	 * {@link MessageKind#ROSTER}, le nom de l'utilisateur concerné pour les
+	 * autres évènements de présence et une liste vide pour les messages
+	 * ordinaires
+	 */
+	public List<String> getNames()
+	{
+		if (!isPresence() || content.isEmpty())
+		{
+			return Collections.<String>emptyList();
+		}
+		if (kind == MessageKind.ROSTER.getCode())
+		{
+			return Arrays.asList(content.split("\n"));
+		}
+		return Collections.singletonList(content);
+	}
+
 	/**
 	 * Accesseur en lecture du formatteur de date des messages
 	 * @return le formateur de date des messages
 	 */
-	public static SimpleDateFormat getDateFormat()
+	public static DateTimeFormatter getDateFormat()
 	{
 		return dateFormat;
 	}
 
 	/**
 	 * @return le hashcode du message basé sur le hashcode de sa date, de son
-	 * auteur et de son contenu (evt utilisé dans un hashset de messages)
+	 * numéro de séquence, de sa nature, de son auteur et de son contenu (evt
+	 * utilisé dans un hashset de messages) : les mêmes attributs que ceux
+	 * comparés par {@link #equals(Object)}
 	 */
 	@Override
 	public int hashCode()
 	{
 		final int prime = 31;
-		int hash = date.hashCode();
+		int hash = Long.hashCode(timestamp);
+		hash = (prime * hash) + Long.hashCode(sequence);
+		hash = (prime * hash) + kind;
 		hash = (prime * hash) + content.hashCode();
 		if (author != null)
 		{
@@ -219,7 +630,8 @@ public class Message implements Serializable, Comparable<Message>
 	/**
 	 * Comparaison binaire avec un autre objet
 	 * @param obj l'autre objet à comparer
-	 * @return true si l'autre objet est un message avec les mêmes attributs
+	 * @return true si l'autre objet est un message avec les mêmes date,
+	 * numéro de séquence, nature, auteur et contenu
 	 * @note on peut utiliser la comparaison 3-way pour effectivement comparer
 	 * deux messages;
 	 */
@@ -240,7 +652,8 @@ public class Message implements Serializable, Comparable<Message>
 		{
 			Message m = (Message) obj;
 
-			if (date.equals(m.date))
+			if ((timestamp == m.timestamp) && (sequence == m.sequence)
+			    && (kind == m.kind))
 			{
 				if (content.equals(m.content))
 				{
@@ -262,165 +675,171 @@ public class Message implements Serializable, Comparable<Message>
 	/**
 	 * Affichage du message sous forme de chaîne de caractères
 	 * @return une chaîne de caractère représentant le message sous la forme
-	 * [yyyy/mm/dd HH:MM:SS] author > message content
+	 * [yyyy/mm/dd HH:MM:SS] author > message content, ou bien
+	 * [yyyy/mm/dd HH:MM:SS] kind : name1, name2 pour un évènement de présence
 	 */
 	@Override
 	public String toString()
 	{
-		StringBuffer sb = new StringBuffer("[");
+		StringBuilder sb = new StringBuilder(32 + content.length()
+		    + (author != null ? author.length() : 0));
 
-		sb.append(dateFormat.format(date));
+		sb.append('[');
+		sb.append(getFormattedDate());
 		sb.append("] ");
 		if (author != null)
 		{
 			sb.append(author);
 			sb.append(" > ");
 		}
-		sb.append(content);
-
-		return sb.toString();
-	}
-
-	/**
-	 * Affichage des critères d'ordre utilisés lors de la comparaison de
-	 * messages
-	 * @return une chaîne de caractères contenant les différents critères
-	 * d'ordre des messages
-	 */
-	public static String toStringOrder()
-	{
-		StringBuilder sb = new StringBuilder();
-		sb.append("{");
-		for (Iterator<MessageOrder> it = orders.iterator(); it.hasNext(); )
+		if (isPresence())
 		{
-			sb.append(it.next().toString());
-			if (it.hasNext())
+			sb.append(getKind());
+			sb.append(" : ");
+			for (Iterator<String> it = getNames().iterator(); it.hasNext();)
 			{
-				sb.append(", ");
+				sb.append(it.next());
+				if (it.hasNext())
+				{
+					sb.append(", ");
+				}
 			}
 		}
-		sb.append("}");
+		else
+		{
+			sb.append(content);
+		}
 
 		return sb.toString();
 	}
 
 	/**
-	 * Comparaison (3 way : -1, 0, 1) de deux messages en utilisant les
-	 * critères de comparaison mis en place dans {@link #orders}
+	 * Comparaison (3 way) de deux messages suivant leur ordre
+	 * d'arrivée (voir {@link #compareArrival(Message)}). Les autres ordres
+	 * sont obtenus avec des {@link MessageComparator}s.
 	 * @param m l'autre message à comparer
-	 * @return -1 si le message courant est considéré comme inférieur au message
-	 * m suivant les critères présents dans {@link #orders}, 0 s'ils sont
-	 * considérés comme égaux et 1 si le message courant est considéré comme
-	 * supérieur au message m, toujours suivant les critères mis en place dans
-	 * {@link #orders}.
+	 * @return une valeur négative si le message courant est arrivé avant le
+	 * message m, 0 si les deux messages sont égaux et une valeur positive si
+	 * le message courant est arrivé après le message m.
 	 */
 	@Override
 	public int compareTo(Message m)
 	{
-		int compare = 0;
-		if (orders.isEmpty())
+		return compareArrival(m);
+	}
+
+	/**
+	 * Comparaison de l'ordre d'arrivée de deux messages : suivant leurs
+	 * dates, puis suivant leurs numéros de séquence (ce qui départage des
+	 * messages diffusés durant la même milliseconde, un message sans numéro
+	 * de séquence étant placé avant), puis suivant leur nature, leur auteur
+	 * et leur contenu. Cet ordre est total et cohérent avec
+	 * {@link #equals(Object)}, y compris lorsque des messages avec et sans
+	 * numéros de séquence sont mélangés (par exemple des résultats de
+	 * l'historique renvoyés par le serveur et des messages reçus en direct).
+	 * Le serveur datant les messages lors de leur séquencement
+	 * ({@link #withSequence(long, long)}), les dates des messages diffusés ne
+	 * décroissent jamais avec leurs numéros de séquence : ces messages sont
+	 * donc rangés dans l'ordre de leurs numéros de séquence.
+	 * @param m l'autre message à comparer
+	 * @return une valeur négative, nulle ou positive suivant que le message
+	 * courant est arrivé avant, en même temps ou après le message m
+	 */
+	int compareArrival(Message m)
+	{
+		int compare = Long.compare(timestamp, m.timestamp);
+		if (compare != 0)
 		{
-			// l'ordre par défaut est la date du message
-			compare = date.compareTo(m.date);
+			return compare;
 		}
-		else
+		compare = Long.compare(sequence, m.sequence);
+		if (compare != 0)
 		{
-			for (Iterator<MessageOrder> it = orders.iterator(); it.hasNext();)
+			return compare;
+		}
+		compare = Byte.compare(kind, m.kind);
+		if (compare != 0)
+		{
+			return compare;
+		}
+		if (author != m.author)
+		{
+			if (author == null)
 			{
-				MessageOrder criterium = it.next();
-				switch (criterium)
-				{
-					case AUTHOR:
-						if (author != null)
-						{
-							if(m.author != null)
-							{
-								compare = author.compareTo(m.author);
-							}
-							else
-							{
-								/*
-								 * Un message avec auteur sera considéré comme
-								 * supérieur à un message sans auteur
-								 */
-								compare = 1;
-							}
-						}
-						else // author == null
-						{
-							if (m.author != null)
-							{
-								/*
-								 * un message sans auteur sera considéré comme
-								 * inférieur à un message avec auteur
-								 */
-								compare = -1;
-							}
-							else
-							{
-								compare = 0;
-							}
-						}
-						break;
-					case DATE:
-						compare = date.compareTo(m.date);
-						break;
-					case CONTENT:
-						compare = content.compareTo(m.content);
-					default:
-						break;
-				}
-				// Si le critère courant permet de différentier les messages
-				// on renvoie sa valeur tout de suite.
-				if (compare != 0)
-				{
-					break;
-				}
+				return -1;
+			}
+			if (m.author == null)
+			{
+				return 1;
+			}
+			compare = author.compareTo(m.author);
+			if (compare != 0)
+			{
+				return compare;
 			}
-			// On a terminé la boucle sans avoir renvoyé une valeur != 0,
-			// tous les critères de comparaison ont été 0 (valeurs égales)
 		}
-		return compare;
+		return content.compareTo(m.content);
 	}
 
 	/**
-	 * Ajout d'un critère de tri aux critères de tri
-	 * @param o le critère à ajouter
-	 * @return true si le critère de tri n'était pas déjà présent dans
-	 * l'ensemble et qu'il a pu être ajouté, false sinon.
+	 * Sérialisation d'un message sous la forme des versions précédentes
+	 * (voir {@link #serialPersistentFields})
+	 * @param out le flux de sérialisation
+	 * @throws IOException si l'écriture échoue
 	 */
-	public static boolean addOrder(MessageOrder o)
+	private void writeObject(ObjectOutputStream out) throws IOException
 	{
-		if (o != null)
-		{
-			if (!orders.contains(o))
-			{
-				return orders.add(o);
-			}
-		}
-		return false;
+		ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("date", new Date(timestamp));
+		fields.put("content", content);
+		fields.put("author", author);
+		fields.put("sequence", sequence);
+		fields.put("kind", kind);
+		out.writeFields();
 	}
 
 	/**
-	 * Retrait d'un critère de tri aux critères de tri
-	 * @param o le critère de tri à retirer
-	 * @return true si le crière de tri était présent dans l'ensemble des
-	 * critères et qu'il a été retiré, false sinon.
+	 * Désérialisation d'un message écrit par cette version ou par une
+	 * version précédente (les attributs absents prennent leur valeur par
+	 * défaut) : les attributs lus servent à construire un nouveau message
+	 * (dont l'auteur est partagé grâce à l'{@link AuthorTable}) qui
+	 * remplacera l'instance désérialisée (voir {@link #readResolve()})
+	 * @param in le flux de désérialisation
+	 * @throws IOException si la lecture échoue
+	 * @throws ClassNotFoundException si la classe d'un attribut est inconnue
 	 */
-	public static boolean removeOrder(MessageOrder o)
+	private void readObject(ObjectInputStream in)
+		throws IOException, ClassNotFoundException
 	{
-		if (o != null)
+		ObjectInputStream.GetField fields = in.readFields();
+		Date date = (Date) fields.get("date", null);
+		byte code = fields.get("kind", (byte) 0);
+		MessageKind readKind = MessageKind.fromCode(code);
+		if (readKind == null)
 		{
-			return orders.remove(o);
+			throw new InvalidObjectException("unknown message kind " + code);
 		}
-		return false;
+		deserialized.set(new Message(date != null ? date.getTime() : 0,
+		                             (String) fields.get("content", null),
+		                             (String) fields.get("author", null),
+		                             readKind,
+		                             fields.get("sequence", 0L)));
 	}
 
 	/**
-	 * Effacement de l'ensemble des critères de tri
+	 * Remplacement de l'instance désérialisée (dont les attributs n'ont pas
+	 * été affectés) par le message construit lors de sa lecture
+	 * @return le message construit par {@link #readObject(ObjectInputStream)}
+	 * @throws ObjectStreamException si aucun message n'a été lu
 	 */
-	public static void clearOrders()
+	private Object readResolve() throws ObjectStreamException
 	{
-		orders.clear();
+		Message message = deserialized.get();
+		deserialized.remove();
+		if (message == null)
+		{
+			throw new InvalidObjectException("message fields not read");
+		}
+		return message;
 	}
 }
@@ -0,0 +1,266 @@
+package models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import models.Message.MessageOrder;
+
+/**
+ * Comparateur de {@link Message}s suivant une suite de critères d'ordre
+ * ({@link MessageOrder}) : les messages sont comparés suivant le premier
+ * critère, puis suivant le second pour les messages équivalents suivant le
+ * premier, etc. Sans aucun critère les messages sont comparés suivant leur
+ * ordre d'arrivée (comme avec {@link Message#compareTo(Message)}).
+ * Les critères sont vérifiés (doublons retirés) une seule fois lors de la
+ * construction et conservés dans un tableau parcouru à chaque comparaison,
+ * sans synchronisation ni itérateur. Un comparateur est immuable : il peut
+ * être utilisé simultanément par plusieurs threads, et chaque liste de
+ * messages (chaque fenêtre par exemple) peut utiliser son propre
+ * comparateur. Les méthodes {@link #with(MessageOrder)} et
+ * {@link #without(MessageOrder)} renvoient de nouveaux comparateurs.
+ * @author davidroussel
+ */
+public final class MessageComparator implements Comparator<Message>
+{
+	/**
+	 * Comparateur de l'ordre d'arrivée des messages (sans critère d'ordre)
+	 */
+	public final static MessageComparator ARRIVAL = new MessageComparator();
+
+	/**
+	 * Les critères d'ordre (distincts) dans l'ordre de leur application
+	 */
+	private final MessageOrder[] orders;
+
+	/**
+	 * Constructeur d'un comparateur suivant une suite de critères d'ordre
+	 * @param orders les critères d'ordre dans l'ordre de leur application
+	 * (les critères null ou déjà présents sont ignorés)
+	 */
+	public MessageComparator(MessageOrder... orders)
+	{
+		List<MessageOrder> distinct = new ArrayList<MessageOrder>();
+		for (MessageOrder o : orders)
+		{
+			if ((o != null) && !distinct.contains(o))
+			{
+				distinct.add(o);
+			}
+		}
+		this.orders = distinct.toArray(new MessageOrder[distinct.size()]);
+	}
+
+	/**
+	 * Création d'un comparateur d'après une spécification textuelle de ses
+	 * critères d'ordre
+	 * @param specification les noms des critères (author, date ou content,
+	 * sans tenir compte de la casse) séparés par des virgules, une
+	 * spécification vide correspondant à l'ordre d'arrivée
+	 * @return le comparateur correspondant
+	 * @throws IllegalArgumentException si l'un des critères est inconnu
+	 */
+	public static MessageComparator parse(String specification)
+	{
+		List<MessageOrder> parsed = new ArrayList<MessageOrder>();
+		for (String name : specification.split(","))
+		{
+			String trimmed = name.trim();
+			if (!trimmed.isEmpty())
+			{
+				parsed.add(MessageOrder.valueOf(trimmed.toUpperCase()));
+			}
+		}
+		return new MessageComparator(
+		    parsed.toArray(new MessageOrder[parsed.size()]));
+	}
+
+	/**
+	 * Comparaison de deux messages suivant un critère d'ordre
+	 * @param o le critère d'ordre
+	 * @param m1 le premier message
+	 * @param m2 le second message
+	 * @return une valeur négative, nulle ou positive suivant que le premier
+	 * message est inférieur, équivalent ou supérieur au second suivant ce
+	 * critère (un message sans auteur est inférieur à un message avec
+	 * auteur)
+	 */
+	private static int compare(MessageOrder o, Message m1, Message m2)
+	{
+		switch (o)
+		{
+			case AUTHOR:
+				String a1 = m1.getAuthor();
+				String a2 = m2.getAuthor();
+				if (a1 == a2)
+				{
+					// les noms d'auteurs sont partagés (AuthorTable)
+					return 0;
+				}
+				if (a1 == null)
+				{
+					return -1;
+				}
+				return (a2 == null ? 1 : a1.compareTo(a2));
+			case DATE:
+				return m1.compareArrival(m2);
+			case CONTENT:
+				return m1.getContent().compareTo(m2.getContent());
+		}
+		throw new AssertionError("MessageComparator: unknown order: " + o);
+	}
+
+	/**
+	 * Critères d'ordre du comparateur
+	 * @return la liste (non modifiable) des critères d'ordre dans l'ordre de
+	 * leur application
+	 */
+	public List<MessageOrder> getOrders()
+	{
+		return Collections.unmodifiableList(Arrays.asList(orders));
+	}
+
+	/**
+	 * Indique si le comparateur utilise un critère d'ordre
+	 * @param o le critère d'ordre
+	 * @return true si ce critère fait partie des critères du comparateur
+	 */
+	public boolean contains(MessageOrder o)
+	{
+		for (MessageOrder order : orders)
+		{
+			if (order == o)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Comparateur utilisant un critère d'ordre supplémentaire
+	 * @param o le critère à ajouter (appliqué après les critères de ce
+	 * comparateur)
+	 * @return un nouveau comparateur utilisant aussi ce critère ou bien ce
+	 * comparateur s'il l'utilisait déjà
+	 */
+	public MessageComparator with(MessageOrder o)
+	{
+		if ((o == null) || contains(o))
+		{
+			return this;
+		}
+		MessageOrder[] extended = Arrays.copyOf(orders, orders.length + 1);
+		extended[orders.length] = o;
+		return new MessageComparator(extended);
+	}
+
+	/**
+	 * Comparateur n'utilisant plus un critère d'ordre
+	 * @param o le critère à retirer
+	 * @return un nouveau comparateur n'utilisant plus ce critère ou bien ce
+	 * comparateur s'il ne l'utilisait pas
+	 */
+	public MessageComparator without(MessageOrder o)
+	{
+		if (!contains(o))
+		{
+			return this;
+		}
+		List<MessageOrder> remaining =
+		    new ArrayList<MessageOrder>(Arrays.asList(orders));
+		remaining.remove(o);
+		return new MessageComparator(
+		    remaining.toArray(new MessageOrder[remaining.size()]));
+	}
+
+	/**
+	 * Comparateur départageant les messages équivalents suivant ce
+	 * comparateur par leur ordre d'arrivée
+	 * @return ce comparateur s'il départage déjà les messages suivant leur
+	 * arrivée (sans critère ou avec le critère {@link MessageOrder#DATE}),
+	 * ce comparateur suivi de {@link #ARRIVAL} sinon
+	 */
+	public Comparator<Message> thenComparingArrival()
+	{
+		if ((orders.length == 0) || contains(MessageOrder.DATE))
+		{
+			return this;
+		}
+		return thenComparing(ARRIVAL);
+	}
+
+	/**
+	 * Comparaison (3 way) de deux messages suivant les critères d'ordre
+	 * @param m1 le premier message
+	 * @param m2 le second message
+	 * @return une valeur négative, nulle ou positive suivant que le premier
+	 * message est considéré comme inférieur, équivalent ou supérieur au
+	 * second
+	 */
+	@Override
+	public int compare(Message m1, Message m2)
+	{
+		if (orders.length == 0)
+		{
+			return m1.compareArrival(m2);
+		}
+		for (MessageOrder o : orders)
+		{
+			int compare = compare(o, m1, m2);
+			if (compare != 0)
+			{
+				return compare;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Comparaison avec un autre objet
+	 * @param obj l'autre objet
+	 * @return true si l'autre objet est un comparateur utilisant les mêmes
+	 * critères dans le même ordre
+	 */
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (obj instanceof MessageComparator)
+		{
+			return Arrays.equals(orders, ((MessageComparator) obj).orders);
+		}
+		return false;
+	}
+
+	/**
+	 * @return le hashcode du comparateur basé sur ses critères d'ordre
+	 */
+	@Override
+	public int hashCode()
+	{
+		return Arrays.hashCode(orders);
+	}
+
+	/**
+	 * Affichage des critères d'ordre du comparateur
+	 * @return une chaîne de caractères contenant les différents critères
+	 * d'ordre, par exemple {Author, Date}
+	 */
+	@Override
+	public String toString()
+	{
+		StringBuilder sb = new StringBuilder("{");
+		for (int i = 0; i < orders.length; i++)
+		{
+			if (i > 0)
+			{
+				sb.append(", ");
+			}
+			sb.append(orders[i]);
+		}
+		sb.append('}');
+		return sb.toString();
+	}
+}
@@ -0,0 +1,845 @@
+package models;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Set;
+import java.util.function.Predicate;
+
+import javax.swing.AbstractListModel;
+
+/**
+ * ListModel contenant les messages reçus par un client, toujours triés
+ * suivant l'ordre propre au modèle ({@link #setOrder(MessageComparator)}),
+ * par ordre d'arrivée par défaut, et éventuellement filtrés.
+ * Contrairement à un tri de l'ensemble des messages à chaque nouveau
+ * message, l'ajout d'un message se contente de rechercher sa place par
+ * dichotomie puis de l'insérer (en O(log n) comparaisons, et en temps
+ * constant lorsque les messages sont triés par ordre d'arrivée) et de
+ * notifier uniquement l'insertion de cet élément
+ * ({@link #fireIntervalAdded(Object, int, int)}). Affiché dans une
+ * {@link javax.swing.JList} dont la hauteur des cellules est fixe, seuls les
+ * messages visibles sont alors mis en page et dessinés.
+ * Les messages équivalents suivant les critères de tri restent dans leur
+ * ordre d'arrivée. Lorsque l'ordre change, l'ensemble des messages est
+ * trié à nouveau ({@link #sort()}).
+ * Le nombre de messages conservés peut être limité
+ * ({@link #setLimits(int, long)}) en nombre et/ou en taille approximative
+ * en mémoire : au delà de ces limites les plus anciens messages reçus sont
+ * retirés du modèle, de sorte que la mémoire occupée cesse de croître quelle
+ * que soit la durée de la session. Des messages plus anciens que tous les
+ * messages conservés (rechargés depuis l'historique du serveur par exemple)
+ * peuvent être ajoutés avec {@link #addOlder(List)} : ils sont soumis aux
+ * mêmes limites (indépendamment des messages reçus) et sont retirés par
+ * {@link #releaseOlder()}.
+ * Les messages de chaque auteur sont en outre rangés (triés) dans des listes
+ * par auteur tenues à jour au fur et à mesure de l'arrivée des messages :
+ * avec un filtre {@link AuthorListFilter}, les messages affichés sont obtenus
+ * en fusionnant les listes des auteurs du filtre plutôt qu'en vérifiant
+ * chacun des messages.
+ * Ce modèle n'est pas thread safe : comme tout modèle de widget Swing, il ne
+ * doit être modifié que depuis le thread de Swing (Event Dispatch Thread).
+ * @author davidroussel
+ */
+public class MessageListModel extends AbstractListModel<Message>
+{
+	/**
+	 * Taille approximative (en octets) d'un message sans son contenu ni son
+	 * auteur : objets Message, Date et String
+	 */
+	public final static int MESSAGEOVERHEAD = 128;
+
+	/**
+	 * Coût approximatif d'une comparaison de messages lors de la fusion des
+	 * listes de messages par auteur, relativement à la vérification d'un
+	 * message par un {@link AuthorListFilter}
+	 */
+	private final static int MERGECOST = 4;
+
+	/**
+	 * L'ordre des messages (propre à ce modèle)
+	 */
+	private MessageComparator order;
+
+	/**
+	 * Comparateur de l'ordre des messages de la liste triée : suivant
+	 * l'{@link #order} puis, pour les messages équivalents, suivant leur
+	 * ordre d'arrivée
+	 */
+	private Comparator<Message> sorted;
+
+	/**
+	 * L'ensemble des messages triés
+	 */
+	private final ArrayList<Message> messages;
+
+	/**
+	 * Les messages triés satisfaisant le {@link #filter} (ou bien
+	 * {@link #messages} s'il n'y a pas de filtre)
+	 */
+	private ArrayList<Message> visible;
+
+	/**
+	 * Le filtre des messages affichés (ou bien null pour afficher tous les
+	 * messages)
+	 */
+	private Predicate<Message> filter;
+
+	/**
+	 * Les messages triés de chacun des auteurs
+	 */
+	private final HashMap<String, ArrayList<Message>> byAuthor;
+
+	/**
+	 * Nombre maximum de messages reçus conservés (ou bien 0 pour ne pas
+	 * limiter le nombre de messages)
+	 */
+	private int maxMessages;
+
+	/**
+	 * Taille approximative maximum (en octets) des messages reçus conservés
+	 * (ou bien 0 pour ne pas limiter la taille des messages)
+	 */
+	private long maxBytes;
+
+	/**
+	 * Les messages reçus conservés, dans leur ordre d'arrivée
+	 */
+	private final ArrayDeque<Message> received;
+
+	/**
+	 * Taille approximative (en octets) des messages {@link #received}
+	 */
+	private long receivedBytes;
+
+	/**
+	 * Les messages plus anciens ajoutés avec {@link #addOlder(List)}, du
+	 * plus ancien au plus récent
+	 */
+	private final ArrayDeque<Message> older;
+
+	/**
+	 * Taille approximative (en octets) des messages {@link #older}
+	 */
+	private long olderBytes;
+
+	/**
+	 * Nombre de messages reçus retirés du modèle parce qu'ils dépassaient
+	 * les limites
+	 */
+	private long evicted;
+
+	/**
+	 * Constructeur d'un modèle vide et sans filtre
+	 */
+	public MessageListModel()
+	{
+		order = MessageComparator.ARRIVAL;
+		sorted = order;
+		messages = new ArrayList<Message>();
+		visible = messages;
+		filter = null;
+		byAuthor = new HashMap<String, ArrayList<Message>>();
+		maxMessages = 0;
+		maxBytes = 0;
+		received = new ArrayDeque<Message>();
+		receivedBytes = 0;
+		older = new ArrayDeque<Message>();
+		olderBytes = 0;
+		evicted = 0;
+	}
+
+	/**
+	 * Mise en place des limites des messages conservés. Les plus anciens
+	 * messages dépassant ces limites sont immédiatement retirés.
+	 * @param maxMessages le nombre maximum de messages reçus conservés (ou
+	 * bien 0 pour ne pas limiter le nombre de messages)
+	 * @param maxBytes la taille approximative maximum (en octets) des
+	 * messages reçus conservés (ou bien 0 pour ne pas limiter leur taille)
+	 */
+	public void setLimits(int maxMessages, long maxBytes)
+	{
+		this.maxMessages = Math.max(0, maxMessages);
+		this.maxBytes = Math.max(0, maxBytes);
+		evict();
+	}
+
+	/**
+	 * Ajout d'un message à sa place dans la liste triée des messages
+	 * @param message le message à ajouter
+	 * @return l'index du message dans la liste affichée ou bien -1 si le
+	 * message n'est pas affiché (parce qu'il ne satisfait pas le filtre)
+	 */
+	public int add(Message message)
+	{
+		if (message == null)
+		{
+			return -1;
+		}
+		received.addLast(message);
+		receivedBytes += sizeOf(message);
+		int index = upperBound(messages, message);
+		messages.add(index, message);
+		index(message);
+		if (visible == messages)
+		{
+			fireIntervalAdded(this, index, index);
+		}
+		else if (filter.test(message))
+		{
+			index = upperBound(visible, message);
+			visible.add(index, message);
+			fireIntervalAdded(this, index, index);
+		}
+		else
+		{
+			index = -1;
+		}
+		if (evict() && (index >= 0))
+		{
+			index = visible.indexOf(message);
+		}
+		return index;
+	}
+
+	/**
+	 * Ajout d'un lot de messages à leurs places dans la liste triée des
+	 * messages. Les messages ajoutés à la fin de la liste (ce qui est le cas
+	 * de tous les messages lorsque les messages sont triés par ordre
+	 * d'arrivée) sont notifiés en un seul événement. Les plus anciens
+	 * messages reçus dépassant les limites sont ensuite retirés.
+	 * @param batch les messages à ajouter, dans leur ordre d'arrivée
+	 */
+	public void addAll(List<Message> batch)
+	{
+		insertAll(batch);
+		for (Message message : batch)
+		{
+			if (message != null)
+			{
+				received.addLast(message);
+				receivedBytes += sizeOf(message);
+			}
+		}
+		evict();
+	}
+
+	/**
+	 * Ajout d'un lot de messages plus anciens que tous les messages du
+	 * modèle (rechargés depuis l'historique du serveur par exemple). Ces
+	 * messages sont soumis aux mêmes limites que les messages reçus, mais
+	 * indépendamment de ceux ci : au delà de ces limites ce sont les plus
+	 * récents des messages plus anciens qui sont retirés.
+	 * Quel que soit l'ordre courant, ces messages sont rangés comme le ferait
+	 * un nouveau tri : avant les messages reçus qui leur sont équivalents
+	 * suivant cet ordre (voir {@link #upperBound(List, Message)}), de sorte
+	 * qu'ils sont retirés de la liste affichée comme des autres listes lors
+	 * de {@link #releaseOlder()}.
+	 * @param batch les messages à ajouter, du plus ancien au plus récent
+	 */
+	public void addOlder(List<Message> batch)
+	{
+		insertAll(batch);
+		for (ListIterator<Message> it = batch.listIterator(batch.size());
+		     it.hasPrevious();)
+		{
+			Message message = it.previous();
+			if (message != null)
+			{
+				older.addFirst(message);
+				olderBytes += sizeOf(message);
+			}
+		}
+		evict();
+	}
+
+	/**
+	 * Retrait de tous les messages ajoutés avec {@link #addOlder(List)}
+	 */
+	public void releaseOlder()
+	{
+		if (older.isEmpty())
+		{
+			return;
+		}
+		Set<Message> removed = newIdentitySet();
+		removed.addAll(older);
+		older.clear();
+		olderBytes = 0;
+		removeAll(removed);
+	}
+
+	/**
+	 * Insertion d'un lot de messages à leurs places dans la liste triée des
+	 * messages. Les messages insérés à des places consécutives de la liste
+	 * affichée (tous les messages ajoutés à la fin de la liste, ou bien tous
+	 * les messages plus anciens ajoutés au début) sont notifiés en un seul
+	 * événement, les autres à l'index réel de leur insertion.
+	 * @param batch les messages à ajouter
+	 */
+	private void insertAll(List<Message> batch)
+	{
+		// Intervalle des messages insérés consécutivement non encore notifiés
+		int[] run = {-1, -1};
+		for (Message message : batch)
+		{
+			if (message == null)
+			{
+				continue;
+			}
+			int index = upperBound(messages, message);
+			if (visible == messages)
+			{
+				inserting(run, index);
+			}
+			messages.add(index, message);
+			index(message);
+			if (visible != messages)
+			{
+				if (!filter.test(message))
+				{
+					continue;
+				}
+				index = upperBound(visible, message);
+				inserting(run, index);
+				visible.add(index, message);
+			}
+		}
+		if (run[0] >= 0)
+		{
+			fireIntervalAdded(this, run[0], run[1]);
+		}
+	}
+
+	/**
+	 * Prise en compte de l'insertion prochaine d'un message dans la liste
+	 * affichée : si le message n'est pas inséré juste après les messages
+	 * insérés consécutivement jusque là, ceux ci sont notifiés (avant
+	 * l'insertion, tant que leurs index sont encore valides) et le message
+	 * commence un nouvel intervalle
+	 * @param run l'intervalle [premier, dernier] des index des messages
+	 * insérés consécutivement non encore notifiés (ou bien {-1, -1})
+	 * @param index l'index auquel le message va être inséré
+	 */
+	private void inserting(int[] run, int index)
+	{
+		if ((run[0] >= 0) && (index == (run[1] + 1)))
+		{
+			run[1] = index;
+			return;
+		}
+		if (run[0] >= 0)
+		{
+			fireIntervalAdded(this, run[0], run[1]);
+		}
+		run[0] = index;
+		run[1] = index;
+	}
+
+	/**
+	 * Ordre des messages
+	 * @return le comparateur de l'ordre des messages du modèle
+	 */
+	public MessageComparator getOrder()
+	{
+		return order;
+	}
+
+	/**
+	 * Changement de l'ordre des messages : l'ensemble des messages est trié
+	 * à nouveau suivant ce nouvel ordre
+	 * @param order le nouvel ordre des messages (ou bien null pour l'ordre
+	 * d'arrivée)
+	 */
+	public void setOrder(MessageComparator order)
+	{
+		if (order == null)
+		{
+			order = MessageComparator.ARRIVAL;
+		}
+		if (order.equals(this.order))
+		{
+			return;
+		}
+		this.order = order;
+		sorted = order.thenComparingArrival();
+		sort();
+	}
+
+	/**
+	 * Nouveau tri de l'ensemble des messages suivant l'ordre courant. Les
+	 * messages équivalents suivant cet ordre sont rangés suivant leur ordre
+	 * d'arrivée.
+	 */
+	public void sort()
+	{
+		Collections.sort(messages, sorted);
+		for (ArrayList<Message> authorMessages : byAuthor.values())
+		{
+			Collections.sort(authorMessages, sorted);
+		}
+		if (visible != messages)
+		{
+			Collections.sort(visible, sorted);
+		}
+		if (visible.size() > 0)
+		{
+			fireContentsChanged(this, 0, visible.size() - 1);
+		}
+	}
+
+	/**
+	 * Mise en place du filtre des messages affichés
+	 * @param filter le filtre des messages affichés ou bien null pour
+	 * afficher tous les messages
+	 */
+	public void setFilter(Predicate<Message> filter)
+	{
+		int previousSize = visible.size();
+		this.filter = filter;
+		ArrayList<Message> merged = null;
+		if (filter instanceof AuthorListFilter)
+		{
+			merged = authorMessages((AuthorListFilter) filter);
+		}
+		if (filter == null)
+		{
+			visible = messages;
+		}
+		else if (merged != null)
+		{
+			/*
+			 * Fusion des listes triées des messages des auteurs du filtre (le
+			 * tri d'une concaténation de listes triées se contente de les
+			 * fusionner)
+			 */
+			Collections.sort(merged, sorted);
+			visible = merged;
+		}
+		else
+		{
+			visible = new ArrayList<Message>();
+			for (Message message : messages)
+			{
+				if (filter.test(message))
+				{
+					visible.add(message);
+				}
+			}
+		}
+		if (previousSize > 0)
+		{
+			fireIntervalRemoved(this, 0, previousSize - 1);
+		}
+		if (visible.size() > 0)
+		{
+			fireIntervalAdded(this, 0, visible.size() - 1);
+		}
+	}
+
+	/**
+	 * Concaténation des listes des messages des auteurs d'un filtre, si leur
+	 * fusion est moins coûteuse que la vérification de chacun des messages :
+	 * la fusion de k listes contenant n messages au total nécessite environ
+	 * n log2(k) comparaisons de messages, bien plus coûteuses que les
+	 * recherches d'auteurs dans un HashSet de la vérification des messages
+	 * @param filter le filtre
+	 * @return la concaténation des listes des messages des auteurs du filtre
+	 * ou bien null s'il est préférable de vérifier chacun des messages
+	 */
+	private ArrayList<Message> authorMessages(AuthorListFilter filter)
+	{
+		List<ArrayList<Message>> lists = new ArrayList<ArrayList<Message>>();
+		int total = 0;
+		for (String author : filter.getAuthors())
+		{
+			ArrayList<Message> authorMessages = byAuthor.get(author);
+			if (authorMessages != null)
+			{
+				lists.add(authorMessages);
+				total += authorMessages.size();
+			}
+		}
+		int log2 = 32 - Integer.numberOfLeadingZeros(lists.size() - 1);
+		if (((long) total * log2 * MERGECOST) > messages.size())
+		{
+			return null;
+		}
+		ArrayList<Message> merged = new ArrayList<Message>(total);
+		for (ArrayList<Message> authorMessages : lists)
+		{
+			merged.addAll(authorMessages);
+		}
+		return merged;
+	}
+
+	/**
+	 * Effacement de tous les messages
+	 */
+	public void clear()
+	{
+		int previousSize = visible.size();
+		messages.clear();
+		visible.clear();
+		byAuthor.clear();
+		received.clear();
+		receivedBytes = 0;
+		older.clear();
+		olderBytes = 0;
+		if (previousSize > 0)
+		{
+			fireIntervalRemoved(this, 0, previousSize - 1);
+		}
+	}
+
+	/**
+	 * Nombre total de messages (y compris ceux qui ne satisfont pas le
+	 * filtre)
+	 * @return le nombre total de messages
+	 */
+	public int getMessageCount()
+	{
+		return messages.size();
+	}
+
+	/**
+	 * Nombre de messages reçus retirés du modèle parce qu'ils dépassaient
+	 * les limites
+	 * @return le nombre de messages reçus retirés
+	 */
+	public long getEvicted()
+	{
+		return evicted;
+	}
+
+	/**
+	 * Taille approximative en mémoire des messages conservés
+	 * @return la taille approximative (en octets) des messages conservés
+	 */
+	public long getBytes()
+	{
+		return receivedBytes + olderBytes;
+	}
+
+	/**
+	 * Date du plus ancien message conservé
+	 * @return la date du plus ancien message conservé ou bien null s'il n'y
+	 * a pas de message
+	 */
+	public Date getOldestDate()
+	{
+		Message oldest = (older.isEmpty() ? received.peekFirst() :
+		                  older.peekFirst());
+		return (oldest == null ? null : oldest.getDate());
+	}
+
+	/**
+	 * Nombre de messages affichés
+	 * @return le nombre de messages satisfaisant le filtre
+	 * @see javax.swing.ListModel#getSize()
+	 */
+	@Override
+	public int getSize()
+	{
+		return visible.size();
+	}
+
+	/**
+	 * Accesseur au message affiché indexé
+	 * @param index l'index du message recherché
+	 * @return le message correspondant ou bien null si celui ci n'existe pas
+	 * @see javax.swing.ListModel#getElementAt(int)
+	 */
+	@Override
+	public Message getElementAt(int index)
+	{
+		if ((index >= 0) && (index < visible.size()))
+		{
+			return visible.get(index);
+		}
+		return null;
+	}
+
+	/**
+	 * Retrait des plus anciens messages reçus (et des plus récents des
+	 * messages plus anciens) dépassant les limites
+	 * @return true si des messages ont été retirés
+	 */
+	private boolean evict()
+	{
+		Set<Message> removed = null;
+		while (exceeds(received.size(), receivedBytes))
+		{
+			Message message = received.removeFirst();
+			receivedBytes -= sizeOf(message);
+			evicted++;
+			if (removed == null)
+			{
+				removed = newIdentitySet();
+			}
+			removed.add(message);
+		}
+		while (exceeds(older.size(), olderBytes))
+		{
+			Message message = older.removeLast();
+			olderBytes -= sizeOf(message);
+			if (removed == null)
+			{
+				removed = newIdentitySet();
+			}
+			removed.add(message);
+		}
+		if (removed == null)
+		{
+			return false;
+		}
+		removeAll(removed);
+		return true;
+	}
+
+	/**
+	 * Dépassement des limites
+	 * @param count un nombre de messages
+	 * @param bytes la taille approximative (en octets) de ces messages
+	 * @return true si ces messages dépassent les limites (en conservant
+	 * toujours au moins un message)
+	 */
+	private boolean exceeds(int count, long bytes)
+	{
+		return (count > 1)
+		    && (((maxMessages > 0) && (count > maxMessages))
+		        || ((maxBytes > 0) && (bytes > maxBytes)));
+	}
+
+	/**
+	 * Retrait d'un ensemble de messages de la liste triée des messages (et
+	 * de celle des messages affichés). Lorsque les messages affichés retirés
+	 * sont consécutifs (ce qui est le cas lorsque les messages sont triés par
+	 * ordre d'arrivée) un seul retrait est notifié.
+	 * @param removed les messages à retirer
+	 */
+	private void removeAll(Set<Message> removed)
+	{
+		/*
+		 * Cas le plus fréquent : les messages retirés sont les premiers de la
+		 * liste triée, et donc aussi les premiers des messages affichés
+		 */
+		int count = removed.size();
+		if ((count <= messages.size())
+		    && removed.contains(messages.get(0))
+		    && removed.contains(messages.get(count - 1)))
+		{
+			int prefix = 0;
+			while ((prefix < count) && removed.contains(messages.get(prefix)))
+			{
+				prefix++;
+			}
+			if (prefix == count)
+			{
+				int shown = count;
+				if (visible != messages)
+				{
+					shown = 0;
+					while ((shown < visible.size())
+					    && removed.contains(visible.get(shown)))
+					{
+						shown++;
+					}
+					visible.subList(0, shown).clear();
+				}
+				messages.subList(0, count).clear();
+				unindex(removed);
+				if (shown > 0)
+				{
+					fireIntervalRemoved(this, 0, shown - 1);
+				}
+				return;
+			}
+		}
+
+		int previousSize = visible.size();
+		int first = -1;
+		int last = -1;
+		boolean contiguous = true;
+		for (int i = 0; i < previousSize; i++)
+		{
+			if (removed.contains(visible.get(i)))
+			{
+				if (first < 0)
+				{
+					first = i;
+				}
+				else if (last != (i - 1))
+				{
+					contiguous = false;
+				}
+				last = i;
+			}
+		}
+		if (visible != messages)
+		{
+			compact(visible, removed, count);
+		}
+		compact(messages, removed, count);
+		unindex(removed);
+		if (first < 0)
+		{
+			return;
+		}
+		if (contiguous)
+		{
+			fireIntervalRemoved(this, first, last);
+		}
+		else
+		{
+			fireIntervalRemoved(this, visible.size(), previousSize - 1);
+			if (visible.size() > 0)
+			{
+				fireContentsChanged(this, 0, visible.size() - 1);
+			}
+		}
+	}
+
+	/**
+	 * Rangement d'un message à sa place dans la liste triée des messages de
+	 * son auteur
+	 * @param message le message à ranger
+	 */
+	private void index(Message message)
+	{
+		if (message.hasAuthor())
+		{
+			ArrayList<Message> authorMessages =
+			    byAuthor.get(message.getAuthor());
+			if (authorMessages == null)
+			{
+				authorMessages = new ArrayList<Message>();
+				byAuthor.put(message.getAuthor(), authorMessages);
+			}
+			authorMessages.add(upperBound(authorMessages, message), message);
+		}
+	}
+
+	/**
+	 * Retrait d'un ensemble de messages des listes des messages de leurs
+	 * auteurs
+	 * @param removed les messages à retirer
+	 */
+	private void unindex(Set<Message> removed)
+	{
+		HashMap<String, Integer> counts = new HashMap<String, Integer>();
+		for (Message message : removed)
+		{
+			if (message.hasAuthor())
+			{
+				counts.merge(message.getAuthor(), 1, Integer::sum);
+			}
+		}
+		for (String author : counts.keySet())
+		{
+			ArrayList<Message> authorMessages = byAuthor.get(author);
+			compact(authorMessages, removed, counts.get(author).intValue());
+			if (authorMessages.isEmpty())
+			{
+				byAuthor.remove(author);
+			}
+		}
+	}
+
+	/**
+	 * Retrait en une seule passe d'un ensemble de messages d'une liste. Le
+	 * parcours de la liste s'arrête dès que tous les messages à retirer ont
+	 * été trouvés (après les premiers éléments lorsque ce sont les plus
+	 * anciens messages qui sont retirés)
+	 * @param list la liste
+	 * @param removed les messages à retirer
+	 * @param count le nombre maximum de messages de la liste à retirer
+	 */
+	private static void compact(ArrayList<Message> list,
+	                            Set<Message> removed,
+	                            int count)
+	{
+		int kept = 0;
+		int found = 0;
+		int i = 0;
+		for (; (i < list.size()) && (found < count); i++)
+		{
+			Message message = list.get(i);
+			if (removed.contains(message))
+			{
+				found++;
+			}
+			else
+			{
+				list.set(kept++, message);
+			}
+		}
+		list.subList(kept, i).clear();
+	}
+
+	/**
+	 * Création d'un ensemble de messages comparés par identité (des messages
+	 * distincts pouvant être égaux)
+	 * @return un nouvel ensemble vide
+	 */
+	private static Set<Message> newIdentitySet()
+	{
+		return Collections.newSetFromMap(
+		    new IdentityHashMap<Message, Boolean>());
+	}
+
+	/**
+	 * Taille approximative en mémoire d'un message
+	 * @param message le message
+	 * @return la taille approximative (en octets) du message
+	 */
+	private static long sizeOf(Message message)
+	{
+		String author = message.getAuthor();
+		return MESSAGEOVERHEAD + (2L * message.getContent().length())
+		    + (author == null ? 0 : 2L * author.length());
+	}
+
+	/**
+	 * Recherche par dichotomie de l'index d'insertion d'un message dans une
+	 * liste triée suivant le comparateur {@link #sorted} (celui de
+	 * {@link #sort()} et {@link #setFilter(Predicate)}) : les messages
+	 * équivalents suivant l'{@link #order} sont donc rangés suivant leur
+	 * ordre d'arrivée, quel que soit l'ordre dans lequel ils ont été
+	 * ajoutés (les messages plus anciens rechargés par exemple), et les
+	 * listes des messages, des messages affichés et des messages par auteur
+	 * restent triées de la même manière
+	 * @param list la liste triée
+	 * @param message le message à insérer
+	 * @return l'index auquel insérer le message
+	 */
+	private int upperBound(List<Message> list, Message message)
+	{
+		int low = 0;
+		int high = list.size();
+		// Cas le plus fréquent : le message se place à la fin
+		if ((high == 0) || (sorted.compare(list.get(high - 1), message) <= 0))
+		{
+			return high;
+		}
+		while (low < high)
+		{
+			int middle = (low + high) >>> 1;
+			if (sorted.compare(list.get(middle), message) <= 0)
+			{
+				low = middle + 1;
+			}
+			else
+			{
+				high = middle;
+			}
+		}
+		return low;
+	}
+}
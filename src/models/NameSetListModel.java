@@ -1,57 +1,67 @@
 package models;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
-import java.util.SortedSet;
-import java.util.TreeSet;
 
 import javax.swing.*;
 
 /**
- * ListModel contenant des noms uniques (toujours trié grâce à un TreeSet par
- * exemple).
+ * ListModel contenant des noms uniques (toujours trié grâce à une liste triée
+ * dans laquelle on recherche les noms par dichotomie).
  * L'accès à la liste de noms doit être thread safe (c'àd : plusieurs threads
  * peuvent accéder concurrentiellement à la liste de noms sans que celle ci se
- * retrouve dans un état incohérent) : Les modifications du Set interne se font
- * toujours dans un bloc synchronized(nameSet) {...}.
- * L'ajout ou le retrait d'un élément dans l'ensemble de nom est accompagné
- * d'un fireContentsChanged sur l'ensemble des éléments de la liste (à cause
- * du tri implicite des éléments) ce qui permet au List Model de notifier
- * tout widget dans lequel serait contenu ce ListModel.
+ * retrouve dans un état incohérent) : Les modifications de la liste interne
+ * se font toujours dans un bloc synchronized(names) {...}.
+ * L'accès à un nom d'après son index (par exemple pour chacune des lignes
+ * affichées d'une {@link JList}) se fait en temps constant, et la recherche
+ * de l'index d'un nom en O(log n). L'ajout ou le retrait d'un élément dans
+ * l'ensemble de noms est accompagné d'un {@link #fireIntervalAdded} ou d'un
+ * {@link #fireIntervalRemoved} sur le seul élément concerné, ce qui permet
+ * au List Model de notifier tout widget dans lequel serait contenu ce
+ * ListModel.
  * @see {@link javax.swing.AbstractListModel}
  */
 public class NameSetListModel extends AbstractListModel<String>
 {
 	/**
-	 * Ensemble de noms triés
+	 * Liste triée de noms uniques
 	 */
-	private SortedSet<String> nameSet;
+	private final ArrayList<String> names;
 
 	/**
 	 * Constructeur
 	 */
 	public NameSetListModel()
 	{
-		nameSet = new TreeSet<>();
+		names = new ArrayList<String>();
 	}
 
 	/**
-	 * Ajout d'un élément
+	 * Ajout d'un élément à sa place dans la liste triée des noms
 	 * @param value la valeur à ajouter
 	 * @return true si l'élément à ajouter est non null et qu'il n'était pas
 	 * déjà présent dans l'ensemble et false sinon.
-	 * @warning Ne pas oublier de faire un
-	 * {@link #fireContentsChanged(Object, int, int)} lorsqu'un nom est
-	 * effectivement ajouté à l'ensemble des noms
 	 */
 	public boolean add(String value)
 	{
-		if(value != null) {
-				nameSet.add(value);
-				fireContentsChanged(this, 0, nameSet.size()-1);
-				return true;
+		if (value == null)
+		{
+			return false;
 		}
-
-		return false;
+		int index;
+		synchronized (names)
+		{
+			index = Collections.binarySearch(names, value);
+			if (index >= 0)
+			{
+				return false;
+			}
+			index = -(index + 1);
+			names.add(index, value);
+		}
+		fireIntervalAdded(this, index, index);
+		return true;
 	}
 
 	/**
@@ -61,45 +71,64 @@ public class NameSetListModel extends AbstractListModel<String>
 	 */
 	public boolean contains(String value)
 	{
-		return(nameSet.contains(value));
+		return getIndex(value) >= 0;
 	}
 
 	/**
 	 * Retrait de l'élément situé à l'index index
 	 * @param index l'index de l'élément à supprimer
 	 * @return true si l'élément a été supprimé, false sinon
-	 * @warning Ne pas oublier de faire un
-	 * {@link #fireContentsChanged(Object, int, int)} lorsqu'un nom est
-	 * effectivement supprimé de l'ensemble des noms
 	 */
 	public boolean remove(int index)
 	{
-		int count = 0;
-		Iterator it = nameSet.iterator();
-		
-		while(it.hasNext()){
-			it.next();
-			if(count == index){
-				it.remove();
-				fireContentsChanged(this, 0, nameSet.size()-1);
-				return true;
+		synchronized (names)
+		{
+			if ((index < 0) || (index >= names.size()))
+			{
+				return false;
 			}
-			count++;
+			names.remove(index);
 		}
+		fireIntervalRemoved(this, index, index);
+		return true;
+	}
 
-		return false;
+	/**
+	 * Retrait d'un nom
+	 * @param value le nom à supprimer
+	 * @return true si le nom a été supprimé, false s'il n'était pas présent
+	 */
+	public boolean remove(String value)
+	{
+		int index;
+		synchronized (names)
+		{
+			index = getIndex(value);
+			if (index < 0)
+			{
+				return false;
+			}
+			names.remove(index);
+		}
+		fireIntervalRemoved(this, index, index);
+		return true;
 	}
 
 	/**
 	 * Efface l'ensemble du contenu de la liste
-	 * @warning ne pas oublier de faire un
-	 * {@link #fireContentsChanged(Object, int, int)} lorsque le contenu est
-	 * effectivement effacé (si non vide)
 	 */
 	public void clear()
 	{
-		nameSet.removeAll(nameSet);
-		fireContentsChanged(this, 0, nameSet.size()-1);
+		int size;
+		synchronized (names)
+		{
+			size = names.size();
+			names.clear();
+		}
+		if (size > 0)
+		{
+			fireIntervalRemoved(this, 0, size - 1);
+		}
 	}
 
 	/**
@@ -110,7 +139,10 @@ public class NameSetListModel extends AbstractListModel<String>
 	@Override
 	public int getSize()
 	{
-		return nameSet.size();
+		synchronized (names)
+		{
+			return names.size();
+		}
 	}
 
 	/**
@@ -123,20 +155,14 @@ public class NameSetListModel extends AbstractListModel<String>
 	@Override
 	public String getElementAt(int index)
 	{
-		String res = null;
-		
-		if(index >= 0 && index < this.getSize() && this.getSize() > 0){
-			int count = 0;
-			Iterator it = nameSet.iterator();
-			while(it.hasNext()){
-				String next = (String) it.next();
-				if(count == index){
-					res = next;
-				}
-				count++;
+		synchronized (names)
+		{
+			if ((index >= 0) && (index < names.size()))
+			{
+				return names.get(index);
 			}
 		}
-		return res;
+		return null;
 	}
 
 	/**
@@ -149,30 +175,35 @@ public class NameSetListModel extends AbstractListModel<String>
 	public String toString()
 	{
 		StringBuilder sb = new StringBuilder();
-		for (Iterator<String> it = nameSet.iterator(); it.hasNext();)
+		synchronized (names)
 		{
-			sb.append(it.next());
-			if (it.hasNext())
+			for (Iterator<String> it = names.iterator(); it.hasNext();)
 			{
-				sb.append(", ");
+				sb.append(it.next());
+				if (it.hasNext())
+				{
+					sb.append(", ");
+				}
 			}
 		}
 		return sb.toString();
 	}
 
-	//Retourner l'index d'un élément du set
+	/**
+	 * Recherche par dichotomie de l'index d'un nom
+	 * @param s le nom recherché
+	 * @return l'index du nom ou bien -1 s'il n'est pas présent
+	 */
 	public int getIndex(String s)
 	{
-		Iterator i = nameSet.iterator();
-		int count = 0;
-
-		while(i.hasNext()){
-			if(i.next().equals(s)){
-				break;
-			}
-			count++;
+		if (s == null)
+		{
+			return -1;
+		}
+		synchronized (names)
+		{
+			int index = Collections.binarySearch(names, s);
+			return (index >= 0 ? index : -1);
 		}
-
-		return count-1;
 	}
-}
\ No newline at end of file
+}
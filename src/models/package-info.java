@@ -9,6 +9,9 @@ package models;
  * <li>{@link models.NameSetListModel} une classe représentant des noms
  * d'utilisateurs uniques et toujours triés dans une liste d'utilisateurs (par
  * exemple une {@link javax.swing.JList})</li>
+ * <li>{@link models.MessageListModel} une classe représentant les messages
+ * reçus, toujours triés et éventuellement filtrés, dans une liste de messages
+ * (par exemple une {@link javax.swing.JList})</li>
  * <li> {@link models.AuthorListFilter} une classe permettant de filtrer
  * un flux de messages en vérifiant si un message particulier contient un
  * auteur qui fait partie de la liste des auteurs référencés dans ce filtre</li>
@@ -22,6 +22,11 @@ import logger.LoggerFactory;
 
 public abstract class AbstractClientFrame extends JFrame implements Runnable
 {
+	/**
+	 * Nombre maximum par dfaut de messages conservs par une fentre
+	 */
+	public final static int DEFAULTSCROLLBACK = 10000;
+
 	/**
 	 * Etat d'excution du run pour couter les messages en provenance du
 	 * serveur
@@ -200,6 +205,23 @@ public abstract class AbstractClientFrame extends JFrame implements Runnable
 		return null;
 	}
 
+	/**
+	 * Mise en place des limites des messages conservs par la fentre : au
+	 * del de ces limites les plus anciens messages sont retirs de la
+	 * fentre afin que la mmoire occupe cesse de crotre.
+	 * [ appeler avant le lancement du thread de la fentre]
+	 * @param maxMessages le nombre maximum de messages conservs (ou bien 0
+	 * pour ne pas limiter le nombre de messages)
+	 * @param maxBytes la taille approximative maximum (en octets) des
+	 * messages conservs (ou bien 0 pour ne pas limiter leur taille)
+	 * @param reload true pour recharger les messages retirs depuis
+	 * l'historique du serveur lorsque l'on fait dfiler les messages au del
+	 * du plus ancien message conserv (si la fentre le permet)
+	 */
+	public abstract void setScrollback(int maxMessages,
+	                                   long maxBytes,
+	                                   boolean reload);
+
 	/**
 	 * Accesseur en lecture de l' {@link #inPipe} pour y connecter un
 	 * {@link PipedOutputStream}
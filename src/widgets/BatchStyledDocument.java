@@ -0,0 +1,155 @@
+package widgets;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.text.AttributeSet;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.DefaultStyledDocument;
+import javax.swing.text.Element;
+import javax.swing.text.SimpleAttributeSet;
+
+/**
+ * Document stylé permettant d'ajouter à sa fin plusieurs textes, chacun avec
+ * ses propres attributs (sa couleur par exemple), en une seule modification
+ * du document : au lieu d'un
+ * {@link #insertString(int, String, AttributeSet)} par texte (et donc d'un
+ * événement, d'une mise à jour du caret et d'une nouvelle mise en page par
+ * texte), les textes sont décrits par une suite d'
+ * {@link DefaultStyledDocument.ElementSpec} insérée d'un seul coup. Les
+ * paragraphes et les attributs du texte obtenus sont les mêmes qu'en
+ * ajoutant les textes un par un.
+ * Comme toute modification d'un document affiché dans un widget Swing,
+ * {@link #append(List, List)} doit être appelé depuis le thread de Swing.
+ * @author davidroussel
+ */
+public class BatchStyledDocument extends DefaultStyledDocument
+{
+	/**
+	 * Ajout de textes à la fin du document en une seule modification
+	 * @param texts les textes à ajouter (chaque fin de ligne "\n" termine un
+	 * paragraphe)
+	 * @param attributes les attributs de chacun des textes
+	 * @throws BadLocationException si l'insertion échoue
+	 */
+	public void append(List<String> texts, List<AttributeSet> attributes)
+		throws BadLocationException
+	{
+		int offset = getLength();
+		Element paragraph = getParagraphElement(offset);
+		AttributeSet paragraphAttributes = paragraph.getAttributes();
+		AttributeSet previousAttributes = paragraph.getElement(
+		    paragraph.getElementIndex(offset)).getAttributes();
+		boolean afterNewLine = (offset > 0)
+		    && (getText(offset - 1, 1).charAt(0) == '\n');
+
+		/*
+		 * Description des textes à ajouter, construite comme le ferait
+		 * insertString pour un seul texte ajouté à la fin du document
+		 */
+		List<ElementSpec> specs = new ArrayList<ElementSpec>();
+		ElementSpec lastStart = null;
+		if (afterNewLine)
+		{
+			specs.add(new ElementSpec(paragraphAttributes,
+			                          ElementSpec.EndTagType));
+			lastStart = new ElementSpec(paragraphAttributes,
+			                            ElementSpec.StartTagType);
+			specs.add(lastStart);
+		}
+		StringBuilder run = new StringBuilder();
+		AttributeSet runAttributes = null;
+		for (int i = 0; i < texts.size(); i++)
+		{
+			String text = texts.get(i);
+			AttributeSet textAttributes = (attributes.get(i) == null ?
+			    SimpleAttributeSet.EMPTY :
+			    attributes.get(i).copyAttributes());
+			// Les textes consécutifs de mêmes attributs forment un seul élément
+			if ((run.length() > 0) && !runAttributes.isEqual(textAttributes))
+			{
+				addContent(specs, run, runAttributes);
+			}
+			runAttributes = textAttributes;
+			int start = 0;
+			while (start < text.length())
+			{
+				int end = text.indexOf('\n', start);
+				boolean newLine = (end >= 0);
+				end = (newLine ? end + 1 : text.length());
+				run.append(text, start, end);
+				if (newLine)
+				{
+					addContent(specs, run, runAttributes);
+					specs.add(new ElementSpec(null, ElementSpec.EndTagType));
+					lastStart = new ElementSpec(paragraphAttributes,
+					                            ElementSpec.StartTagType);
+					specs.add(lastStart);
+				}
+				start = end;
+			}
+		}
+		if (run.length() > 0)
+		{
+			addContent(specs, run, runAttributes);
+		}
+		if (specs.isEmpty())
+		{
+			return;
+		}
+
+		// Le premier texte rejoint le texte précédent s'il a les mêmes attributs
+		ElementSpec first = specs.get(0);
+		if ((first.getType() == ElementSpec.ContentType)
+		    && previousAttributes.isEqual(first.getAttributes()))
+		{
+			first.setDirection(ElementSpec.JoinPreviousDirection);
+		}
+		/*
+		 * Le dernier paragraphe créé rejoint le dernier paragraphe du
+		 * document (qui contient la fin de ligne implicite du document) :
+		 * - après une fin de ligne, il s'agit du paragraphe suivant le
+		 * paragraphe courant
+		 * - sinon, il s'agit de la fin du paragraphe courant, que le dernier
+		 * texte rejoint s'il a les mêmes attributs
+		 */
+		if (lastStart != null)
+		{
+			if (afterNewLine)
+			{
+				lastStart.setDirection(ElementSpec.JoinNextDirection);
+			}
+			else
+			{
+				lastStart.setDirection(ElementSpec.JoinFractureDirection);
+				ElementSpec last = specs.get(specs.size() - 1);
+				if ((last.getType() == ElementSpec.ContentType)
+				    && (last.getDirection() != ElementSpec.JoinPreviousDirection)
+				    && previousAttributes.isEqual(last.getAttributes()))
+				{
+					last.setDirection(ElementSpec.JoinNextDirection);
+				}
+			}
+		}
+		insert(offset, specs.toArray(new ElementSpec[specs.size()]));
+	}
+
+	/**
+	 * Ajout de la description d'un élément de texte
+	 * @param specs les descriptions des éléments à insérer
+	 * @param run le texte de l'élément (vidé après l'ajout)
+	 * @param attributes les attributs de l'élément
+	 */
+	private static void addContent(List<ElementSpec> specs,
+	                               StringBuilder run,
+	                               AttributeSet attributes)
+	{
+		char[] chars = run.toString().toCharArray();
+		specs.add(new ElementSpec(attributes,
+		                          ElementSpec.ContentType,
+		                          chars,
+		                          0,
+		                          chars.length));
+		run.setLength(0);
+	}
+}
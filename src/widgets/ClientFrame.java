@@ -12,6 +12,9 @@ import java.awt.event.WindowEvent;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Logger;
 
 import javax.swing.AbstractAction;
@@ -30,6 +33,7 @@ import javax.swing.JTextField;
 import javax.swing.JTextPane;
 import javax.swing.JToolBar;
 import javax.swing.KeyStroke;
+import javax.swing.text.AttributeSet;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.DefaultCaret;
 import javax.swing.text.StyleConstants;
@@ -79,6 +83,47 @@ public class ClientFrame extends AbstractClientFrame
 	protected final JFrame thisRef;
 	private String pseudo;
 
+	/**
+	 * Le document du textPane, auquel les messages reçus sont ajoutés par
+	 * lots
+	 */
+	private final BatchStyledDocument batchDocument;
+
+	/**
+	 * Regroupement des messages reçus afin de les ajouter au
+	 * {@link #batchDocument} par lots depuis le thread de Swing
+	 */
+	private final DisplayBatcher<String> batcher;
+
+	/**
+	 * Taille approximative (en octets) des éléments et des attributs d'une
+	 * ligne du document, en plus de ses caractères
+	 */
+	private final static int LINEOVERHEAD = 256;
+
+	/**
+	 * Nombre maximum de lignes conservées dans le document (ou bien 0 pour
+	 * ne pas limiter le nombre de lignes)
+	 */
+	private int maxLines;
+
+	/**
+	 * Taille approximative maximum (en octets) des lignes conservées dans
+	 * le document (ou bien 0 pour ne pas limiter leur taille)
+	 */
+	private long maxBytes;
+
+	/**
+	 * Longueurs des lignes du document, de la plus ancienne à la plus
+	 * récente
+	 */
+	private final ArrayDeque<Integer> lineLengths;
+
+	/**
+	 * Taille approximative (en octets) des lignes du document
+	 */
+	private long documentBytes;
+
 	/**
 	 * Constructeur de la fen�tre
 	 * @param name le nom de l'utilisateur
@@ -96,6 +141,22 @@ public class ClientFrame extends AbstractClientFrame
 		super(name, host, commonRun, parentLogger);
 		thisRef = this;
 		pseudo = name;
+		maxLines = DEFAULTSCROLLBACK;
+		maxBytes = 0;
+		lineLengths = new ArrayDeque<Integer>();
+		documentBytes = 0;
+		batcher = new DisplayBatcher<String>((List<String> batch) ->
+		{
+			try
+			{
+				writeMessages(batch);
+			}
+			catch (BadLocationException e)
+			{
+				logger.warning("ClientFrame: write at bad location: "
+				    + e.getLocalizedMessage());
+			}
+		});
 
 		// --------------------------------------------------------------------
 		// Flux d'IO
@@ -155,7 +216,8 @@ public class ClientFrame extends AbstractClientFrame
 		JScrollPane scrollPane = new JScrollPane();
 		getContentPane().add(scrollPane, BorderLayout.CENTER);
 
-		JTextPane textPane = new JTextPane();
+		batchDocument = new BatchStyledDocument();
+		JTextPane textPane = new JTextPane(batchDocument);
 		textPane.setEditable(false);
 		// autoscroll textPane to bottom
 		DefaultCaret caret = (DefaultCaret) textPane.getCaret();
@@ -194,15 +256,19 @@ public class ClientFrame extends AbstractClientFrame
 	}
 
 	/**
-	 * Affichage d'un message dans le {@link #document}, puis passage � la ligne
-	 * (avec l'ajout de {@link Vocabulary#newLine})
+	 * Affichage d'un lot de messages à la fin du {@link #document} en une
+	 * seule modification du document ({@link BatchStyledDocument#append(List,
+	 * List)}), chaque message étant suivi d'un passage à la ligne (avec l'ajout
+	 * de {@link Vocabulary#newLine}).
+	 * Pour chaque message :
 	 * La partie "[yyyy/MM/dd HH:mm:ss]" correspond � la date/heure courante
 	 * obtenue gr�ce � un Calendar et est affich�e avec la defaultColor alors
 	 * que la partie "utilisateur > message" doit �tre affich�e avec une couleur
 	 * d�termin�e d'apr�s le nom d'utilisateur avec
 	 * {@link #getColorFromName(String)}, le nom d'utilisateur est quant � lui
 	 * d�termin� d'apr�s le message lui m�me avec {@link #parseName(String)}.
-	 * @param message le message � afficher dans le {@link #document}
+	 * @param batch les messages à afficher dans le {@link #document}, dans
+	 * leur ordre d'arrivée
 	 * @throws BadLocationException si l'�criture dans le document �choue
 	 * @see {@link examples.widgets.ExampleFrame#appendToDocument(String, Color)}
 	 * @see java.text.SimpleDateFormat#SimpleDateFormat(String)
@@ -212,41 +278,87 @@ public class ClientFrame extends AbstractClientFrame
 	 * @see javax.swing.text.StyledDocument#insertString(int, String,
 	 * javax.swing.text.AttributeSet)
 	 */
-	protected void writeMessage(String message) throws BadLocationException
+	protected void writeMessages(List<String> batch)
+		throws BadLocationException
 	{
 		/*
-		 * ajout du message "[yyyy/MM/dd HH:mm:ss] utilisateur > message" �
-		 * la fin du document avec la couleur d�termin�e d'apr�s "utilisateur"
-		 * (voir AbstractClientFrame#getColorFromName)
+		 * ajout des messages "[yyyy/MM/dd HH:mm:ss] utilisateur > message" à
+		 * la fin du document avec la couleur déterminée d'après "utilisateur"
+		 * (voir AbstractClientFrame#getColorFromName), en une seule
+		 * modification du document
 		 */
-		String msgContent = message;
-		if(msgContent.contains("kick") && msgContent.contains("granted")){
-			String pseudoKick = message.split("kick ")[1].split(" ")[0];
-			kickCheck(pseudoKick);
-		}
-		StringBuffer sb = new StringBuffer();
+		List<String> texts = new ArrayList<String>(batch.size());
+		List<AttributeSet> attributes = new ArrayList<AttributeSet>(batch.size());
+		for (String message : batch)
+		{
+			String msgContent = message;
+			if(msgContent.contains("kick") && msgContent.contains("granted")){
+				String pseudoKick = message.split("kick ")[1].split(" ")[0];
+				kickCheck(pseudoKick);
+			}
 
-		sb.append(message);
-		sb.append(Vocabulary.newLine);
+			// source et contenu du message avec la couleur du message
+			String source = parseName(message);
+			if ((source != null) && (source.length() > 0))
+			{
+				/*
+				 * Changement de couleur du texte
+				 */
+				StyleConstants.setForeground(documentStyle,
+				                             getColorFromName(source));
+			}
+			texts.add(message + Vocabulary.newLine);
+			attributes.add(documentStyle.copyAttributes());
 
-		// source et contenu du message avec la couleur du message
-		String source = parseName(message);
-		if ((source != null) && (source.length() > 0))
-		{
-			/*
-			 * Changement de couleur du texte
-			 */
-			StyleConstants.setForeground(documentStyle,
-			                             getColorFromName(source));
+			// Retour à la couleur de texte par défaut
+			StyleConstants.setForeground(documentStyle, defaultColor);
 		}
+		batchDocument.append(texts, attributes);
 
-		document.insertString(document.getLength(),
-		                      sb.toString(),
-		                      documentStyle);
-
-		// Retour � la couleur de texte par d�faut
-		StyleConstants.setForeground(documentStyle, defaultColor);
+		/*
+		 * Retrait (en une seule modification du document) des plus anciennes
+		 * lignes dépassant les limites
+		 */
+		for (String text : texts)
+		{
+			lineLengths.addLast(text.length());
+			documentBytes += LINEOVERHEAD + (2L * text.length());
+		}
+		int evictedLength = 0;
+		while ((lineLengths.size() > 1)
+		    && (((maxLines > 0) && (lineLengths.size() > maxLines))
+		        || ((maxBytes > 0) && (documentBytes > maxBytes))))
+		{
+			int length = lineLengths.removeFirst();
+			evictedLength += length;
+			documentBytes -= LINEOVERHEAD + (2L * length);
+		}
+		if (evictedLength > 0)
+		{
+			batchDocument.remove(0, evictedLength);
+		}
+	}
 
+	/**
+	 * Mise en place des limites des lignes conservées dans le document. Le
+	 * rechargement des lignes retirées n'est pas disponible dans cette
+	 * fenêtre.
+	 * @param maxMessages le nombre maximum de lignes conservées (ou bien 0
+	 * pour ne pas limiter le nombre de lignes)
+	 * @param maxBytes la taille approximative maximum (en octets) des lignes
+	 * conservées (ou bien 0 pour ne pas limiter leur taille)
+	 * @param reload ignoré
+	 * @see widgets.AbstractClientFrame#setScrollback(int, long, boolean)
+	 */
+	@Override
+	public void setScrollback(int maxMessages, long maxBytes, boolean reload)
+	{
+		maxLines = Math.max(0, maxMessages);
+		this.maxBytes = Math.max(0, maxBytes);
+		if (reload)
+		{
+			logger.warning("ClientFrame: reload not available, use gui 2");
+		}
 	}
 
 	/**
@@ -354,6 +466,8 @@ public class ClientFrame extends AbstractClientFrame
 			try
 			{
 				document.remove(0, document.getLength());
+				lineLengths.clear();
+				documentBytes = 0;
 			}
 			catch (BadLocationException ex)
 			{
@@ -530,7 +644,7 @@ public class ClientFrame extends AbstractClientFrame
 			 * boucle.
 			 * - Si cette ligne de texte n'est pas nulle on affiche le message
 			 * dans le document avec le format voulu en utilisant
-			 * #writeMessage(String)
+			 * #writeMessages(List) (par lots, depuis le thread de Swing)
 			 * - Apr�s la fin de la boucle on change commonRun � false de
 			 * mani�re synchronis�e afin que les autres threads utilisant ce
 			 * commonRun puissent s'arr�ter eux aussi :
@@ -559,17 +673,11 @@ public class ClientFrame extends AbstractClientFrame
 
 			if (messageIn != null)
 			{
-				// Ajouter le message � la fin du document avec la couleur
-				// voulue
-				try
-				{
-					writeMessage(messageIn);
-				}
-				catch (BadLocationException e)
-				{
-					logger.warning("ClientFrame: write at bad location: "
-					    + e.getLocalizedMessage());
-				}
+				/*
+				 * Le message sera ajouté à la fin du document (avec les autres
+				 * messages reçus entre temps) par le thread de Swing
+				 */
+				batcher.submit(messageIn);
 			}
 			else // messageIn == null
 			{
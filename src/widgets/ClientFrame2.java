@@ -6,6 +6,7 @@ import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.HeadlessException;
 import java.awt.event.ActionEvent;
+import java.awt.event.AdjustmentEvent;
 import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseAdapter;
@@ -15,12 +16,12 @@ import java.awt.event.WindowEvent;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.io.ObjectInputStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
 import java.util.Random;
 import java.util.Stack;
-import java.util.Vector;
-import java.util.function.Consumer;
-import java.util.function.Predicate;
 import java.util.logging.Logger;
 
 import javax.swing.AbstractAction;
@@ -40,26 +41,29 @@ import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
 import javax.swing.JPanel;
 import javax.swing.JPopupMenu;
+import javax.swing.JScrollBar;
 import javax.swing.JScrollPane;
 import javax.swing.JSeparator;
 import javax.swing.JTextField;
-import javax.swing.JTextPane;
 import javax.swing.JToggleButton;
 import javax.swing.JToolBar;
 import javax.swing.KeyStroke;
+import javax.swing.ListCellRenderer;
 import javax.swing.ListSelectionModel;
 import javax.swing.UIManager;
 import javax.swing.border.Border;
 import javax.swing.event.ListSelectionEvent;
 import javax.swing.event.ListSelectionListener;
-import javax.swing.text.BadLocationException;
-import javax.swing.text.DefaultCaret;
-import javax.swing.text.StyleConstants;
 
+import models.AuthorListFilter;
 import models.Message;
+import models.MessageListModel;
 import models.NameSetListModel;
+import models.Message.MessageKind;
 import models.Message.MessageOrder;
+import chat.MessageInput;
 import chat.Vocabulary;
+import chat.server.HistoryQuery;
 import examples.widgets.ListExampleFrame.ColorTextRenderer;
 
 /**
@@ -68,12 +72,24 @@ import examples.widgets.ListExampleFrame.ColorTextRenderer;
  */
 public class ClientFrame2 extends AbstractClientFrame
 {
+	/**
+	 * Contenu du message "prototype" donnant la taille des cellules de la
+	 * {@link #messageList}
+	 */
+	private final static String PROTOTYPE =
+	    "a message prototype used to size the message cells";
+
 	/**
 	 * Lecteur de flux d'entr�e. Lit les donn�es texte du {@link #inPipe} pour
 	 * les afficher dans le {@link #document}
 	 */
 	private BufferedReader inBR;
-	private ObjectInputStream ois;
+
+	/**
+	 * Flux d'entrée des messages (au format binaire de
+	 * {@link chat.MessageCodec}) lus depuis le {@link #inPipe}
+	 */
+	private MessageInput messageInput;
 
 	/**
 	 * Le label indiquant sur quel serveur on est connect�
@@ -137,7 +153,69 @@ public class ClientFrame2 extends AbstractClientFrame
 	private JCheckBoxMenuItem sortContentMenuItem;
 	private JToggleButton filterButton;
 	private String pseudo;
-	private Vector<Message> messages = new Vector<Message>();
+	/**
+	 * Les messages reçus, toujours triés (et éventuellement filtrés), affichés
+	 * dans la {@link #messageList}
+	 */
+	private final MessageListModel messages = new MessageListModel();
+	/**
+	 * La liste affichant les {@link #messages}. Ses cellules ayant une taille
+	 * fixe, seuls les messages visibles sont mis en page et dessinés
+	 */
+	private final JList<Message> messageList;
+	/**
+	 * Regroupement des messages reçus afin de les ajouter aux
+	 * {@link #messages} par lots depuis le thread de Swing
+	 */
+	private final DisplayBatcher<Message> batcher =
+	    new DisplayBatcher<Message>((List<Message> batch) -> writeMessages(batch));
+	/**
+	 * Numéro de séquence du dernier message reçu : les messages dont le
+	 * numéro de séquence n'est pas supérieur sont des doublons
+	 */
+	private long lastSequence = 0;
+	/**
+	 * Indique si le serveur a envoyé la liste complète des utilisateurs
+	 * connectés ({@link Message.MessageKind#ROSTER}) : la liste des
+	 * utilisateurs est alors tenue à jour d'après les seuls évènements de
+	 * présence, sinon (serveur ne diffusant pas d'évènements de présence) on
+	 * y ajoute les auteurs des messages reçus
+	 */
+	private boolean rosterReceived = false;
+	/**
+	 * Indique si les messages retirés des {@link #messages} (parce qu'ils
+	 * dépassaient les limites) sont rechargés depuis l'historique du serveur
+	 * lorsque l'on fait défiler la liste jusqu'au plus ancien message
+	 */
+	private boolean reload = false;
+	/**
+	 * Indique si un rechargement est en cours (requête history envoyée au
+	 * serveur)
+	 */
+	private boolean reloading = false;
+	/**
+	 * Date du plus ancien message conservé lors de l'envoi de la requête de
+	 * rechargement : seuls les messages antérieurs sont rechargés
+	 */
+	private Date reloadBefore = null;
+	/**
+	 * Page de résultats demandée lors du rechargement en cours
+	 */
+	private int reloadPage = 0;
+	/**
+	 * Nombre de résultats reçus du rechargement en cours (ou bien -1 si
+	 * l'en-tête des résultats n'a pas encore été reçu)
+	 */
+	private int reloadReceived = -1;
+	/**
+	 * Les messages rechargés reçus pour le rechargement en cours
+	 */
+	private final List<Message> reloaded = new ArrayList<Message>();
+	/**
+	 * Date avant laquelle le serveur n'a plus de messages à recharger (ou
+	 * bien null)
+	 */
+	private Date exhaustedBefore = null;
 	private boolean activeFilter = false;
 
 	/**
@@ -260,13 +338,29 @@ public class ClientFrame2 extends AbstractClientFrame
 		JScrollPane scrollPane = new JScrollPane();
 		getContentPane().add(scrollPane, BorderLayout.CENTER);
 
-		JTextPane textPane = new JTextPane();
-		textPane.setEditable(false);
-		// autoscroll textPane to bottom
-		DefaultCaret caret = (DefaultCaret) textPane.getCaret();
-		caret.setUpdatePolicy(DefaultCaret.ALWAYS_UPDATE);
-
-		scrollPane.setViewportView(textPane);
+		messageList = new JList<Message>(messages);
+		messageList.setName("Messages");
+		messageList.setCellRenderer(new MessageRenderer());
+		/*
+		 * Cellules de la taille d'un message "prototype" afin que la JList
+		 * n'ait pas à mesurer chacun des messages
+		 */
+		messageList.setPrototypeCellValue(new Message(PROTOTYPE, pseudo));
+		scrollPane.setViewportView(messageList);
+		/*
+		 * Rechargement des messages plus anciens lorsque l'on fait défiler la
+		 * liste jusqu'à son début
+		 */
+		final JScrollBar scrollBar = scrollPane.getVerticalScrollBar();
+		scrollBar.addAdjustmentListener((AdjustmentEvent e) ->
+		{
+			if (!e.getValueIsAdjusting()
+			    && (scrollBar.getValue() == scrollBar.getMinimum())
+			    && (scrollBar.getVisibleAmount() < scrollBar.getMaximum()))
+			{
+				requestOlder(1);
+			}
+		});
 
 		JMenuBar menuBar = new JMenuBar();
 		setJMenuBar(menuBar);
@@ -369,6 +463,10 @@ public class ClientFrame2 extends AbstractClientFrame
 						kickSelection.setEnabled(false);
 						clearSelection.setEnabled(false);
 						filterButton.setEnabled(false);
+						if (activeFilter)
+						{
+							applyFilter();
+						}
 					}
 					else
 					{
@@ -381,6 +479,11 @@ public class ClientFrame2 extends AbstractClientFrame
 						kickSelection.setEnabled(true);
 						clearSelection.setEnabled(true);
 						filterButton.setEnabled(true);
+						// Les messages affichés sont ceux des auteurs sélectionnés
+						if (activeFilter)
+						{
+							applyFilter();
+						}
 						// Find out which indexes are selected.
 						int minIndex = lsm.getMinSelectionIndex();
 						int maxIndex = lsm.getMaxSelectionIndex();
@@ -399,81 +502,246 @@ public class ClientFrame2 extends AbstractClientFrame
 				}
 			}
 		});
+	}
 
+	/**
+	 * Prise en compte d'un lot de messages reçus [appelé depuis le thread de
+	 * Swing par le {@link #batcher}] : mise à jour de la liste des
+	 * utilisateurs d'après chacun des messages puis insertion des messages à
+	 * leur place dans les {@link #messages}. Si la fin de la
+	 * {@link #messageList} était visible, la liste défile pour montrer les
+	 * nouveaux messages.
+	 * @param batch les messages reçus, dans leur ordre d'arrivée
+	 */
+	protected void writeMessages(List<Message> batch)
+	{
+		boolean atEnd =
+		    messageList.getLastVisibleIndex() >= (messages.getSize() - 1);
+		List<Message> received = new ArrayList<Message>(batch.size());
+		for (Message messageIn : batch)
+		{
+			if (messageIn.isPresence())
+			{
+				// Les évènements de présence ne sont pas affichés
+				updateUsers(messageIn);
+			}
+			else if (!reloadResult(messageIn))
+			{
+				updateUsers(messageIn);
+				received.add(messageIn);
+			}
+		}
+		if (received.isEmpty())
+		{
+			return;
+		}
+		if (atEnd && !reloading)
+		{
+			// On ne relit plus les messages rechargés
+			messages.releaseOlder();
+		}
+		messages.addAll(received);
+		if (atEnd && (messages.getSize() > 0))
+		{
+			messageList.ensureIndexIsVisible(messages.getSize() - 1);
+		}
+	}
 
-		// --------------------------------------------------------------------
-		// Documents
-		// r�cup�ration du document du textPane ainsi que du documentStyle et du
-		// defaultColor du document
-		//---------------------------------------------------------------------
-		document = textPane.getStyledDocument();
-		documentStyle = textPane.addStyle("New Style", null);
-		defaultColor = StyleConstants.getForeground(documentStyle);
+	/**
+	 * Mise en place du filtre des {@link #messages} : lorsque le filtre est
+	 * actif seuls les messages des auteurs sélectionnés dans la liste des
+	 * utilisateurs sont affichés. Les auteurs sélectionnés sont relevés une
+	 * fois pour toutes et les messages de ces auteurs sont obtenus d'après
+	 * les listes de messages par auteur des {@link #messages} (voir
+	 * {@link AuthorListFilter}).
+	 */
+	private void applyFilter()
+	{
+		if (activeFilter)
+		{
+			List<String> authors = new ArrayList<String>();
+			int minIndex = selectionModel.getMinSelectionIndex();
+			int maxIndex = selectionModel.getMaxSelectionIndex();
+			for (int i = minIndex; (i >= 0) && (i <= maxIndex); i++)
+			{
+				if (selectionModel.isSelectedIndex(i))
+				{
+					authors.add(elements.getElementAt(i));
+				}
+			}
+			messages.setFilter(new AuthorListFilter(authors));
+		}
+		else
+		{
+			messages.setFilter(null);
+		}
 	}
 
 	/**
-	 * Affichage d'un message dans le {@link #document}, puis passage � la ligne
-	 * (avec l'ajout de {@link Vocabulary#newLine})
-	 * La partie "[yyyy/MM/dd HH:mm:ss]" correspond � la date/heure courante
-	 * obtenue gr�ce � un Calendar et est affich�e avec la defaultColor alors
-	 * que la partie "utilisateur > message" doit �tre affich�e avec une couleur
-	 * d�termin�e d'apr�s le nom d'utilisateur avec
-	 * {@link #getColorFromName(String)}, le nom d'utilisateur est quant � lui
-	 * d�termin� d'apr�s le message lui m�me avec {@link #parseName(String)}.
-	 * @param messageIn le message � afficher dans le {@link #document}
-	 * @throws BadLocationException si l'�criture dans le document �choue
-	 * @see {@link examples.widgets.ExampleFrame#appendToDocument(String, Color)}
-	 * @see java.text.SimpleDateFormat#SimpleDateFormat(String)
-	 * @see java.util.Calendar#getInstance()
-	 * @see java.util.Calendar#getTime()
-	 * @see javax.swing.text.StyleConstants
-	 * @see javax.swing.text.StyledDocument#insertString(int, String,
-	 * javax.swing.text.AttributeSet)
+	 * Mise en place des limites des {@link #messages}
+	 * @param maxMessages le nombre maximum de messages reçus conservés (ou
+	 * bien 0 pour ne pas limiter le nombre de messages)
+	 * @param maxBytes la taille approximative maximum (en octets) des
+	 * messages reçus conservés (ou bien 0 pour ne pas limiter leur taille)
+	 * @param reload true pour recharger les messages retirés depuis
+	 * l'historique du serveur lorsque l'on fait défiler la liste jusqu'au
+	 * plus ancien message conservé
+	 * @see widgets.AbstractClientFrame#setScrollback(int, long, boolean)
 	 */
-	protected void writeMessage(Message messageIn)
+	@Override
+	public void setScrollback(int maxMessages, long maxBytes, boolean reload)
 	{
+		messages.setLimits(maxMessages, maxBytes);
+		this.reload = reload;
+	}
+
+	/**
+	 * Envoi d'une requête history au serveur afin de recharger les messages
+	 * antérieurs au plus ancien message conservé, si des messages ont été
+	 * retirés des {@link #messages} et qu'aucun rechargement n'est en cours
+	 * [appelé depuis le thread de Swing]
+	 * @param page la page de résultats à demander
+	 */
+	private void requestOlder(int page)
+	{
+		Date oldest = messages.getOldestDate();
+		if (!reload || reloading || (messages.getEvicted() == 0)
+		    || (oldest == null)
+		    || ((exhaustedBefore != null) && !oldest.after(exhaustedBefore)))
+		{
+			return;
+		}
+		reloading = true;
+		reloadBefore = oldest;
+		reloadPage = page;
+		reloadReceived = -1;
+		reloaded.clear();
 		/*
-		 * ajout du message "[yyyy/MM/dd HH:mm:ss] utilisateur > message" �
-		 * la fin du document avec la couleur d�termin�e d'apr�s "utilisateur"
-		 * (voir AbstractClientFrame2#getColorFromName)
+		 * Les dates des requêtes étant à la seconde près, on demande les
+		 * messages jusqu'à la fin de la seconde du plus ancien message puis
+		 * on ne conserve que ceux qui lui sont antérieurs
 		 */
-		
-		String msgContent = messageIn.getContent();
-		if(msgContent.contains("kick") && msgContent.contains("granted")){
-			String pseudoKick = messageIn.getContent().split("kick ")[1].split(" ")[0];
-			kickCheck(pseudoKick);
-			removeUserFromList(pseudoKick);
+		SimpleDateFormat format = new SimpleDateFormat(HistoryQuery.DATEFORMAT);
+		sendMessage(Vocabulary.historyCmd + " until "
+		    + format.format(new Date(oldest.getTime() + 999)) + " page "
+		    + page);
+	}
+
+	/**
+	 * Prise en compte des réponses du serveur à une requête de rechargement
+	 * (voir {@link #requestOlder(int)}) : les résultats sont les messages
+	 * reçus entre la réponse ({@link MessageKind#ACK}) qui sert d'en-tête et
+	 * celle qui marque la fin des résultats. L'en-tête, les messages
+	 * rechargés (ajoutés aux {@link #messages} une fois tous reçus) et la fin
+	 * des résultats ne sont pas affichés comme des messages reçus. Une
+	 * erreur ({@link MessageKind#ERROR}) à la place de l'en-tête désactive le
+	 * rechargement.
+	 * @param message un message reçu
+	 * @return true si le message faisait partie de la réponse à une requête
+	 * de rechargement
+	 */
+	private boolean reloadResult(Message message)
+	{
+		if (!reloading || message.hasSequence())
+		{
+			return false;
+		}
+		MessageKind kind = message.getKind();
+		if (reloadReceived < 0)
+		{
+			if (kind == MessageKind.ERROR)
+			{
+				// Pas d'historique sur ce serveur ou requête refusée
+				logger.warning("ClientFrame2: reload disabled: "
+				    + message.getContent());
+				reload = false;
+				reloading = false;
+				return false;
+			}
+			if (kind != MessageKind.ACK)
+			{
+				return false;
+			}
+			reloadReceived = 0;
+			return true;
+		}
+		if (kind == MessageKind.ERROR)
+		{
+			return false;
 		}
-		else if(msgContent.contains(" logged out")){
-			removeUserFromList(msgContent.split(" logged out")[0]);
+		if (kind != MessageKind.ACK)
+		{
+			reloadReceived++;
+			if (message.getDate().before(reloadBefore))
+			{
+				reloaded.add(message);
+			}
+			return true;
 		}
-		StringBuffer sb = new StringBuffer();
-
-		sb.append(messageIn);
-		sb.append(Vocabulary.newLine);
 
-		// source et contenu du message avec la couleur du message
-		String source = messageIn.getAuthor();
-		if ((source != null) && (source.length() > 0))
+		// Fin des résultats
+		reloading = false;
+		if (!reloaded.isEmpty())
+		{
+			messages.addOlder(new ArrayList<Message>(reloaded));
+			reloaded.clear();
+		}
+		else if (reloadReceived == 0)
 		{
 			/*
-			 * Changement de couleur du texte
+			 * Aucun résultat : le serveur n'a plus de messages antérieurs
 			 */
-			StyleConstants.setForeground(documentStyle,new Color(source.hashCode()).darker());
+			exhaustedBefore = reloadBefore;
 		}
-		elements.add(source);
-
-		try {
-			document.insertString(document.getLength(),
-			                      sb.toString(),
-			                      documentStyle);
-		} catch (BadLocationException e) {
-			logger.warning("ClientFrame2: clear doc: bad location");
-			logger.warning(e.getLocalizedMessage());
+		else
+		{
+			/*
+			 * Tous les résultats de cette page étaient déjà conservés :
+			 * on demande la page suivante
+			 */
+			requestOlder(reloadPage + 1);
 		}
+		return true;
+	}
 
-		// Retour � la couleur de texte par d�faut
-		StyleConstants.setForeground(documentStyle, defaultColor);
+	/**
+	 * Mise à jour de la liste des utilisateurs d'après un message reçu :
+	 * la liste est remplacée par la liste complète envoyée par le serveur
+	 * lors de la connection puis mise à jour par les arrivées, départs et
+	 * éjections d'utilisateurs
+	 * @param messageIn le message reçu
+	 */
+	protected void updateUsers(Message messageIn)
+	{
+		switch (messageIn.getKind())
+		{
+			case ROSTER:
+				rosterReceived = true;
+				elements.clear();
+				elements.add(pseudo);
+				for (String name : messageIn.getNames())
+				{
+					elements.add(name);
+				}
+				break;
+			case JOIN:
+				elements.add(messageIn.getContent());
+				break;
+			case LEAVE:
+				removeUserFromList(messageIn.getContent());
+				break;
+			case KICK:
+				kickCheck(messageIn.getContent());
+				removeUserFromList(messageIn.getContent());
+				break;
+			case CHAT:
+			default:
+				if (!rosterReceived && messageIn.hasAuthor())
+				{
+					elements.add(messageIn.getAuthor());
+				}
+				break;
+		}
 	}
 
 	/**
@@ -542,6 +810,42 @@ public class ClientFrame2 extends AbstractClientFrame
 		}
 	}
 	
+	/**
+	 * Rendu d'un message de la {@link #messageList} avec une couleur obtenue
+	 * d'après le hashCode de son auteur
+	 */
+	private static class MessageRenderer extends JLabel
+		implements ListCellRenderer<Message>
+	{
+		@Override
+		public Component getListCellRendererComponent(
+			JList<? extends Message> list, Message value, int index,
+			boolean isSelected, boolean cellHasFocus)
+		{
+			Color color = list.getForeground();
+			if ((value != null) && value.hasAuthor()
+			    && (value.getAuthor().length() > 0))
+			{
+				color = new Color(value.getAuthor().hashCode()).darker();
+			}
+			setText(value == null ? "" : value.toString());
+			if (isSelected)
+			{
+				setBackground(color);
+				setForeground(list.getSelectionForeground());
+			}
+			else
+			{
+				setBackground(list.getBackground());
+				setForeground(color);
+			}
+			setEnabled(list.isEnabled());
+			setFont(list.getFont());
+			setOpaque(true);
+			return this;
+		}
+	}
+
 	/**
 	 * Adds a popup menu to a component
 	 * @param component the parent component of the popup menu
@@ -653,18 +957,6 @@ public class ClientFrame2 extends AbstractClientFrame
 		@Override
 		public void actionPerformed(ActionEvent e)
 		{
-			/*
-			 * Effacer le contenu du document
-			 */
-			try {
-				document.remove(0, document.getLength());
-			} catch (BadLocationException ex) {
-				logger.warning("ClientFrame2: clear doc: bad location");
-				logger.warning(ex.getLocalizedMessage());
-			}
-			
-			Consumer<Message> messagePrinter = (Message m) -> writeMessage(m);
-			
 			// Ici on gère le GUI pour lier les boutons et checkbox entre eux
 			if(e.getSource().getClass() == JToggleButton.class){
 				JToggleButton jt = (JToggleButton)e.getSource();
@@ -692,29 +984,7 @@ public class ClientFrame2 extends AbstractClientFrame
 			}
 			
 			// Ici, on filtre les messages
-			
-			if(activeFilter){
-				
-				Predicate<Message> selectionFilter = (Message m) ->
-	            {
-	                if (m != null)
-	                {
-	                    if (m.hasAuthor())
-	                    {
-	                        if (selectionModel.isSelectedIndex(elements.getIndex(m.getAuthor())))
-	                        {
-	                            return true;
-	                        }
-	                    }
-	                }
-	                return false;
-	            };
-				
-	            messages.stream().sorted().filter(selectionFilter).forEach(messagePrinter);
-			}
-			else{
-				messages.stream().sorted().forEach(messagePrinter);
-			}
+			applyFilter();
 		}
 	}
 	
@@ -746,19 +1016,10 @@ public class ClientFrame2 extends AbstractClientFrame
 
 			JCheckBoxMenuItem jcb = (JCheckBoxMenuItem)e.getSource();
 			if(jcb.isSelected()){
-				Message.addOrder(MessageOrder.DATE);
+				messages.setOrder(messages.getOrder().with(MessageOrder.DATE));
 			}
 			else{
-				Message.removeOrder(MessageOrder.DATE);
-			}
-			try {
-				document.remove(0, document.getLength());
-				Consumer<Message> messagePrinter = (Message m) -> writeMessage(m);
-				messages.stream().sorted().forEach(messagePrinter);
-				
-			} catch (BadLocationException ex) {
-				logger.warning("ClientFrame2: clear doc: bad location");
-				logger.warning(ex.getLocalizedMessage());
+				messages.setOrder(messages.getOrder().without(MessageOrder.DATE));
 			}
 		}
 	}
@@ -791,20 +1052,10 @@ public class ClientFrame2 extends AbstractClientFrame
 
 			JCheckBoxMenuItem jcb = (JCheckBoxMenuItem)e.getSource();
 			if(jcb.isSelected()){
-				Message.addOrder(MessageOrder.AUTHOR);
+				messages.setOrder(messages.getOrder().with(MessageOrder.AUTHOR));
 			}
 			else{
-				Message.removeOrder(MessageOrder.AUTHOR);
-			}
-			
-			try {
-				document.remove(0, document.getLength());
-				Consumer<Message> messagePrinter = (Message m) -> writeMessage(m);
-				messages.stream().sorted().forEach(messagePrinter);
-				
-			} catch (BadLocationException ex) {
-				logger.warning("ClientFrame2: clear doc: bad location");
-				logger.warning(ex.getLocalizedMessage());
+				messages.setOrder(messages.getOrder().without(MessageOrder.AUTHOR));
 			}
 		}
 	}
@@ -837,20 +1088,10 @@ public class ClientFrame2 extends AbstractClientFrame
 
 			JCheckBoxMenuItem jcb = (JCheckBoxMenuItem)e.getSource();
 			if(jcb.isSelected()){
-				Message.addOrder(MessageOrder.CONTENT);
+				messages.setOrder(messages.getOrder().with(MessageOrder.CONTENT));
 			}
 			else{
-				Message.removeOrder(MessageOrder.CONTENT);
-			}
-			
-			try {
-				document.remove(0, document.getLength());
-				Consumer<Message> messagePrinter = (Message m) -> writeMessage(m);
-				messages.stream().sorted().forEach(messagePrinter);
-				
-			} catch (BadLocationException ex) {
-				logger.warning("ClientFrame2: clear doc: bad location");
-				logger.warning(ex.getLocalizedMessage());
+				messages.setOrder(messages.getOrder().without(MessageOrder.CONTENT));
 			}
 		}
 	}
@@ -903,7 +1144,7 @@ public class ClientFrame2 extends AbstractClientFrame
 
 	/**
 	 * Listener lorsque le bouton #btnClear est activ�. Efface le contenu du
-	 * {@link #document}
+	 * {@link #messages}
 	 */
 	protected class ClearAction extends AbstractAction
 	{
@@ -934,19 +1175,7 @@ public class ClientFrame2 extends AbstractClientFrame
 		@Override
 		public void actionPerformed(ActionEvent e)
 		{
-			/*
-			 * Effacer le contenu du document
-			 */
-			try
-			{
-				document.remove(0, document.getLength());
-				messages.clear();
-			}
-			catch (BadLocationException ex)
-			{
-				logger.warning("ClientFrame2: clear doc: bad location");
-				logger.warning(ex.getLocalizedMessage());
-			}
+			messages.clear();
 		}
 	}
 
@@ -1070,12 +1299,7 @@ public class ClientFrame2 extends AbstractClientFrame
 	}
 	
 	public void removeUserFromList(String target){
-		for(int i = 0; i<elements.getSize(); i++){
-			if(elements.getElementAt(i).compareTo(target) == 0){
-				elements.remove(i);
-				break;
-			}
-		}
+		elements.remove(target);
 	}
 
 	/**
@@ -1115,7 +1339,7 @@ public class ClientFrame2 extends AbstractClientFrame
 	{
 		//inBR = new BufferedReader(new InputStreamReader(inPipe));
 		try {
-			ois = new ObjectInputStream(inPipe);
+			messageInput = new MessageInput(inPipe);
 		} catch (IOException e1) {
 			logger.warning("ClientFrame2: I/O Error reading");
 		}
@@ -1131,7 +1355,7 @@ public class ClientFrame2 extends AbstractClientFrame
 			 * boucle.
 			 * - Si cette ligne de texte n'est pas nulle on affiche le message
 			 * dans le document avec le format voulu en utilisant
-			 * #writeMessage(String)
+			 * #writeMessages(List) (par lots, depuis le thread de Swing)
 			 * - Apr�s la fin de la boucle on change commonRun � false de
 			 * mani�re synchronis�e afin que les autres threads utilisant ce
 			 * commonRun puissent s'arr�ter eux aussi :
@@ -1151,7 +1375,7 @@ public class ClientFrame2 extends AbstractClientFrame
 				 * read from input (doit �tre bloquant)
 				 */
 				//messageIn = inBR.readLine();
-				messageIn = (Message) ois.readObject();
+				messageIn = messageInput.readMessage();
 			}
 			catch (IOException | ClassNotFoundException e)
 			{
@@ -1159,38 +1383,25 @@ public class ClientFrame2 extends AbstractClientFrame
 				break;
 			}
 
-			if (messageIn != null)
+			if ((messageIn != null) && messageIn.hasSequence())
 			{
-				messages.add(messageIn);
-				try {
-					document.remove(0, document.getLength());
-				} catch (BadLocationException ex) {
-					logger.warning("ClientFrame2: clear doc: bad location");
-					logger.warning(ex.getLocalizedMessage());
-				}
-				Consumer<Message> messagePrinter = (Message m) -> writeMessage(m);
-				if(activeFilter){
-					
-					Predicate<Message> selectionFilter = (Message m) ->
-		            {
-		                if (m != null)
-		                {
-		                    if (m.hasAuthor())
-		                    {
-		                        if (selectionModel.isSelectedIndex(elements.getIndex(m.getAuthor())))
-		                        {
-		                            return true;
-		                        }
-		                    }
-		                }
-		                return false;
-		            };
-					
-		            messages.stream().sorted().filter(selectionFilter).forEach(messagePrinter);
-				}
-				else{
-					messages.stream().sorted().forEach(messagePrinter);
+				if (messageIn.getSequence() <= lastSequence)
+				{
+					logger.info("ClientFrame2: duplicate message "
+					    + messageIn.getSequence() + " ignored");
+					continue;
 				}
+				lastSequence = messageIn.getSequence();
+			}
+
+			if (messageIn != null)
+			{
+				/*
+				 * Le message sera pris en compte (avec les autres messages
+				 * reçus entre temps) par le thread de Swing qui est le seul à
+				 * modifier les widgets et leurs modèles
+				 */
+				batcher.submit(messageIn);
 			}
 			else // messageIn == null
 			{
@@ -1221,7 +1432,10 @@ public class ClientFrame2 extends AbstractClientFrame
 		try
 		{
 			//inBR.close();
-			ois.close();
+			if (messageInput != null)
+			{
+				messageInput.close();
+			}
 		}
 		catch (IOException e)
 		{
@@ -0,0 +1,139 @@
+package widgets;
+
+import java.awt.event.ActionEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+import javax.swing.Timer;
+
+/**
+ * Regroupement des éléments (les messages reçus par exemple) à afficher
+ * dans une fenêtre : le thread qui reçoit les éléments se contente de les
+ * déposer ({@link #submit(Object)}) dans une file et c'est le thread de
+ * Swing (Event Dispatch Thread) qui, au plus une fois par image
+ * ({@link #FRAMEDELAY} ms), affiche en une seule fois tous les éléments
+ * déposés depuis le dernier affichage.
+ * Ainsi les widgets et leurs modèles ne sont modifiés que depuis le thread
+ * de Swing et une rafale de messages ne provoque qu'une modification (et un
+ * affichage) par image au lieu d'une modification par message.
+ * @param <E> le type des éléments à afficher
+ * @author davidroussel
+ */
+public class DisplayBatcher<E>
+{
+	/**
+	 * Délai (en ms) entre deux affichages (environ une image à 60 Hz)
+	 */
+	public final static int FRAMEDELAY = 16;
+
+	/**
+	 * Les éléments en attente d'affichage
+	 */
+	private final ConcurrentLinkedQueue<E> pending;
+
+	/**
+	 * Indique si un affichage est déjà programmé
+	 */
+	private final AtomicBoolean scheduled;
+
+	/**
+	 * Le timer (non répétitif) déclenchant l'affichage dans le thread de
+	 * Swing
+	 */
+	private final Timer timer;
+
+	/**
+	 * L'affichage d'un lot d'éléments [appelé dans le thread de Swing]
+	 */
+	private final Consumer<List<E>> display;
+
+	/**
+	 * Nombre de lots affichés
+	 */
+	private volatile long batches;
+
+	/**
+	 * Nombre d'éléments affichés
+	 */
+	private volatile long displayed;
+
+	/**
+	 * Constructeur d'un regroupement d'éléments
+	 * @param display l'affichage d'un lot d'éléments (dans leur ordre de
+	 * dépôt), qui sera appelé dans le thread de Swing
+	 */
+	public DisplayBatcher(Consumer<List<E>> display)
+	{
+		this.display = display;
+		pending = new ConcurrentLinkedQueue<E>();
+		scheduled = new AtomicBoolean(false);
+		timer = new Timer(FRAMEDELAY, (ActionEvent e) -> flush());
+		timer.setRepeats(false);
+		/*
+		 * Un timer qui regroupe ses événements ignore un déclenchement
+		 * survenant pendant l'affichage précédent : les éléments déposés
+		 * pendant cet affichage resteraient alors en attente
+		 */
+		timer.setCoalesce(false);
+		batches = 0;
+		displayed = 0;
+	}
+
+	/**
+	 * Dépôt d'un élément à afficher [appelé par n'importe quel thread].
+	 * L'affichage est programmé s'il ne l'est pas déjà
+	 * @param element l'élément à afficher
+	 */
+	public void submit(E element)
+	{
+		pending.add(element);
+		if (scheduled.compareAndSet(false, true))
+		{
+			timer.start();
+		}
+	}
+
+	/**
+	 * Nombre de lots affichés
+	 * @return le nombre de lots d'éléments affichés
+	 */
+	public long getBatches()
+	{
+		return batches;
+	}
+
+	/**
+	 * Nombre d'éléments affichés
+	 * @return le nombre d'éléments affichés
+	 */
+	public long getDisplayed()
+	{
+		return displayed;
+	}
+
+	/**
+	 * Affichage de tous les éléments en attente [dans le thread de Swing].
+	 * L'indicateur d'affichage programmé est baissé avant de vider la file
+	 * afin qu'un élément déposé pendant l'affichage programme un nouvel
+	 * affichage
+	 */
+	private void flush()
+	{
+		scheduled.set(false);
+		List<E> batch = new ArrayList<E>();
+		E element;
+		while ((element = pending.poll()) != null)
+		{
+			batch.add(element);
+		}
+		if (!batch.isEmpty())
+		{
+			batches++;
+			displayed += batch.size();
+			display.accept(batch);
+		}
+	}
+}